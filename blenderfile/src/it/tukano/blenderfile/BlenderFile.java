@@ -1,43 +1,54 @@
 package it.tukano.blenderfile;
 
 import it.tukano.blenderfile.parserstructures.BlenderFileSdna;
+import it.tukano.blenderfile.parserstructures.SdnaCache;
 import it.tukano.blenderfile.parserstructures.BlenderFileBlock;
 import it.tukano.blenderfile.parserstructures.BlenderFileHeader;
+import it.tukano.blenderfile.parserstructures.BlockIndex;
 import it.tukano.blenderfile.parserstructures.ConstantValues.BlockCode;
+import it.tukano.blenderfile.parserstructures.IdNameTable;
 import it.tukano.blenderfile.elements.BlenderScene;
-import it.tukano.blenderfile.exceptions.BlenderFileParsingException;
-import it.tukano.blenderfile.io.MemBufferDataReader;
 import it.tukano.blenderfile.io.BinaryDataReader;
+import it.tukano.blenderfile.io.DataSource;
 import it.tukano.blenderfile.parsers.BlenderFileBlockParser;
 import it.tukano.blenderfile.parsers.ParserFactory;
-import it.tukano.blenderfile.parserstructures.ConstantValues;
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
+import java.io.Closeable;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.InputStream;
 import java.net.URL;
+import java.net.URLConnection;
+import java.nio.file.Path;
 import java.util.Collections;
-import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
-import java.util.zip.GZIPInputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
 
 /**
  * A blender file holds the parsed content of a .blend file.
  * @author pgi
  */
-public class BlenderFile {
+public class BlenderFile implements Closeable {
+
+    /* Runs the tasks in the thread that submits them */
+    private static final Executor CALLER_THREAD = new Executor() {
+
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
 
     private final BlenderFileHeader blenderFileHeader;
     private final BlenderFileSdna blenderFileSdna;
-    private final Map<Number, BlenderFileBlock> blenderFileBlocksForMemAddress;
-    private final Map<Number, BlenderFileBlock> blenderFileBlocksForFilePosition;
+    private final BlockIndex blenderFileBlocks;
     private final BinaryDataReader binaryDataReader;
-    private List<BlenderScene> parsedScenes;
+    private volatile IdNameTable idNames;
+    private final AtomicReference<CompletableFuture<List<BlenderScene>>> parsedScenes = new AtomicReference<CompletableFuture<List<BlenderScene>>>();
 
     /**
      * Initializes this blender file using the given url as input stream
@@ -48,8 +59,9 @@ public class BlenderFile {
         BlenderFile file = null;
         InputStream in = null;
         try {
-            in = blenderFileUrl.openStream();
-            file = new BlenderFile(new BlenderFileParameters(in));
+            URLConnection connection = blenderFileUrl.openConnection();
+            in = connection.getInputStream();
+            file = new BlenderFile(new BlenderFileParameters(in, connection.getContentLengthLong()));
         } catch(IOException ex) {
             Log.ex(ex, "Error reading blender file");
         } finally {
@@ -62,6 +74,60 @@ public class BlenderFile {
         return file;
     }
 
+    /**
+     * Opens the blender file at the given path. The file is memory mapped, the
+     * returned instance should be closed to release the mapping.
+     * @param blenderFilePath the path of the blender file to load
+     * @return the blender file
+     * @throws IOException if a read error occurs
+     */
+    public static BlenderFile open(Path blenderFilePath) throws IOException {
+        return new BlenderFile(new BlenderFileParameters(blenderFilePath));
+    }
+
+    /**
+     * Opens the blender file at the given path with an index sidecar. If the
+     * sidecar matches the file the block scan and the sdna decode are skipped,
+     * otherwise the file is scanned and the sidecar is rewritten.
+     * @param blenderFilePath the path of the blender file to load
+     * @param sidecar the sidecar policy (see IndexSidecar.nextToFile and
+     * IndexSidecar.inDirectory)
+     * @return the blender file
+     * @throws IOException if a read error occurs
+     */
+    public static BlenderFile open(Path blenderFilePath, IndexSidecar sidecar) throws IOException {
+        return sidecar.open(blenderFilePath);
+    }
+
+    /**
+     * Opens the blender file at the given path reading only what the index
+     * needs: the header of each block and the DNA1 block. The data of the
+     * other blocks is read with positional reads when it is accessed, so
+     * listing the blocks of a file costs in proportion to the number of blocks
+     * rather than to the size of the file. The returned instance should be
+     * closed to release the file.
+     * @param blenderFilePath the path of the blender file to index
+     * @return the blender file
+     * @throws IOException if a read error occurs
+     */
+    public static BlenderFile openIndex(Path blenderFilePath) throws IOException {
+        return new BlenderFile(new BlenderFileParameters(DataSource.forFileChannel(blenderFilePath)));
+    }
+
+    /**
+     * Opens the blender file at the given path without blocking the caller. The
+     * file is read with an asynchronous channel, the block scan and the SDNA
+     * decode run on the given executor (see BlenderFileLoader for the single
+     * stages). Cancelling the returned future stops the load and releases the
+     * data read so far.
+     * @param blenderFilePath the path of the blender file to load
+     * @param executor the executor of the parsing stages
+     * @return a future completed with the blender file
+     */
+    public static CompletableFuture<BlenderFile> openAsync(Path blenderFilePath, Executor executor) {
+        return BlenderFileLoader.load(BlenderFileLoader.read(blenderFilePath), executor);
+    }
+
     /**
      * Initializes this blender file from the given input stream
      * @param param the parameters required to parse a file (includes a pointer to
@@ -69,104 +135,190 @@ public class BlenderFile {
      * @throws IOException
      */
     public BlenderFile(BlenderFileParameters param) throws IOException {
-        BinaryDataReader reader = new MemBufferDataReader(param.getInputStream());
-        if(BlenderFile.isCompressed(reader)) {
-            reader = BlenderFile.decompress(reader);
-        }
-        BlenderFileHeader header = new BlenderFileHeader(reader);
-        Map<Number, BlenderFileBlock> blockForMemAddress = new LinkedHashMap<Number, BlenderFileBlock>();
-        Map<Number, BlenderFileBlock> blockForFilePosition = new LinkedHashMap<Number, BlenderFileBlock>();
-        BlenderFileSdna sdna = null;
-        for(BlenderFileBlock block = new BlenderFileBlock(header); ConstantValues.BlockCode.ENDB != block.getCode(); block = new BlenderFileBlock(header)) {
-            blockForMemAddress.put(block.getOldMemoryAddress(), block);
-            blockForFilePosition.put(block.getPositionInBlenderFile(), block);
-            if(block.getCode() == ConstantValues.BlockCode.DNA1) {
-                if(sdna != null) throw new BlenderFileParsingException("Found two DNA1 file blocks?...");
-                sdna = new BlenderFileSdna(block);
-            }
-        }
-        if (sdna == null) {
-            throw new BlenderFileParsingException("No DNA1 file block found.");
-        }
-        header.setSdna(sdna);
-        blenderFileHeader = header;
-        blenderFileSdna = sdna;
-        blenderFileBlocksForMemAddress = blockForMemAddress;
-        binaryDataReader = reader;
-        blenderFileBlocksForFilePosition = blockForFilePosition;
-        Log.info("BlenderFile V. 0.0.2, .blend version number:", header.getVersionNumber());
-    }
-
-    /** Checks if the reader contains the blender file in compressed format. More or less. */
-    private static boolean isCompressed(BinaryDataReader reader) throws IOException {
-        Number mark = reader.getCurrentPosition();
-        reader.jumpTo(0);
-        final Number ID1 = reader.readByte();
-        reader.jumpTo(mark);
-        final boolean gzipped = (ID1.intValue() == 0x1f);
-        if(gzipped) {
-            Log.info("gzip file found (hopefully)...");
-        }
-        return gzipped;
+        this(BlenderFileLoader.scan(param.getDataSource().open()));
     }
 
-    /** Decompress the given source in a temporary file and returns the uncompressed reader */
-    private static BinaryDataReader decompress(BinaryDataReader source) throws IOException {
-        Log.info("Decompressing gzip...");
-        GZIPInputStream in = null;
+    /**
+     * Initializes this blender file decoding the sdna of a scanned file. The
+     * sdna is taken from the shared SdnaCache if a file with the same catalog
+     * has been opened. The reader of the scan is closed if the decode fails.
+     * @param scan the header and blocks of the file
+     * @throws IOException if the sdna cannot be parsed
+     */
+    BlenderFile(BlenderFileLoader.BlockScan scan) throws IOException {
+        BinaryDataReader reader = scan.getReader();
+        boolean parsed = false;
         try {
-            in = new GZIPInputStream(source.asInputStream());
-            BufferedInputStream inBuffer = new BufferedInputStream(in);
-            File tempFile = File.createTempFile("blenderdecompressed", "data");
-            tempFile.deleteOnExit();
-            FileOutputStream out = null;
-            try {
-                out = new FileOutputStream(tempFile);
-                BufferedOutputStream outBuffer = new BufferedOutputStream(out);
-                int read = 0;
-                while((read = inBuffer.read()) != -1) outBuffer.write(read);
-                outBuffer.flush();
-                outBuffer.close();
-                return new MemBufferDataReader(new FileInputStream(tempFile));
-            } finally {
-                if(out != null) out.close();
-            }
+            BlenderFileHeader header = scan.getHeader();
+            BlenderFileSdna sdna = scan.getSdna() != null ? scan.getSdna() : SdnaCache.getShared().get(scan.getDnaBlock());
+            header.setSdna(sdna);
+            blenderFileHeader = header;
+            blenderFileSdna = sdna;
+            blenderFileBlocks = scan.getBlocks();
+            binaryDataReader = reader;
+            parsed = true;
         } finally {
-            if(in != null) in.close();
+            if(!parsed) reader.close();//parsing failed, release the source
         }
+        Log.info("BlenderFile V. 0.0.2, .blend version number:", blenderFileHeader.getVersionNumber());
     }
 
     /**
-     * Returns a list of the BlenderScene contained in the blender file.
+     * Returns a list of the BlenderScene contained in the blender file. The
+     * scenes are parsed once, by the first caller, other callers wait for the
+     * result.
      * @return the list of blender scene contained in this file
      * @throws IOException if a read error happens while trying to
      * parse the scene.
      */
-    public synchronized List<BlenderScene> getScenes() throws IOException {
-        if(parsedScenes == null) {
-            parsedScenes = parseScenes();
+    public List<BlenderScene> getScenes() throws IOException {
+        return getScenes(null);
+    }
+
+    /**
+     * Returns a list of the BlenderScene contained in the blender file,
+     * transforming the objects of each scene in parallel on the given pool.
+     * The scenes are the same of the sequential parse. The scenes are parsed
+     * once, by the first caller, later calls return them whatever the pool.
+     * @param objectPool the pool of the object transforms, null to transform
+     * the objects in the calling thread
+     * @return the list of blender scene contained in this file
+     * @throws IOException if a read error happens while trying to
+     * parse the scene.
+     */
+    public List<BlenderScene> getScenes(ForkJoinPool objectPool) throws IOException {
+        try {
+            return getScenesAsync(CALLER_THREAD, objectPool).get();
+        } catch(InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the scenes");
+        } catch(ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if(cause instanceof IOException) throw (IOException) cause;
+            if(cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if(cause instanceof Error) throw (Error) cause;
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Parses the scenes of this file in the common fork join pool
+     * @return a future completed with the scenes of this file
+     */
+    public CompletableFuture<List<BlenderScene>> getScenesAsync() {
+        return getScenesAsync(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Parses the scenes of this file on the given executor. The parse is done
+     * once: later calls return the same result. Cancelling the returned future
+     * doesn't stop the parse, other callers may be waiting for it.
+     * @param executor the executor of the scene parse
+     * @return a future completed with the scenes of this file
+     */
+    public CompletableFuture<List<BlenderScene>> getScenesAsync(Executor executor) {
+        return getScenesAsync(executor, null);
+    }
+
+    /**
+     * Parses the scenes of this file on the given executor, transforming the
+     * objects of each scene in parallel on the given pool (see getScenesAsync
+     * and getScenes(ForkJoinPool))
+     * @param executor the executor of the scene parse
+     * @param objectPool the pool of the object transforms, null to transform
+     * the objects in the thread of the scene parse
+     * @return a future completed with the scenes of this file
+     */
+    public CompletableFuture<List<BlenderScene>> getScenesAsync(Executor executor, final ForkJoinPool objectPool) {
+        CompletableFuture<List<BlenderScene>> future = parsedScenes.get();
+        while(future == null) {
+            final CompletableFuture<List<BlenderScene>> parse = new CompletableFuture<List<BlenderScene>>();
+            if(parsedScenes.compareAndSet(null, parse)) {
+                try {
+                    executor.execute(new Runnable() {
+
+                        public void run() {
+                            try {
+                                parse.complete(parseScenes(objectPool));
+                            } catch(Throwable ex) {
+                                parsedScenes.compareAndSet(parse, null);//let the next call try again
+                                parse.completeExceptionally(ex);
+                            }
+                        }
+                    });
+                } catch(RuntimeException ex) {
+                    parsedScenes.compareAndSet(parse, null);//rejected, the parse will never run
+                    parse.completeExceptionally(ex);
+                    throw ex;
+                }
+                future = parse;
+            } else {
+                future = parsedScenes.get();
+            }
         }
-        return parsedScenes;
+        return future.thenApply(new Function<List<BlenderScene>, List<BlenderScene>>() {
+
+            public List<BlenderScene> apply(List<BlenderScene> scenes) {
+                return scenes;
+            }
+        });
     }
 
     /**
      * Called by getScenes the first time that method is invoked.
+     * @param objectPool the pool of the object transforms or null
      * @return a list of the scenes contained in this blender file
      * @throws IOException if a read error occurs
      */
-    private List<BlenderScene> parseScenes() throws IOException {
+    private List<BlenderScene> parseScenes(ForkJoinPool objectPool) throws IOException {
         List<BlenderScene> scenes = new LinkedList<BlenderScene>();
         ParserFactory fac = ParserFactory.getInstance(this);
-        for (BlenderFileBlock blenderFileBlock : blenderFileBlocksForMemAddress.values()) {
-            if(blenderFileBlock.getCode() == BlockCode.SC) {
-                BlenderFileBlockParser parser = fac.getBlenderFileBlockParser(blenderFileBlock);
-                BlenderScene scene = (BlenderScene) parser.parse(this, blenderFileBlock);
-                scenes.add(scene);
-            }
+        for (BlenderFileBlock blenderFileBlock : blenderFileBlocks.getBlocksByCode(BlockCode.SC)) {
+            BlenderFileBlockParser parser = fac.getBlenderFileBlockParser(blenderFileBlock, objectPool);
+            BlenderScene scene = (BlenderScene) parser.parse(this, blenderFileBlock);
+            scenes.add(scene);
         }
         return Collections.unmodifiableList(scenes);
     }
 
+    /**
+     * Returns the blocks of this blender file, in file order (the ENDB block
+     * excluded)
+     * @return an unmodifiable list of the blocks of the file
+     */
+    public List<BlenderFileBlock> getBlocks() {
+        return blenderFileBlocks.asList();
+    }
+
+    /**
+     * Returns the blocks with the given code (eg BlockCode.OB for the objects
+     * or BlockCode.valueOf("ME") for the meshes)
+     * @param code the code of the blocks to get
+     * @return an unmodifiable list of the blocks, in file order
+     */
+    public List<BlenderFileBlock> getBlocksByCode(BlockCode code) {
+        return blenderFileBlocks.getBlocksByCode(code);
+    }
+
+    /**
+     * Returns the blocks that hold structures of the given sdna type
+     * @param structureType the blender name of the structure (eg "Mesh" or
+     * "Image")
+     * @return an unmodifiable list of the blocks, in file order. Empty if the
+     * type is unknown.
+     */
+    public List<BlenderFileBlock> getBlocksByStructType(String structureType) {
+        return blenderFileBlocks.getBlocksByStructIndex(blenderFileSdna.getStructureIndex(structureType));
+    }
+
+    /**
+     * Returns the index of the blocks of this file
+     * @return the block index, used to resolve pointers
+     */
+    public BlockIndex getBlockIndex() {
+        return blenderFileBlocks;
+    }
+
     /**
      * Returns the header of this blender file
      * @return the header of the file
@@ -191,6 +343,36 @@ public class BlenderFile {
         return binaryDataReader;
     }
 
+    /**
+     * Returns the interned names of the ID blocks of this file. The table is
+     * read from the blocks of the scan by the first caller, the blocks that
+     * are not ID blocks are not read.
+     * @return the name table of this file
+     * @throws IOException if a read error occurs
+     */
+    public IdNameTable getIdNames() throws IOException {
+        IdNameTable names = idNames;
+        if(names == null) {
+            synchronized(this) {
+                names = idNames;
+                if(names == null) {
+                    idNames = names = IdNameTable.build(blenderFileBlocks.getTable(), blenderFileSdna, binaryDataReader);
+                }
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Returns the name id of the ID block whose data starts at a position
+     * @param dataPosition the position of the structure of an ID block
+     * @return the id in the name table or -1 if no ID block starts there
+     * @throws IOException if the name table cannot be read
+     */
+    public int getIdNameAt(long dataPosition) throws IOException {
+        return getIdNames().nameOfBlock(blenderFileBlocks.getTable().indexOfDataPosition(dataPosition));
+    }
+
     /**
      * Returns the block identified by the given memory address. This can be used
      * to get the data block referred by pointers. At least most of the time...
@@ -199,7 +381,42 @@ public class BlenderFile {
      * null if no such block exists.
      */
     public BlenderFileBlock getBlockByOldMemAddress(Number oldMemAddress) {
-        return blenderFileBlocksForMemAddress.get(oldMemAddress);
+        return getBlockByOldMemAddress(oldMemAddress.longValue());
+    }
+
+    /**
+     * Returns the block identified by the given memory address.
+     * @param oldMemAddress the value of a pointer (4 bytes pointers are unsigned)
+     * @return the block associated with the given memory address or null if no
+     * such block exists.
+     */
+    public BlenderFileBlock getBlockByOldMemAddress(long oldMemAddress) {
+        return blenderFileBlocks.getByAddress(oldMemAddress);
+    }
+
+    /**
+     * Returns the block whose data contains the address of a pointer. Unlike
+     * getBlockByOldMemAddress the pointer can point inside the block (eg to
+     * an element of an array).
+     * @param pointer the value of a pointer
+     * @return the block that contains the pointed address or null
+     */
+    public BlenderFileBlock getBlockByPointer(long pointer) {
+        return blenderFileBlocks.getByPointer(pointer);
+    }
+
+    /**
+     * Translates a pointer into the position in the file of the pointed data.
+     * The pointer can point to the start of a block or inside its data.
+     * @param pointer the value of a pointer
+     * @return the absolute offset in the file of the pointed byte or -1 if the
+     * pointer is null or no block contains the address
+     */
+    public long resolvePointer(long pointer) {
+        int index = blenderFileBlocks.indexOfPointer(pointer);
+        if(index < 0) return -1;
+        BlenderFileBlock block = blenderFileBlocks.get(index);
+        return block.dataPosition() + (pointer - block.oldMemoryAddress());
     }
 
     /**
@@ -208,6 +425,25 @@ public class BlenderFile {
      * @return the block at the given position of null if no such block exists.
      */
     public BlenderFileBlock getBlockByFilePosition(Number position) {
-        return blenderFileBlocksForFilePosition.get(position);
+        return getBlockByFilePosition(position.longValue());
+    }
+
+    /**
+     * Returns the block at the given file position.
+     * @param position the start offset in the blend file of the block to get
+     * @return the block at the given position of null if no such block exists.
+     */
+    public BlenderFileBlock getBlockByFilePosition(long position) {
+        return blenderFileBlocks.getByPosition(position);
+    }
+
+    /**
+     * Releases the data held by this file. The memory mapping of a file opened
+     * with a path is dropped and unmapped by the garbage collector. The file
+     * cannot be used after this call.
+     * @throws IOException if the release fails
+     */
+    public void close() throws IOException {
+        binaryDataReader.close();
     }
 }
@@ -0,0 +1,245 @@
+package it.tukano.blenderfile;
+
+import it.tukano.blenderfile.exceptions.BlenderFileParsingException;
+import it.tukano.blenderfile.io.AsyncFileIngest;
+import it.tukano.blenderfile.io.BinaryDataReader;
+import it.tukano.blenderfile.io.GzipInflater;
+import it.tukano.blenderfile.io.ZstdDataReader;
+import it.tukano.blenderfile.parserstructures.BlenderFileBlock;
+import it.tukano.blenderfile.parserstructures.BlenderFileHeader;
+import it.tukano.blenderfile.parserstructures.BlenderFileSdna;
+import it.tukano.blenderfile.parserstructures.BlockIndex;
+import it.tukano.blenderfile.parserstructures.BlockTable;
+import it.tukano.blenderfile.parserstructures.ConstantValues;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * The stages of the loading of a blender file: read (the I/O), scan
+ * (decompression and block headers), decode (the SDNA catalog, that gives the
+ * BlenderFile) and then BlenderFile.getScenesAsync for the scene parse. The
+ * stages can be composed by the caller, load chains them on an executor.
+ * @author pgi
+ */
+public class BlenderFileLoader {
+
+    /**
+     * The I/O stage: reads a file in memory without blocking a thread.
+     * @param file the file to read
+     * @return a future completed with a reader on the file content. Cancelling
+     * the future stops the transfer.
+     */
+    public static CompletableFuture<BinaryDataReader> read(Path file) {
+        return AsyncFileIngest.read(file);
+    }
+
+    /**
+     * The scan stage: decompresses the data if needed, reads the file header
+     * and the headers of the blocks. The reader is closed if the scan fails.
+     * @param reader the data of the blender file
+     * @return the scanned blocks
+     * @throws IOException if the data is not a valid blender file
+     */
+    public static BlockScan scan(BinaryDataReader reader) throws IOException {
+        boolean scanned = false;
+        try {
+            reader = decompress(reader);
+            BlockScan scan = new BlockScan(reader, new BlenderFileHeader(reader));
+            scanned = true;
+            return scan;
+        } finally {
+            if(!scanned) reader.close();//parsing failed, release the source
+        }
+    }
+
+    /**
+     * Wraps a compressed reader in a reader of the decompressed data. The
+     * compressed reader is closed when the data is inflated in memory.
+     * @param reader the data of the file
+     * @return the decompressed data, the same reader for plain files
+     * @throws IOException if the decompression fails
+     */
+    static BinaryDataReader decompress(BinaryDataReader reader) throws IOException {
+        if(GzipInflater.isGzip(reader)) {
+            Log.info("Decompressing gzip...");
+            try {
+                return GzipInflater.inflate(reader);
+            } finally {
+                reader.close();
+            }
+        } else if(ZstdDataReader.isZstd(reader)) {
+            Log.info("Reading zstd frames...");
+            return new ZstdDataReader(reader);//frames are decompressed on demand
+        }
+        return reader;
+    }
+
+    /**
+     * The decode stage: parses the SDNA catalog of a scanned file. The reader
+     * of the scan is closed if the decode fails.
+     * @param scan the scanned blocks
+     * @return the blender file
+     * @throws IOException if the catalog cannot be parsed
+     */
+    public static BlenderFile decode(BlockScan scan) throws IOException {
+        return new BlenderFile(scan);
+    }
+
+    /**
+     * Chains the scan and decode stages after a read, on the given executor.
+     * Cancelling the returned future cancels the read, skips the stages that
+     * have not started yet and releases the data.
+     * @param read the I/O stage
+     * @param executor the executor of the scan and decode stages
+     * @return a future completed with the blender file
+     */
+    public static CompletableFuture<BlenderFile> load(final CompletableFuture<BinaryDataReader> read, Executor executor) {
+        final CompletableFuture<BlenderFile> result = new CompletableFuture<BlenderFile>();
+        result.whenComplete(new BiConsumer<BlenderFile, Throwable>() {
+
+            public void accept(BlenderFile file, Throwable error) {
+                if(result.isCancelled()) read.cancel(true);
+            }
+        });
+        read.thenApplyAsync(new Function<BinaryDataReader, BlockScan>() {
+
+            public BlockScan apply(BinaryDataReader reader) {
+                if(result.isDone()) {
+                    close(reader);
+                    throw new CancellationException();
+                }
+                try {
+                    return scan(reader);
+                } catch(IOException ex) {
+                    throw new CompletionException(ex);
+                }
+            }
+        }, executor).thenApplyAsync(new Function<BlockScan, BlenderFile>() {
+
+            public BlenderFile apply(BlockScan scan) {
+                if(result.isDone()) {
+                    close(scan.getReader());
+                    throw new CancellationException();
+                }
+                try {
+                    return decode(scan);
+                } catch(IOException ex) {
+                    throw new CompletionException(ex);
+                }
+            }
+        }, executor).whenComplete(new BiConsumer<BlenderFile, Throwable>() {
+
+            public void accept(BlenderFile file, Throwable error) {
+                if(error != null) {
+                    result.completeExceptionally(error instanceof CompletionException && error.getCause() != null ? error.getCause() : error);
+                } else if(!result.complete(file)) {
+                    close(file);//cancelled while decoding
+                }
+            }
+        });
+        return result;
+    }
+
+    private static void close(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch(IOException ex) {
+            Log.ex(ex);
+        }
+    }
+
+    private BlenderFileLoader() {
+    }
+
+    /**
+     * The result of the scan stage: the header and the blocks of a file.
+     */
+    public static final class BlockScan {
+
+        private final BinaryDataReader reader;
+        private final BlenderFileHeader header;
+        private final BlockIndex blocks;
+        private final BlenderFileBlock dnaBlock;
+        private final BlenderFileSdna sdna;
+
+        BlockScan(BinaryDataReader reader, BlenderFileHeader fileHeader) throws IOException {
+            BlockIndex index = new BlockIndex(BlockTable.scan(fileHeader, fileHeader.size()));
+            List<BlenderFileBlock> dna = index.getBlocksByCode(ConstantValues.BlockCode.DNA1);
+            if(dna.size() > 1) throw new BlenderFileParsingException("Found two DNA1 file blocks?...");
+            if (dna.isEmpty()) {
+                throw new BlenderFileParsingException("No DNA1 file block found.");
+            }
+            this.reader = reader;
+            this.header = fileHeader;
+            this.blocks = index;
+            this.dnaBlock = dna.get(0);
+            this.sdna = null;
+        }
+
+        BlockScan(BinaryDataReader reader, BlenderFileHeader header, BlockIndex blocks, BlenderFileBlock dnaBlock, BlenderFileSdna sdna) {
+            this.reader = reader;
+            this.header = header;
+            this.blocks = blocks;
+            this.dnaBlock = dnaBlock;
+            this.sdna = sdna;
+        }
+
+        /**
+         * Returns the sdna catalog if it is already decoded (when the scan
+         * comes from an index sidecar)
+         * @return the decoded sdna or null if the decode stage must parse the
+         * DNA1 block
+         */
+        public BlenderFileSdna getSdna() {
+            return sdna;
+        }
+
+        /**
+         * Returns the reader of the (decompressed) data
+         * @return the reader of the file data
+         */
+        public BinaryDataReader getReader() {
+            return reader;
+        }
+
+        /**
+         * Returns the header of the file
+         * @return the file header
+         */
+        public BlenderFileHeader getHeader() {
+            return header;
+        }
+
+        /**
+         * Returns the DNA1 block, decoded by the next stage
+         * @return the block of the sdna catalog
+         */
+        public BlenderFileBlock getDnaBlock() {
+            return dnaBlock;
+        }
+
+        /**
+         * Returns the number of blocks found by the scan (ENDB excluded)
+         * @return the number of blocks
+         */
+        public int getBlockCount() {
+            return blocks.size();
+        }
+
+        /**
+         * Returns the index of the blocks found by the scan
+         * @return the block index
+         */
+        public BlockIndex getBlocks() {
+            return blocks;
+        }
+    }
+}
@@ -1,6 +1,10 @@
 package it.tukano.blenderfile;
 
+import it.tukano.blenderfile.io.DataSource;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
 
 /**
  * Holds info required to parse a blender file
@@ -9,6 +13,8 @@ import java.io.InputStream;
 public class BlenderFileParameters {
 
     private final InputStream inputStream;
+    private final Path path;
+    private final DataSource dataSource;
     private final boolean closeStream;
 
     /**
@@ -17,10 +23,76 @@ public class BlenderFileParameters {
      * @throws IllegalArgumentException if in is null
      */
     public BlenderFileParameters(InputStream in) throws IllegalArgumentException {
+        this(in, -1);
+    }
+
+    /**
+     * Initializes this instance
+     * @param in the input stream that holds the content of the blender file
+     * @param expectedLength the length of the content of the stream, if known,
+     * or a negative value. Used to allocate the memory for the data once.
+     * @throws IllegalArgumentException if in is null
+     */
+    public BlenderFileParameters(InputStream in, long expectedLength) throws IllegalArgumentException {
         if(in == null) {
             throw new IllegalArgumentException("InputStream cannot be null");
         }
         inputStream = in;
+        path = null;
+        dataSource = DataSource.forStream(in, expectedLength, false);
+        closeStream = true;
+    }
+
+    /**
+     * Initializes this instance with the path of a blender file. The file
+     * will be memory mapped rather than copied in the heap.
+     * @param file the path of the blender file
+     * @throws IllegalArgumentException if file is null
+     */
+    public BlenderFileParameters(Path file) throws IllegalArgumentException {
+        if(file == null) {
+            throw new IllegalArgumentException("Path cannot be null");
+        }
+        inputStream = null;
+        path = file;
+        dataSource = DataSource.forPath(file);
+        closeStream = true;
+    }
+
+    /**
+     * Initializes this instance with a channel
+     * @param channel the channel that holds the content of the blender file
+     * @param expectedLength the length of the content of the channel, if known,
+     * or a negative value.
+     * @throws IllegalArgumentException if channel is null
+     */
+    public BlenderFileParameters(ReadableByteChannel channel, long expectedLength) throws IllegalArgumentException {
+        this(channel == null ? null : DataSource.forChannel(channel, expectedLength, false));
+    }
+
+    /**
+     * Initializes this instance with a buffer. The buffer is used as it is, the
+     * data is not copied.
+     * @param buffer the buffer that holds the content of the blender file, from
+     * position to limit
+     * @throws IllegalArgumentException if buffer is null
+     */
+    public BlenderFileParameters(ByteBuffer buffer) throws IllegalArgumentException {
+        this(buffer == null ? null : DataSource.forBuffer(buffer));
+    }
+
+    /**
+     * Initializes this instance with a data source
+     * @param source the source of the content of the blender file
+     * @throws IllegalArgumentException if source is null
+     */
+    public BlenderFileParameters(DataSource source) throws IllegalArgumentException {
+        if(source == null) {
+            throw new IllegalArgumentException("DataSource cannot be null");
+        }
+        inputStream = null;
+        path = null;
+        dataSource = source;
         closeStream = true;
     }
 
@@ -34,9 +106,27 @@ public class BlenderFileParameters {
 
     /**
      * Returns the input stream that holds the content of the blender file
-     * @return the input stream set during construction
+     * @return the input stream set during construction or null if the
+     * parameters have been initialized with something else
      */
     public InputStream getInputStream() {
         return inputStream;
     }
+
+    /**
+     * Returns the path of the blender file
+     * @return the path set during construction or null if the parameters have
+     * been initialized with something else
+     */
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Returns the source of the content of the blender file
+     * @return the data source of the blender file, never null
+     */
+    public DataSource getDataSource() {
+        return dataSource;
+    }
 }
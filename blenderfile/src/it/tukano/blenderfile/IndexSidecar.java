@@ -0,0 +1,247 @@
+package it.tukano.blenderfile;
+
+import it.tukano.blenderfile.io.BinaryDataReader;
+import it.tukano.blenderfile.io.MappedFileDataReader;
+import it.tukano.blenderfile.parserstructures.BlenderFileBlock;
+import it.tukano.blenderfile.parserstructures.BlenderFileHeader;
+import it.tukano.blenderfile.parserstructures.BlenderFileSdna;
+import it.tukano.blenderfile.parserstructures.BlockIndex;
+import it.tukano.blenderfile.parserstructures.BlockTable;
+import it.tukano.blenderfile.parserstructures.ConstantValues.BlockCode;
+import it.tukano.blenderfile.parserstructures.SDNAField;
+import it.tukano.blenderfile.parserstructures.SDNAStructure;
+import it.tukano.blenderfile.parserstructures.SdnaCache;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * An index of a blender file saved in a sidecar file: the block table and the
+ * decoded sdna catalog. Reopening an unchanged file with a valid sidecar skips
+ * the block scan and the sdna decode. The sidecar is valid if the size and
+ * the modification time of the file didn't change and the crc of the file
+ * header and of the DNA1 block matches. A missing or stale sidecar is
+ * rewritten after the scan.
+ * @author pgi
+ */
+public class IndexSidecar {
+
+    /** The extension of the sidecar files */
+    public static final String EXTENSION = ".bfidx";
+
+    private static final int MAGIC = 0x42464958;//BFIX
+    private static final int VERSION = 1;
+    private static final Charset ASCII = Charset.forName("ascii");
+
+    /**
+     * Returns a sidecar stored next to the blender file (file.blend.bfidx)
+     * @return a sidecar next to the indexed files
+     */
+    public static IndexSidecar nextToFile() {
+        return new IndexSidecar(null);
+    }
+
+    /**
+     * Returns a sidecar stored in a cache directory. The name of the sidecar
+     * is made of the name of the file and a hash of its absolute path.
+     * @param directory the cache directory, created if needed
+     * @return a sidecar in the given directory
+     */
+    public static IndexSidecar inDirectory(Path directory) {
+        if(directory == null) throw new IllegalArgumentException("Directory cannot be null");
+        return new IndexSidecar(directory);
+    }
+
+    private final Path directory;
+
+    private IndexSidecar(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Returns the path of the sidecar of a blender file
+     * @param file the blender file
+     * @return the path of its sidecar
+     */
+    public Path getSidecarPath(Path file) {
+        String name = file.getFileName() + EXTENSION;
+        if(directory == null) return file.resolveSibling(name);
+        String key = Integer.toHexString(file.toAbsolutePath().normalize().toString().hashCode());
+        return directory.resolve(file.getFileName() + "-" + key + EXTENSION);
+    }
+
+    /**
+     * Opens a blender file (memory mapped) using its sidecar if it is valid,
+     * scanning the file and writing the sidecar otherwise. A sidecar that
+     * cannot be written is logged and ignored.
+     * @param file the blender file to open
+     * @return the blender file
+     * @throws IOException if the file cannot be read or parsed
+     */
+    public BlenderFile open(Path file) throws IOException {
+        long size = Files.size(file);
+        long modified = Files.getLastModifiedTime(file).toMillis();
+        BinaryDataReader reader = new MappedFileDataReader(file);
+        boolean opened = false;
+        try {
+            reader = BlenderFileLoader.decompress(reader);
+            BlenderFileHeader header = new BlenderFileHeader(reader);
+            Path sidecar = getSidecarPath(file);
+            BlenderFileLoader.BlockScan scan = load(sidecar, reader, header, size, modified);
+            boolean scanned = scan == null;
+            if(scanned) {
+                scan = new BlenderFileLoader.BlockScan(reader, header);
+            }
+            BlenderFile blenderFile = new BlenderFile(scan);
+            opened = true;
+            if(scanned) {
+                store(sidecar, blenderFile, scan, size, modified);
+            }
+            return blenderFile;
+        } finally {
+            if(!opened) reader.close();
+        }
+    }
+
+    /* Reads a sidecar, returns null if it is missing or stale */
+    private BlenderFileLoader.BlockScan load(Path sidecar, BinaryDataReader reader, BlenderFileHeader header, long size, long modified) {
+        if(!Files.isRegularFile(sidecar)) return null;
+        try {
+            BinaryDataReader in = new MappedFileDataReader(sidecar);
+            try {
+                if(in.length() < 36 || in.readInt() != MAGIC || in.readInt() != VERSION) return null;
+                if(in.readLong() != size || in.readLong() != modified) return null;
+                int crc = in.readInt();
+                long dnaPosition = in.readLong();
+                if(dnaPosition < header.size() || dnaPosition > reader.length() - 16 - header.pointerSize()) return null;
+                BlenderFileBlock dna = new BlenderFileBlock(header, dnaPosition);
+                if(dna.getCode() != BlockCode.DNA1 || checksum(reader, header, dna) != crc) return null;
+                int blockCount = in.readInt();
+                BlockTable blocks = new BlockTable(header, blockCount);
+                for(int i = 0; i < blockCount; i++) {
+                    BlockCode code = BlockCode.valueOf(readString(in));
+                    long position = in.readLong();
+                    long address = in.readLong();
+                    int sdnaIndex = in.readInt();
+                    long structuresCount = in.readLong();
+                    long dataSize = in.readLong();
+                    blocks.add(code, position, address, sdnaIndex, structuresCount, dataSize);
+                }
+                SdnaCache.Key key = SdnaCache.keyOf(dna);
+                BlenderFileSdna sdna = SdnaCache.getShared().lookup(key);
+                if(sdna == null) {
+                    SDNAStructure[] structures = new SDNAStructure[in.readInt()];
+                    for(int i = 0; i < structures.length; i++) {
+                        String type = readString(in);
+                        int structureSize = in.readInt();
+                        SDNAField[] fields = new SDNAField[in.readInt()];
+                        for(int j = 0; j < fields.length; j++) {
+                            String fieldType = readString(in);
+                            String fieldName = readString(in);
+                            fields[j] = new SDNAField(fieldType, fieldName, in.readInt(), header.getPointerSize());
+                        }
+                        structures[i] = new SDNAStructure(type, structureSize, fields);
+                    }
+                    sdna = SdnaCache.getShared().intern(key, new BlenderFileSdna(header, structures));
+                }
+                BlockIndex index = new BlockIndex(blocks);
+                Log.info("Loaded index sidecar ", sidecar);
+                return new BlenderFileLoader.BlockScan(reader, header, index, index.getByPosition(dnaPosition), sdna);
+            } finally {
+                in.close();
+            }
+        } catch(IOException ex) {
+            Log.ex(ex, "Cannot read index sidecar ", sidecar);
+        } catch(RuntimeException ex) {
+            Log.ex(ex, "Invalid index sidecar ", sidecar);
+        }
+        return null;
+    }
+
+    /* Writes the sidecar of a scanned file, in a temporary file moved in place */
+    private void store(Path sidecar, BlenderFile file, BlenderFileLoader.BlockScan scan, long size, long modified) {
+        Path temp = null;
+        try {
+            if(directory != null) Files.createDirectories(directory);
+            temp = sidecar.resolveSibling(sidecar.getFileName() + "." + Long.toHexString(System.nanoTime()) + ".tmp");
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)));
+            try {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(size);
+                out.writeLong(modified);
+                out.writeInt(checksum(scan.getReader(), scan.getHeader(), scan.getDnaBlock()));
+                out.writeLong(scan.getDnaBlock().position());
+                BlockIndex blocks = scan.getBlocks();
+                out.writeInt(blocks.size());
+                for(int i = 0; i < blocks.size(); i++) {
+                    BlenderFileBlock block = blocks.get(i);
+                    writeString(out, block.getCode().getAsciiCode());
+                    out.writeLong(block.position());
+                    out.writeLong(block.oldMemoryAddress());
+                    out.writeInt(block.sdnaIndex());
+                    out.writeLong(block.structuresCount());
+                    out.writeLong(block.dataSize());
+                }
+                BlenderFileSdna sdna = file.getBlenderFileSdna();
+                out.writeInt(sdna.getStructureCount());
+                for(int i = 0; i < sdna.getStructureCount(); i++) {
+                    SDNAStructure structure = sdna.getStructureByIndex(i);
+                    writeString(out, structure.getType());
+                    out.writeInt(structure.getSize().intValue());
+                    out.writeInt(structure.getFieldCount());
+                    for(int j = 0; j < structure.getFieldCount(); j++) {
+                        SDNAField field = structure.getField(j);
+                        writeString(out, field.getType());
+                        writeString(out, field.getQualifiedName());
+                        out.writeInt(field.getTypeSize().intValue());
+                    }
+                }
+            } finally {
+                out.close();
+            }
+            try {
+                Files.move(temp, sidecar, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch(AtomicMoveNotSupportedException ex) {
+                Files.move(temp, sidecar, StandardCopyOption.REPLACE_EXISTING);
+            }
+            temp = null;
+        } catch(IOException ex) {
+            Log.ex(ex, "Cannot write index sidecar ", sidecar);
+        } finally {
+            if(temp != null) try {
+                Files.deleteIfExists(temp);
+            } catch(IOException ex) {
+                Log.ex(ex);
+            }
+        }
+    }
+
+    /* Crc of the file header and of the DNA1 block (header and data) */
+    private static int checksum(BinaryDataReader reader, BlenderFileHeader header, BlenderFileBlock dna) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(reader.getBuffer(0, header.size()));
+        crc.update(reader.getBuffer(dna.position(), (int) (dna.dataPosition() - dna.position() + dna.dataSize())));
+        return (int) crc.getValue();
+    }
+
+    private static String readString(BinaryDataReader in) throws IOException {
+        byte[] chars = new byte[in.readShort() & 0xFFFF];
+        in.get(in.position(), chars, 0, chars.length);
+        in.jumpTo(in.position() + chars.length);
+        return new String(chars, ASCII);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] chars = value.getBytes(ASCII);
+        out.writeShort(chars.length);
+        out.write(chars);
+    }
+}
@@ -31,7 +31,8 @@ public interface BlenderImage {
      * Returns the raw data of the image. This can be used to parse images in
      * unsupported formats (like tga, dds, tiff and so on). Can be null if the
      * image location has not been found. If this is null then the only way to
-     * get back the image is getImagePath.
+     * get back the image is getImagePath. The buffer is read only and may be a
+     * view of the data of the blender file.
      * @return the raw data of the image or null if no image is found.
      */
     ByteBuffer getImageData();
@@ -12,6 +12,14 @@ public class BlenderMatrix3 {
 
     private final Number m00, m01, m02, m10, m11, m12, m20, m21, m22;
 
+    /**
+     * Initializes this matrix with the given 9 component array
+     * @param mm the 9 values for this matrix
+     */
+    public BlenderMatrix3(float[] mm) {
+        this(BlenderTuple4.box(mm));
+    }
+
     /**
      * Initializes this matrix with the given 9 component array
      * @param mm the 9 values for this matrix
@@ -8,6 +8,10 @@ public class BlenderMatrix4 {
             m20, m21, m22, m23,
             m30, m31, m32, m33;
 
+    public BlenderMatrix4(float[] mm) {
+        this(BlenderTuple4.box(mm));
+    }
+
     public BlenderMatrix4(Number[] mm) {
         m00 = mm[0];
         m01 = mm[1];
@@ -9,7 +9,11 @@ public class BlenderTuple3 {
     private final Number x, y, z;
 
     public BlenderTuple3(Object xyzNumberArray) {
-        this((Number[]) xyzNumberArray);
+        this(xyzNumberArray instanceof float[] ? BlenderTuple4.box((float[]) xyzNumberArray) : (Number[]) xyzNumberArray);
+    }
+
+    public BlenderTuple3(float[] xyz) {
+        this(xyz[0], xyz[1], xyz[2]);
     }
 
     public BlenderTuple3(Number[] xyz) {
@@ -9,7 +9,12 @@ public class BlenderTuple4 {
     private final Number x, y, z, w;
     
     public BlenderTuple4(Object xyzwNumberArray) {
-        this(xyzwNumberArray instanceof Number[] ? (Number[]) xyzwNumberArray : new Number[] {0,0,0,1});
+        this(xyzwNumberArray instanceof Number[] ? (Number[]) xyzwNumberArray :
+            xyzwNumberArray instanceof float[] ? box((float[]) xyzwNumberArray) : new Number[] {0,0,0,1});
+    }
+
+    public BlenderTuple4(float[] xyzw) {
+        this(xyzw[0], xyzw[1], xyzw[2], xyzw[3]);
     }
 
     public BlenderTuple4(Number[] xyzw) {
@@ -39,6 +44,15 @@ public class BlenderTuple4 {
         return w;
     }
 
+    /* Boxes the values of a float field, as the Float values of the numeric fields */
+    static Number[] box(float[] values) {
+        Number[] numbers = new Number[values.length];
+        for(int i = 0; i < values.length; i++) {
+            numbers[i] = values[i];
+        }
+        return numbers;
+    }
+
     @Override
     public String toString() {
         return "("+getX()+","+getY()+","+getZ()+","+getW()+")";
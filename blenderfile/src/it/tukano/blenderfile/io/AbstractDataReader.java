@@ -0,0 +1,284 @@
+package it.tukano.blenderfile.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Base class of the binary data readers. Subclasses implement the absolute
+ * byte reads, this class builds the cursor, the multi-byte values (in the
+ * byte order of the reader) and the Number compatibility methods on top of
+ * them.
+ * @author pgi
+ */
+public abstract class AbstractDataReader implements BinaryDataReader {
+
+    /* The actual position of the read cursor */
+    private long cursor;
+
+    /* The byte order of the multi-byte values */
+    private ByteOrder order = ByteOrder.BIG_ENDIAN;
+
+    /* True if order is big endian */
+    private boolean bigEndian = true;
+
+    /**
+     * Initializes this reader
+     */
+    protected AbstractDataReader() {
+    }
+
+    public ByteOrder order() {
+        return order;
+    }
+
+    public BinaryDataReader order(ByteOrder order) {
+        this.order = order;
+        this.bigEndian = order == ByteOrder.BIG_ENDIAN;
+        return this;
+    }
+
+    public BinaryDataReader jumpTo(Number position) {
+        cursor = position.longValue();
+        return this;
+    }
+
+    public Number getCurrentPosition() {
+        return cursor;
+    }
+
+    public long position() {
+        return cursor;
+    }
+
+    public Number readByte() throws IOException {
+        return readByteValue();
+    }
+
+    public byte readByteValue() throws IOException {
+        byte value = getByte(cursor);
+        cursor += 1;
+        return value;
+    }
+
+    public short readShort() throws IOException {
+        short value = getShort(cursor);
+        cursor += 2;
+        return value;
+    }
+
+    public int readInt() throws IOException {
+        int value = getInt(cursor);
+        cursor += 4;
+        return value;
+    }
+
+    public long readLong() throws IOException {
+        long value = getLong(cursor);
+        cursor += 8;
+        return value;
+    }
+
+    public float readFloat() throws IOException {
+        return Float.intBitsToFloat(readInt());
+    }
+
+    public double readDouble() throws IOException {
+        return Double.longBitsToDouble(readLong());
+    }
+
+    public short getShort(long offset) throws IOException {
+        int b0 = getByte(offset) & 0xFF;
+        int b1 = getByte(offset + 1) & 0xFF;
+        return (short) (bigEndian ? b0 << 8 | b1 : b1 << 8 | b0);
+    }
+
+    public int getInt(long offset) throws IOException {
+        int b0 = getByte(offset) & 0xFF;
+        int b1 = getByte(offset + 1) & 0xFF;
+        int b2 = getByte(offset + 2) & 0xFF;
+        int b3 = getByte(offset + 3) & 0xFF;
+        return bigEndian ? b0 << 24 | b1 << 16 | b2 << 8 | b3 : b3 << 24 | b2 << 16 | b1 << 8 | b0;
+    }
+
+    public long getLong(long offset) throws IOException {
+        long first = getInt(offset) & 0xFFFFFFFFL;
+        long second = getInt(offset + 4) & 0xFFFFFFFFL;
+        return bigEndian ? first << 32 | second : second << 32 | first;
+    }
+
+    public float getFloat(long offset) throws IOException {
+        return Float.intBitsToFloat(getInt(offset));
+    }
+
+    public double getDouble(long offset) throws IOException {
+        return Double.longBitsToDouble(getLong(offset));
+    }
+
+    /**
+     * Returns a view of a region of this reader, that reads through the
+     * absolute reads of this reader
+     * @param offset the position of the first byte of the region
+     * @param length the number of bytes of the region
+     * @return a reader on the region
+     * @throws IOException if the region is not contained in this reader
+     */
+    public BinaryDataReader slice(long offset, long length) throws IOException {
+        checkRegion(offset, length);
+        return new SliceDataReader(this, offset, length).order(order);
+    }
+
+    /**
+     * Returns a copy of a region of this reader (see copyBuffer). Readers that
+     * hold the data in memory return a view.
+     * @param offset the position of the first byte of the region
+     * @param length the number of bytes of the region
+     * @return a read only buffer from 0 to length
+     * @throws IOException if a read error occurs
+     */
+    public ByteBuffer getBuffer(long offset, int length) throws IOException {
+        return copyBuffer(offset, length);
+    }
+
+    /**
+     * Copies a region of this reader in a new heap buffer
+     * @param offset the position of the first byte of the region
+     * @param length the number of bytes of the region
+     * @return a read only buffer from 0 to length
+     * @throws IOException if a read error occurs
+     */
+    protected ByteBuffer copyBuffer(long offset, int length) throws IOException {
+        checkRegion(offset, length);
+        byte[] data = new byte[length];
+        get(offset, data, 0, length);
+        return ByteBuffer.wrap(data).asReadOnlyBuffer().order(order);
+    }
+
+    /**
+     * Checks that a region lies in this reader
+     * @param offset the position of the first byte of the region
+     * @param length the number of bytes of the region
+     * @throws IndexOutOfBoundsException if the region exceeds the data
+     */
+    protected void checkRegion(long offset, long length) {
+        if(offset < 0 || length < 0 || offset > length() - length) {
+            throw new IndexOutOfBoundsException("Region " + offset + "+" + length + " out of bounds (length " + length() + ")");
+        }
+    }
+
+    /**
+     * Returns an input stream on the data of this reader, from the first byte.
+     * The stream reads through the absolute reads of this reader.
+     * @return an input stream on the data of this reader
+     */
+    public InputStream asInputStream() {
+        return new InputStream() {
+
+            private long position;
+
+            @Override
+            public int read() throws IOException {
+                return position < length() ? getByte(position++) & 0xFF : -1;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if(len == 0) return 0;
+                long remaining = length() - position;
+                if(remaining <= 0) return -1;
+                int count = (int) Math.min(len, remaining);
+                get(position, b, off, count);
+                position += count;
+                return count;
+            }
+
+            @Override
+            public long skip(long n) {
+                long count = Math.max(0, Math.min(n, length() - position));
+                position += count;
+                return count;
+            }
+
+            @Override
+            public int available() {
+                return (int) Math.min(Integer.MAX_VALUE, length() - position);
+            }
+        };
+    }
+
+    /**
+     * Transfers bytes from the reader current position to the dest buffer. The
+     * amount of bytes transferred is min(x, dest.remaining) where x is the
+     * amount of bytes remaining in this reader
+     * @param dest the destination of the transferred bytes.
+     * @return the dest buffer
+     * @throws IOException if a read error occurs
+     */
+    public ByteBuffer fill(ByteBuffer dest) throws IOException {
+        int count = (int) Math.max(0, Math.min(dest.remaining(), length() - cursor));
+        if(dest.hasArray()) {
+            get(cursor, dest.array(), dest.arrayOffset() + dest.position(), count);
+            dest.position(dest.position() + count);
+        } else {
+            byte[] chunk = new byte[Math.min(count, 1 << 16)];
+            for(int done = 0; done < count; ) {
+                int n = Math.min(chunk.length, count - done);
+                get(cursor + done, chunk, 0, n);
+                dest.put(chunk, 0, n);
+                done += n;
+            }
+        }
+        cursor += count;
+        return dest;
+    }
+
+    /**
+     * Align the reader position
+     * @param size the alignment size
+     */
+    public void align(int size) {
+        long mis = size - (cursor % size);
+        if(mis != size) {
+            cursor += mis;
+        }
+    }
+
+    /**
+     * Returns a short from the given array, in the byte order of this reader
+     * @param data the source array
+     * @param index the index of the first byte of the value
+     * @return the short value
+     */
+    protected short getShort(byte[] data, int index) {
+        int b0 = data[index] & 0xFF;
+        int b1 = data[index + 1] & 0xFF;
+        return (short) (bigEndian ? b0 << 8 | b1 : b1 << 8 | b0);
+    }
+
+    /**
+     * Returns an int from the given array, in the byte order of this reader
+     * @param data the source array
+     * @param index the index of the first byte of the value
+     * @return the int value
+     */
+    protected int getInt(byte[] data, int index) {
+        int b0 = data[index] & 0xFF;
+        int b1 = data[index + 1] & 0xFF;
+        int b2 = data[index + 2] & 0xFF;
+        int b3 = data[index + 3] & 0xFF;
+        return bigEndian ? b0 << 24 | b1 << 16 | b2 << 8 | b3 : b3 << 24 | b2 << 16 | b1 << 8 | b0;
+    }
+
+    /**
+     * Returns a long from the given array, in the byte order of this reader
+     * @param data the source array
+     * @param index the index of the first byte of the value
+     * @return the long value
+     */
+    protected long getLong(byte[] data, int index) {
+        long first = getInt(data, index) & 0xFFFFFFFFL;
+        long second = getInt(data, index + 4) & 0xFFFFFFFFL;
+        return bigEndian ? first << 32 | second : second << 32 | first;
+    }
+}
@@ -0,0 +1,106 @@
+package it.tukano.blenderfile.io;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
+
+/**
+ * Transfers a file in memory with an AsynchronousFileChannel. No thread waits
+ * for the I/O: each completed read issues the next one and the last one
+ * completes the returned future with a reader on the data.
+ * @author pgi
+ */
+public class AsyncFileIngest {
+
+    /**
+     * Reads the given file in memory, in segments of 1 GB if the file is larger
+     * than a single buffer. Cancelling the returned future stops the transfer
+     * and closes the file.
+     * @param file the file to read
+     * @return a future completed with a reader on the content of the file
+     */
+    public static CompletableFuture<BinaryDataReader> read(Path file) {
+        final CompletableFuture<BinaryDataReader> future = new CompletableFuture<BinaryDataReader>();
+        try {
+            final AsynchronousFileChannel channel = AsynchronousFileChannel.open(file, StandardOpenOption.READ);
+            future.whenComplete(new BiConsumer<BinaryDataReader, Throwable>() {
+
+                public void accept(BinaryDataReader reader, Throwable error) {
+                    close(channel);//done, failed or cancelled: pending reads fail and are ignored
+                }
+            });
+            long size = channel.size();
+            int count = (int) Math.max(1, (size + SegmentedDataReader.DEFAULT_SEGMENT_SIZE - 1) / SegmentedDataReader.DEFAULT_SEGMENT_SIZE);
+            ByteBuffer[] segments = new ByteBuffer[count];
+            for(int i = 0; i < count; i++) {
+                segments[i] = ByteBuffer.allocate((int) Math.min(SegmentedDataReader.DEFAULT_SEGMENT_SIZE, size - (long) i * SegmentedDataReader.DEFAULT_SEGMENT_SIZE));
+            }
+            new Transfer(channel, segments, future).next();
+        } catch(IOException ex) {
+            future.completeExceptionally(ex);
+        }
+        return future;
+    }
+
+    private static void close(AsynchronousFileChannel channel) {
+        try {
+            channel.close();
+        } catch(IOException ex) {
+            //nothing to release
+        }
+    }
+
+    private AsyncFileIngest() {
+    }
+
+    /**
+     * The chain of reads of a file
+     */
+    private static class Transfer implements CompletionHandler<Integer, Void> {
+
+        private final AsynchronousFileChannel channel;
+        private final ByteBuffer[] segments;
+        private final CompletableFuture<BinaryDataReader> future;
+        private int segment;
+        private long position;
+
+        Transfer(AsynchronousFileChannel channel, ByteBuffer[] segments, CompletableFuture<BinaryDataReader> future) {
+            this.channel = channel;
+            this.segments = segments;
+            this.future = future;
+        }
+
+        /* Issues the next read or completes the future */
+        void next() {
+            while(segment < segments.length && !segments[segment].hasRemaining()) {
+                segments[segment++].flip();
+            }
+            if(future.isDone()) {
+                return;
+            } else if(segment == segments.length) {
+                future.complete(segments.length == 1 ? new MemBufferDataReader(segments[0]) : new SegmentedDataReader(segments));
+            } else {
+                channel.read(segments[segment], position, null, this);
+            }
+        }
+
+        public void completed(Integer result, Void attachment) {
+            if(result < 0) {
+                future.completeExceptionally(new EOFException("File truncated at " + position));
+            } else {
+                position += result;
+                next();
+            }
+        }
+
+        public void failed(Throwable error, Void attachment) {
+            future.completeExceptionally(error);
+        }
+    }
+}
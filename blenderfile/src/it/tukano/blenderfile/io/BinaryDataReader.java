@@ -1,14 +1,22 @@
 package it.tukano.blenderfile.io;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 
 /**
- * Abstract reader of binary data
+ * Abstract reader of binary data. Besides the Number based methods, the reader
+ * has a primitive API: relative reads (readInt, readFloat...) that move the
+ * cursor and absolute reads (getInt(offset), getFloat(offset)...) that don't.
+ * Multi-byte values are read in the byte order of the reader.
+ * Absolute reads share no state: once the byte order is set they can be called
+ * by several threads at the same time. The cursor and the relative reads are
+ * meant for one thread.
  * @author pgi
  */
-public interface BinaryDataReader {
+public interface BinaryDataReader extends Closeable {
 
     /**
      * Locate the reader cursor to a specific position in the source file. The
@@ -25,6 +33,156 @@ public interface BinaryDataReader {
      */
     Number getCurrentPosition() throws IOException;
 
+    /**
+     * Returns the current position of the read cursor
+     * @return the current position of the read cursor
+     */
+    long position();
+
+    /**
+     * Returns the byte order used to read multi-byte values
+     * @return the byte order of this reader
+     */
+    ByteOrder order();
+
+    /**
+     * Sets the byte order used to read multi-byte values
+     * @param order the byte order of the data
+     * @return this reader
+     */
+    BinaryDataReader order(ByteOrder order);
+
+    /**
+     * Reads a byte from the current position and moves the cursor
+     * @return the read byte
+     * @throws IOException if a read error occurs
+     */
+    byte readByteValue() throws IOException;
+
+    /**
+     * Reads a short from the current position and moves the cursor
+     * @return the read value
+     * @throws IOException if a read error occurs
+     */
+    short readShort() throws IOException;
+
+    /**
+     * Reads an int from the current position and moves the cursor
+     * @return the read value
+     * @throws IOException if a read error occurs
+     */
+    int readInt() throws IOException;
+
+    /**
+     * Reads a long from the current position and moves the cursor
+     * @return the read value
+     * @throws IOException if a read error occurs
+     */
+    long readLong() throws IOException;
+
+    /**
+     * Reads a float from the current position and moves the cursor
+     * @return the read value
+     * @throws IOException if a read error occurs
+     */
+    float readFloat() throws IOException;
+
+    /**
+     * Reads a double from the current position and moves the cursor
+     * @return the read value
+     * @throws IOException if a read error occurs
+     */
+    double readDouble() throws IOException;
+
+    /**
+     * Returns the byte at the given offset. The cursor is not changed.
+     * @param offset the position of the value
+     * @return the requested value
+     * @throws IOException if a read error occurs
+     */
+    byte getByte(long offset) throws IOException;
+
+    /**
+     * Returns the short at the given offset. The cursor is not changed.
+     * @param offset the position of the value
+     * @return the requested value
+     * @throws IOException if a read error occurs
+     */
+    short getShort(long offset) throws IOException;
+
+    /**
+     * Returns the int at the given offset. The cursor is not changed.
+     * @param offset the position of the value
+     * @return the requested value
+     * @throws IOException if a read error occurs
+     */
+    int getInt(long offset) throws IOException;
+
+    /**
+     * Returns the long at the given offset. The cursor is not changed.
+     * @param offset the position of the value
+     * @return the requested value
+     * @throws IOException if a read error occurs
+     */
+    long getLong(long offset) throws IOException;
+
+    /**
+     * Returns the float at the given offset. The cursor is not changed.
+     * @param offset the position of the value
+     * @return the requested value
+     * @throws IOException if a read error occurs
+     */
+    float getFloat(long offset) throws IOException;
+
+    /**
+     * Returns the double at the given offset. The cursor is not changed.
+     * @param offset the position of the value
+     * @return the requested value
+     * @throws IOException if a read error occurs
+     */
+    double getDouble(long offset) throws IOException;
+
+    /**
+     * Copies bytes starting at the given offset into an array. The cursor is
+     * not changed.
+     * @param offset the position of the first byte to copy
+     * @param dest the destination array
+     * @param destOffset the index in dest of the first copied byte
+     * @param count the number of bytes to copy
+     * @throws IOException if a read error occurs or there are less than count
+     * bytes after offset
+     */
+    void get(long offset, byte[] dest, int destOffset, int count) throws IOException;
+
+    /**
+     * Returns a reader on a region of this reader. The data is shared, not
+     * copied: the slice has its own cursor (starting at 0) and the byte order
+     * of this reader. Closing the slice doesn't release this reader, the slice
+     * cannot be read after this reader has been closed.
+     * @param offset the position of the first byte of the region
+     * @param length the number of bytes of the region
+     * @return a reader on the region
+     * @throws IOException if the region is not contained in this reader
+     */
+    BinaryDataReader slice(long offset, long length) throws IOException;
+
+    /**
+     * Returns the bytes of a region as a read only buffer, with the byte order
+     * of this reader. The buffer is a view of the data when the region lies in
+     * a single memory buffer of this reader, a copy otherwise.
+     * @param offset the position of the first byte of the region
+     * @param length the number of bytes of the region
+     * @return a read only buffer from 0 to length
+     * @throws IOException if the region is not contained in this reader
+     */
+    ByteBuffer getBuffer(long offset, int length) throws IOException;
+
+    /**
+     * Returns the number of bytes available to this reader
+     * @return the length of the data of this reader
+     */
+    long length();
+
     /**
      * Transfer data from the reader to the buffer.
      * @param dest where to put the data
@@ -51,4 +209,11 @@ public interface BinaryDataReader {
      * @return an InputStream view of the whole data of this stream.
      */
     InputStream asInputStream();
+
+    /**
+     * Releases the resources held by this reader (memory buffers, file mappings).
+     * The reader cannot be used after this call.
+     * @throws IOException if the release fails
+     */
+    void close() throws IOException;
 }
\ No newline at end of file
@@ -0,0 +1,48 @@
+package it.tukano.blenderfile.io;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * An input stream that reads the content of a byte buffer. The stream works
+ * on a duplicate of the buffer, the position of the source is not changed.
+ * @author pgi
+ */
+class ByteBufferInputStream extends InputStream {
+
+    private final ByteBuffer data;
+
+    /**
+     * Initializes this stream
+     * @param source the buffer to read, from position to limit
+     */
+    ByteBufferInputStream(ByteBuffer source) {
+        data = source.duplicate();
+    }
+
+    @Override
+    public int read() {
+        return data.hasRemaining() ? data.get() & 0xFF : -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+        if(len == 0) return 0;
+        if(!data.hasRemaining()) return -1;
+        int count = Math.min(len, data.remaining());
+        data.get(b, off, count);
+        return count;
+    }
+
+    @Override
+    public long skip(long n) {
+        int count = (int) Math.max(0, Math.min(n, data.remaining()));
+        data.position(data.position() + count);
+        return count;
+    }
+
+    @Override
+    public int available() {
+        return data.remaining();
+    }
+}
@@ -0,0 +1,217 @@
+package it.tukano.blenderfile.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Transfers the content of a stream or of a channel in memory. Data is read in
+ * large chunks straight into the destination buffer, which is allocated once
+ * when the expected length of the source is known and grown otherwise. Sources
+ * larger than a segment are split in several buffers (see SegmentedDataReader).
+ * @author pgi
+ */
+public class ChunkedIngest {
+
+    /* The size of a single read (and the growth step for sources of unknown length) */
+    private static final int CHUNK_SIZE = 1 << 20;
+
+    private final long expectedLength;
+    private final boolean direct;
+    private final int segmentSize;
+    private long bytesRead;
+    private long elapsedNanos;
+
+    /**
+     * Initializes this ingest
+     * @param expectedLength the expected length of the source or a negative value
+     * if the length is unknown. A wrong hint is not an error, it just costs a
+     * reallocation.
+     * @param direct true to use a direct buffer as destination, false to use a heap
+     * buffer
+     */
+    public ChunkedIngest(long expectedLength, boolean direct) {
+        this(expectedLength, direct, SegmentedDataReader.DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * Initializes this ingest
+     * @param expectedLength the expected length of the source or a negative value
+     * if the length is unknown
+     * @param direct true to use direct buffers as destination
+     * @param segmentSize the maximum size of a buffer, a power of two. Larger
+     * sources are split in segments of this size by readSegments.
+     */
+    public ChunkedIngest(long expectedLength, boolean direct, int segmentSize) {
+        if(Integer.bitCount(segmentSize) != 1) throw new IllegalArgumentException("Segment size must be a power of two: " + segmentSize);
+        this.expectedLength = expectedLength;
+        this.direct = direct;
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * Reads the given stream up to its end. The stream is not closed.
+     * @param in the stream to read
+     * @return a buffer with the content of the stream, from 0 to limit
+     * @throws IOException if a read error occurs or the stream doesn't fit in a
+     * single buffer
+     */
+    public ByteBuffer read(InputStream in) throws IOException {
+        return single(readSegments(in));
+    }
+
+    /**
+     * Reads the given channel up to its end. The channel is not closed.
+     * @param channel the channel to read
+     * @return a buffer with the content of the channel, from 0 to limit
+     * @throws IOException if a read error occurs or the channel doesn't fit in a
+     * single buffer
+     */
+    public ByteBuffer read(ReadableByteChannel channel) throws IOException {
+        return single(readSegments(channel));
+    }
+
+    /**
+     * Reads the given stream up to its end, in segments of
+     * SegmentedDataReader.DEFAULT_SEGMENT_SIZE bytes. The stream is not closed.
+     * @param in the stream to read
+     * @return the segments with the content of the stream, each from 0 to limit
+     * @throws IOException if a read error occurs
+     */
+    public ByteBuffer[] readSegments(final InputStream in) throws IOException {
+        long hint = expectedLength;
+        if(hint < 0) hint = in.available();
+        return ingest(hint, new Transfer() {
+
+            private byte[] chunk;
+
+            public int read(ByteBuffer dest) throws IOException {
+                int count;
+                if(dest.hasArray()) {
+                    count = in.read(dest.array(), dest.arrayOffset() + dest.position(), Math.min(dest.remaining(), CHUNK_SIZE));
+                    if(count > 0) dest.position(dest.position() + count);
+                } else {
+                    if(chunk == null) chunk = new byte[CHUNK_SIZE];
+                    count = in.read(chunk, 0, Math.min(chunk.length, dest.remaining()));
+                    if(count > 0) dest.put(chunk, 0, count);
+                }
+                return count;
+            }
+        });
+    }
+
+    /**
+     * Reads the given channel up to its end, in segments of
+     * SegmentedDataReader.DEFAULT_SEGMENT_SIZE bytes. The channel is not closed.
+     * @param channel the channel to read
+     * @return the segments with the content of the channel, each from 0 to limit
+     * @throws IOException if a read error occurs
+     */
+    public ByteBuffer[] readSegments(final ReadableByteChannel channel) throws IOException {
+        long hint = expectedLength;
+        if(hint < 0 && channel instanceof FileChannel) {
+            FileChannel fileChannel = (FileChannel) channel;
+            hint = fileChannel.size() - fileChannel.position();
+        }
+        return ingest(hint, new Transfer() {
+
+            public int read(ByteBuffer dest) throws IOException {
+                ByteBuffer window = dest.duplicate();
+                window.limit(Math.min(dest.limit(), dest.position() + CHUNK_SIZE));
+                int count = channel.read(window);
+                dest.position(window.position());
+                return count;
+            }
+        });
+    }
+
+    /* Reads from a source into a buffer, returns -1 at the end of the source */
+    private interface Transfer {
+
+        int read(ByteBuffer dest) throws IOException;
+    }
+
+    private ByteBuffer[] ingest(long hint, Transfer transfer) throws IOException {
+        final long start = System.nanoTime();
+        List<ByteBuffer> segments = new ArrayList<ByteBuffer>(1);
+        ByteBuffer buffer = allocate(hint);
+        ByteBuffer probe = null;
+        long total = 0;
+        while(true) {
+            if(!buffer.hasRemaining()) {
+                if(probe == null) probe = ByteBuffer.allocate(1);
+                probe.clear();
+                int count = transfer.read(probe);
+                if(count < 0) break;
+                if(buffer.capacity() < segmentSize) {
+                    buffer = grow(buffer);
+                } else {
+                    buffer.flip();
+                    segments.add(buffer);
+                    total += buffer.limit();
+                    buffer = allocate(hint - total);
+                }
+                if(count > 0) buffer.put((ByteBuffer) probe.flip());
+            }
+            if(transfer.read(buffer) < 0) break;
+        }
+        buffer.flip();
+        segments.add(buffer);
+        elapsedNanos = System.nanoTime() - start;
+        bytesRead = total + buffer.limit();
+        return segments.toArray(new ByteBuffer[segments.size()]);
+    }
+
+    private static ByteBuffer single(ByteBuffer[] segments) throws IOException {
+        if(segments.length > 1) throw new IOException("Source too large to be buffered in a single buffer");
+        return segments[0];
+    }
+
+    /**
+     * Returns the number of bytes transferred by the last read
+     * @return the number of bytes read
+     */
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    /**
+     * Returns the duration of the last read
+     * @return the time spent by the last read, in nanoseconds
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * Returns the throughput of the last read
+     * @return the read speed in MB/s
+     */
+    public double getThroughput() {
+        if(elapsedNanos <= 0) return 0;
+        return (bytesRead / (1024.0 * 1024.0)) / (elapsedNanos / 1e9);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d bytes in %.2f ms (%.1f MB/s)", bytesRead, elapsedNanos / 1e6, getThroughput());
+    }
+
+    private ByteBuffer allocate(long size) {
+        int capacity = (int) Math.min(Math.max(size, 0), segmentSize);
+        if(capacity == 0) capacity = Math.min(CHUNK_SIZE, segmentSize);
+        return direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+    }
+
+    private ByteBuffer grow(ByteBuffer buffer) {
+        long newCapacity = Math.max((long) buffer.capacity() * 2, (long) buffer.capacity() + CHUNK_SIZE);
+        ByteBuffer grown = allocate(Math.min(newCapacity, segmentSize));
+        buffer.flip();
+        grown.put(buffer);
+        return grown;
+    }
+}
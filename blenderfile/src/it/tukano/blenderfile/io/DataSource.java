@@ -0,0 +1,135 @@
+package it.tukano.blenderfile.io;
+
+import it.tukano.blenderfile.Log;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+
+/**
+ * The origin of the bytes of a blender file. A source creates the reader used
+ * by the parser. Streams and channels are transferred in memory with a chunked
+ * ingest (in several segments if they are larger than 1 GB), files are memory
+ * mapped or read with positional reads, buffers are used as they are.
+ * @author pgi
+ */
+public abstract class DataSource {
+
+    /**
+     * Creates a source that reads the given stream
+     * @param in the stream to read. The stream is not closed by the source.
+     * @param expectedLength the expected length of the stream, used to size the
+     * memory buffer, or a negative value if the length is unknown
+     * @param direct true to store the data in a direct buffer
+     * @return a source for the given stream
+     */
+    public static DataSource forStream(final InputStream in, long expectedLength, boolean direct) {
+        return new IngestDataSource(expectedLength, direct) {
+
+            @Override
+            protected ByteBuffer[] read(ChunkedIngest ingest) throws IOException {
+                return ingest.readSegments(in);
+            }
+        };
+    }
+
+    /**
+     * Creates a source that reads the given channel
+     * @param channel the channel to read. The channel is not closed by the source.
+     * @param expectedLength the expected length of the data, used to size the
+     * memory buffer, or a negative value if the length is unknown
+     * @param direct true to store the data in a direct buffer
+     * @return a source for the given channel
+     */
+    public static DataSource forChannel(final ReadableByteChannel channel, long expectedLength, boolean direct) {
+        return new IngestDataSource(expectedLength, direct) {
+
+            @Override
+            protected ByteBuffer[] read(ChunkedIngest ingest) throws IOException {
+                return ingest.readSegments(channel);
+            }
+        };
+    }
+
+    /**
+     * Creates a source that reads the given buffer. The data is not copied.
+     * @param buffer the buffer with the data of the blender file, from position
+     * to limit
+     * @return a source for the given buffer
+     */
+    public static DataSource forBuffer(ByteBuffer buffer) {
+        final ByteBuffer data = buffer.slice();
+        return new DataSource() {
+
+            @Override
+            public BinaryDataReader open() {
+                return new MemBufferDataReader(data.duplicate());
+            }
+        };
+    }
+
+    /**
+     * Creates a source that memory maps the given file
+     * @param file the file to read
+     * @return a source for the given file
+     */
+    public static DataSource forPath(final Path file) {
+        return new DataSource() {
+
+            @Override
+            public BinaryDataReader open() throws IOException {
+                return new MappedFileDataReader(file);
+            }
+        };
+    }
+
+    /**
+     * Creates a source that reads the given file with positional reads. The
+     * data is read when the parser needs it: opening a blender file reads the
+     * block headers and the DNA1 block only.
+     * @param file the file to read
+     * @return a source for the given file
+     */
+    public static DataSource forFileChannel(final Path file) {
+        return new DataSource() {
+
+            @Override
+            public BinaryDataReader open() throws IOException {
+                return new FileChannelDataReader(file);
+            }
+        };
+    }
+
+    /**
+     * Creates a reader for the data of this source. Stream and channel sources
+     * can be opened only once.
+     * @return a reader for the data of this source
+     * @throws IOException if a read error occurs
+     */
+    public abstract BinaryDataReader open() throws IOException;
+
+    /**
+     * Source that transfers a stream or a channel in memory.
+     */
+    private static abstract class IngestDataSource extends DataSource {
+
+        private final long expectedLength;
+        private final boolean direct;
+
+        IngestDataSource(long expectedLength, boolean direct) {
+            this.expectedLength = expectedLength;
+            this.direct = direct;
+        }
+
+        @Override
+        public BinaryDataReader open() throws IOException {
+            ChunkedIngest ingest = new ChunkedIngest(expectedLength, direct);
+            ByteBuffer[] data = read(ingest);
+            Log.info("Ingested ", ingest);
+            return data.length == 1 ? new MemBufferDataReader(data[0]) : new SegmentedDataReader(data);
+        }
+
+        protected abstract ByteBuffer[] read(ChunkedIngest ingest) throws IOException;
+    }
+}
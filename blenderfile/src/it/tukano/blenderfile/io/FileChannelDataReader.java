@@ -0,0 +1,159 @@
+package it.tukano.blenderfile.io;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A binary data reader that reads a file with positional reads. Nothing is
+ * loaded in advance: small reads go through a window of a few kilobytes that
+ * slides over the file, larger reads and getBuffer go straight to the channel.
+ * Used to index a file reading only the headers of its blocks.
+ * @author pgi
+ */
+public class FileChannelDataReader extends AbstractDataReader {
+
+    /** The default size of the read window */
+    public static final int DEFAULT_WINDOW_SIZE = 4096;
+
+    private final FileChannel channel;
+    private final long length;
+    private final byte[] window;
+    private long windowStart;
+    private int windowLength;
+    private final AtomicLong bytesRead = new AtomicLong();
+    private final AtomicLong reads = new AtomicLong();
+
+    /* True after close has been called */
+    private volatile boolean closed;
+
+    /**
+     * Opens the given file
+     * @param file the file to read
+     * @throws IOException if the file cannot be opened
+     */
+    public FileChannelDataReader(Path file) throws IOException {
+        this(FileChannel.open(file, StandardOpenOption.READ), DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * Initializes this reader
+     * @param channel the channel to read, closed by close
+     * @param windowSize the size of the read window
+     * @throws IOException if the size of the channel cannot be read
+     */
+    public FileChannelDataReader(FileChannel channel, int windowSize) throws IOException {
+        this.channel = channel;
+        this.length = channel.size();
+        this.window = new byte[windowSize];
+    }
+
+    public long length() {
+        return length;
+    }
+
+    /**
+     * Returns the number of bytes read from the channel so far
+     * @return the number of bytes transferred from the file
+     */
+    public long getBytesRead() {
+        return bytesRead.get();
+    }
+
+    /**
+     * Returns the number of positional reads done on the channel so far (a
+     * read that fills the window counts as one)
+     * @return the number of reads
+     */
+    public long getReadCount() {
+        return reads.get();
+    }
+
+    public synchronized byte getByte(long offset) throws IOException {
+        return window[load(offset, 1)];
+    }
+
+    @Override
+    public synchronized short getShort(long offset) throws IOException {
+        return getShort(window, load(offset, 2));
+    }
+
+    @Override
+    public synchronized int getInt(long offset) throws IOException {
+        return getInt(window, load(offset, 4));
+    }
+
+    @Override
+    public synchronized long getLong(long offset) throws IOException {
+        return getLong(window, load(offset, 8));
+    }
+
+    public void get(long offset, byte[] dest, int destOffset, int count) throws IOException {
+        if(count > window.length / 2) {
+            check(offset, count);
+            read(ByteBuffer.wrap(dest, destOffset, count), offset);
+        } else synchronized(this) {
+            System.arraycopy(window, load(offset, count), dest, destOffset, count);
+        }
+    }
+
+    /**
+     * Reads a region of the file in a new buffer, without using the window.
+     * @param offset the position of the first byte of the region
+     * @param length the number of bytes of the region
+     * @return a read only buffer from 0 to length
+     * @throws IOException if a read error occurs
+     */
+    @Override
+    public ByteBuffer getBuffer(long offset, int length) throws IOException {
+        checkRegion(offset, length);
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        read(buffer, offset);
+        buffer.flip();
+        return buffer.asReadOnlyBuffer().order(order());
+    }
+
+    /**
+     * Closes the channel of this reader
+     * @throws IOException if closing the channel fails
+     */
+    public void close() throws IOException {
+        if(!closed) {
+            closed = true;
+            channel.close();
+        }
+    }
+
+    /* Moves the window so that it contains count bytes at offset, returns the index of offset in the window */
+    private int load(long offset, int count) throws IOException {
+        check(offset, count);
+        if(offset < windowStart || offset + count > windowStart + windowLength) {
+            int size = (int) Math.min(window.length, length - offset);
+            read(ByteBuffer.wrap(window, 0, size), offset);
+            windowStart = offset;
+            windowLength = size;
+        }
+        return (int) (offset - windowStart);
+    }
+
+    /* Fills dest with the bytes of the file at position */
+    private void read(ByteBuffer dest, long position) throws IOException {
+        int count = dest.remaining();
+        while(dest.hasRemaining()) {
+            int n = channel.read(dest, position + count - dest.remaining());
+            if(n < 0) throw new EOFException("Unexpected end of file at " + (position + count - dest.remaining()));
+        }
+        bytesRead.addAndGet(count);
+        reads.incrementAndGet();
+    }
+
+    /* Checks that count bytes at offset are available */
+    private void check(long offset, int count) {
+        if(closed) throw new IllegalStateException("Reader closed");
+        if(offset < 0 || offset > length - count) throw new IndexOutOfBoundsException("Offset " + offset + " out of bounds (length " + length + ")");
+    }
+}
@@ -0,0 +1,180 @@
+package it.tukano.blenderfile.io;
+
+import it.tukano.blenderfile.exceptions.BlenderFileParsingException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Decompresses gzip data in memory. The compressed data is fed to an Inflater
+ * in chunks and the output goes straight into a single buffer, sized with the
+ * ISIZE field of the gzip trailer. No temporary file, no intermediate stream.
+ * Output larger than a segment (1 GB) is split in several buffers.
+ * @author pgi
+ */
+public class GzipInflater {
+
+    /* The size of the chunks of compressed data passed to the inflater */
+    private static final int CHUNK_SIZE = 1 << 16;
+
+    private static final int FHCRC = 2;
+    private static final int FEXTRA = 4;
+    private static final int FNAME = 8;
+    private static final int FCOMMENT = 16;
+
+    /**
+     * Checks if the reader starts with the gzip magic number
+     * @param reader the reader to check. The position of the reader is not changed
+     * @return true if the data of the reader looks like gzip data
+     * @throws IOException if a read error occurs
+     */
+    public static boolean isGzip(BinaryDataReader reader) throws IOException {
+        if(reader.length() < 18) return false;
+        Number mark = reader.getCurrentPosition();
+        reader.jumpTo(0);
+        int id1 = reader.readByte().intValue() & 0xFF;
+        int id2 = reader.readByte().intValue() & 0xFF;
+        reader.jumpTo(mark);
+        return id1 == 0x1f && id2 == 0x8b;
+    }
+
+    /**
+     * Decompresses the content of the given reader. Concatenated gzip members
+     * are decompressed one after the other.
+     * @param source the reader of the compressed data
+     * @return a reader on the decompressed data
+     * @throws IOException if the data is not valid gzip data or a read error occurs
+     */
+    public static BinaryDataReader inflate(BinaryDataReader source) throws IOException {
+        ByteBuffer[] segments = new GzipInflater(source).inflateAll();
+        return segments.length == 1 ? new MemBufferDataReader(segments[0]) : new SegmentedDataReader(segments);
+    }
+
+    private final BinaryDataReader source;
+    private final long sourceLength;
+    private final byte[] chunk = new byte[CHUNK_SIZE];
+    private final Inflater inflater = new Inflater(true);
+    private final CRC32 crc = new CRC32();
+    private final List<ByteBuffer> segments = new ArrayList<ByteBuffer>(1);
+    private ByteBuffer output;
+    private long outputBytes;
+
+    private GzipInflater(BinaryDataReader source) {
+        this.source = source;
+        this.sourceLength = source.length();
+    }
+
+    private ByteBuffer[] inflateAll() throws IOException {
+        output = ByteBuffer.allocate(sizeHint());
+        try {
+            long position = 0;
+            do {
+                position = inflateMember(position);
+            } while(position + 18 <= sourceLength && readUnsignedByte(position) == 0x1f && readUnsignedByte(position + 1) == 0x8b);
+        } finally {
+            inflater.end();
+        }
+        output.flip();
+        segments.add(output);
+        return segments.toArray(new ByteBuffer[segments.size()]);
+    }
+
+    /* The uncompressed size of the last member, as stored in the trailer (modulo 2^32) */
+    private int sizeHint() throws IOException {
+        long isize = readLittleEndianInt(sourceLength - 4) & 0xFFFFFFFFL;
+        if(isize < sourceLength) {
+            isize = sourceLength * 4;//wrapped or multi member
+        }
+        return (int) Math.min(isize, SegmentedDataReader.DEFAULT_SEGMENT_SIZE);
+    }
+
+    /* Inflates the member at the given position, returns the position of the next member */
+    private long inflateMember(long position) throws IOException {
+        if(readUnsignedByte(position) != 0x1f || readUnsignedByte(position + 1) != 0x8b) {
+            throw new BlenderFileParsingException("Not a gzip stream");
+        }
+        if(readUnsignedByte(position + 2) != 8) {
+            throw new BlenderFileParsingException("Unsupported gzip compression method");
+        }
+        int flags = readUnsignedByte(position + 3);
+        position += 10;
+        if((flags & FEXTRA) != 0) {
+            int extraLength = readUnsignedByte(position) | (readUnsignedByte(position + 1) << 8);
+            position += 2 + extraLength;
+        }
+        if((flags & FNAME) != 0) {
+            while(readUnsignedByte(position++) != 0);
+        }
+        if((flags & FCOMMENT) != 0) {
+            while(readUnsignedByte(position++) != 0);
+        }
+        if((flags & FHCRC) != 0) {
+            position += 2;
+        }
+        inflater.reset();
+        crc.reset();
+        long memberStart = outputBytes + output.position();
+        try {
+            while(!inflater.finished()) {
+                if(inflater.needsInput()) {
+                    int count = (int) Math.min(chunk.length, sourceLength - position);
+                    if(count <= 0) throw new BlenderFileParsingException("Unexpected end of gzip stream");
+                    source.jumpTo(position).fill(ByteBuffer.wrap(chunk, 0, count));
+                    inflater.setInput(chunk, 0, count);
+                    position += count;
+                } else if(inflater.needsDictionary()) {
+                    throw new BlenderFileParsingException("Unsupported gzip stream (preset dictionary)");
+                }
+                if(!output.hasRemaining()) grow();
+                int inflated = inflater.inflate(output.array(), output.arrayOffset() + output.position(), output.remaining());
+                crc.update(output.array(), output.arrayOffset() + output.position(), inflated);
+                output.position(output.position() + inflated);
+            }
+        } catch(DataFormatException ex) {
+            throw new BlenderFileParsingException("Invalid gzip data: " + ex.getMessage());
+        }
+        position -= inflater.getRemaining();
+        long expectedCrc = readLittleEndianInt(position) & 0xFFFFFFFFL;
+        long expectedSize = readLittleEndianInt(position + 4) & 0xFFFFFFFFL;
+        if(expectedCrc != crc.getValue()) {
+            throw new BlenderFileParsingException("Corrupt gzip stream (crc mismatch)");
+        }
+        if(expectedSize != ((outputBytes + output.position() - memberStart) & 0xFFFFFFFFL)) {
+            throw new BlenderFileParsingException("Corrupt gzip stream (size mismatch)");
+        }
+        return position + 8;
+    }
+
+    /* Grows the output buffer up to the segment size, then starts a new segment */
+    private void grow() {
+        if(output.capacity() < SegmentedDataReader.DEFAULT_SEGMENT_SIZE) {
+            long capacity = Math.min((long) output.capacity() * 2 + CHUNK_SIZE, SegmentedDataReader.DEFAULT_SEGMENT_SIZE);
+            ByteBuffer grown = ByteBuffer.allocate((int) capacity);
+            output.flip();
+            grown.put(output);
+            output = grown;
+        } else {
+            output.flip();
+            segments.add(output);
+            outputBytes += output.limit();
+            output = ByteBuffer.allocate(SegmentedDataReader.DEFAULT_SEGMENT_SIZE);
+        }
+    }
+
+    private int readUnsignedByte(long position) throws IOException {
+        if(position >= sourceLength) throw new BlenderFileParsingException("Unexpected end of gzip stream");
+        return source.jumpTo(position).readByte().intValue() & 0xFF;
+    }
+
+    private int readLittleEndianInt(long position) throws IOException {
+        if(position + 4 > sourceLength) throw new BlenderFileParsingException("Unexpected end of gzip stream");
+        ByteBuffer buffer = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+        source.jumpTo(position).fill(buffer);
+        return buffer.getInt(0);
+    }
+}
@@ -0,0 +1,76 @@
+package it.tukano.blenderfile.io;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A binary data reader backed by a read only memory mapping of a file. The data
+ * is never copied in the heap: reads are served by the os page cache and only
+ * the regions actually touched by the parser are loaded from the disk. Files
+ * larger than a segment are mapped as several consecutive regions. The mapping
+ * is not released by close: unmapping while another thread reads would crash
+ * the vm, the regions are unmapped by the garbage collector once the reader
+ * and its buffers are unreachable. So the buffers returned by getBuffer are
+ * read only views of the mapping, still valid after close.
+ * @author pgi
+ */
+public class MappedFileDataReader extends SegmentedDataReader {
+
+    /**
+     * Maps the given file in memory.
+     * @param file the path of the file to map
+     * @param segmentSize the size of a mapped region, a power of two
+     * @return the mapped regions of the file
+     * @throws IOException if the file cannot be opened or mapped
+     */
+    private static MappedByteBuffer[] map(Path file, int segmentSize) throws IOException {
+        if(Integer.bitCount(segmentSize) != 1) throw new IllegalArgumentException("Segment size must be a power of two: " + segmentSize);
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            int count = (int) Math.max(1, (size + segmentSize - 1) / segmentSize);
+            MappedByteBuffer[] segments = new MappedByteBuffer[count];
+            for(int i = 0; i < count; i++) {
+                long position = (long) i * segmentSize;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(segmentSize, size - position));
+            }
+            return segments;
+        } finally {
+            channel.close();//the mapping stays valid after the channel is closed
+        }
+    }
+
+    private final Path file;
+
+    /**
+     * Initializes this reader mapping the content of the given file
+     * @param file the file to read
+     * @throws IOException if the file cannot be opened or mapped
+     */
+    public MappedFileDataReader(Path file) throws IOException {
+        this(file, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * Initializes this reader mapping the content of the given file in regions
+     * of the given size
+     * @param file the file to read
+     * @param segmentSize the size of a mapped region, a power of two
+     * @throws IOException if the file cannot be opened or mapped
+     */
+    public MappedFileDataReader(Path file, int segmentSize) throws IOException {
+        super(map(file, segmentSize));
+        this.file = file;
+    }
+
+    /**
+     * Returns the path of the mapped file
+     * @return the path of the file read by this reader
+     */
+    public Path getFile() {
+        return file;
+    }
+}
@@ -1,32 +1,41 @@
 package it.tukano.blenderfile.io;
 
-import java.io.BufferedInputStream;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 
 /**
- * A binary data reader that buffers the data source in memory. This will be
- * replaced by a random access file data reader.
+ * A binary data reader that buffers the data source in memory. The buffer can
+ * be a heap buffer, a direct buffer or a mapped region of a file (see
+ * MappedFileDataReader).
  * @author pgi
  */
-public class MemBufferDataReader implements BinaryDataReader {
+public class MemBufferDataReader extends AbstractDataReader {
 
-    /* The data read from the input stream passed to the constructor */
+    /* The buffer passed to the constructor, released by close */
+    private final ByteBuffer source;
+
+    /* The view used to read the data, with the byte order of this reader */
     private final ByteBuffer dataBytes;
 
-    /* The actual position of the read cursor */
-    private Number cursor = 0;
+    /* The number of bytes available to this reader (the limit of the buffer) */
+    private final int length;
+
+    /* True after close has been called */
+    private volatile boolean closed;
 
     /**
      * Initialize this reader to get data from the given buffer. This is used
      * by file blocks when asked to create sub-readers
-     * @param buffer the buffer that contains the data read by this reader
+     * @param buffer the buffer that contains the data read by this reader, from
+     * 0 to limit
      */
     public MemBufferDataReader(ByteBuffer buffer) {
-        dataBytes = buffer;
+        source = buffer;
+        dataBytes = buffer.duplicate();
+        dataBytes.order(order());
+        length = buffer.limit();
     }
 
     /**
@@ -37,29 +46,29 @@ public class MemBufferDataReader implements BinaryDataReader {
      * input stream to memory
      */
     public MemBufferDataReader(InputStream in) throws IOException {
-        BufferedInputStream bin = new BufferedInputStream(in);
-        ByteArrayOutputStream bout = new ByteArrayOutputStream();
-        for(int b = bin.read(); b != -1; b = bin.read()) {
-            bout.write(b);
-        }
-        dataBytes = ByteBuffer.wrap(bout.toByteArray());
+        this(new ChunkedIngest(-1, false).read(in));
     }
 
     /**
-     * Change the offset of the reader to the given position
-     * @param position the new position of the reader
-     * @return this reader
+     * Returns the buffer of this reader
+     * @return the buffer that holds the data of this reader
+     * @throws IllegalStateException if this reader has been closed
      */
-    public BinaryDataReader jumpTo(Number position) {
-        cursor = position;
-        return this;
+    private ByteBuffer data() {
+        if(closed) throw new IllegalStateException("Reader closed");
+        return dataBytes;
     }
 
-    private ByteBuffer view(int size) {
-        dataBytes.clear();
-        dataBytes.position(cursor.intValue());
-        dataBytes.limit(dataBytes.position() + size);
-        return dataBytes.slice();
+    /**
+     * Sets the byte order of this reader
+     * @param order the byte order of the data
+     * @return this reader
+     */
+    @Override
+    public BinaryDataReader order(ByteOrder order) {
+        super.order(order);
+        dataBytes.order(order);
+        return this;
     }
 
     /**
@@ -69,57 +78,128 @@ public class MemBufferDataReader implements BinaryDataReader {
      * @param dest the destination of the transferred bytes.
      * @return the dest buffer
      */
+    @Override
     public ByteBuffer fill(ByteBuffer dest) {
-        int pos = cursor.intValue();
-        dataBytes.clear().position(cursor.intValue());
-        while(dest.hasRemaining() && dataBytes.hasRemaining()) {
-            dest.put(dataBytes.get());
-            pos++;
-        }
-        cursor = pos;
+        ByteBuffer view = data().duplicate();
+        int pos = (int) position();
+        int count = Math.max(0, Math.min(dest.remaining(), length - pos));
+        view.limit(pos + count).position(pos);
+        dest.put(view);
+        jumpTo(pos + count);
         return dest;
     }
 
     /**
-     * Returns the current position of the reader
-     * @return the current position of the reader
+     * Returns the number of bytes available to this reader
+     * @return the length of the data of this reader
      */
-    public Number getCurrentPosition() {
-        return cursor;
+    public long length() {
+        return length;
+    }
+
+    public byte getByte(long offset) {
+        return data().get(index(offset, 1));
+    }
+
+    @Override
+    public short getShort(long offset) {
+        return data().getShort(index(offset, 2));
+    }
+
+    @Override
+    public int getInt(long offset) {
+        return data().getInt(index(offset, 4));
+    }
+
+    @Override
+    public long getLong(long offset) {
+        return data().getLong(index(offset, 8));
+    }
+
+    @Override
+    public float getFloat(long offset) {
+        return data().getFloat(index(offset, 4));
+    }
+
+    @Override
+    public double getDouble(long offset) {
+        return data().getDouble(index(offset, 8));
+    }
+
+    public void get(long offset, byte[] dest, int destOffset, int count) {
+        ByteBuffer view = data().duplicate();
+        int index = index(offset, count);
+        view.limit(index + count).position(index);
+        view.get(dest, destOffset, count);
     }
 
     /**
-     * Reads a byte from the current position
-     * @return the requested byte
+     * Returns a reader on a read only slice of the buffer of this reader
+     * @param offset the position of the first byte of the region
+     * @param length the number of bytes of the region
+     * @return a reader on the region
      */
-    public Number readByte() {
-        dataBytes.position(cursor.intValue());
-        byte b = dataBytes.get();
-        cursor = cursor.intValue() + 1;
-        return b;
+    @Override
+    public BinaryDataReader slice(long offset, long length) {
+        return new MemBufferDataReader(view(offset, length)).order(order());
     }
 
     /**
-     * Align the reader position
-     * @param size the alignment size
+     * Returns a read only slice of the buffer of this reader
+     * @param offset the position of the first byte of the region
+     * @param length the number of bytes of the region
+     * @return a read only buffer from 0 to length
      */
-    public void align(int size) {
-        int mis = size - (cursor.intValue() % size);
-        if(mis != size) {
-            cursor = cursor.intValue() + mis;
-        }
+    @Override
+    public ByteBuffer getBuffer(long offset, int length) {
+        return view(offset, length).order(order());
+    }
+
+    /* Returns a read only slice of the data */
+    private ByteBuffer view(long offset, long count) {
+        checkRegion(offset, count);
+        ByteBuffer view = data().asReadOnlyBuffer();
+        view.limit((int) (offset + count)).position((int) offset);
+        return view.slice();
+    }
+
+    /* Checks that count bytes at offset are available, returns the offset as an index */
+    private int index(long offset, int count) {
+        if(offset < 0 || offset > length - count) throw new IndexOutOfBoundsException("Offset " + offset + " out of bounds (length " + length + ")");
+        return (int) offset;
     }
 
     /**
      * Returns an input stream on the data of this reader.
      * @return an input stream that can be used to read the same data used by this
-     * reader. The stream position starts at the first byte of the underlying array
-     * of bytes available to this reader (ie it doesn't take into account the
+     * reader. The stream position starts at the first byte of the underlying
+     * buffer of bytes available to this reader (ie it doesn't take into account the
      * current position of the reader itself).
      */
     public InputStream asInputStream() {
-        return new ByteArrayInputStream(dataBytes.array());
+        ByteBuffer view = data().duplicate();
+        view.limit(length).position(0);
+        return new ByteBufferInputStream(view);
     }
 
+    /**
+     * Closes this reader. Any subsequent read will fail with an
+     * IllegalStateException.
+     * @throws IOException if releasing the buffer fails
+     */
+    public void close() throws IOException {
+        if(!closed) {
+            closed = true;
+            release(source);
+        }
+    }
 
+    /**
+     * Called once by close to release the buffer of this reader. The default
+     * implementation does nothing and leaves the buffer to the garbage collector.
+     * @param buffer the buffer of this reader
+     * @throws IOException if the release fails
+     */
+    protected void release(ByteBuffer buffer) throws IOException {
+    }
 }
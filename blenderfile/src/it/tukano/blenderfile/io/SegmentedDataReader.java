@@ -0,0 +1,228 @@
+package it.tukano.blenderfile.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * A binary data reader on a sequence of buffers, addressed with long offsets.
+ * A single ByteBuffer cannot hold more than 2 GB: this reader splits the data
+ * in segments of the same power of two size (only the last one can be
+ * shorter). Reads that straddle two segments are assembled byte by byte.
+ * @author pgi
+ */
+public class SegmentedDataReader extends AbstractDataReader {
+
+    /** The default size of a segment (1 GB) */
+    public static final int DEFAULT_SEGMENT_SIZE = 1 << 30;
+
+    /**
+     * Allocates a reader of the given length, with empty segments. The data is
+     * meant to be transferred in the segments (see getSegment) before any read.
+     * @param length the number of bytes of the reader
+     * @param direct true to allocate direct buffers
+     * @return a new reader
+     */
+    public static SegmentedDataReader allocate(long length, boolean direct) {
+        int count = (int) ((length + DEFAULT_SEGMENT_SIZE - 1) / DEFAULT_SEGMENT_SIZE);
+        ByteBuffer[] segments = new ByteBuffer[Math.max(count, 1)];
+        for(int i = 0; i < segments.length; i++) {
+            int size = (int) Math.min(DEFAULT_SEGMENT_SIZE, length - (long) i * DEFAULT_SEGMENT_SIZE);
+            segments[i] = direct ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size);
+        }
+        return new SegmentedDataReader(segments);
+    }
+
+    /* The buffers passed to the constructor, released and dropped by close */
+    private final ByteBuffer[] sources;
+
+    /* The views used to read the data, with the byte order of this reader */
+    private final ByteBuffer[] segments;
+
+    /* log2 of the segment size */
+    private final int segmentShift;
+
+    /* segment size - 1 */
+    private final long segmentMask;
+
+    /* The total number of bytes */
+    private final long length;
+
+    /* True after close has been called */
+    private volatile boolean closed;
+
+    /**
+     * Initializes this reader
+     * @param buffers the segments, each one from 0 to limit. All the segments
+     * but the last must have the same power of two size.
+     */
+    public SegmentedDataReader(ByteBuffer[] buffers) {
+        if(buffers.length == 0) throw new IllegalArgumentException("No segments");
+        int segmentSize = buffers[0].limit();
+        if(buffers.length > 1 && Integer.bitCount(segmentSize) != 1) {
+            throw new IllegalArgumentException("Segment size must be a power of two: " + segmentSize);
+        }
+        long total = 0;
+        sources = buffers.clone();
+        segments = new ByteBuffer[buffers.length];
+        for(int i = 0; i < buffers.length; i++) {
+            if(i < buffers.length - 1 && buffers[i].limit() != segmentSize || buffers[i].limit() > segmentSize) {
+                throw new IllegalArgumentException("Segment " + i + " has " + buffers[i].limit() + " bytes, expected " + segmentSize);
+            }
+            segments[i] = buffers[i].duplicate();
+            segments[i].order(order());
+            total += buffers[i].limit();
+        }
+        segmentShift = buffers.length > 1 ? Integer.numberOfTrailingZeros(segmentSize) : 31;
+        segmentMask = (1L << segmentShift) - 1;
+        length = total;
+    }
+
+    /**
+     * Returns the number of segments of this reader
+     * @return the number of segments
+     */
+    public int getSegmentCount() {
+        return segments.length;
+    }
+
+    /**
+     * Returns a segment of this reader. Writing in the returned buffer changes
+     * the data of this reader.
+     * @param index the index of the segment
+     * @return a view of the segment, from 0 to limit
+     */
+    public ByteBuffer getSegment(int index) {
+        return segment(index).duplicate();
+    }
+
+    private ByteBuffer segment(int index) {
+        ByteBuffer segment = segments[index];
+        if(closed || segment == null) throw new IllegalStateException("Reader closed");
+        return segment;
+    }
+
+    @Override
+    public BinaryDataReader order(ByteOrder order) {
+        super.order(order);
+        for(ByteBuffer segment : segments) {
+            segment.order(order);
+        }
+        return this;
+    }
+
+    public long length() {
+        return length;
+    }
+
+    public byte getByte(long offset) {
+        check(offset, 1);
+        return segment((int) (offset >>> segmentShift)).get((int) (offset & segmentMask));
+    }
+
+    @Override
+    public short getShort(long offset) throws IOException {
+        check(offset, 2);
+        ByteBuffer segment = segment((int) (offset >>> segmentShift));
+        int index = (int) (offset & segmentMask);
+        return index + 2 <= segment.limit() ? segment.getShort(index) : super.getShort(offset);
+    }
+
+    @Override
+    public int getInt(long offset) throws IOException {
+        check(offset, 4);
+        ByteBuffer segment = segment((int) (offset >>> segmentShift));
+        int index = (int) (offset & segmentMask);
+        return index + 4 <= segment.limit() ? segment.getInt(index) : super.getInt(offset);
+    }
+
+    @Override
+    public long getLong(long offset) throws IOException {
+        check(offset, 8);
+        ByteBuffer segment = segment((int) (offset >>> segmentShift));
+        int index = (int) (offset & segmentMask);
+        return index + 8 <= segment.limit() ? segment.getLong(index) : super.getLong(offset);
+    }
+
+    public void get(long offset, byte[] dest, int destOffset, int count) {
+        check(offset, count);
+        while(count > 0) {
+            ByteBuffer view = segment((int) (offset >>> segmentShift)).duplicate();
+            int index = (int) (offset & segmentMask);
+            int n = Math.min(count, view.limit() - index);
+            view.position(index);
+            view.get(dest, destOffset, n);
+            offset += n;
+            destOffset += n;
+            count -= n;
+        }
+    }
+
+    @Override
+    public ByteBuffer fill(ByteBuffer dest) {
+        long position = position();
+        long count = Math.max(0, Math.min(dest.remaining(), length - position));
+        for(long end = position + count; position < end; ) {
+            ByteBuffer view = segment((int) (position >>> segmentShift)).duplicate();
+            int index = (int) (position & segmentMask);
+            int n = (int) Math.min(end - position, view.limit() - index);
+            view.limit(index + n).position(index);
+            dest.put(view);
+            position += n;
+        }
+        jumpTo(position);
+        return dest;
+    }
+
+    /* Checks that count bytes at offset are available */
+    private void check(long offset, int count) {
+        if(offset < 0 || offset > length - count) throw new IndexOutOfBoundsException("Offset " + offset + " out of bounds (length " + length + ")");
+    }
+
+    /**
+     * Returns a region of this reader as a buffer. A region that lies in a
+     * single segment is a read only view of the segment, a region that
+     * straddles two segments is copied.
+     * @param offset the position of the first byte of the region
+     * @param length the number of bytes of the region
+     * @return a read only buffer from 0 to length
+     * @throws IOException if a read error occurs
+     */
+    @Override
+    public ByteBuffer getBuffer(long offset, int length) throws IOException {
+        checkRegion(offset, length);
+        ByteBuffer view = segment((int) (offset >>> segmentShift)).asReadOnlyBuffer();
+        int index = (int) (offset & segmentMask);
+        if((long) index + length > view.limit()) return copyBuffer(offset, length);
+        view.limit(index + length).position(index);
+        return view.slice().order(order());
+    }
+
+    /**
+     * Closes this reader. Any subsequent read will fail with an
+     * IllegalStateException. The segments are dropped, the memory is
+     * reclaimed by the garbage collector when the buffers returned by
+     * getBuffer are no longer referenced.
+     * @throws IOException if releasing the segments fails
+     */
+    public void close() throws IOException {
+        if(!closed) {
+            closed = true;
+            for(int i = 0; i < sources.length; i++) {
+                ByteBuffer source = sources[i];
+                sources[i] = null;
+                segments[i] = null;
+                release(source);
+            }
+        }
+    }
+
+    /**
+     * Called once per segment by close. The default implementation does
+     * nothing and leaves the buffer to the garbage collector.
+     * @param buffer a segment of this reader
+     * @throws IOException if the release fails
+     */
+    protected void release(ByteBuffer buffer) throws IOException {
+    }
+}
@@ -0,0 +1,92 @@
+package it.tukano.blenderfile.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A view of a region of another reader. Reads are translated and forwarded to
+ * the absolute reads of the parent reader, nothing is copied.
+ * @author pgi
+ */
+final class SliceDataReader extends AbstractDataReader {
+
+    private final BinaryDataReader parent;
+    private final long base;
+    private final long length;
+
+    /* True after close has been called */
+    private volatile boolean closed;
+
+    /**
+     * Initializes this view
+     * @param parent the reader that holds the data
+     * @param base the position in parent of the first byte of the view
+     * @param length the number of bytes of the view
+     */
+    SliceDataReader(BinaryDataReader parent, long base, long length) {
+        this.parent = parent;
+        this.base = base;
+        this.length = length;
+    }
+
+    public long length() {
+        return length;
+    }
+
+    public byte getByte(long offset) throws IOException {
+        return parent.getByte(translate(offset, 1));
+    }
+
+    @Override
+    public short getShort(long offset) throws IOException {
+        short value = parent.getShort(translate(offset, 2));
+        return swapped() ? Short.reverseBytes(value) : value;
+    }
+
+    @Override
+    public int getInt(long offset) throws IOException {
+        int value = parent.getInt(translate(offset, 4));
+        return swapped() ? Integer.reverseBytes(value) : value;
+    }
+
+    @Override
+    public long getLong(long offset) throws IOException {
+        long value = parent.getLong(translate(offset, 8));
+        return swapped() ? Long.reverseBytes(value) : value;
+    }
+
+    public void get(long offset, byte[] dest, int destOffset, int count) throws IOException {
+        parent.get(translate(offset, count), dest, destOffset, count);
+    }
+
+    @Override
+    public BinaryDataReader slice(long offset, long count) throws IOException {
+        checkRegion(offset, count);
+        return parent.slice(base + offset, count).order(order());
+    }
+
+    @Override
+    public ByteBuffer getBuffer(long offset, int count) throws IOException {
+        checkRegion(offset, count);
+        return parent.getBuffer(base + offset, count).order(order());
+    }
+
+    /**
+     * Closes this view. The parent reader is not closed.
+     */
+    public void close() {
+        closed = true;
+    }
+
+    /* True if the byte order of this view differs from the one of the parent */
+    private boolean swapped() {
+        return order() != parent.order();
+    }
+
+    /* Checks that count bytes at offset are in the view, returns the position in the parent */
+    private long translate(long offset, int count) {
+        if(closed) throw new IllegalStateException("Reader closed");
+        if(offset < 0 || offset > length - count) throw new IndexOutOfBoundsException("Offset " + offset + " out of bounds (length " + length + ")");
+        return base + offset;
+    }
+}
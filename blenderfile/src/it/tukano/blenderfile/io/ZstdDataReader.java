@@ -0,0 +1,456 @@
+package it.tukano.blenderfile.io;
+
+import it.tukano.blenderfile.exceptions.BlenderFileParsingException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * A binary data reader on zstd compressed data. Blender saves compressed files
+ * as a sequence of independent zstd frames followed by a seek table (the zstd
+ * "seekable format"). This reader uses the seek table (or walks the frame
+ * headers if there is no table) to map decompressed offsets to frames, and
+ * decompresses only the frames that cover the requested data. The most
+ * recently used frames are kept in a cache bounded in bytes.
+ * @author pgi
+ */
+public class ZstdDataReader extends AbstractDataReader {
+
+    /** The default size of the frame cache, in bytes */
+    public static final int DEFAULT_CACHE_SIZE = 32 << 20;
+
+    private static final int SEEK_TABLE_MAGIC = 0x8F92EAB1;
+    private static final int SEEK_TABLE_FRAME_MAGIC = 0x184D2A5E;
+    private static final int SEEK_TABLE_FOOTER_SIZE = 9;
+    private static final int MAX_FRAME_HEADER_SIZE = 18;
+    private static final int MAX_BLOCK_SIZE = 1 << 17;
+
+    /**
+     * Checks if the reader starts with the zstd frame magic number
+     * @param reader the reader to check. The position of the reader is not changed
+     * @return true if the data of the reader looks like zstd data
+     * @throws IOException if a read error occurs
+     */
+    public static boolean isZstd(BinaryDataReader reader) throws IOException {
+        if(reader.length() < 9) return false;
+        Number mark = reader.getCurrentPosition();
+        byte[] magic = new byte[4];
+        reader.jumpTo(0).fill(ByteBuffer.wrap(magic));
+        reader.jumpTo(mark);
+        return ZstdDecompressor.readInt(magic, 0) == ZstdDecompressor.FRAME_MAGIC;
+    }
+
+    /* The reader of the compressed data */
+    private final BinaryDataReader source;
+
+    /* Position of each frame in the compressed data */
+    private final long[] compressedOffsets;
+
+    /* Compressed size of each frame */
+    private final int[] compressedSizes;
+
+    /* Position of the first byte of each frame in the decompressed data */
+    private final long[] decompressedOffsets;
+
+    /* Decompressed size of each frame */
+    private final int[] decompressedSizes;
+
+    /* The total decompressed length */
+    private final long length;
+
+    /* The decompressed frames, in access order. A frame being decompressed is a pending future */
+    private final LinkedHashMap<Integer, CompletableFuture<byte[]>> cache = new LinkedHashMap<Integer, CompletableFuture<byte[]>>(16, 0.75f, true);
+
+    private final int cacheCapacity;
+    private final ConcurrentLinkedQueue<ZstdDecompressor> decompressors = new ConcurrentLinkedQueue<ZstdDecompressor>();
+    private long cachedBytes;//the decompressed size of the cached frames, pending ones included
+    private volatile boolean closed;
+
+    /**
+     * Initializes this reader with the default cache size
+     * @param source the reader of the compressed data. It is closed when this
+     * reader is closed
+     * @throws IOException if the source is not valid zstd data
+     */
+    public ZstdDataReader(BinaryDataReader source) throws IOException {
+        this(source, DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * Initializes this reader
+     * @param source the reader of the compressed data. It is closed when this
+     * reader is closed
+     * @param cacheCapacity the maximum number of decompressed bytes kept in
+     * memory. The last used frame is always kept, whatever its size.
+     * @throws IOException if the source is not valid zstd data
+     */
+    public ZstdDataReader(BinaryDataReader source, int cacheCapacity) throws IOException {
+        this.source = source;
+        this.cacheCapacity = cacheCapacity;
+        FrameIndex index = readSeekTable();
+        if(index == null) index = walkFrames();
+        compressedOffsets = Arrays.copyOf(index.compressedOffsets, index.count);
+        compressedSizes = Arrays.copyOf(index.compressedSizes, index.count);
+        decompressedSizes = Arrays.copyOf(index.decompressedSizes, index.count);
+        decompressedOffsets = new long[index.count];
+        long total = 0;
+        for(int i = 0; i < index.count; i++) {
+            decompressedOffsets[i] = total;
+            total += decompressedSizes[i];
+        }
+        length = total;
+        for(Map.Entry<Integer, byte[]> frame : index.decoded.entrySet()) {
+            cache(frame.getKey(), CompletableFuture.completedFuture(frame.getValue()));
+        }
+    }
+
+    /**
+     * Returns the number of frames of the compressed data
+     * @return the number of zstd frames
+     */
+    public int getFrameCount() {
+        return compressedOffsets.length;
+    }
+
+    /**
+     * Returns the number of frames currently held in the cache
+     * @return the number of decompressed frames in memory
+     */
+    public synchronized int getCachedFrameCount() {
+        return cache.size();
+    }
+
+    public long length() {
+        return length;
+    }
+
+    public byte getByte(long offset) throws IOException {
+        int frame = frameAt(checkOffset(offset, 1));
+        return frame(frame)[(int) (offset - decompressedOffsets[frame])];
+    }
+
+    @Override
+    public short getShort(long offset) throws IOException {
+        int frame = frameAt(checkOffset(offset, 2));
+        int index = (int) (offset - decompressedOffsets[frame]);
+        byte[] data = frame(frame);
+        return index + 2 <= data.length ? getShort(data, index) : super.getShort(offset);
+    }
+
+    @Override
+    public int getInt(long offset) throws IOException {
+        int frame = frameAt(checkOffset(offset, 4));
+        int index = (int) (offset - decompressedOffsets[frame]);
+        byte[] data = frame(frame);
+        return index + 4 <= data.length ? getInt(data, index) : super.getInt(offset);
+    }
+
+    @Override
+    public long getLong(long offset) throws IOException {
+        int frame = frameAt(checkOffset(offset, 8));
+        int index = (int) (offset - decompressedOffsets[frame]);
+        byte[] data = frame(frame);
+        return index + 8 <= data.length ? getLong(data, index) : super.getLong(offset);
+    }
+
+    /**
+     * Copies decompressed bytes into an array, decompressing the frames that
+     * hold them.
+     * @param offset the position of the first byte to copy
+     * @param dest the destination array
+     * @param destOffset the index in dest of the first copied byte
+     * @param count the number of bytes to copy
+     * @throws IOException if the decompression fails
+     */
+    public void get(long offset, byte[] dest, int destOffset, int count) throws IOException {
+        checkOffset(offset, count);
+        while(count > 0) {
+            int frame = frameAt(offset);
+            byte[] data = frame(frame);
+            int index = (int) (offset - decompressedOffsets[frame]);
+            int n = Math.min(count, data.length - index);
+            System.arraycopy(data, index, dest, destOffset, n);
+            offset += n;
+            destOffset += n;
+            count -= n;
+        }
+    }
+
+    /* Checks that count bytes at offset are available */
+    private long checkOffset(long offset, int count) {
+        if(offset < 0 || offset > length - count) throw new IndexOutOfBoundsException("Offset " + offset + " out of bounds (length " + length + ")");
+        return offset;
+    }
+
+    /**
+     * Returns an input stream on the decompressed data. The stream starts at the
+     * first byte of the data and decompresses frames as it goes, through the
+     * cache of this reader.
+     * @return an input stream on the decompressed data
+     */
+    public InputStream asInputStream() {
+        return new InputStream() {
+
+            private long position;
+
+            @Override
+            public int read() throws IOException {
+                if(position >= length) return -1;
+                int frame = frameAt(position);
+                byte b = frame(frame)[(int) (position - decompressedOffsets[frame])];
+                position++;
+                return b & 0xFF;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if(len == 0) return 0;
+                if(position >= length) return -1;
+                int frame = frameAt(position);
+                byte[] data = frame(frame);
+                int offset = (int) (position - decompressedOffsets[frame]);
+                int count = Math.min(len, data.length - offset);
+                System.arraycopy(data, offset, b, off, count);
+                position += count;
+                return count;
+            }
+
+            @Override
+            public long skip(long n) {
+                long count = Math.max(0, Math.min(n, length - position));
+                position += count;
+                return count;
+            }
+
+            @Override
+            public int available() {
+                return (int) Math.min(Integer.MAX_VALUE, length - position);
+            }
+        };
+    }
+
+    /**
+     * Drops the cached frames and closes the reader of the compressed data.
+     * @throws IOException if closing the source fails
+     */
+    public void close() throws IOException {
+        if(!closed) {
+            closed = true;
+            synchronized(this) {
+                cache.clear();
+                cachedBytes = 0;
+            }
+            source.close();
+        }
+    }
+
+    /* Returns the index of the frame that holds the given decompressed position */
+    private int frameAt(long position) {
+        int index = Arrays.binarySearch(decompressedOffsets, position);
+        if(index < 0) index = -index - 2;
+        while(decompressedSizes[index] == 0) index++;//empty frames share the offset of the next one
+        return index;
+    }
+
+    /*
+     * Returns the decompressed content of a frame, from the cache if possible.
+     * The lock is held only to look up and update the cache: a missing frame
+     * is put in the cache as a pending future and decompressed outside the
+     * lock, the threads that ask for it meanwhile wait for that future.
+     */
+    private byte[] frame(int index) throws IOException {
+        CompletableFuture<byte[]> frame;
+        boolean decode;
+        synchronized(this) {
+            if(closed) throw new IllegalStateException("Reader closed");
+            frame = cache.get(index);
+            decode = frame == null;
+            if(decode) {
+                frame = new CompletableFuture<byte[]>();
+                cache(index, frame);
+            }
+        }
+        if(decode) {
+            try {
+                frame.complete(decompress(index));
+            } catch(IOException ex) {
+                failed(index, frame, ex);
+                throw ex;
+            } catch(RuntimeException ex) {
+                failed(index, frame, ex);
+                throw ex;
+            }
+        }
+        try {
+            return frame.join();
+        } catch(CompletionException ex) {
+            Throwable cause = ex.getCause();
+            if(cause instanceof IOException) throw new BlenderFileParsingException("Zstd frame " + index + " failed: " + cause.getMessage());
+            if(cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw ex;
+        }
+    }
+
+    /* Puts a frame in the cache as the most recently used one and evicts the eldest frames over the capacity */
+    private synchronized void cache(int index, CompletableFuture<byte[]> frame) {
+        cache.put(index, frame);
+        cachedBytes += decompressedSizes[index];
+        Iterator<Map.Entry<Integer, CompletableFuture<byte[]>>> eldest = cache.entrySet().iterator();
+        while(cachedBytes > cacheCapacity && cache.size() > 1) {
+            cachedBytes -= decompressedSizes[eldest.next().getKey()];
+            eldest.remove();
+        }
+    }
+
+    /* Drops a frame that failed to decompress from the cache and fails its waiters */
+    private void failed(int index, CompletableFuture<byte[]> frame, Exception ex) {
+        synchronized(this) {
+            if(cache.remove(index, frame)) cachedBytes -= decompressedSizes[index];
+        }
+        frame.completeExceptionally(ex);
+    }
+
+    /* Reads and decompresses a frame, the decompressors are reused across threads */
+    private byte[] decompress(int index) throws IOException {
+        byte[] compressed = new byte[compressedSizes[index]];
+        readSource(compressedOffsets[index], compressed);
+        byte[] data = new byte[decompressedSizes[index]];
+        ZstdDecompressor decompressor = decompressors.poll();
+        if(decompressor == null) decompressor = new ZstdDecompressor();
+        try {
+            int size = decompressor.decompressFrame(compressed, 0, compressed.length, data, 0, data.length);
+            if(size != data.length) throw new BlenderFileParsingException("Zstd frame " + index + " has " + size + " bytes, expected " + data.length);
+        } finally {
+            decompressors.offer(decompressor);
+        }
+        return data;
+    }
+
+    private void readSource(long position, byte[] dest) throws IOException {
+        if(position + dest.length > source.length()) throw new BlenderFileParsingException("Truncated zstd data at " + position);
+        source.get(position, dest, 0, dest.length);
+    }
+
+    /* Reads the seek table at the end of the data, returns null if there is none */
+    private FrameIndex readSeekTable() throws IOException {
+        long sourceLength = source.length();
+        if(sourceLength < SEEK_TABLE_FOOTER_SIZE + 8) return null;
+        byte[] footer = new byte[SEEK_TABLE_FOOTER_SIZE];
+        readSource(sourceLength - SEEK_TABLE_FOOTER_SIZE, footer);
+        if(ZstdDecompressor.readInt(footer, 5) != SEEK_TABLE_MAGIC) return null;
+        long frameCount = ZstdDecompressor.readInt(footer, 0) & 0xFFFFFFFFL;
+        int descriptor = footer[4] & 0xFF;
+        if((descriptor & 0x7C) != 0) throw new BlenderFileParsingException("Reserved bits set in zstd seek table");
+        int entrySize = (descriptor & 0x80) != 0 ? 12 : 8;
+        long tableSize = 8 + frameCount * entrySize + SEEK_TABLE_FOOTER_SIZE;
+        if(tableSize > sourceLength || frameCount > Integer.MAX_VALUE / entrySize) {
+            throw new BlenderFileParsingException("Invalid zstd seek table");
+        }
+        byte[] table = new byte[(int) tableSize];
+        readSource(sourceLength - tableSize, table);
+        if(ZstdDecompressor.readInt(table, 0) != SEEK_TABLE_FRAME_MAGIC || ZstdDecompressor.readInt(table, 4) != tableSize - 8) {
+            throw new BlenderFileParsingException("Invalid zstd seek table frame");
+        }
+        FrameIndex index = new FrameIndex((int) frameCount);
+        long offset = 0;
+        for(int i = 0; i < frameCount; i++) {
+            int entry = 8 + i * entrySize;
+            int compressedSize = ZstdDecompressor.readInt(table, entry);
+            int decompressedSize = ZstdDecompressor.readInt(table, entry + 4);
+            if(compressedSize < 0 || decompressedSize < 0) throw new BlenderFileParsingException("Zstd frame too large");
+            index.add(offset, compressedSize, decompressedSize);
+            offset += compressedSize & 0xFFFFFFFFL;
+        }
+        if(offset != sourceLength - tableSize) throw new BlenderFileParsingException("Zstd seek table doesn't match the frames");
+        return index;
+    }
+
+    /*
+     * Builds the frame index walking the frame headers. Frames without a content
+     * size are decompressed once to get it, the content is kept in the index
+     * to seed the cache.
+     */
+    private FrameIndex walkFrames() throws IOException {
+        long sourceLength = source.length();
+        FrameIndex index = new FrameIndex(16);
+        byte[] header = new byte[MAX_FRAME_HEADER_SIZE];
+        byte[] blockHeader = new byte[3];
+        long position = 0;
+        while(position < sourceLength) {
+            int headerLength = (int) Math.min(header.length, sourceLength - position);
+            ByteBuffer buffer = ByteBuffer.wrap(header, 0, headerLength);
+            source.jumpTo(position).fill(buffer);
+            if(headerLength < 8) throw new BlenderFileParsingException("Truncated zstd data at " + position);
+            int magic = ZstdDecompressor.readInt(header, 0);
+            if((magic & ZstdDecompressor.SKIPPABLE_MASK) == ZstdDecompressor.SKIPPABLE_MAGIC) {
+                position += 8 + (ZstdDecompressor.readInt(header, 4) & 0xFFFFFFFFL);
+                continue;
+            }
+            ZstdDecompressor.FrameHeader frameHeader = ZstdDecompressor.readFrameHeader(header, 0, headerLength);
+            long end = position + frameHeader.getHeaderSize();
+            int blockCount = 0;
+            boolean last;
+            do {
+                readSource(end, blockHeader);
+                int value = (blockHeader[0] & 0xFF) | (blockHeader[1] & 0xFF) << 8 | (blockHeader[2] & 0xFF) << 16;
+                last = (value & 1) != 0;
+                end += 3 + (((value >>> 1) & 3) == 1 ? 1 : value >>> 3);
+                blockCount++;
+            } while(!last);
+            if(frameHeader.hasChecksum()) end += 4;
+            if(end > sourceLength || end - position > Integer.MAX_VALUE) throw new BlenderFileParsingException("Invalid zstd frame at " + position);
+            int compressedSize = (int) (end - position);
+            long contentSize = frameHeader.getContentSize();
+            if(contentSize < 0) {
+                byte[] compressed = new byte[compressedSize];
+                readSource(position, compressed);
+                byte[] scratch = new byte[(int) Math.min(Integer.MAX_VALUE - 8, (long) blockCount * MAX_BLOCK_SIZE)];
+                ZstdDecompressor decompressor = new ZstdDecompressor();
+                int size = decompressor.decompressFrame(compressed, 0, compressed.length, scratch, 0, scratch.length);
+                decompressors.offer(decompressor);
+                index.decoded.put(index.count, size == scratch.length ? scratch : Arrays.copyOf(scratch, size));
+                contentSize = size;
+            }
+            if(contentSize > Integer.MAX_VALUE) throw new BlenderFileParsingException("Zstd frame too large at " + position);
+            index.add(position, compressedSize, (int) contentSize);
+            position = end;
+        }
+        return index;
+    }
+
+    /* Growable arrays used while building the frame table */
+    private static class FrameIndex {
+
+        long[] compressedOffsets;
+        int[] compressedSizes;
+        int[] decompressedSizes;
+        int count;
+        final Map<Integer, byte[]> decoded = new LinkedHashMap<Integer, byte[]>();//the frames decompressed while walking
+
+        FrameIndex(int capacity) {
+            capacity = Math.max(capacity, 1);
+            compressedOffsets = new long[capacity];
+            compressedSizes = new int[capacity];
+            decompressedSizes = new int[capacity];
+        }
+
+        void add(long offset, int compressedSize, int decompressedSize) {
+            if(count == compressedOffsets.length) {
+                compressedOffsets = Arrays.copyOf(compressedOffsets, count * 2);
+                compressedSizes = Arrays.copyOf(compressedSizes, count * 2);
+                decompressedSizes = Arrays.copyOf(decompressedSizes, count * 2);
+            }
+            compressedOffsets[count] = offset;
+            compressedSizes[count] = compressedSize;
+            decompressedSizes[count] = decompressedSize;
+            count++;
+        }
+    }
+}
@@ -0,0 +1,677 @@
+package it.tukano.blenderfile.io;
+
+import it.tukano.blenderfile.exceptions.BlenderFileParsingException;
+import java.io.IOException;
+
+/**
+ * A Zstandard (RFC 8878) frame decoder written in plain java. It decodes one
+ * frame at a time into a caller supplied array, which is all that is needed to
+ * read seekable multi-frame files: frames are independent of each other.
+ * Dictionaries are not supported (blender doesn't use them) and the optional
+ * content checksum is skipped, not verified. An instance is not thread safe.
+ * @author pgi
+ */
+public class ZstdDecompressor {
+
+    /** The magic number of a zstd frame */
+    public static final int FRAME_MAGIC = 0xFD2FB528;
+    /** The magic number of skippable frames, masked with SKIPPABLE_MASK */
+    public static final int SKIPPABLE_MAGIC = 0x184D2A50;
+    /** The mask to apply to a magic number to check for skippable frames */
+    public static final int SKIPPABLE_MASK = 0xFFFFFFF0;
+
+    private static final int MAX_BLOCK_SIZE = 1 << 17;
+    private static final int RAW_BLOCK = 0;
+    private static final int RLE_BLOCK = 1;
+    private static final int COMPRESSED_BLOCK = 2;
+
+    private static final int MODE_PREDEFINED = 0;
+    private static final int MODE_RLE = 1;
+    private static final int MODE_FSE = 2;
+    private static final int MODE_REPEAT = 3;
+
+    private static final int LITERALS_LENGTH_MAX_LOG = 9;
+    private static final int MATCH_LENGTH_MAX_LOG = 9;
+    private static final int OFFSET_MAX_LOG = 8;
+    private static final int HUFFMAN_MAX_BITS = 11;
+    private static final int HUFFMAN_WEIGHTS_MAX_LOG = 6;
+
+    private static final short[] LITERALS_LENGTH_DEFAULT = {
+        4, 3, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 1, 1, 1,
+        2, 2, 2, 2, 2, 2, 2, 2, 2, 3, 2, 1, 1, 1, 1, 1,
+        -1, -1, -1, -1 };
+    private static final short[] MATCH_LENGTH_DEFAULT = {
+        1, 4, 3, 2, 2, 2, 2, 2, 2, 1, 1, 1, 1, 1, 1, 1,
+        1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1,
+        1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, -1, -1,
+        -1, -1, -1, -1, -1 };
+    private static final short[] OFFSET_DEFAULT = {
+        1, 1, 1, 1, 1, 1, 2, 2, 2, 1, 1, 1, 1, 1, 1, 1,
+        1, 1, 1, 1, 1, 1, 1, 1, -1, -1, -1, -1, -1 };
+
+    private static final int[] LITERALS_LENGTH_BASE = {
+        0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15,
+        16, 18, 20, 22, 24, 28, 32, 40, 48, 64, 128, 256, 512, 1024, 2048, 4096,
+        8192, 16384, 32768, 65536 };
+    private static final int[] LITERALS_LENGTH_BITS = {
+        0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+        1, 1, 1, 1, 2, 2, 3, 3, 4, 6, 7, 8, 9, 10, 11, 12,
+        13, 14, 15, 16 };
+    private static final int[] MATCH_LENGTH_BASE = {
+        3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 17, 18,
+        19, 20, 21, 22, 23, 24, 25, 26, 27, 28, 29, 30, 31, 32, 33, 34,
+        35, 37, 39, 41, 43, 47, 51, 59, 67, 83, 99, 131, 259, 515, 1027, 2051,
+        4099, 8195, 16387, 32771, 65539 };
+    private static final int[] MATCH_LENGTH_BITS = {
+        0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+        0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+        1, 1, 1, 1, 2, 2, 3, 3, 4, 4, 5, 7, 8, 9, 10, 11,
+        12, 13, 14, 15, 16 };
+
+    private static final FseTable LITERALS_LENGTH_PREDEFINED = FseTable.build(LITERALS_LENGTH_DEFAULT, LITERALS_LENGTH_DEFAULT.length, 6);
+    private static final FseTable MATCH_LENGTH_PREDEFINED = FseTable.build(MATCH_LENGTH_DEFAULT, MATCH_LENGTH_DEFAULT.length, 6);
+    private static final FseTable OFFSET_PREDEFINED = FseTable.build(OFFSET_DEFAULT, OFFSET_DEFAULT.length, 5);
+
+    /**
+     * The header of a frame
+     */
+    public static class FrameHeader {
+
+        private final int headerSize;
+        private final long contentSize;
+        private final boolean checksum;
+
+        FrameHeader(int headerSize, long contentSize, boolean checksum) {
+            this.headerSize = headerSize;
+            this.contentSize = contentSize;
+            this.checksum = checksum;
+        }
+
+        /**
+         * Returns the size of the header, magic number included
+         * @return the size of the header in bytes
+         */
+        public int getHeaderSize() {
+            return headerSize;
+        }
+
+        /**
+         * Returns the decompressed size of the frame
+         * @return the size of the content of the frame or -1 if the header
+         * doesn't declare it
+         */
+        public long getContentSize() {
+            return contentSize;
+        }
+
+        /**
+         * Checks if the frame ends with a content checksum
+         * @return true if the frame has a 4 bytes checksum after the last block
+         */
+        public boolean hasChecksum() {
+            return checksum;
+        }
+    }
+
+    /**
+     * Parses the header of the frame at the given offset
+     * @param src the compressed data
+     * @param offset the offset of the frame (of its magic number)
+     * @param limit the end of the compressed data
+     * @return the header of the frame
+     * @throws IOException if the data is not a valid frame header
+     */
+    public static FrameHeader readFrameHeader(byte[] src, int offset, int limit) throws IOException {
+        check(offset + 5 <= limit, "truncated frame header");
+        if(readInt(src, offset) != FRAME_MAGIC) throw new BlenderFileParsingException("Not a zstd frame");
+        int descriptor = src[offset + 4] & 0xFF;
+        int contentSizeFlag = descriptor >>> 6;
+        boolean singleSegment = (descriptor & 0x20) != 0;
+        boolean checksum = (descriptor & 0x04) != 0;
+        int dictionaryIdFlag = descriptor & 3;
+        check((descriptor & 0x08) == 0, "reserved frame header bit set");
+        int position = offset + 5;
+        if(!singleSegment) position++;//window descriptor, the whole frame is our window
+        int dictionaryIdSize = dictionaryIdFlag == 3 ? 4 : dictionaryIdFlag;
+        check(position + dictionaryIdSize <= limit, "truncated frame header");
+        long dictionaryId = 0;
+        for(int i = 0; i < dictionaryIdSize; i++) dictionaryId |= (src[position + i] & 0xFFL) << (8 * i);
+        if(dictionaryId != 0) throw new BlenderFileParsingException("zstd dictionaries are not supported");
+        position += dictionaryIdSize;
+        int contentSizeBytes = contentSizeFlag == 0 ? (singleSegment ? 1 : 0) : 1 << contentSizeFlag;
+        check(position + contentSizeBytes <= limit, "truncated frame header");
+        long contentSize = -1;
+        if(contentSizeBytes > 0) {
+            contentSize = 0;
+            for(int i = 0; i < contentSizeBytes; i++) contentSize |= (src[position + i] & 0xFFL) << (8 * i);
+            if(contentSizeBytes == 2) contentSize += 256;
+        }
+        position += contentSizeBytes;
+        return new FrameHeader(position - offset, contentSize, checksum);
+    }
+
+    /* The literals of the current block */
+    private final byte[] literals = new byte[MAX_BLOCK_SIZE + 8];
+    private final int[] repeatOffsets = new int[3];
+    private HuffmanTable huffmanTable;
+    private FseTable literalsLengthTable, offsetTable, matchLengthTable;
+
+    /**
+     * Initializes this decompressor
+     */
+    public ZstdDecompressor() {
+    }
+
+    /**
+     * Decodes a frame
+     * @param src the compressed data
+     * @param offset the offset of the frame in src
+     * @param limit the end of the compressed data
+     * @param dst the destination of the decompressed content
+     * @param dstOffset the offset in dst of the first decompressed byte
+     * @param dstLimit the end of the destination area
+     * @return the number of decompressed bytes
+     * @throws IOException if the frame is not valid or doesn't fit the destination
+     */
+    public int decompressFrame(byte[] src, int offset, int limit, byte[] dst, int dstOffset, int dstLimit) throws IOException {
+        FrameHeader header = readFrameHeader(src, offset, limit);
+        int position = offset + header.getHeaderSize();
+        int out = dstOffset;
+        repeatOffsets[0] = 1;
+        repeatOffsets[1] = 4;
+        repeatOffsets[2] = 8;
+        huffmanTable = null;
+        literalsLengthTable = offsetTable = matchLengthTable = null;
+        boolean last;
+        do {
+            check(position + 3 <= limit, "truncated block header");
+            int blockHeader = (src[position] & 0xFF) | (src[position + 1] & 0xFF) << 8 | (src[position + 2] & 0xFF) << 16;
+            position += 3;
+            last = (blockHeader & 1) != 0;
+            int type = (blockHeader >>> 1) & 3;
+            int size = blockHeader >>> 3;
+            switch(type) {
+                case RAW_BLOCK:
+                    check(position + size <= limit, "truncated raw block");
+                    check(out + size <= dstLimit, "output overflow");
+                    System.arraycopy(src, position, dst, out, size);
+                    out += size;
+                    position += size;
+                    break;
+                case RLE_BLOCK:
+                    check(position < limit, "truncated rle block");
+                    check(out + size <= dstLimit, "output overflow");
+                    byte value = src[position++];
+                    for(int i = 0; i < size; i++) dst[out++] = value;
+                    break;
+                case COMPRESSED_BLOCK:
+                    check(size <= MAX_BLOCK_SIZE && position + size <= limit, "invalid compressed block");
+                    out = decompressBlock(src, position, position + size, dst, dstOffset, out, dstLimit);
+                    position += size;
+                    break;
+                default:
+                    throw new BlenderFileParsingException("Reserved zstd block type");
+            }
+        } while(!last);
+        if(header.getContentSize() >= 0) {
+            check(header.getContentSize() == out - dstOffset, "frame content size mismatch");
+        }
+        return out - dstOffset;
+    }
+
+    private int decompressBlock(byte[] src, int position, int limit, byte[] dst, int dstStart, int out, int dstLimit) throws IOException {
+        //literals section
+        int literalsType = src[position] & 3;
+        int sizeFormat = (src[position] >>> 2) & 3;
+        int literalsCount;
+        if(literalsType < 2) {
+            int headerSize;
+            if((sizeFormat & 1) == 0) {
+                literalsCount = (src[position] & 0xFF) >>> 3;
+                headerSize = 1;
+            } else if(sizeFormat == 1) {
+                check(position + 2 <= limit, "truncated literals header");
+                literalsCount = ((src[position] & 0xFF) >>> 4) | (src[position + 1] & 0xFF) << 4;
+                headerSize = 2;
+            } else {
+                check(position + 3 <= limit, "truncated literals header");
+                literalsCount = ((src[position] & 0xFF) >>> 4) | (src[position + 1] & 0xFF) << 4 | (src[position + 2] & 0xFF) << 12;
+                headerSize = 3;
+            }
+            check(literalsCount <= MAX_BLOCK_SIZE, "literals too large");
+            position += headerSize;
+            if(literalsType == 0) {
+                check(position + literalsCount <= limit, "truncated raw literals");
+                System.arraycopy(src, position, literals, 0, literalsCount);
+                position += literalsCount;
+            } else {
+                check(position < limit, "truncated rle literals");
+                byte value = src[position++];
+                for(int i = 0; i < literalsCount; i++) literals[i] = value;
+            }
+        } else {
+            int headerSize = sizeFormat < 2 ? 3 : sizeFormat == 2 ? 4 : 5;
+            int fieldBits = sizeFormat < 2 ? 10 : sizeFormat == 2 ? 14 : 18;
+            boolean singleStream = sizeFormat == 0;
+            check(position + headerSize <= limit, "truncated literals header");
+            long header = 0;
+            for(int i = 0; i < headerSize; i++) header |= (src[position + i] & 0xFFL) << (8 * i);
+            int mask = (1 << fieldBits) - 1;
+            literalsCount = (int) ((header >>> 4) & mask);
+            int compressedSize = (int) ((header >>> (4 + fieldBits)) & mask);
+            check(literalsCount <= MAX_BLOCK_SIZE, "literals too large");
+            position += headerSize;
+            check(position + compressedSize <= limit, "truncated compressed literals");
+            int literalsEnd = position + compressedSize;
+            if(literalsType == 2) {
+                huffmanTable = new HuffmanTable();
+                position = huffmanTable.readDescription(src, position, literalsEnd);
+            } else {
+                check(huffmanTable != null, "treeless literals without a previous huffman table");
+            }
+            if(singleStream) {
+                huffmanTable.decodeStream(src, position, literalsEnd, literals, 0, literalsCount);
+            } else {
+                check(position + 6 <= literalsEnd, "truncated jump table");
+                int size1 = (src[position] & 0xFF) | (src[position + 1] & 0xFF) << 8;
+                int size2 = (src[position + 2] & 0xFF) | (src[position + 3] & 0xFF) << 8;
+                int size3 = (src[position + 4] & 0xFF) | (src[position + 5] & 0xFF) << 8;
+                int start1 = position + 6;
+                int start2 = start1 + size1;
+                int start3 = start2 + size2;
+                int start4 = start3 + size3;
+                check(start4 <= literalsEnd, "invalid jump table");
+                int segment = (literalsCount + 3) / 4;
+                check(3 * segment <= literalsCount, "invalid literals count");
+                huffmanTable.decodeStream(src, start1, start2, literals, 0, segment);
+                huffmanTable.decodeStream(src, start2, start3, literals, segment, segment);
+                huffmanTable.decodeStream(src, start3, start4, literals, 2 * segment, segment);
+                huffmanTable.decodeStream(src, start4, literalsEnd, literals, 3 * segment, literalsCount - 3 * segment);
+            }
+            position = literalsEnd;
+        }
+
+        //sequences section
+        check(position < limit, "missing sequences section");
+        int sequenceCount = src[position++] & 0xFF;
+        if(sequenceCount >= 128) {
+            if(sequenceCount < 255) {
+                check(position < limit, "truncated sequences header");
+                sequenceCount = ((sequenceCount - 128) << 8) + (src[position++] & 0xFF);
+            } else {
+                check(position + 2 <= limit, "truncated sequences header");
+                sequenceCount = (src[position] & 0xFF) + ((src[position + 1] & 0xFF) << 8) + 0x7F00;
+                position += 2;
+            }
+        }
+        if(sequenceCount == 0) {
+            check(out + literalsCount <= dstLimit, "output overflow");
+            System.arraycopy(literals, 0, dst, out, literalsCount);
+            return out + literalsCount;
+        }
+        check(position < limit, "truncated sequences header");
+        int modes = src[position++] & 0xFF;
+        check((modes & 3) == 0, "reserved sequence mode bits set");
+        int[] cursor = { position };
+        literalsLengthTable = selectTable(modes >>> 6, literalsLengthTable, LITERALS_LENGTH_PREDEFINED, 35, LITERALS_LENGTH_MAX_LOG, src, cursor, limit);
+        offsetTable = selectTable((modes >>> 4) & 3, offsetTable, OFFSET_PREDEFINED, 31, OFFSET_MAX_LOG, src, cursor, limit);
+        matchLengthTable = selectTable((modes >>> 2) & 3, matchLengthTable, MATCH_LENGTH_PREDEFINED, 52, MATCH_LENGTH_MAX_LOG, src, cursor, limit);
+        position = cursor[0];
+
+        BackwardBitReader bits = new BackwardBitReader(src, position, limit);
+        int literalsLengthState = (int) bits.read(literalsLengthTable.accuracyLog);
+        int offsetState = (int) bits.read(offsetTable.accuracyLog);
+        int matchLengthState = (int) bits.read(matchLengthTable.accuracyLog);
+        int literalsPosition = 0;
+        for(int i = 0; i < sequenceCount; i++) {
+            int offsetCode = offsetTable.symbols[offsetState];
+            int matchLengthCode = matchLengthTable.symbols[matchLengthState];
+            int literalsLengthCode = literalsLengthTable.symbols[literalsLengthState];
+            check(offsetCode <= 31, "invalid offset code");
+            long offsetValue = (1L << offsetCode) + bits.read(offsetCode);
+            int matchLength = MATCH_LENGTH_BASE[matchLengthCode] + (int) bits.read(MATCH_LENGTH_BITS[matchLengthCode]);
+            int literalsLength = LITERALS_LENGTH_BASE[literalsLengthCode] + (int) bits.read(LITERALS_LENGTH_BITS[literalsLengthCode]);
+            if(i + 1 < sequenceCount) {
+                literalsLengthState = literalsLengthTable.nextState(literalsLengthState, bits);
+                matchLengthState = matchLengthTable.nextState(matchLengthState, bits);
+                offsetState = offsetTable.nextState(offsetState, bits);
+            }
+            int offset = computeOffset(offsetValue, literalsLength);
+
+            //execute the sequence
+            check(literalsPosition + literalsLength <= literalsCount, "literals overflow");
+            check(out + literalsLength + matchLength <= dstLimit, "output overflow");
+            System.arraycopy(literals, literalsPosition, dst, out, literalsLength);
+            literalsPosition += literalsLength;
+            out += literalsLength;
+            check(offset > 0 && offset <= out - dstStart, "invalid match offset");
+            int from = out - offset;
+            if(offset >= matchLength) {
+                System.arraycopy(dst, from, dst, out, matchLength);
+                out += matchLength;
+            } else {
+                for(int j = 0; j < matchLength; j++) dst[out++] = dst[from++];
+            }
+        }
+        check(bits.isExhausted(), "sequence bitstream not fully consumed");
+        int rest = literalsCount - literalsPosition;
+        check(out + rest <= dstLimit, "output overflow");
+        System.arraycopy(literals, literalsPosition, dst, out, rest);
+        return out + rest;
+    }
+
+    private int computeOffset(long offsetValue, int literalsLength) throws IOException {
+        int offset;
+        if(offsetValue > 3) {
+            check(offsetValue - 3 <= Integer.MAX_VALUE, "offset too large");
+            offset = (int) (offsetValue - 3);
+            repeatOffsets[2] = repeatOffsets[1];
+            repeatOffsets[1] = repeatOffsets[0];
+            repeatOffsets[0] = offset;
+        } else {
+            int index = (int) offsetValue - 1;
+            if(literalsLength == 0) index++;
+            if(index == 0) {
+                offset = repeatOffsets[0];
+            } else {
+                offset = index < 3 ? repeatOffsets[index] : repeatOffsets[0] - 1;
+                if(index > 1) repeatOffsets[2] = repeatOffsets[1];
+                repeatOffsets[1] = repeatOffsets[0];
+                repeatOffsets[0] = offset;
+            }
+        }
+        return offset;
+    }
+
+    private static FseTable selectTable(int mode, FseTable previous, FseTable predefined, int maxSymbol, int maxLog, byte[] src, int[] cursor, int limit) throws IOException {
+        switch(mode) {
+            case MODE_PREDEFINED:
+                return predefined;
+            case MODE_RLE:
+                check(cursor[0] < limit, "truncated rle table");
+                int symbol = src[cursor[0]++] & 0xFF;
+                check(symbol <= maxSymbol, "invalid rle symbol");
+                return FseTable.rle(symbol);
+            case MODE_FSE:
+                short[] frequencies = new short[maxSymbol + 1];
+                int[] header = FseTable.readDescription(src, cursor[0], limit, frequencies, maxLog);
+                cursor[0] = header[0];
+                return FseTable.build(frequencies, header[1], header[2]);
+            default:
+                check(previous != null, "repeat mode without a previous table");
+                return previous;
+        }
+    }
+
+    static void check(boolean condition, String message) throws IOException {
+        if(!condition) throw new BlenderFileParsingException("Corrupt zstd data: " + message);
+    }
+
+    static int readInt(byte[] src, int offset) {
+        return (src[offset] & 0xFF) | (src[offset + 1] & 0xFF) << 8 | (src[offset + 2] & 0xFF) << 16 | (src[offset + 3] & 0xFF) << 24;
+    }
+
+    static int highestBit(int value) {
+        return 31 - Integer.numberOfLeadingZeros(value);
+    }
+
+    /**
+     * Reads a bitstream written backward: the stream starts at the end of the
+     * data, after the highest set bit of the last byte. Reading past the
+     * beginning of the stream returns zeros.
+     */
+    static class BackwardBitReader {
+
+        private final byte[] data;
+        private final int start;
+        private long bitOffset;
+
+        BackwardBitReader(byte[] data, int start, int limit) throws IOException {
+            check(limit > start, "empty bitstream");
+            int last = data[limit - 1] & 0xFF;
+            check(last != 0, "invalid bitstream end mark");
+            this.data = data;
+            this.start = start;
+            this.bitOffset = (long) (limit - start - 1) * 8 + highestBit(last);
+        }
+
+        long read(int count) {
+            if(count == 0) return 0;
+            bitOffset -= count;
+            long position = bitOffset;
+            int actualCount = count;
+            if(position < 0) {
+                actualCount += position;
+                position = 0;
+                if(actualCount <= 0) return 0;
+            }
+            long value = readLittleEndianBits(data, start, position, actualCount);
+            if(bitOffset < 0) value <<= -bitOffset;
+            return value;
+        }
+
+        boolean isOverflowed() {
+            return bitOffset < 0;
+        }
+
+        boolean isExhausted() {
+            return bitOffset == 0;
+        }
+    }
+
+    /* Reads count (at most 32) bits starting at the given bit position */
+    static long readLittleEndianBits(byte[] data, int start, long bitPosition, int count) {
+        int index = start + (int) (bitPosition >>> 3);
+        int shift = (int) (bitPosition & 7);
+        int bytes = (shift + count + 7) >>> 3;
+        long value = 0;
+        for(int i = 0; i < bytes; i++) value |= (data[index + i] & 0xFFL) << (8 * i);
+        return (value >>> shift) & ((1L << count) - 1);
+    }
+
+    /**
+     * A finite state entropy decoding table
+     */
+    static class FseTable {
+
+        final int accuracyLog;
+        final int[] symbols;
+        final int[] bitCounts;
+        final int[] baselines;
+
+        private FseTable(int accuracyLog) {
+            this.accuracyLog = accuracyLog;
+            int size = 1 << accuracyLog;
+            symbols = new int[size];
+            bitCounts = new int[size];
+            baselines = new int[size];
+        }
+
+        int nextState(int state, BackwardBitReader bits) {
+            return baselines[state] + (int) bits.read(bitCounts[state]);
+        }
+
+        static FseTable rle(int symbol) {
+            FseTable table = new FseTable(0);
+            table.symbols[0] = symbol;
+            return table;
+        }
+
+        /*
+         * Reads a table description. Returns the position after the description,
+         * the number of symbols and the accuracy log.
+         */
+        static int[] readDescription(byte[] src, int position, int limit, short[] frequencies, int maxLog) throws IOException {
+            long bitPosition = 0;
+            int available = (limit - position) * 8;
+            check(available >= 4, "truncated fse table");
+            int accuracyLog = (int) readLittleEndianBits(src, position, 0, 4) + 5;
+            check(accuracyLog <= maxLog, "fse accuracy log too large");
+            bitPosition = 4;
+            int remaining = 1 << accuracyLog;
+            int symbol = 0;
+            while(remaining > 0) {
+                check(symbol < frequencies.length, "too many fse symbols");
+                int bits = highestBit(remaining + 1) + 1;
+                check(bitPosition + bits <= available, "truncated fse table");
+                int value = (int) readLittleEndianBits(src, position, bitPosition, bits);
+                int lowerMask = (1 << (bits - 1)) - 1;
+                int threshold = (1 << bits) - 1 - (remaining + 1);
+                if((value & lowerMask) < threshold) {
+                    value &= lowerMask;
+                    bitPosition += bits - 1;
+                } else {
+                    if(value > lowerMask) value -= threshold;
+                    bitPosition += bits;
+                }
+                int probability = value - 1;
+                remaining -= probability < 0 ? -probability : probability;
+                frequencies[symbol++] = (short) probability;
+                if(probability == 0) {
+                    int repeat;
+                    do {
+                        check(bitPosition + 2 <= available, "truncated fse table");
+                        repeat = (int) readLittleEndianBits(src, position, bitPosition, 2);
+                        bitPosition += 2;
+                        for(int i = 0; i < repeat; i++) {
+                            check(symbol < frequencies.length, "too many fse symbols");
+                            frequencies[symbol++] = 0;
+                        }
+                    } while(repeat == 3);
+                }
+            }
+            check(remaining == 0, "invalid fse distribution");
+            return new int[] { position + (int) ((bitPosition + 7) >>> 3), symbol, accuracyLog };
+        }
+
+        static FseTable build(short[] frequencies, int symbolCount, int accuracyLog) {
+            FseTable table = new FseTable(accuracyLog);
+            int size = 1 << accuracyLog;
+            int[] next = new int[symbolCount];
+            int highThreshold = size;
+            for(int s = 0; s < symbolCount; s++) {
+                if(frequencies[s] == -1) {
+                    table.symbols[--highThreshold] = s;
+                    next[s] = 1;
+                }
+            }
+            int step = (size >>> 1) + (size >>> 3) + 3;
+            int mask = size - 1;
+            int position = 0;
+            for(int s = 0; s < symbolCount; s++) {
+                if(frequencies[s] <= 0) continue;
+                next[s] = frequencies[s];
+                for(int i = 0; i < frequencies[s]; i++) {
+                    table.symbols[position] = s;
+                    do {
+                        position = (position + step) & mask;
+                    } while(position >= highThreshold);
+                }
+            }
+            for(int i = 0; i < size; i++) {
+                int state = next[table.symbols[i]]++;
+                table.bitCounts[i] = accuracyLog - highestBit(state);
+                table.baselines[i] = (state << table.bitCounts[i]) - size;
+            }
+            return table;
+        }
+    }
+
+    /**
+     * A huffman decoding table for literals
+     */
+    static class HuffmanTable {
+
+        private int maxBits;
+        private byte[] symbols;
+        private byte[] bitCounts;
+
+        /* Reads the tree description, returns the position after the description */
+        int readDescription(byte[] src, int position, int limit) throws IOException {
+            check(position < limit, "truncated huffman tree");
+            int header = src[position++] & 0xFF;
+            int[] weights = new int[256];
+            int weightCount;
+            if(header >= 128) {
+                weightCount = header - 127;
+                int bytes = (weightCount + 1) / 2;
+                check(position + bytes <= limit, "truncated huffman weights");
+                for(int i = 0; i < weightCount; i++) {
+                    int b = src[position + i / 2] & 0xFF;
+                    weights[i] = (i & 1) == 0 ? b >>> 4 : b & 0xF;
+                }
+                position += bytes;
+            } else {
+                check(position + header <= limit, "truncated huffman weights");
+                short[] frequencies = new short[256];
+                int[] description = FseTable.readDescription(src, position, position + header, frequencies, HUFFMAN_WEIGHTS_MAX_LOG);
+                FseTable table = FseTable.build(frequencies, description[1], description[2]);
+                BackwardBitReader bits = new BackwardBitReader(src, description[0], position + header);
+                int state1 = (int) bits.read(table.accuracyLog);
+                int state2 = (int) bits.read(table.accuracyLog);
+                weightCount = 0;
+                while(true) {
+                    check(weightCount < 255, "too many huffman weights");
+                    weights[weightCount++] = table.symbols[state1];
+                    state1 = table.nextState(state1, bits);
+                    if(bits.isOverflowed()) {
+                        weights[weightCount++] = table.symbols[state2];
+                        break;
+                    }
+                    check(weightCount < 255, "too many huffman weights");
+                    weights[weightCount++] = table.symbols[state2];
+                    state2 = table.nextState(state2, bits);
+                    if(bits.isOverflowed()) {
+                        weights[weightCount++] = table.symbols[state1];
+                        break;
+                    }
+                }
+                position += header;
+            }
+            build(weights, weightCount);
+            return position;
+        }
+
+        private void build(int[] weights, int weightCount) throws IOException {
+            int total = 0;
+            for(int i = 0; i < weightCount; i++) {
+                check(weights[i] <= HUFFMAN_MAX_BITS, "invalid huffman weight");
+                if(weights[i] > 0) total += 1 << (weights[i] - 1);
+            }
+            check(total > 0, "empty huffman tree");
+            maxBits = highestBit(total) + 1;
+            check(maxBits <= HUFFMAN_MAX_BITS, "huffman tree too deep");
+            int rest = (1 << maxBits) - total;
+            check(Integer.bitCount(rest) == 1, "incomplete huffman tree");
+            weights[weightCount++] = highestBit(rest) + 1;
+            int size = 1 << maxBits;
+            symbols = new byte[size];
+            bitCounts = new byte[size];
+            int position = 0;
+            for(int weight = 1; weight <= maxBits; weight++) {
+                int span = 1 << (weight - 1);
+                for(int symbol = 0; symbol < weightCount; symbol++) {
+                    if(weights[symbol] != weight) continue;
+                    for(int i = 0; i < span; i++) {
+                        symbols[position] = (byte) symbol;
+                        bitCounts[position] = (byte) (maxBits + 1 - weight);
+                        position++;
+                    }
+                }
+            }
+            check(position == size, "invalid huffman tree");
+        }
+
+        void decodeStream(byte[] src, int start, int limit, byte[] dst, int offset, int count) throws IOException {
+            BackwardBitReader bits = new BackwardBitReader(src, start, limit);
+            int mask = (1 << maxBits) - 1;
+            int state = (int) bits.read(maxBits);
+            for(int i = 0; i < count; i++) {
+                dst[offset + i] = symbols[state];
+                int n = bitCounts[state];
+                state = ((state << n) | (int) bits.read(n)) & mask;
+            }
+            check(bits.bitOffset == -maxBits, "huffman stream not fully consumed");
+        }
+    }
+}
@@ -11,6 +11,14 @@
  * BlenderFileParameters param = new BlenderFileParameters(in);
  * BlenderFile blenderFile = new BlenderFile(param);
  * List&lt;BlenderScene&gt; scenes = blenderFile.getScenes();</pre>
+ * If the file is on the local file system it can be memory mapped instead of
+ * being copied in the heap:
+ * <pre> BlenderFile blenderFile = BlenderFile.open(Paths.get(some .blend file));
+ * try {
+ *     List&lt;BlenderScene&gt; scenes = blenderFile.getScenes();
+ * } finally {
+ *     blenderFile.close();
+ * }</pre>
  * Now we scan the list of scenes (probably one) to get the "real" elements.
  * <h1>Extending the parser</h1>
  * Everything starts in the BlenderFile class. The constructor of the instance
@@ -5,6 +5,7 @@ import it.tukano.blenderfile.parserstructures.ConstantValues.BlockCode;
 import it.tukano.blenderfile.parsers.v255.BlenderFileSceneParser;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Factory for block parser instances.
@@ -43,4 +44,19 @@ public class ParserFactory {
     public BlenderFileBlockParser getBlenderFileBlockParser(BlenderFileBlock blenderFileBlock) {
         return parsers.get(blenderFileBlock.getCode());
     }
+
+    /**
+     * Returns the parser suitable to handle the given block, transforming the
+     * objects of the scenes on the given pool.
+     * @param blenderFileBlock the block to parse
+     * @param objectPool the pool of the object transforms, null for the
+     * sequential parser
+     * @return the parser that can handle the transformation of the given block.
+     */
+    public BlenderFileBlockParser getBlenderFileBlockParser(BlenderFileBlock blenderFileBlock, ForkJoinPool objectPool) {
+        if(objectPool != null && BlockCode.SC.equals(blenderFileBlock.getCode())) {
+            return new BlenderFileSceneParser(objectPool);
+        }
+        return getBlenderFileBlockParser(blenderFileBlock);
+    }
 }
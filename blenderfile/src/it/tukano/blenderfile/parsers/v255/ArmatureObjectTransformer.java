@@ -2,7 +2,11 @@ package it.tukano.blenderfile.parsers.v255;
 
 import it.tukano.blenderfile.BlenderFile;
 import it.tukano.blenderfile.parserstructures.BlenderFileBlock;
+import it.tukano.blenderfile.parserstructures.ReadPlan;
+import it.tukano.blenderfile.parserstructures.ReferenceStruct;
+import it.tukano.blenderfile.parserstructures.SDNAField.ElementType;
 import it.tukano.blenderfile.parserstructures.SDNAStructure;
+import it.tukano.blenderfile.parserstructures.StructCursor;
 import it.tukano.blenderfile.elements.BlenderArmature;
 import it.tukano.blenderfile.elements.BlenderMatrix3;
 import it.tukano.blenderfile.elements.BlenderMatrix4;
@@ -17,6 +21,22 @@ import java.util.Map;
 public class ArmatureObjectTransformer implements BlenderObjectTransformer {
     public static class BlenderArmatureList extends LinkedList<BlenderArmature> {}
 
+    /* The numeric fields of Bone read by the parser */
+    private static final ReferenceStruct BONE = new ReferenceStruct("Bone");
+    private static final ReferenceStruct.Field ROLL = BONE.field("roll", ElementType.FLOAT, 1, 0f);
+    private static final ReferenceStruct.Field HEAD = BONE.field("head", ElementType.FLOAT, 3, 0f);
+    private static final ReferenceStruct.Field TAIL = BONE.field("tail", ElementType.FLOAT, 3, 0f);
+    private static final ReferenceStruct.Field BONE_MAT = BONE.field("bone_mat", ElementType.FLOAT, 9, 0f);
+    private static final ReferenceStruct.Field ARM_HEAD = BONE.field("arm_head", ElementType.FLOAT, 3, 0f);
+    private static final ReferenceStruct.Field ARM_TAIL = BONE.field("arm_tail", ElementType.FLOAT, 3, 0f);
+    private static final ReferenceStruct.Field ARM_MAT = BONE.field("arm_mat", ElementType.FLOAT, 16, 0f);
+    private static final ReferenceStruct.Field DIST = BONE.field("dist", ElementType.FLOAT, 1, 0f);
+    private static final ReferenceStruct.Field WEIGHT = BONE.field("weight", ElementType.FLOAT, 1, 0f);
+    private static final ReferenceStruct.Field XWIDTH = BONE.field("xwidth", ElementType.FLOAT, 1, 0f);
+    private static final ReferenceStruct.Field LENGTH = BONE.field("length", ElementType.FLOAT, 1, 0f);
+    private static final ReferenceStruct.Field ZWIDTH = BONE.field("zwidth", ElementType.FLOAT, 1, 0f);
+    private static final ReferenceStruct.Field LAYER = BONE.field("layer", ElementType.INT, 1, 0);
+
     public ArmatureObjectTransformer() {
     }
 
@@ -25,11 +45,11 @@ public class ArmatureObjectTransformer implements BlenderObjectTransformer {
         BlenderFileBlock block = object.getObjectData();
         BlenderArmatureList armatures = new BlenderArmatureList();
         BlenderObjectImpl parsedBlenderObject = object.toBlenderObject(scene);
+        ReadPlan plan = file.getBlenderFileSdna().getPlan(BONE);
         for (SDNAStructure struct : block.listStructures("bArmature")) {
             BlenderArmatureImpl armature = new BlenderArmatureImpl();
 
-            SDNAStructure id = (SDNAStructure) struct.getFieldValue("id", file);
-            String name = (String) id.getFieldValue("name", file);
+            String name = struct.getIdName(file);
             armature.setName(name);
             BlenderFileBlock pointedBlock = struct.getPointedBlock("bonebase", file);
             SDNAStructure boneBase = (SDNAStructure) struct.getFieldValue("bonebase", file);
@@ -41,28 +61,23 @@ public class ArmatureObjectTransformer implements BlenderObjectTransformer {
             for(int i = 0; i < boneBlocks.size(); i++) {
                 BlenderFileBlock blenderFileBlock = boneBlocks.get(i);
                 SDNAStructure boneStruct = blenderFileBlock.listStructures("Bone").get(0);
+                StructCursor boneData = plan.cursor(blenderFileBlock);
+                boneData.next();
                 BlenderFileBlock parentBlock = boneStruct.getPointedBlock("parent", file);
                 String boneName = (String) boneStruct.getFieldValue("name", file);
-                Number roll = (Number) boneStruct.getFieldValue("roll", file);
-                Number[] head = (Number[]) boneStruct.getFieldValue("head", file);
-                Number[] tail = (Number[]) boneStruct.getFieldValue("tail", file);
-                Number[] boneMat = (Number[]) boneStruct.getFieldValue("bone_mat", file);
-                Number flag = (Number) boneStruct.getFieldValue("flag", file);
-                Number[] arm_head = (Number[]) boneStruct.getFieldValue("arm_head", file);
-                Number[] arm_tail = boneStruct.getNumericArrayFieldValue("arm_tail", file);
-                Number[] arm_mat = boneStruct.getNumericArrayFieldValue("arm_mat", file);
-                Number dist = boneStruct.getNumericFieldValue("dist", file);
-                Number weight = boneStruct.getNumericFieldValue("weight", file);
-                Number xwidth = boneStruct.getNumericFieldValue("xwidth", file);
-                Number length = boneStruct.getNumericFieldValue("length", file);
-                Number zwidth = boneStruct.getNumericFieldValue("zwidth", file);
-                Number ease1 = boneStruct.getNumericFieldValue("ease1", file);
-                Number ease2 = boneStruct.getNumericFieldValue("ease2", file);
-                Number rad_head = boneStruct.getNumericFieldValue("rad_head", file);
-                Number rad_tail = boneStruct.getNumericFieldValue("rad_tail", file);
-                Number[] size = boneStruct.getNumericArrayFieldValue("size", file);
-                Number layer = boneStruct.getNumericFieldValue("layer", file);
-                Number segments = boneStruct.getNumericFieldValue("segments", file);
+                Number roll = plan.getFloat(boneData, ROLL);
+                float[] head = plan.getFloats(boneData, HEAD);
+                float[] tail = plan.getFloats(boneData, TAIL);
+                float[] boneMat = plan.getFloats(boneData, BONE_MAT);
+                float[] arm_head = plan.getFloats(boneData, ARM_HEAD);
+                float[] arm_tail = plan.getFloats(boneData, ARM_TAIL);
+                float[] arm_mat = plan.getFloats(boneData, ARM_MAT);
+                Number dist = plan.getFloat(boneData, DIST);
+                Number weight = plan.getFloat(boneData, WEIGHT);
+                Number xwidth = plan.getFloat(boneData, XWIDTH);
+                Number length = plan.getFloat(boneData, LENGTH);
+                Number zwidth = plan.getFloat(boneData, ZWIDTH);
+                Number layer = plan.getInt(boneData, LAYER);
                 SDNAStructure next = null, prev = null;
                 BlenderFileBlock nextBlock = boneStruct.getPointedBlock("next", file);
                 if(nextBlock != null) next = nextBlock.listStructures("Bone").get(0);
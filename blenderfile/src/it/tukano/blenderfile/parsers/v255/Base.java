@@ -4,7 +4,6 @@ import it.tukano.blenderfile.BlenderFile;
 import it.tukano.blenderfile.parserstructures.BlenderFileBlock;
 import it.tukano.blenderfile.parserstructures.BlenderFileSdna;
 import it.tukano.blenderfile.parserstructures.SDNAStructure;
-import it.tukano.blenderfile.io.BinaryDataReader;
 import java.io.IOException;
 
 /**
@@ -13,49 +12,57 @@ import java.io.IOException;
  */
 public class Base {
     
-    private final Number next;
-    private final Number prev;
+    private final long next;
+    private final long prev;
     private final Number lay;
     private final Number selcol;
     private final Number flag;
     private final Number startPosition;
     private final Number sx;
     private final Number sy;
-    private final Number object;
+    private final long object;
     private final BlenderFile file;
 
     public Base(BlenderFile file, Number startPosition) throws IOException {
         BlenderFileSdna sdna = file.getBlenderFileSdna();
         SDNAStructure structure = sdna.getStructureByName("Base", startPosition);
-        next = structure.getPointerFieldValue("next", file);
-        prev = structure.getPointerFieldValue("prev", file);
+        next = structure.getPointer("next", file);
+        prev = structure.getPointer("prev", file);
         lay = (Number) structure.getFieldValue("lay", file);
         selcol = (Number) structure.getFieldValue("selcol", file);
         flag = (Number) structure.getFieldValue("flag", file);
         sx = (Number) structure.getFieldValue("sx", file);
         sy = (Number) structure.getFieldValue("sy", file);
-        object = structure.getPointerFieldValue("object", file);
+        object = structure.getPointer("object", file);
         this.startPosition = startPosition;
         this.file = file;
     }
 
     public Base getNext() throws IOException {
         Base base = null;
-        if(next != null && next.longValue() != 0) {
-            BinaryDataReader reader = file.getBinaryDataReader();
-            Number nextBlockData = file.getBlockByOldMemAddress(next).getPositionOfDataBlockInBlenderFile();
-            base = new Base(file, nextBlockData);
+        if(next != 0) {
+            base = new Base(file, file.resolvePointer(next));
         }
         return base;
     }
 
     public ObjectDataWrapper getObject() throws IOException {
-        ObjectDataWrapper value = null;
-        if(object != null && object.longValue() != 0) {
+        long position = getObjectPosition();
+        return position < 0 ? null : new ObjectDataWrapper(file, position);
+    }
+
+    /**
+     * Returns the position of the Object structure of this base, without
+     * reading it
+     * @return the position of the object data or -1 if the base has no object
+     */
+    public long getObjectPosition() {
+        long position = -1;
+        if(object != 0) {
             BlenderFileBlock objectBlock = file.getBlockByOldMemAddress(object);
             if(objectBlock.getStructuresCount().intValue() != 1) throw new UnsupportedOperationException("1 object expected here");
-            value = new ObjectDataWrapper(file, objectBlock.getPositionOfDataBlockInBlenderFile());
+            position = objectBlock.dataPosition();
         }
-        return value;
+        return position;
     }
 }
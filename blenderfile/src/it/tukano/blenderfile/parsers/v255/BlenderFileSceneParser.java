@@ -3,25 +3,45 @@ package it.tukano.blenderfile.parsers.v255;
 import it.tukano.blenderfile.BlenderFile;
 import it.tukano.blenderfile.Log;
 import it.tukano.blenderfile.parserstructures.BlenderFileBlock;
-import it.tukano.blenderfile.parserstructures.BlenderFileHeader;
 import it.tukano.blenderfile.parserstructures.BlenderFileSdna;
 import it.tukano.blenderfile.parserstructures.SDNAStructure;
 import it.tukano.blenderfile.elements.BlenderObject.ObjectType;
 import it.tukano.blenderfile.elements.UnitSettings;
-import it.tukano.blenderfile.io.BinaryDataReader;
 import it.tukano.blenderfile.parsers.BlenderFileBlockParser;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
- * Parser for a blender scene v. 255.
+ * Parser for a blender scene v. 255. The objects of the scene are transformed
+ * one after the other or, if the parser has a pool, in parallel: each object
+ * is transformed into a staging scene and the staging scenes are merged in
+ * the order of the bases, so the result is the same of the sequential parse.
  * @author pgi
  */
 public class BlenderFileSceneParser implements BlenderFileBlockParser {
     private final Map<ObjectType, BlenderObjectTransformer> transformers;
+    private final ForkJoinPool objectPool;
 
+    /**
+     * Initializes a parser that transforms the objects in the calling thread
+     */
     public BlenderFileSceneParser() {
+        this(null);
+    }
+
+    /**
+     * Initializes a parser that transforms the objects of a scene in parallel
+     * @param objectPool the pool of the object transforms, null to transform
+     * the objects in the calling thread
+     */
+    public BlenderFileSceneParser(ForkJoinPool objectPool) {
+        this.objectPool = objectPool;
         HashMap<ObjectType, BlenderObjectTransformer> map = new HashMap<ObjectType, BlenderObjectTransformer>();
         map.put(ObjectType.CAMERA, new CameraObjectTransformer());
         map.put(ObjectType.MESH, new MeshObjectTransformer());
@@ -33,25 +53,18 @@ public class BlenderFileSceneParser implements BlenderFileBlockParser {
 
     public Object parse(BlenderFile blenderFile, BlenderFileBlock fileBlock) throws IOException {
         BlenderSceneImpl scene = new BlenderSceneImpl();
-        BlenderFileHeader blenderFileHeader = fileBlock.getBlenderFileHeader();
-        BinaryDataReader reader = blenderFileHeader.getReader();
-        Number startOffset = fileBlock.getPositionOfDataBlockInBlenderFile();
-        Number mark = reader.getCurrentPosition();
-        reader.jumpTo(startOffset);
-        parseScene(scene, blenderFile, fileBlock, reader);
-        reader.jumpTo(mark);
+        parseScene(scene, blenderFile, fileBlock);
         return scene;
     }
 
-    private void parseScene(BlenderSceneImpl scene, BlenderFile blenderFile, BlenderFileBlock sceneBlock, BinaryDataReader reader) throws IOException {
-        final BlenderFileHeader header = blenderFile.getBlenderFileHeader();
+    private void parseScene(BlenderSceneImpl scene, BlenderFile blenderFile, BlenderFileBlock sceneBlock) throws IOException {
         final BlenderFileSdna sdna = blenderFile.getBlenderFileSdna();
-        final SDNAStructure sceneStructure = sdna.getStructureByName("Scene", reader.getCurrentPosition());
+        final SDNAStructure sceneStructure = sdna.getStructureByName("Scene", sceneBlock.dataPosition());
 
         //scene id
-        final SDNAStructure sceneIdData = (SDNAStructure) sceneStructure.getFieldValue("id", blenderFile);
-        final String sceneName = (String) sceneIdData.getFieldValue("name", blenderFile);
+        final String sceneName = sceneStructure.getIdName(blenderFile);
         scene.setName(sceneName);
+        scene.setIdNames(blenderFile.getIdNames());
 
         //scene unit settings
         final SDNAStructure unitSettingsData = (SDNAStructure) sceneStructure.getFieldValue("unit", blenderFile);
@@ -76,16 +89,78 @@ public class BlenderFileSceneParser implements BlenderFileBlockParser {
 
         //let's find the objects
         SDNAStructure baseData = (SDNAStructure) sceneStructure.getFieldValue("base", blenderFile);
-        Number first = baseData.getPointerFieldValue("first", blenderFile);
-        Base base = new Base(blenderFile, blenderFile.getBlockByOldMemAddress(first).getPositionOfDataBlockInBlenderFile());
-        do {
-            ObjectDataWrapper object = base.getObject();
-            parseObject(scene, object);
-            base = base.getNext();
-        } while(base != null);
+        long first = baseData.getPointer("first", blenderFile);
+        Base base = new Base(blenderFile, blenderFile.resolvePointer(first));
+        if(objectPool == null) {
+            do {
+                ObjectDataWrapper object = base.getObject();
+                if(object != null) parseObject(scene, object);
+                base = base.getNext();
+            } while(base != null);
+        } else {
+            List<Long> objectPositions = new ArrayList<Long>();
+            do {
+                long position = base.getObjectPosition();
+                if(position >= 0) objectPositions.add(position);
+                base = base.getNext();
+            } while(base != null);
+            parseObjects(scene, blenderFile, objectPositions);
+        }
         linkChildrenToParents(scene);
     }
 
+    /* Transforms the objects at the given positions (the bases without an object are skipped by the caller) on the pool of this parser, then merges them in list order */
+    private void parseObjects(BlenderSceneImpl scene, BlenderFile blenderFile, List<Long> objectPositions) throws IOException {
+        BlenderSceneImpl[] stages = new BlenderSceneImpl[objectPositions.size()];
+        try {
+            objectPool.invoke(new ObjectTransforms(blenderFile, objectPositions, stages, 0, stages.length));
+        } catch(UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+        for (BlenderSceneImpl stage : stages) {
+            scene.merge(stage);
+        }
+    }
+
+    /**
+     * Transforms a range of objects, each one into its own staging scene
+     */
+    private class ObjectTransforms extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final BlenderFile blenderFile;
+        private final List<Long> objectPositions;
+        private final BlenderSceneImpl[] stages;
+        private final int from;
+        private final int to;
+
+        ObjectTransforms(BlenderFile blenderFile, List<Long> objectPositions, BlenderSceneImpl[] stages, int from, int to) {
+            this.blenderFile = blenderFile;
+            this.objectPositions = objectPositions;
+            this.stages = stages;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if(to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new ObjectTransforms(blenderFile, objectPositions, stages, from, middle),
+                        new ObjectTransforms(blenderFile, objectPositions, stages, middle, to));
+            } else if(to > from) {
+                BlenderSceneImpl stage = new BlenderSceneImpl();
+                try {
+                    parseObject(stage, new ObjectDataWrapper(blenderFile, objectPositions.get(from)));
+                } catch(IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+                stages[from] = stage;
+            }
+        }
+    }
+
     private void parseObject(BlenderSceneImpl scene, ObjectDataWrapper object) throws IOException {
         BlenderObjectTransformer transformer = transformers.get(object.getType());
         if(transformer != null) {
@@ -26,7 +26,7 @@ public class BlenderListBase {
         List<BlenderFileBlock> list = new LinkedList<BlenderFileBlock>();
         if(first != null) {
             list.add(first);
-            while(first != last) {
+            while(!first.equals(last)) {//blocks are flyweights, compare by value
                 first = first.getNextBlock(file);
                 list.add(first);
             }
@@ -34,8 +34,7 @@ public class BlenderMaterialImpl implements BlenderMaterial {
     public BlenderMaterialImpl(BlenderFile file, BlenderFileBlock data) throws IOException {
         BlenderFileHeader header = data.getBlenderFileHeader();
         SDNAStructure structure = data.listStructures("Material").get(0);
-        SDNAStructure id = (SDNAStructure) structure.getFieldValue("id", file);
-        name = (String) id.getFieldValue("name", file);
+        name = structure.getIdName(file);
         type = new BlenderMaterial.Type((Number) structure.getFieldValue("material_type", file));
         rgb = new BlenderTuple3(structure.getFieldValue("r", file), structure.getFieldValue("g", file), structure.getFieldValue("b", file));
         specularRgb = new BlenderTuple3(structure.getFieldValue("specr", file), structure.getFieldValue("specg", file), structure.getFieldValue("specb", file));
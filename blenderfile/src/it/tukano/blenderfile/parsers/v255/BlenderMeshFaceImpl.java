@@ -3,7 +3,10 @@ package it.tukano.blenderfile.parsers.v255;
 import it.tukano.blenderfile.BlenderFile;
 import it.tukano.blenderfile.Log;
 import it.tukano.blenderfile.parserstructures.BlenderFileBlock;
-import it.tukano.blenderfile.parserstructures.SDNAStructure;
+import it.tukano.blenderfile.parserstructures.ReadPlan;
+import it.tukano.blenderfile.parserstructures.ReferenceStruct;
+import it.tukano.blenderfile.parserstructures.SDNAField.ElementType;
+import it.tukano.blenderfile.parserstructures.StructCursor;
 import it.tukano.blenderfile.elements.BlenderMeshFace;
 import java.io.IOException;
 import java.util.ArrayList;
@@ -19,19 +22,27 @@ import java.util.logging.Logger;
  */
 public class BlenderMeshFaceImpl implements BlenderMeshFace {
 
+    /* The fields of MFace read by the parser */
+    private static final ReferenceStruct MFACE = new ReferenceStruct("MFace");
+    private static final ReferenceStruct.Field MAT_NR = MFACE.field("mat_nr", ElementType.SHORT, 1, 0);
+    private static final ReferenceStruct.Field V1 = MFACE.field("v1", ElementType.INT, 1, 0);
+    private static final ReferenceStruct.Field V2 = MFACE.field("v2", ElementType.INT, 1, 0);
+    private static final ReferenceStruct.Field V3 = MFACE.field("v3", ElementType.INT, 1, 0);
+    private static final ReferenceStruct.Field V4 = MFACE.field("v4", ElementType.INT, 1, 0);
+
     public static List<BlenderMeshFace> readList(BlenderFile file, BlenderFileBlock block) throws IOException {
         final ArrayList<BlenderMeshFace> faceList = new ArrayList<BlenderMeshFace>();
         if(block != null) {
-            final int count = block.getStructuresCount().intValue();
-            final List<SDNAStructure> mFaceStructures = block.listStructures("MFace");
-            for(int i = 0; i < count; i++) {
-                final SDNAStructure mFaceStructure = mFaceStructures.get(i);
-                final Number materialIndex = (Number) mFaceStructure.getFieldValue("mat_nr", file);
-                final Number edCode = (Number) mFaceStructure.getFieldValue("edcode", file);
-                final Number v1 = (Number) mFaceStructure.getFieldValue("v1", file);
-                final Number v2 = (Number) mFaceStructure.getFieldValue("v2", file);
-                final Number v3 = (Number) mFaceStructure.getFieldValue("v3", file);
-                final Number v4 = (Number) mFaceStructure.getFieldValue("v4", file);
+            final ReadPlan plan = file.getBlenderFileSdna().getPlan(MFACE);
+            final StructCursor mFace = plan.cursor(block);
+            faceList.ensureCapacity(mFace.count());
+            while(mFace.next()) {
+                final int i = mFace.index();
+                final Number materialIndex = plan.getInt(mFace, MAT_NR);
+                final Number v1 = plan.getInt(mFace, V1);
+                final Number v2 = plan.getInt(mFace, V2);
+                final Number v3 = plan.getInt(mFace, V3);
+                final Number v4 = plan.getInt(mFace, V4);
                 BlenderMeshFaceImpl face = new BlenderMeshFaceImpl(i, materialIndex, v1, v2, v3, v4);
                 faceList.add(face);
             }
@@ -3,12 +3,14 @@ package it.tukano.blenderfile.parsers.v255;
 import it.tukano.blenderfile.BlenderFile;
 import it.tukano.blenderfile.Log;
 import it.tukano.blenderfile.parserstructures.BlenderFileBlock;
-import it.tukano.blenderfile.parserstructures.SDNAStructure;
+import it.tukano.blenderfile.parserstructures.ReadPlan;
+import it.tukano.blenderfile.parserstructures.ReferenceStruct;
+import it.tukano.blenderfile.parserstructures.SDNAField.ElementType;
+import it.tukano.blenderfile.parserstructures.StructCursor;
 import it.tukano.blenderfile.elements.BlenderMeshVertex;
 import it.tukano.blenderfile.elements.BlenderTuple3;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.List;
 
 /**
  * Blender mesh vertex
@@ -59,21 +61,33 @@ public class BlenderMeshVertexImpl implements BlenderMeshVertex {
         return String.format("P: %s, N: %s", getPosition(), getNormal());
     }
 
+    /* The fields of MVert read by the parser, mat_nr is missing in the recent versions */
+    private static final ReferenceStruct MVERT = new ReferenceStruct("MVert");
+    private static final ReferenceStruct.Field MAT_NR = MVERT.field("mat_nr", ElementType.SHORT, 1, 0);
+    private static final ReferenceStruct.Field FLAG = MVERT.field("flag", ElementType.CHAR, 1, 0);
+    private static final ReferenceStruct.Field BWEIGHT = MVERT.field("bweight", ElementType.CHAR, 1, 0);
+
     public static ArrayList<BlenderMeshVertex> readList(BlenderFile blenderFile, BlenderFileBlock dataBlock) throws IOException {
         final ArrayList<BlenderMeshVertex> vertices = new ArrayList<BlenderMeshVertex>();
         if(dataBlock != null) {
-            final List<SDNAStructure> mVertStructures = dataBlock.listStructures("MVert");
-            for(int i = 0; i < mVertStructures.size(); i++) {
-                final SDNAStructure mVertStructure = mVertStructures.get(i);
-                final BlenderTuple3 position = new BlenderTuple3(mVertStructure.getFieldValue("co", blenderFile));
-                BlenderTuple3 normals = new BlenderTuple3(mVertStructure.getFieldValue("no", blenderFile));
-                normals = new BlenderTuple3(
-                        normals.getX().shortValue() / (float) Short.MAX_VALUE,
-                        normals.getY().shortValue() / (float) Short.MAX_VALUE,
-                        normals.getZ().shortValue() / (float) Short.MAX_VALUE);
-                final Number materialNumber = (Number) mVertStructure.getFieldValue("mat_nr", blenderFile);
-                final Number flag = (Number) mVertStructure.getFieldValue("flag", blenderFile);
-                final Number bweight = (Number) mVertStructure.getFieldValue("bweight", blenderFile);
+            final ReadPlan plan = blenderFile.getBlenderFileSdna().getPlan(MVERT);
+            final StructCursor mVert = plan.cursor(dataBlock);
+            final float[] co = new float[dataBlock.getColumnLength("MVert", "co")];
+            final short[] no = new short[dataBlock.getColumnLength("MVert", "no")];
+            dataBlock.readFloatColumn("MVert", "co", co);
+            dataBlock.readShortColumn("MVert", "no", no);
+            final boolean hasMaterial = plan.isPresent(MAT_NR);
+            vertices.ensureCapacity(mVert.count());
+            while(mVert.next()) {
+                final int i = mVert.index();
+                final BlenderTuple3 position = new BlenderTuple3(co[3 * i], co[3 * i + 1], co[3 * i + 2]);
+                final BlenderTuple3 normals = new BlenderTuple3(
+                        no[3 * i] / (float) Short.MAX_VALUE,
+                        no[3 * i + 1] / (float) Short.MAX_VALUE,
+                        no[3 * i + 2] / (float) Short.MAX_VALUE);
+                final Number materialNumber = hasMaterial ? (Number) plan.getInt(mVert, MAT_NR) : null;
+                final Number flag = plan.getInt(mVert, FLAG);
+                final Number bweight = plan.getInt(mVert, BWEIGHT);
                 final Number index = i;
                 final BlenderMeshVertexImpl vertex = new BlenderMeshVertexImpl(index, materialNumber, normals, position, bweight, flag);
                 vertices.add(vertex);
@@ -7,6 +7,7 @@ import it.tukano.blenderfile.elements.BlenderScene;
 import it.tukano.blenderfile.elements.BlenderSceneLayer;
 import it.tukano.blenderfile.elements.BlenderTuple3;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
@@ -18,10 +19,12 @@ import java.util.List;
 public class BlenderObjectImpl implements BlenderObject {
 
     private String name;
+    private int nameId = -1;
     private BlenderTuple3 location, rotation, scale;
     private ObjectType type;
     private final List<BlenderObjectData> objectDataList = new LinkedList<BlenderObjectData>();
-    private final List<String> armatureObjectNames = new LinkedList<String>();
+    private final List<String> armatureObjectNames = new ArrayList<String>();
+    private int[] armatureObjectNameIds = new int[0];
     private BlenderSceneLayer layer;
     private ArrayList<String> meshDeformGroupNames;
     private BlenderMatrix4 objectMatrix;
@@ -66,6 +69,15 @@ public class BlenderObjectImpl implements BlenderObject {
         this.name = name;
     }
 
+    /* The id of the name in the IdNameTable of the file, -1 if unknown */
+    synchronized int getNameId() {
+        return nameId;
+    }
+
+    synchronized void setNameId(int nameId) {
+        this.nameId = nameId;
+    }
+
     public synchronized BlenderTuple3 getLocation() {
         return location;
     }
@@ -111,17 +123,24 @@ public class BlenderObjectImpl implements BlenderObject {
         return String.format("Object Type %s [%s] LOC[%s] ROT[%s] SCA[%s]", getType(), getName(), getLocation(), getRotation(), getScale());
     }
 
-    synchronized void addArmatureObjectName(String name) {
+    synchronized void addArmatureObjectName(String name, int nameId) {
         armatureObjectNames.add(name);
+        armatureObjectNameIds = Arrays.copyOf(armatureObjectNameIds, armatureObjectNameIds.length + 1);
+        armatureObjectNameIds[armatureObjectNameIds.length - 1] = nameId;
     }
 
     public List<BlenderObject> getModifiers(ObjectType type) {
-        List<String> arms = getArmatureObjectNames();
+        List<String> arms;
+        int[] armIds;
+        synchronized(this) {
+            arms = new ArrayList<String>(armatureObjectNames);
+            armIds = armatureObjectNameIds;
+        }
         List<BlenderObject> result = new LinkedList<BlenderObject>();
         BlenderScene scene = getLayer().getScene();
         for (BlenderSceneLayer blenderSceneLayer : scene.getLayers()) {
             for (BlenderObject blenderObject : blenderSceneLayer.getBlenderObjects(type)) {
-                if(arms.contains(blenderObject.getName())) {
+                if(isNamed(blenderObject, arms, armIds)) {
                     result.add(blenderObject);
                 }
             }
@@ -129,6 +148,15 @@ public class BlenderObjectImpl implements BlenderObject {
         return result;
     }
 
+    /* Checks if an object has one of the given names, comparing the name ids when both are known */
+    private static boolean isNamed(BlenderObject object, List<String> names, int[] nameIds) {
+        int id = object instanceof BlenderObjectImpl ? ((BlenderObjectImpl) object).getNameId() : -1;
+        for(int i = 0; i < nameIds.length; i++) {
+            if(id >= 0 && nameIds[i] >= 0 ? id == nameIds[i] : names.get(i).equals(object.getName())) return true;
+        }
+        return false;
+    }
+
     synchronized void setDeformGroupNames(ArrayList<String> meshDeformGroupNames) {
         this.meshDeformGroupNames = meshDeformGroupNames;
     }
@@ -3,6 +3,7 @@ package it.tukano.blenderfile.parsers.v255;
 import it.tukano.blenderfile.elements.BlenderObject;
 import it.tukano.blenderfile.elements.BlenderSceneLayer;
 import it.tukano.blenderfile.elements.UnitSettings;
+import it.tukano.blenderfile.parserstructures.IdNameTable;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
@@ -17,6 +18,7 @@ import java.util.Map;
 public class BlenderSceneImpl implements it.tukano.blenderfile.elements.BlenderScene {
     private String name;
     private UnitSettings unitSettings;
+    private IdNameTable idNames;
     private final Map<Number, BlenderSceneLayerImpl> layers = new HashMap<Number, BlenderSceneLayerImpl>();
     private final Map<String, BlenderObjectImpl> uidToObjectMap = new HashMap<String, BlenderObjectImpl>();
 
@@ -28,6 +30,14 @@ public class BlenderSceneImpl implements it.tukano.blenderfile.elements.BlenderS
         this.unitSettings = unitSettings;
     }
 
+    synchronized void setIdNames(IdNameTable idNames) {
+        this.idNames = idNames;
+    }
+
+    synchronized IdNameTable getIdNames() {
+        return idNames;
+    }
+
     synchronized BlenderSceneLayerImpl getOrCreateLayer(Number index) {
         BlenderSceneLayerImpl layer = layers.get(index);
         if(layer == null) layers.put(index, layer = new BlenderSceneLayerImpl(this, index));
@@ -74,9 +84,12 @@ public class BlenderSceneImpl implements it.tukano.blenderfile.elements.BlenderS
     }
 
     public BlenderObject findObjectWithUnqualifiedName(String string) {
+        IdNameTable names = getIdNames();
+        int nameId = names == null ? -1 : names.find("OB", string);
         for (BlenderSceneLayerImpl layer : layers.values()) {
             for (BlenderObject blenderObject : layer.getBlenderObjects()) {
-                if(blenderObject.getUnqualifiedName().equals(string)) {
+                int objectNameId = blenderObject instanceof BlenderObjectImpl ? ((BlenderObjectImpl) blenderObject).getNameId() : -1;
+                if(names != null && objectNameId >= 0 ? objectNameId == nameId : blenderObject.getUnqualifiedName().equals(string)) {
                     return blenderObject;
                 }
             }
@@ -92,6 +105,20 @@ public class BlenderSceneImpl implements it.tukano.blenderfile.elements.BlenderS
         uidToObjectMap.put(o.getName(), o);
     }
 
+    /* Moves the objects transformed into a staging scene to the layers and the object map of this scene */
+    void merge(BlenderSceneImpl stage) {
+        List<BlenderSceneLayer> stagedLayers = stage.getLayers();
+        for (BlenderObjectImpl o : stage.getUidToObjectMap().values()) {
+            registerBlenderObject(o);
+        }
+        for (BlenderSceneLayer stagedLayer : stagedLayers) {
+            BlenderSceneLayerImpl layer = getOrCreateLayer(stagedLayer.getIndex());
+            for (BlenderObject o : stagedLayer.getBlenderObjects()) {
+                layer.add((BlenderObjectImpl) o);
+            }
+        }
+    }
+
     public List<BlenderObject> findSceneRoots() {
         Collection<BlenderSceneLayerImpl> layerElements;
         synchronized (this) {
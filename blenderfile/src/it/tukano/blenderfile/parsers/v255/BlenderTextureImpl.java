@@ -12,7 +12,6 @@ import it.tukano.blenderfile.elements.BlenderTexture;
 import it.tukano.blenderfile.io.BinaryDataReader;
 import java.awt.image.BufferedImage;
 import java.io.IOException;
-import java.nio.ByteBuffer;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
@@ -47,13 +46,12 @@ public class BlenderTextureImpl implements BlenderTexture {
         uvName = (String) data.getFieldValue("uvname", file);
         SDNAStructure texStructure = (SDNAStructure) data.getFieldValue("tex", file);
 
-        SDNAStructure idStructure = (SDNAStructure) texStructure.getFieldValue("id", file);
-        textureName = (String) idStructure.getFieldValue("name", file);
+        textureName = texStructure.getIdName(file);
         String imageName = null;
         SDNAStructure imageStructure = (SDNAStructure) texStructure.getFieldValue("ima", file);
         if(imageStructure != null) {
             System.out.println(imageStructure);
-            String imageId = (String) ((SDNAStructure) texStructure.getFieldValue("id", file)).getFieldValue("name", file);
+            String imageId = texStructure.getIdName(file);
             imageName = (String) imageStructure.getFieldValue("name", file);
             image = new BlenderImageImpl().setImageLocation(imageName);
             SDNAStructure packedFile = (SDNAStructure) imageStructure.getFieldValue("packedfile", file);
@@ -64,11 +62,7 @@ public class BlenderTextureImpl implements BlenderTexture {
                     Log.info("data pack buffer size doesn't match, was", dataBlock.getDataSize().intValue(), "expected", dataSize.intValue());
                 }
                 BinaryDataReader blockData = dataBlock.getSubDataReader();
-                ByteBuffer buffer = ByteBuffer.allocate(dataSize.intValue());
-                blockData.fill(buffer);
-                buffer.flip();
-                blockData.jumpTo(0);
-                image.setImageData(buffer);
+                image.setImageData(blockData.getBuffer(0, (int) Math.min(dataSize.intValue(), blockData.length())));
                 try {
                     BufferedImage javaImage = ImageIO.read(blockData.asInputStream());
                     image.setJavaImage(javaImage);
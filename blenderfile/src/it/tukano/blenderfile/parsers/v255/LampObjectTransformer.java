@@ -29,7 +29,7 @@ public class LampObjectTransformer implements BlenderObjectTransformer {
         final BlenderObjectImpl blenderObject = object.toBlenderObject(scene);
         final Number lampFilePosition = object.getObjectData().getPositionOfDataBlockInBlenderFile();
         final SDNAStructure lampStructure = (SDNAStructure) sdna.getStructureByName("Lamp", lampFilePosition);
-        final String lampName = (String) ((SDNAStructure) lampStructure.getFieldValue("id", blenderFile)).getFieldValue("name", blenderFile);
+        final String lampName = lampStructure.getIdName(blenderFile);
         final LampType lampType = lampTypeForCode((Number) lampStructure.getFieldValue("type", blenderFile));
         final Number colorRed = (Number) lampStructure.getFieldValue("r", blenderFile);
         final Number colorGreen = (Number) lampStructure.getFieldValue("g", blenderFile);
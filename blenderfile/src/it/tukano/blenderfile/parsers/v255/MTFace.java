@@ -1,7 +1,12 @@
 package it.tukano.blenderfile.parsers.v255;
 
 import it.tukano.blenderfile.BlenderFile;
+import it.tukano.blenderfile.parserstructures.BlenderFileBlock;
+import it.tukano.blenderfile.parserstructures.ReadPlan;
+import it.tukano.blenderfile.parserstructures.ReferenceStruct;
+import it.tukano.blenderfile.parserstructures.SDNAField.ElementType;
 import it.tukano.blenderfile.parserstructures.SDNAStructure;
+import it.tukano.blenderfile.parserstructures.StructCursor;
 import it.tukano.blenderfile.elements.BlenderTuple2;
 import java.io.IOException;
 import java.util.ArrayList;
@@ -12,10 +17,24 @@ import java.util.List;
  * @author pgi
  */
 public class MTFace {
-    private final Number[] uv;
+    /* The uv of MTFace, float uv[4][2] */
+    private static final ReferenceStruct MTFACE = new ReferenceStruct("MTFace");
+    private static final ReferenceStruct.Field UV = MTFACE.field("uv", ElementType.FLOAT, 8, 0f);
+
+    private final float[] uv = new float[8];
 
     public MTFace(SDNAStructure structure, BlenderFile file) throws IOException {
-        uv = (Number[]) structure.getFieldValue("uv", file);
+        this(file.getBlenderFileSdna().getPlan(MTFACE), new StructCursor(structure.getLayout(), file.getBlenderFileHeader()).moveTo(structure.startOffset()));
+    }
+
+    private MTFace(ReadPlan plan, StructCursor structure) throws IOException {
+        for(int i = 0; i < uv.length; i++) {
+            uv[i] = plan.getFloat(structure, UV, i);
+        }
+    }
+
+    private MTFace(float[] uvColumn, int offset) {
+        System.arraycopy(uvColumn, offset, uv, 0, uv.length);
     }
 
     public BlenderTuple2 getUV1() {
@@ -34,14 +53,27 @@ public class MTFace {
         return new BlenderTuple2(uv[6], uv[7]);
     }
 
-    private Number get(int c, int r) {
+    private float get(int c, int r) {
         return uv[4 * r + c];
     }
 
     public static List<MTFace> listMtFaces(List<SDNAStructure> mtFaceStructureList, BlenderFile file) throws IOException {
         List<MTFace> faces = new ArrayList<MTFace>(mtFaceStructureList.size());
+        ReadPlan plan = file.getBlenderFileSdna().getPlan(MTFACE);
+        StructCursor cursor = null;
         for (SDNAStructure struct : mtFaceStructureList) {
-            faces.add(new MTFace(struct, file));
+            if(cursor == null || cursor.getLayout() != struct.getLayout()) cursor = new StructCursor(struct.getLayout(), file.getBlenderFileHeader());
+            faces.add(new MTFace(plan, cursor.moveTo(struct.startOffset())));
+        }
+        return faces;
+    }
+
+    public static List<MTFace> listMtFaces(BlenderFileBlock mtFaceBlock) throws IOException {
+        float[] uvColumn = new float[mtFaceBlock.getColumnLength("MTFace", "uv")];
+        int count = mtFaceBlock.readFloatColumn("MTFace", "uv", uvColumn) / 8;
+        List<MTFace> faces = new ArrayList<MTFace>(count);
+        for(int i = 0; i < count; i++) {
+            faces.add(new MTFace(uvColumn, 8 * i));
         }
         return faces;
     }
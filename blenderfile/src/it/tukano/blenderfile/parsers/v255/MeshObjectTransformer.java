@@ -6,7 +6,11 @@ import it.tukano.blenderfile.parserstructures.BlenderFileBlock;
 import it.tukano.blenderfile.parserstructures.BlenderFileHeader;
 import it.tukano.blenderfile.parserstructures.BlenderFileSdna;
 import it.tukano.blenderfile.parserstructures.ConstantValues.CustomDataType;
+import it.tukano.blenderfile.parserstructures.ReadPlan;
+import it.tukano.blenderfile.parserstructures.ReferenceStruct;
+import it.tukano.blenderfile.parserstructures.SDNAField.ElementType;
 import it.tukano.blenderfile.parserstructures.SDNAStructure;
+import it.tukano.blenderfile.parserstructures.StructCursor;
 import it.tukano.blenderfile.elements.BlenderMaterial;
 import it.tukano.blenderfile.elements.BlenderMeshFace;
 import it.tukano.blenderfile.elements.BlenderMeshVertex;
@@ -24,6 +28,11 @@ import java.util.Map;
  */
 public class MeshObjectTransformer implements BlenderObjectTransformer {
 
+    /* The fields of MDeformWeight read by the parser */
+    private static final ReferenceStruct MDEFORMWEIGHT = new ReferenceStruct("MDeformWeight");
+    private static final ReferenceStruct.Field DEF_NR = MDEFORMWEIGHT.field("def_nr", ElementType.INT, 1, 0);
+    private static final ReferenceStruct.Field WEIGHT = MDEFORMWEIGHT.field("weight", ElementType.FLOAT, 1, 0f);
+
     public MeshObjectTransformer() {
     }
 
@@ -37,7 +46,7 @@ public class MeshObjectTransformer implements BlenderObjectTransformer {
         final BlenderTuple3 meshLocation = new BlenderTuple3(meshStructure.getFieldValue("loc", blenderFile));
         final BlenderTuple3 meshRotation = new BlenderTuple3(meshStructure.getFieldValue("rot", blenderFile));
         final BlenderTuple3 meshScale = new BlenderTuple3(meshStructure.getFieldValue("size", blenderFile));
-        final String meshName = (String) ((SDNAStructure) meshStructure.getFieldValue("id", blenderFile)).getFieldValue("name", blenderFile);
+        final String meshName = meshStructure.getIdName(blenderFile);
         final List<BlenderMeshVertex> meshVertices = BlenderMeshVertexImpl.readList(blenderFile, blenderFile.getBlockByOldMemAddress(meshStructure.getPointerFieldValue("mvert", blenderFile)));
         final List<BlenderMeshFace> meshFaces = BlenderMeshFaceImpl.readList(blenderFile,
                 blenderFile.getBlockByOldMemAddress(meshStructure.getPointerFieldValue("mface", blenderFile)));
@@ -54,8 +63,7 @@ public class MeshObjectTransformer implements BlenderObjectTransformer {
                 final Number dataTypeCode = (Number) customDataLayer.getFieldValue("type", blenderFile);
                 final CustomDataType dataType = CustomDataType.valueOf(dataTypeCode);
                 if(CustomDataType.CD_MTFACE.equals(dataType)) {
-                    final List<SDNAStructure> mtFaceStructures = dataBlock.listStructures("MTFace");
-                    final List<MTFace> mtFaces = MTFace.listMtFaces(mtFaceStructures, blenderFile);
+                    final List<MTFace> mtFaces = MTFace.listMtFaces(dataBlock);
                     texCoordSets.put(name, mtFaces);
                     assignTexCoordsToFaces(name, meshFaces, mtFaces);
                 }
@@ -70,17 +78,15 @@ public class MeshObjectTransformer implements BlenderObjectTransformer {
         if(materialBlock != null) {
             BlenderFileHeader header = blenderFile.getBlenderFileHeader();
             BinaryDataReader reader = blenderFile.getBinaryDataReader();
-            reader.jumpTo(materialBlock.getPositionOfDataBlockInBlenderFile());
-            int materialCount = materialBlock.getDataSize().intValue() / header.getPointerSize().intValue();
+            long position = materialBlock.getPositionOfDataBlockInBlenderFile().longValue();
+            int materialCount = materialBlock.getDataSize().intValue() / header.pointerSize();
             materials = new BlenderMaterial[materialCount];
             for(int i = 0; i < materialCount; i++) {
-                Number pointer = header.nextPointer(reader);
-                Number mark = reader.getCurrentPosition();
+                long pointer = header.getPointer(reader, position + (long) i * header.pointerSize());
                 BlenderFileBlock mb = blenderFile.getBlockByOldMemAddress(pointer);
                 if(mb != null) {
                     materials[i] = new BlenderMaterialImpl(blenderFile, mb);
                 }
-                reader.jumpTo(mark);
             }
         }
 
@@ -89,23 +95,22 @@ public class MeshObjectTransformer implements BlenderObjectTransformer {
         final BlenderFileBlock mDeformVert = meshStructure.getPointedBlock("dvert", blenderFile);
         final List<BlenderDeformVertImpl> meshDeformVertList = new ArrayList<BlenderDeformVertImpl>();
         if(mDeformVert != null) {
-            
+            final ReadPlan weightPlan = sdna.getPlan(MDEFORMWEIGHT);
+
             //1 value for each vertex? let's hope so
             List<SDNAStructure> mdlist = mDeformVert.listStructures("MDeformVert");
             for (int i= 0; i < mdlist.size(); i++) {
                 SDNAStructure md = mdlist.get(i);
                 Number vertexIndex = i;
-                Number flag = md.getNumericFieldValue("flag", blenderFile);
-                Number totWeight = md.getNumericFieldValue("totweight", blenderFile);
                 BlenderDeformVertImpl vertexDeformData = new BlenderDeformVertImpl(vertexIndex);
                 //totweight = number of structures in wdwblock
                 BlenderFileBlock dwblock = md.getPointedBlock("dw", blenderFile);
                 if(dwblock != null) {
-                    List<SDNAStructure> weights = dwblock.listStructures("MDeformWeight");
-                    for (SDNAStructure w : weights) {
-                        Number def_nr = w.getNumericFieldValue("def_nr", blenderFile);
-                        Number weight = w.getNumericFieldValue("weight", blenderFile);
-                        String boneName = meshDeformGroupNames.get(def_nr.intValue());
+                    StructCursor w = weightPlan.cursor(dwblock);
+                    while(w.next()) {
+                        int def_nr = weightPlan.getInt(w, DEF_NR);
+                        float weight = weightPlan.getFloat(w, WEIGHT);
+                        String boneName = meshDeformGroupNames.get(def_nr);
                         BlenderDeformWeightImpl bdw = new BlenderDeformWeightImpl(def_nr, weight, boneName);
                         vertexDeformData.add(bdw);
                     }
@@ -172,9 +177,8 @@ public class MeshObjectTransformer implements BlenderObjectTransformer {
         if(armatureObject != null) {
             List<SDNAStructure> objects = armatureObject.listStructures("Object");
             for (SDNAStructure objectStructure : objects) {
-                SDNAStructure id = (SDNAStructure) objectStructure.getFieldValue("id", file);
-                String name = (String) id.getFieldValue("name", file);
-                object.addArmatureObjectName(name);
+                String name = objectStructure.getIdName(file);
+                object.addArmatureObjectName(name, file.getIdNameAt(objectStructure.startOffset()));
             }
         }
     }
@@ -18,6 +18,7 @@ import java.util.List;
 public class ObjectDataWrapper {
     private final ObjectType type;
     private final String name;
+    private final int nameId;
     private final Number dataPointer;
     private final BlenderFile file;
     private final Number materialPointer;
@@ -39,8 +40,8 @@ public class ObjectDataWrapper {
 
     public ObjectDataWrapper(BlenderFile file, Number startPosition) throws IOException {
         SDNAStructure struct = file.getBlenderFileSdna().getStructureByName("Object", startPosition);
-        SDNAStructure id = (SDNAStructure) struct.getFieldValue("id", file);
-        name = (String) id.getFieldValue("name", file);
+        name = struct.getIdName(file);
+        nameId = file.getIdNameAt(struct.startOffset());
         type = ObjectType.fromCode(((Number) struct.getFieldValue("type", file)).intValue());
         dataPointer = struct.getPointerFieldValue("data", file);
         materialPointer = struct.getPointerFieldValue("mat", file);
@@ -54,14 +55,8 @@ public class ObjectDataWrapper {
         quat = new BlenderTuple4(struct.getFieldValue("quat", file));//255
         dquat = new BlenderTuple4(struct.getFieldValue("dquat", file));//255
         lay = (Number) struct.getFieldValue("lay", file);
-        SDNAStructure parentObject = (SDNAStructure) struct.getFieldValue("parent", file);
-        if(parentObject != null) {
-            SDNAStructure parentObjectId = (SDNAStructure) parentObject.getFieldValue("id", file);
-            parentObjectName = (String) parentObjectId.getFieldValue("name", file);
-        } else {
-            parentObjectName = null;
-        }
-        Number[] obmatrix = (Number[]) struct.getFieldValue("obmat", file);
+        parentObjectName = (String) struct.getPathValue("parent.id.name", file);
+        float[] obmatrix = struct.getFloatArray("obmat", file);
         if(obmatrix != null) {
             objectMatrix = new BlenderMatrix4(obmatrix);
         } else {
@@ -92,6 +87,7 @@ public class ObjectDataWrapper {
         BlenderObjectImpl o = new BlenderObjectImpl(parentObjectName);
         o.setObjectMatrix(objectMatrix);
         o.setName(name);
+        o.setNameId(nameId);
         o.setLocation(loc);
         o.setRotation(rot);
         o.setScale(size);
@@ -3,44 +3,68 @@ package it.tukano.blenderfile.parserstructures;
 import it.tukano.blenderfile.BlenderFile;
 import it.tukano.blenderfile.parserstructures.ConstantValues.BlockCode;
 import it.tukano.blenderfile.io.BinaryDataReader;
-import it.tukano.blenderfile.io.MemBufferDataReader;
+import it.tukano.blenderfile.exceptions.BlenderFileParsingException;
 import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.util.ArrayList;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.util.AbstractList;
 import java.util.List;
 
 /**
- * A blender file block
+ * A blender file block. A block is a flyweight over an entry of a BlockTable:
+ * two instances are equal if they are the same block of the same file.
  * @author pgi
  */
 public class BlenderFileBlock {
 
-    private final Number oldMemoryAddress;
-    private final Number dataSize;
-    private final Number sdnaIndex;
-    private final Number structuresCount;
-    private final ConstantValues.BlockCode code;
-    private final BlenderFileHeader blenderFileHeader;
-    private final Number positionInBlenderFile;
-    private final Number positionOfDataBlockInBlenderFile;
+    private final BlockTable table;
+    private final int index;
 
     /*
      * Initializes this block using the header parameters. The reader of the
-     * header is supposed to point at the start offset of a block.
+     * header is supposed to point at the start offset of a block. The reader
+     * is moved to the start offset of the next block.
      */
     public BlenderFileBlock(BlenderFileHeader header) throws IOException {
-        BinaryDataReader reader = header.getReader();
-        positionInBlenderFile = reader.getCurrentPosition();
-        String asciiCode = header.nextAsciiString(4, reader).trim();
-        dataSize = header.nextUnsignedInteger(reader);
-        oldMemoryAddress = header.nextPointer(reader);
-        sdnaIndex = header.nextUnsignedInteger(reader);
-        structuresCount = header.nextUnsignedInteger(reader);
-        code = ConstantValues.BlockCode.valueOf(asciiCode);
-        positionOfDataBlockInBlenderFile = reader.getCurrentPosition();
-        long newOffset = reader.getCurrentPosition().longValue() + dataSize.longValue();
-        reader.jumpTo(newOffset);
-        blenderFileHeader = header;
+        this(header, header.getReader().position());
+        header.getReader().jumpTo(dataPosition() + dataSize());
+    }
+
+    /**
+     * Initializes this block reading its header at the given position. Only
+     * the header is read (16 bytes plus a pointer), the data section is not
+     * touched and the cursor of the reader is not used.
+     * @param header the header of the blender file
+     * @param position the position of the first byte of the block
+     * @throws IOException if a read error occurs
+     */
+    public BlenderFileBlock(BlenderFileHeader header, long position) throws IOException {
+        this.table = new BlockTable(header, 1);
+        this.index = table.read(position);
+    }
+
+    /**
+     * Initializes this block with the values of its header, read elsewhere
+     * (eg from an index sidecar)
+     * @param header the header of the blender file
+     * @param code the code of the block
+     * @param position the position of the first byte of the block
+     * @param oldMemoryAddress the old memory address of the block
+     * @param sdnaIndex the sdna index of the structures of the block
+     * @param structuresCount the number of structures in the block
+     * @param dataSize the size of the data section
+     */
+    public BlenderFileBlock(BlenderFileHeader header, ConstantValues.BlockCode code, long position, long oldMemoryAddress, int sdnaIndex, long structuresCount, long dataSize) {
+        this.table = new BlockTable(header, 1);
+        this.index = table.add(code, position, oldMemoryAddress, sdnaIndex, structuresCount, dataSize);
+    }
+
+    /* A view of an entry of a block table, see BlockTable.get */
+    BlenderFileBlock(BlockTable table, int index) {
+        this.table = table;
+        this.index = index;
     }
 
     /**
@@ -49,7 +73,15 @@ public class BlenderFileBlock {
      * @return the name of the structures contained in this block
      */
     public String getStructuresType(BlenderFile file) {
-        return file.getBlenderFileSdna().getStructureByIndex(sdnaIndex).getType();
+        return file.getBlenderFileSdna().getStructureByIndex(table.sdnaIndex(index)).getType();
+    }
+
+    /**
+     * Returns the index in the sdna of the type of the structures of this block
+     * @return the sdna index of the structure type
+     */
+    public int sdnaIndex() {
+        return table.sdnaIndex(index);
     }
 
     /**
@@ -57,7 +89,15 @@ public class BlenderFileBlock {
      * @return how many structure instances this block contains
      */
     public Number getStructuresCount() {
-        return structuresCount;
+        return table.structuresCount(index);
+    }
+
+    /**
+     * Returns the number of structures that this block contains
+     * @return how many structure instances this block contains
+     */
+    public long structuresCount() {
+        return table.structuresCount(index);
     }
 
     /**
@@ -65,7 +105,15 @@ public class BlenderFileBlock {
      * @return the position of the data section of this block in the blender file
      */
     public Number getPositionOfDataBlockInBlenderFile() {
-        return positionOfDataBlockInBlenderFile;
+        return table.dataPosition(index);
+    }
+
+    /**
+     * Returns the position of the data section of this block in the blender file
+     * @return the offset of the first byte of the data section
+     */
+    public long dataPosition() {
+        return table.dataPosition(index);
     }
 
     /**
@@ -73,7 +121,15 @@ public class BlenderFileBlock {
      * @return the position of this block in the blender file
      */
     public Number getPositionInBlenderFile() {
-        return positionInBlenderFile;
+        return table.position(index);
+    }
+
+    /**
+     * Returns the position of this block in the blender file
+     * @return the offset of the block header
+     */
+    public long position() {
+        return table.position(index);
     }
 
     /**
@@ -81,7 +137,7 @@ public class BlenderFileBlock {
      * @return the header structure of the blender file of this block.
      */
     public BlenderFileHeader getBlenderFileHeader() {
-        return blenderFileHeader;
+        return table.getHeader();
     }
 
     /**
@@ -89,7 +145,16 @@ public class BlenderFileBlock {
      * @return the original memory address of this block.
      */
     public Number getOldMemoryAddress() {
-        return oldMemoryAddress;
+        return table.oldMemoryAddress(index);
+    }
+
+    /**
+     * Returns the original memory address of this block.
+     * @return the original memory address of this block (unsigned for 4 bytes
+     * pointers)
+     */
+    public long oldMemoryAddress() {
+        return table.oldMemoryAddress(index);
     }
 
     /**
@@ -97,7 +162,7 @@ public class BlenderFileBlock {
      * @return the code of this block
      */
     public BlockCode getCode() {
-        return code;
+        return table.code(index);
     }
 
     /**
@@ -105,24 +170,42 @@ public class BlenderFileBlock {
      * @return the size of the data section of this block.
      */
     public Number getDataSize() {
-        return dataSize;
+        return table.dataSize(index);
+    }
+
+    /**
+     * Returns the size of the data section of this block
+     * @return the size of the data section in bytes
+     */
+    public long dataSize() {
+        return table.dataSize(index);
     }
 
     /**
      * Returns a data reader that points to the data section of this block. The
-     * reader is independent from the blender file data reader.
+     * reader is a view of the blender file data: nothing is copied, it has
+     * its own cursor and the byte order of the file. It cannot be read after
+     * the blender file has been closed.
      * @return a reader that reads the data section of this block
      * @throws IOException if a read error occurs.
      */
     public BinaryDataReader getSubDataReader() throws IOException {
-        BinaryDataReader reader = blenderFileHeader.getReader();
-        Number mark = reader.getCurrentPosition();
-        BinaryDataReader dataReader = reader.jumpTo(getPositionOfDataBlockInBlenderFile());
-        ByteBuffer buffer = ByteBuffer.allocate(getDataSize().intValue());
-        dataReader.fill(buffer);
-        buffer.flip();
-        reader.jumpTo(mark);
-        return new MemBufferDataReader(buffer);
+        BlenderFileHeader header = table.getHeader();
+        return header.getReader().slice(dataPosition(), dataSize()).order(header.getByteOrder());
+    }
+
+    /**
+     * Returns the data section of this block as a read only buffer. The buffer
+     * is a view of the file data when the file is held in memory or mapped, a
+     * copy otherwise (eg for files read with positional reads).
+     * @return the data of this block, from 0 to the data size
+     * @throws IOException if a read error occurs or the block is larger than
+     * a buffer
+     */
+    public ByteBuffer getData() throws IOException {
+        long dataSize = dataSize();
+        if(dataSize > Integer.MAX_VALUE) throw new BlenderFileParsingException("Block too large for a single buffer: " + dataSize);
+        return table.getHeader().getReader().getBuffer(dataPosition(), (int) dataSize);
     }
 
     /**
@@ -133,29 +216,282 @@ public class BlenderFileBlock {
     public String toString() {
         StringBuilder buffer = new StringBuilder();
         buffer.append("CODE: ").append(getCode()).append(" STRUCTURES: ").append(getStructuresCount()).append(" DATA SIZE: ").append(getDataSize()).
-                append(" MEM: ").append(oldMemoryAddress).
-                append(" OFF: ").append(this.positionInBlenderFile);
+                append(" MEM: ").append(oldMemoryAddress()).
+                append(" OFF: ").append(position());
         return buffer.toString();
     }
 
+    /**
+     * Checks if the given object is the same block of the same file
+     * @param that the object to compare
+     * @return true if that is a block with the same file header and position
+     */
+    @Override
+    public boolean equals(Object that) {
+        if(this == that) return true;
+        if(!(that instanceof BlenderFileBlock)) return false;
+        BlenderFileBlock block = (BlenderFileBlock) that;
+        return block.table.getHeader() == table.getHeader() && block.position() == position();
+    }
+
+    @Override
+    public int hashCode() {
+        long position = position();
+        return (int) (position ^ (position >>> 32));
+    }
+
     /**
      * This method reads the data section of a file block as a list of structures. The structure
      * type is identified by the given name (eg. MVert to get a list of vertices or Mesh to get a list
-     * of Mesh and so on)
+     * of Mesh and so on). The list is a view: the structures are created when
+     * they are requested. Use cursor to read large blocks without allocating a
+     * structure per element.
      * @param structureTypeName the name of the structure type to get (eg Mesh or MCol)
      * @return a list of the structures contained in the data section of this file block
      * @throws IOException if something goes wrong with the io
      */
     public List<SDNAStructure> listStructures(String structureTypeName) throws IOException {
-        final List<SDNAStructure> list = new ArrayList<SDNAStructure>(getStructuresCount().intValue());
-        final BlenderFileSdna sdna = blenderFileHeader.getSdna();
-        final SDNAStructure type = sdna.getStructureByName(structureTypeName, 0);
-        final Number structureSize = type.getSize();
-        long offset = getPositionOfDataBlockInBlenderFile().longValue();
-        for(int i = 0; i < getStructuresCount().intValue(); i++) {
-            list.add(sdna.getStructureByName(structureTypeName, offset + structureSize.longValue() * i));
+        final int count = (int) Math.min(structuresCount(), Integer.MAX_VALUE);
+        final SDNAStructure type = table.getHeader().getSdna().getStructureByName(structureTypeName, 0L);
+        final long structureSize = type.getSize().longValue();
+        final long start = dataPosition();
+        return new AbstractList<SDNAStructure>() {
+
+            @Override
+            public SDNAStructure get(int index) {
+                if(index < 0 || index >= count) throw new IndexOutOfBoundsException("Structure " + index + " of " + count);
+                return type.setStartingOffset(start + structureSize * index);
+            }
+
+            @Override
+            public int size() {
+                return count;
+            }
+        };
+    }
+
+    /**
+     * Returns a cursor on the structures of the data section of this block.
+     * The cursor is placed before the first structure (see StructCursor.next).
+     * @param structureTypeName the name of the structure type (eg MVert)
+     * @return a cursor on the structures of this block
+     * @throws IOException if the structure type is unknown
+     */
+    public StructCursor cursor(String structureTypeName) throws IOException {
+        StructLayout layout = table.getHeader().getSdna().getLayout(structureTypeName);
+        if(layout == null) throw new BlenderFileParsingException("Unknown structure type " + structureTypeName);
+        return new StructCursor(layout, table.getHeader(), dataPosition(), (int) Math.min(structuresCount(), Integer.MAX_VALUE));
+    }
+
+    /**
+     * Returns the number of values of a column of the structures of this
+     * block: the number of structures times the number of elements of the
+     * field. This is the size of the arrays filled by the read*Column methods.
+     * @param structureType the name of the structure type (eg MVert)
+     * @param fieldName the simple name of the field (eg co)
+     * @return the number of values of the column
+     * @throws IOException if the structure type or the field are unknown
+     */
+    public int getColumnLength(String structureType, String fieldName) throws IOException {
+        FieldLayout field = columnField(structureType, fieldName);
+        return columnRows(field) * field.elementCount();
+    }
+
+    /**
+     * Copies the values of a float field of all the structures of this block
+     * in an array, in structure order (eg x, y, z of each vertex for MVert.co)
+     * @param structureType the name of the structure type (eg MVert)
+     * @param fieldName the simple name of the field (eg co)
+     * @param dest the destination of the values, at least getColumnLength long
+     * @return the number of values copied
+     * @throws IOException if the field is unknown, is not a float field or a
+     * read error occurs
+     */
+    public int readFloatColumn(String structureType, String fieldName, float[] dest) throws IOException {
+        FieldLayout field = columnField(structureType, fieldName, SDNAField.ElementType.FLOAT);
+        int rows = columnRows(field);
+        int elements = field.elementCount();
+        checkColumnDestination(rows * elements, dest.length);
+        copyFloats(getData(), field, rows, FloatBuffer.wrap(dest));
+        return rows * elements;
+    }
+
+    /**
+     * Copies the values of a float field of all the structures of this block
+     * in a buffer, from its position (see readFloatColumn(String, String, float[]))
+     * @param structureType the name of the structure type (eg MVert)
+     * @param fieldName the simple name of the field (eg co)
+     * @param dest the destination of the values, with at least getColumnLength
+     * remaining floats. Its position is moved after the last value.
+     * @return the number of values copied
+     * @throws IOException if the field is unknown, is not a float field or a
+     * read error occurs
+     */
+    public int readFloatColumn(String structureType, String fieldName, FloatBuffer dest) throws IOException {
+        FieldLayout field = columnField(structureType, fieldName, SDNAField.ElementType.FLOAT);
+        int rows = columnRows(field);
+        int elements = field.elementCount();
+        checkColumnDestination(rows * elements, dest.remaining());
+        copyFloats(getData(), field, rows, dest);
+        return rows * elements;
+    }
+
+    /**
+     * Copies the values of a short field of all the structures of this block
+     * in an array, in structure order (eg MVert.no)
+     * @param structureType the name of the structure type
+     * @param fieldName the simple name of the field
+     * @param dest the destination of the values, at least getColumnLength long
+     * @return the number of values copied
+     * @throws IOException if the field is unknown, is not a short field or a
+     * read error occurs
+     */
+    public int readShortColumn(String structureType, String fieldName, short[] dest) throws IOException {
+        FieldLayout field = columnField(structureType, fieldName, SDNAField.ElementType.SHORT);
+        int rows = columnRows(field);
+        int elements = field.elementCount();
+        checkColumnDestination(rows * elements, dest.length);
+        copyShorts(getData(), field, rows, ShortBuffer.wrap(dest));
+        return rows * elements;
+    }
+
+    /**
+     * Copies the values of an int field of all the structures of this block
+     * in an array, in structure order (eg MFace.v1)
+     * @param structureType the name of the structure type
+     * @param fieldName the simple name of the field
+     * @param dest the destination of the values, at least getColumnLength long
+     * @return the number of values copied
+     * @throws IOException if the field is unknown, is not an int field or a
+     * read error occurs
+     */
+    public int readIntColumn(String structureType, String fieldName, int[] dest) throws IOException {
+        FieldLayout field = columnField(structureType, fieldName, SDNAField.ElementType.INT);
+        int rows = columnRows(field);
+        int elements = field.elementCount();
+        checkColumnDestination(rows * elements, dest.length);
+        copyInts(getData(), field, rows, IntBuffer.wrap(dest));
+        return rows * elements;
+    }
+
+    /**
+     * Copies the values of a pointer field of all the structures of this
+     * block in an array, in structure order. 4 bytes pointers are unsigned.
+     * @param structureType the name of the structure type
+     * @param fieldName the simple name of the field
+     * @param dest the destination of the values, at least getColumnLength long
+     * @return the number of values copied
+     * @throws IOException if the field is unknown, is not a pointer or a read
+     * error occurs
+     */
+    public int readPointerColumn(String structureType, String fieldName, long[] dest) throws IOException {
+        FieldLayout field = columnField(structureType, fieldName);
+        if(!field.isPointer()) throw new IllegalArgumentException(field + " is not a pointer");
+        int rows = columnRows(field);
+        int elements = field.elementCount();
+        checkColumnDestination(rows * elements, dest.length);
+        ByteBuffer data = getData();
+        int stride = field.getStructLayout().getSize();
+        int pointerSize = table.getHeader().pointerSize();
+        for(int i = 0, k = 0, base = field.offset(); i < rows; i++, base += stride) {
+            for(int e = 0; e < elements; e++) {
+                int index = base + e * pointerSize;
+                dest[k++] = pointerSize == 4 ? data.getInt(index) & 0xFFFFFFFFL : data.getLong(index);
+            }
+        }
+        return rows * elements;
+    }
+
+    /*
+     * The column copies take the block data once (a view when the reader
+     * holds the file in memory or mapped) and transfer the values through a
+     * typed view of it: the whole column at once when the structures hold
+     * nothing but the field, a run of elements per structure otherwise. A
+     * field that is not aligned to its element size is read value by value.
+     */
+
+    private static void copyFloats(ByteBuffer data, FieldLayout field, int rows, FloatBuffer dest) {
+        int stride = field.getStructLayout().getSize();
+        int elements = field.elementCount();
+        if(field.offset() % 4 != 0 || stride % 4 != 0) {
+            for(int i = 0, base = field.offset(); i < rows; i++, base += stride) {
+                for(int e = 0; e < elements; e++) {
+                    dest.put(data.getFloat(base + e * 4));
+                }
+            }
+            return;
+        }
+        FloatBuffer values = data.asFloatBuffer();
+        int run = stride == elements * 4 ? rows * elements : elements;
+        for(int index = field.offset() / 4, copied = 0; copied < rows * elements; index += Math.max(run, stride / 4), copied += run) {
+            values.limit(index + run).position(index);
+            dest.put(values);
+        }
+    }
+
+    private static void copyShorts(ByteBuffer data, FieldLayout field, int rows, ShortBuffer dest) {
+        int stride = field.getStructLayout().getSize();
+        int elements = field.elementCount();
+        if(field.offset() % 2 != 0 || stride % 2 != 0) {
+            for(int i = 0, base = field.offset(); i < rows; i++, base += stride) {
+                for(int e = 0; e < elements; e++) {
+                    dest.put(data.getShort(base + e * 2));
+                }
+            }
+            return;
+        }
+        ShortBuffer values = data.asShortBuffer();
+        int run = stride == elements * 2 ? rows * elements : elements;
+        for(int index = field.offset() / 2, copied = 0; copied < rows * elements; index += Math.max(run, stride / 2), copied += run) {
+            values.limit(index + run).position(index);
+            dest.put(values);
         }
-        return list;
+    }
+
+    private static void copyInts(ByteBuffer data, FieldLayout field, int rows, IntBuffer dest) {
+        int stride = field.getStructLayout().getSize();
+        int elements = field.elementCount();
+        if(field.offset() % 4 != 0 || stride % 4 != 0) {
+            for(int i = 0, base = field.offset(); i < rows; i++, base += stride) {
+                for(int e = 0; e < elements; e++) {
+                    dest.put(data.getInt(base + e * 4));
+                }
+            }
+            return;
+        }
+        IntBuffer values = data.asIntBuffer();
+        int run = stride == elements * 4 ? rows * elements : elements;
+        for(int index = field.offset() / 4, copied = 0; copied < rows * elements; index += Math.max(run, stride / 4), copied += run) {
+            values.limit(index + run).position(index);
+            dest.put(values);
+        }
+    }
+
+    /* Resolves the field of a column */
+    private FieldLayout columnField(String structureType, String fieldName) throws IOException {
+        StructLayout layout = table.getHeader().getSdna().getLayout(structureType);
+        if(layout == null) throw new BlenderFileParsingException("Unknown structure type " + structureType);
+        return layout.requireField(fieldName);
+    }
+
+    /* Resolves the field of a column and checks the type of its elements */
+    private FieldLayout columnField(String structureType, String fieldName, SDNAField.ElementType type) throws IOException {
+        FieldLayout field = columnField(structureType, fieldName);
+        if(field.isPointer() || field.getElementType() != type) throw new IllegalArgumentException(field + " is not a " + type + " field");
+        return field;
+    }
+
+    /* Returns the number of structures of a column, checked against the data size */
+    private int columnRows(FieldLayout field) throws IOException {
+        long size = field.getStructLayout().getSize();
+        if(structuresCount() * size > dataSize()) {
+            throw new BlenderFileParsingException(structuresCount() + " " + field.getStructLayout().getType() + " don't fit in a block of " + dataSize() + " bytes");
+        }
+        return (int) structuresCount();
+    }
+
+    private static void checkColumnDestination(int length, int available) {
+        if(available < length) throw new IllegalArgumentException("Destination too small: " + available + " for " + length + " values");
     }
 
     /**
@@ -165,7 +501,6 @@ public class BlenderFileBlock {
      * block in the file.
      */
     public BlenderFileBlock getNextBlock(BlenderFile file) {
-        long nextOffset = getPositionOfDataBlockInBlenderFile().longValue() + getDataSize().longValue();
-        return file.getBlockByFilePosition(nextOffset);
+        return file.getBlockByFilePosition(dataPosition() + dataSize());
     }
 }
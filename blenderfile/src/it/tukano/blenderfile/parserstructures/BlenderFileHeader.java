@@ -9,7 +9,11 @@ import java.nio.charset.Charset;
 
 /**
  * The header of a blender file contains info about the byte ordering, pointer size
- * and file version, required by the parser to read the data
+ * and file version, required by the parser to read the data. The byte order is
+ * applied once to the reader of the file, the next* methods are Number wrappers
+ * of the primitive reads of the reader. They move the cursor of the reader and
+ * are only used on the sequential parts of the file (block headers, sdna), the
+ * structure fields are read at their offset (see getPointer).
  * @author pgi
  */
 public class BlenderFileHeader {
@@ -28,8 +32,11 @@ public class BlenderFileHeader {
     /* The version number token of the source file */
     private final String versionNumber;
 
-    /* Used to read pointer values from a binary data reader */
-    private final ByteBuffer pointerBuffer;
+    /* The size of a pointer, 4 or 8 bytes */
+    private final int pointerSize;
+
+    /* The byte order of the file */
+    private final ByteOrder byteOrder;
 
     /* The data reader of the blender file */
     private final BinaryDataReader dataReader;
@@ -48,21 +55,22 @@ public class BlenderFileHeader {
         }
         pointerSizeToken = readAsciiString(1, data);
         if(ConstantValues.POINTER_SIZE_4_BYTES.equals(pointerSizeToken)) {
-            pointerBuffer = ByteBuffer.allocate(4);
+            pointerSize = 4;
         } else if(ConstantValues.POINTER_SIZE_8_BYTES.equals(pointerSizeToken)) {
-            pointerBuffer = ByteBuffer.allocate(8);
+            pointerSize = 8;
         } else {
             throw new BlenderFileParsingException("Unrecognized pointer size token: " + pointerSizeToken);
         }
         endiannessToken = readAsciiString(1, data);
         if(ConstantValues.LITTLE_ENDIAN_TOKEN.equals(endiannessToken)) {
-            pointerBuffer.order(ByteOrder.LITTLE_ENDIAN);
+            byteOrder = ByteOrder.LITTLE_ENDIAN;
         } else if(ConstantValues.BIG_ENDIAN_TOKEN.equals(endiannessToken)) {
-            pointerBuffer.order(ByteOrder.BIG_ENDIAN);
+            byteOrder = ByteOrder.BIG_ENDIAN;
         } else {
             throw new BlenderFileParsingException("Unrecognized endianness token: " + endiannessToken);
         }
         versionNumber = readAsciiString(3, data);
+        data.order(byteOrder);
         dataReader = data;
     }
 
@@ -105,16 +113,40 @@ public class BlenderFileHeader {
      * @throws IOException if a io error occurs
      */
     public Number nextPointer(BinaryDataReader reader) throws IOException {
-        pointerBuffer.clear();
-        reader.fill(pointerBuffer).flip();
-        switch(pointerBuffer.capacity()) {
-            case 4:
-                return pointerBuffer.getInt();
-            case 8:
-                return pointerBuffer.getLong();
-            default:
-                throw new IOException("Unexpected pointer size: " + pointerBuffer.capacity());
-        }
+        return readPointer(reader);
+    }
+
+    /**
+     * Reads the pointer at the current reader position and moves the cursor.
+     * 4 bytes pointers are returned as unsigned values.
+     * @param reader the data source
+     * @return the pointer value
+     * @throws IOException if a io error occurs
+     */
+    public long readPointer(BinaryDataReader reader) throws IOException {
+        return pointerSize == 4 ? reader.readInt() & 0xFFFFFFFFL : reader.readLong();
+    }
+
+    /**
+     * Returns the pointer at the given offset. The cursor of the reader is not
+     * changed. 4 bytes pointers are returned as unsigned values.
+     * @param reader the data source
+     * @param offset the position of the pointer
+     * @return the pointer value
+     * @throws IOException if a io error occurs
+     */
+    public long getPointer(BinaryDataReader reader, long offset) throws IOException {
+        return pointerSize == 4 ? reader.getInt(offset) & 0xFFFFFFFFL : reader.getLong(offset);
+    }
+
+    /**
+     * Checks if a pointer value read from the file is null. Some files (eg
+     * written by 2.57) store 1 instead of 0 for a null pointer.
+     * @param pointer the pointer value
+     * @return true if the pointer is 0 or 1
+     */
+    public static boolean isNullPointer(long pointer) {
+        return pointer == 0 || pointer == 1;
     }
 
     /**
@@ -124,12 +156,7 @@ public class BlenderFileHeader {
      * @throws IOException if a io error occurs
      */
     public Number nextUnsignedInteger(BinaryDataReader reader) throws IOException {
-        ByteBuffer buffer = ByteBuffer.allocate(4);
-        buffer.order(pointerBuffer.order());
-        reader.fill(buffer);
-        buffer.flip();
-        long value = buffer.getInt();
-        return 0x00000000FFFFFFFF & value;
+        return reader.readInt() & 0xFFFFFFFFL;
     }
 
     /**
@@ -148,7 +175,7 @@ public class BlenderFileHeader {
      */
     public String nextZeroedAsciiString(BinaryDataReader reader) throws IOException {
         StringBuilder buffer = new StringBuilder();
-        for(byte b = reader.readByte().byteValue(); b != 0; b = reader.readByte().byteValue()) {
+        for(byte b = reader.readByteValue(); b != 0; b = reader.readByteValue()) {
             buffer.append((char) b);
         }
         return buffer.toString().trim();
@@ -161,12 +188,7 @@ public class BlenderFileHeader {
      * @throws IOException if a io error occurs
      */
     public Number nextUnsignedShort(BinaryDataReader reader) throws IOException {
-        ByteBuffer buffer = ByteBuffer.allocate(2);
-        buffer.order(pointerBuffer.order());
-        reader.fill(buffer);
-        buffer.flip();
-        int value = buffer.getShort();
-        return 0x0000FFFF & value;
+        return reader.readShort() & 0xFFFF;
     }
 
     /**
@@ -174,7 +196,32 @@ public class BlenderFileHeader {
      * @return the size of a pointer (in bytes)
      */
     public Number getPointerSize() {
-        return pointerBuffer.capacity();
+        return pointerSize;
+    }
+
+    /**
+     * Returns the size of a pointer (in bytes)
+     * @return 4 or 8
+     */
+    public int pointerSize() {
+        return pointerSize;
+    }
+
+    /**
+     * Returns the size of the file header, the position of the first block
+     * @return 12 (identifier, pointer size, endianness and version)
+     */
+    public int size() {
+        return 12;
+    }
+
+    /**
+     * Returns the byte order of the file. The reader of the file is set to
+     * this order by the constructor.
+     * @return the byte order of the file
+     */
+    public ByteOrder getByteOrder() {
+        return byteOrder;
     }
 
     /**
@@ -184,11 +231,7 @@ public class BlenderFileHeader {
      * @throws IOException if a io error occurs
      */
     public Number nextShort(BinaryDataReader reader) throws IOException {
-        ByteBuffer buffer = ByteBuffer.allocate(2);
-        buffer.order(pointerBuffer.order());
-        reader.fill(buffer);
-        buffer.flip();
-        return buffer.getShort();
+        return reader.readShort();
     }
 
     /**
@@ -198,11 +241,7 @@ public class BlenderFileHeader {
      * @throws IOException if a io error occurs
      */
     public Number nextInt(BinaryDataReader binaryDataReader) throws IOException {
-        ByteBuffer buffer = ByteBuffer.allocate(4);
-        buffer.order(pointerBuffer.order());
-        binaryDataReader.fill(buffer);
-        buffer.flip();
-        return buffer.getInt();
+        return binaryDataReader.readInt();
     }
 
     /**
@@ -212,11 +251,7 @@ public class BlenderFileHeader {
      * @throws IOException if a io error occurs
      */
     public Number nextFloat(BinaryDataReader binaryDataReader) throws IOException {
-        ByteBuffer buffer = ByteBuffer.allocate(4);
-        buffer.order(pointerBuffer.order());
-        binaryDataReader.fill(buffer);
-        buffer.flip();
-        return buffer.getFloat();
+        return binaryDataReader.readFloat();
     }
 
     /**
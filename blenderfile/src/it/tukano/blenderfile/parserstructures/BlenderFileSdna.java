@@ -11,6 +11,7 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * The parsed sdna data of a blender file
@@ -19,8 +20,11 @@ import java.util.TreeSet;
 public class BlenderFileSdna {
     
     private final SDNAStructure[] sdnaStructures;
-    private final BlenderFileHeader blenderFileHeader;
+    private final String versionNumber;
     private final Map<String, SDNAStructure> sdnaStructureTypes;
+    private final Map<String, Integer> sdnaStructureIndices;
+    private final ConcurrentHashMap<ReferenceStruct, ReadPlan> plans = new ConcurrentHashMap<ReferenceStruct, ReadPlan>();
+    private final ConcurrentHashMap<String, FieldPath> paths = new ConcurrentHashMap<String, FieldPath>();
 
     /**
      * Initializes the sdna reading data from the given block (supposedly of DNA1 type)
@@ -28,10 +32,34 @@ public class BlenderFileSdna {
      * @throws IOException if a io error occurs
      */
     public BlenderFileSdna(BlenderFileBlock block) throws IOException {
+        this(block.getBlenderFileHeader(), parse(block));
+    }
+
+    /**
+     * Initializes the sdna with an already decoded catalog. Only the version
+     * of the header is kept: the sdna can be shared by the files with the same
+     * catalog (see SdnaCache).
+     * @param header the header of the blender file
+     * @param structures the structures of the catalog, in sdna index order
+     */
+    public BlenderFileSdna(BlenderFileHeader header, SDNAStructure[] structures) {
+        HashMap<String, SDNAStructure> structureMap = new HashMap<String, SDNAStructure>();
+        HashMap<String, Integer> indexMap = new HashMap<String, Integer>();
+        for (int i = 0; i < structures.length; i++) {
+            SDNAStructure structure = structures[i];
+            structureMap.put(structure.getType(), structure);
+            indexMap.put(structure.getType(), i);
+        }
+        sdnaStructures = structures.clone();
+        versionNumber = header.getVersionNumber();
+        sdnaStructureTypes = structureMap;
+        sdnaStructureIndices = indexMap;
+    }
+
+    /* Decodes the structures of the catalog stored in the DNA1 block */
+    private static SDNAStructure[] parse(BlenderFileBlock block) throws IOException {
         BlenderFileHeader header = block.getBlenderFileHeader();
-        BinaryDataReader reader = header.getReader();
-        Number markedPosition = reader.getCurrentPosition();
-        reader.jumpTo(block.getPositionOfDataBlockInBlenderFile());
+        BinaryDataReader reader = block.getSubDataReader();//private cursor, the file reader is not touched
         String sdnaIdentifier = header.nextAsciiString(4, reader);
         if(!ConstantValues.SDNA_IDENTIFIER.equals(sdnaIdentifier)) {
             throw new BlenderFileParsingException("Cannot find sdna identifier (expected " + ConstantValues.SDNA_IDENTIFIER + " found " + sdnaIdentifier + ")");
@@ -85,17 +113,9 @@ public class BlenderFileSdna {
                 Number fieldSize = typeLengths[fieldTypeIndex.intValue()];
                 fields[j] = new SDNAField(fieldType, fieldName, fieldSize, header.getPointerSize());
             }
-            structures[i] = new SDNAStructure(structureType, structureSize, fields, header);
-        }
-        HashMap<String, SDNAStructure> structureMap = new HashMap<String, SDNAStructure>();
-        for (int i = 0; i < structures.length; i++) {
-            SDNAStructure structure = structures[i];
-            structureMap.put(structure.getType(), structure);
+            structures[i] = new SDNAStructure(structureType, structureSize, fields);
         }
-        sdnaStructures = structures;
-        blenderFileHeader = header;
-        sdnaStructureTypes = structureMap;
-        reader.jumpTo(markedPosition);
+        return structures;
     }
 
     /**
@@ -106,10 +126,10 @@ public class BlenderFileSdna {
     public String createHtmlDescription() {
         StringBuilder buffer = new StringBuilder();
         buffer.append("<html><title>");
-        buffer.append("blender file sdna version ").append(blenderFileHeader.getVersionNumber());
+        buffer.append("blender file sdna version ").append(versionNumber);
         buffer.append("</title>");
         buffer.append("<body>");
-        buffer.append("<h1>").append("SDNA V.").append(blenderFileHeader.getVersionNumber()).append("</h1>");
+        buffer.append("<h1>").append("SDNA V.").append(versionNumber).append("</h1>");
         int indexLocation = buffer.length();
         for (int i = 0; i < sdnaStructures.length; i++) {
             SDNAStructure structure = sdnaStructures[i];
@@ -157,9 +177,58 @@ public class BlenderFileSdna {
      * at the given start offset.
      */
     public SDNAStructure getStructureByName(String structureName, Number structureStartOffset) {
+        return getStructureByName(structureName, structureStartOffset.longValue());
+    }
+
+    /**
+     * Returns a named structure from the dna catalog, bound to the instance at
+     * the given position.
+     * @param structureName the blender name of the structure to get
+     * @param structureStartOffset the position in the blender file of the first
+     * byte of the structure instance
+     * @return a structure set to read the instance at the given offset
+     */
+    public SDNAStructure getStructureByName(String structureName, long structureStartOffset) {
         return sdnaStructureTypes.get(structureName).setStartingOffset(structureStartOffset);
     }
 
+    /**
+     * Returns the plan that reads the structures of a reference schema from
+     * the files with this sdna. The plan is compiled on first use and shared
+     * by all the files with this sdna.
+     * @param reference the schema expected by a parser
+     * @return the reconciled plan
+     */
+    public ReadPlan getPlan(ReferenceStruct reference) {
+        ReadPlan plan = plans.get(reference);
+        if(plan == null) {
+            ReadPlan compiled = ReadPlan.compile(reference, this);
+            plan = plans.putIfAbsent(reference, compiled);
+            if(plan == null) plan = compiled;
+        }
+        return plan;
+    }
+
+    /**
+     * Returns the compiled accessor of a dotted field path, eg "id.name" of
+     * Object. The path is compiled on first use and shared by all the files
+     * with this sdna.
+     * @param structureName the structure type the path starts from
+     * @param path the simple names of the fields, separated by dots
+     * @return the compiled path
+     * @throws BlenderFileParsingException if the path doesn't denote a field
+     */
+    public FieldPath compilePath(String structureName, String path) throws BlenderFileParsingException {
+        String key = structureName + "." + path;
+        FieldPath compiled = paths.get(key);
+        if(compiled == null) {
+            compiled = FieldPath.compile(this, structureName, path);
+            FieldPath previous = paths.putIfAbsent(key, compiled);
+            if(previous != null) compiled = previous;
+        }
+        return compiled;
+    }
+
     /**
      * Checks if a given name if a recognized structure name for this sdna. Used to
      * distinguish primitive types from structured types.
@@ -178,4 +247,32 @@ public class BlenderFileSdna {
     public SDNAStructure getStructureByIndex(Number sdnaIndex) {
         return sdnaStructures[sdnaIndex.intValue()];
     }
+
+    /**
+     * Returns the compiled layout of a structure type
+     * @param structureName the blender name of the structure
+     * @return the layout of the structure or null if the type is unknown
+     */
+    public StructLayout getLayout(String structureName) {
+        SDNAStructure structure = sdnaStructureTypes.get(structureName);
+        return structure == null ? null : structure.getLayout();
+    }
+
+    /**
+     * Returns the number of structures in the sdna table
+     * @return the number of structure types
+     */
+    public int getStructureCount() {
+        return sdnaStructures.length;
+    }
+
+    /**
+     * Returns the index in the sdna table of a structure type
+     * @param structureName the blender name of the structure
+     * @return the sdna index of the structure or -1 if the type is unknown
+     */
+    public int getStructureIndex(String structureName) {
+        Integer index = sdnaStructureIndices.get(structureName);
+        return index == null ? -1 : index;
+    }
 }
@@ -0,0 +1,296 @@
+package it.tukano.blenderfile.parserstructures;
+
+import it.tukano.blenderfile.parserstructures.ConstantValues.BlockCode;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * The blocks of a blender file in file order (a BlockTable), with the lookup
+ * tables used to dereference pointers. The address table is an open
+ * addressing hash table with linear probing from primitive long keys to the
+ * index of the block: lookups don't box and don't allocate. Positions are
+ * resolved by the block table, that is sorted by position. The blocks are
+ * also grouped by code and by sdna structure type, so that type directed
+ * queries only visit the matching blocks. A copy of the old memory addresses
+ * sorted in ascending order resolves pointers that land inside the data of a
+ * block (eg an element of an array allocated in bulk) with a binary search.
+ * @author pgi
+ */
+public final class BlockIndex {
+
+    private final BlockTable blocks;
+    private final Table addresses;
+    private final Map<BlockCode, int[]> blocksByCode;
+    private final int[][] blocksByStruct;
+    private final long[] rangeStarts;//old memory addresses, ascending
+    private final long[] rangeEnds;//max end address of the ranges up to i
+    private final int[] rangeBlocks;//block index of the range i
+
+    /**
+     * Initializes this index. If two blocks have the same old memory address
+     * the lookup returns the last one.
+     * @param table the blocks of the file, in file order. The table must not
+     * be changed after this call.
+     */
+    public BlockIndex(BlockTable table) {
+        blocks = table;
+        final int blockCount = table.size();
+        addresses = new Table(blockCount);
+        Map<BlockCode, int[]> codeCounts = new HashMap<BlockCode, int[]>();
+        int structCount = 0;
+        for(int i = 0; i < blockCount; i++) {
+            addresses.put(table.oldMemoryAddress(i), i);
+            int[] count = codeCounts.get(table.code(i));
+            if(count == null) codeCounts.put(table.code(i), count = new int[1]);
+            count[0]++;
+            structCount = Math.max(structCount, table.sdnaIndex(i) + 1);
+        }
+        blocksByCode = new HashMap<BlockCode, int[]>();
+        for(Map.Entry<BlockCode, int[]> entry : codeCounts.entrySet()) {
+            blocksByCode.put(entry.getKey(), new int[entry.getValue()[0]]);
+            entry.getValue()[0] = 0;
+        }
+        int[] structCounts = new int[structCount];
+        for(int i = 0; i < blockCount; i++) {
+            if(table.sdnaIndex(i) >= 0) structCounts[table.sdnaIndex(i)]++;
+        }
+        blocksByStruct = new int[structCount][];
+        for(int i = 0; i < structCount; i++) {
+            blocksByStruct[i] = new int[structCounts[i]];
+            structCounts[i] = 0;
+        }
+        for(int i = 0; i < blockCount; i++) {
+            int[] count = codeCounts.get(table.code(i));
+            blocksByCode.get(table.code(i))[count[0]++] = i;
+            int sdnaIndex = table.sdnaIndex(i);
+            if(sdnaIndex >= 0) blocksByStruct[sdnaIndex][structCounts[sdnaIndex]++] = i;
+        }
+        rangeBlocks = sortByAddress(table);
+        rangeStarts = new long[blockCount];
+        rangeEnds = new long[blockCount];
+        long maxEnd = Long.MIN_VALUE;
+        for(int i = 0; i < blockCount; i++) {
+            long start = table.oldMemoryAddress(rangeBlocks[i]);
+            maxEnd = Math.max(maxEnd, start + table.dataSize(rangeBlocks[i]));
+            rangeStarts[i] = start;
+            rangeEnds[i] = maxEnd;
+        }
+    }
+
+    /**
+     * Returns the number of blocks
+     * @return the number of blocks in this index
+     */
+    public int size() {
+        return blocks.size();
+    }
+
+    /**
+     * Returns a block by index
+     * @param index the index of the block, in file order
+     * @return the requested block
+     */
+    public BlenderFileBlock get(int index) {
+        return blocks.get(index);
+    }
+
+    /**
+     * Returns the table of the blocks of this index
+     * @return the block table, in file order
+     */
+    public BlockTable getTable() {
+        return blocks;
+    }
+
+    /**
+     * Returns the index of the block with the given old memory address
+     * @param oldMemAddress the value of a pointer
+     * @return the index of the block or -1 if no block has that address
+     */
+    public int indexOfAddress(long oldMemAddress) {
+        return addresses.get(oldMemAddress);
+    }
+
+    /**
+     * Returns the index of the block at the given file position
+     * @param position the position of the header of the block
+     * @return the index of the block or -1 if no block starts there
+     */
+    public int indexOfPosition(long position) {
+        return blocks.indexOfPosition(position);
+    }
+
+    /**
+     * Returns the block with the given old memory address
+     * @param oldMemAddress the value of a pointer
+     * @return the block or null if no block has that address
+     */
+    public BlenderFileBlock getByAddress(long oldMemAddress) {
+        int index = addresses.get(oldMemAddress);
+        return index < 0 ? null : blocks.get(index);
+    }
+
+    /**
+     * Returns the index of the block whose data contains the address pointed
+     * by a pointer. A pointer to the start of a block resolves as in
+     * indexOfAddress. Otherwise, if the ranges of two blocks overlap, the one
+     * with the greatest start address wins.
+     * @param pointer the value of a pointer, to the start or inside a block
+     * @return the index of the block or -1 if no block contains the address
+     */
+    public int indexOfPointer(long pointer) {
+        int index = addresses.get(pointer);
+        if(index >= 0 || pointer == 0) return index;
+        int low = 0;
+        int high = rangeStarts.length - 1;
+        while(low <= high) {//last range with start <= pointer
+            int mid = (low + high) >>> 1;
+            if(rangeStarts[mid] <= pointer) low = mid + 1;
+            else high = mid - 1;
+        }
+        for(int i = high; i >= 0 && rangeEnds[i] > pointer; i--) {
+            if(pointer < rangeStarts[i] + blocks.dataSize(rangeBlocks[i])) return rangeBlocks[i];
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the block whose data contains the address pointed by a pointer
+     * @param pointer the value of a pointer, to the start or inside a block
+     * @return the block or null if no block contains the address
+     */
+    public BlenderFileBlock getByPointer(long pointer) {
+        int index = indexOfPointer(pointer);
+        return index < 0 ? null : blocks.get(index);
+    }
+
+    /**
+     * Returns the block at the given file position
+     * @param position the position of the header of the block
+     * @return the block or null if no block starts there
+     */
+    public BlenderFileBlock getByPosition(long position) {
+        int index = blocks.indexOfPosition(position);
+        return index < 0 ? null : blocks.get(index);
+    }
+
+    /**
+     * Returns the blocks as an unmodifiable list, in file order
+     * @return a list view of the blocks
+     */
+    public List<BlenderFileBlock> asList() {
+        return new BlockList(null);
+    }
+
+    /**
+     * Returns the blocks with the given code, in file order
+     * @param code the code of the blocks to get
+     * @return an unmodifiable list of the blocks with the code, empty if none
+     */
+    public List<BlenderFileBlock> getBlocksByCode(BlockCode code) {
+        int[] indices = blocksByCode.get(code);
+        return indices == null ? Collections.<BlenderFileBlock>emptyList() : new BlockList(indices);
+    }
+
+    /**
+     * Returns the blocks whose structures have the given sdna index, in file
+     * order
+     * @param sdnaIndex the index of the structure type in the sdna catalog
+     * @return an unmodifiable list of the blocks of that type, empty if none
+     */
+    public List<BlenderFileBlock> getBlocksByStructIndex(int sdnaIndex) {
+        if(sdnaIndex < 0 || sdnaIndex >= blocksByStruct.length) return Collections.<BlenderFileBlock>emptyList();
+        return new BlockList(blocksByStruct[sdnaIndex]);
+    }
+
+    /* Returns the indices of the blocks sorted by old memory address (stable bottom up merge sort, no boxing) */
+    private static int[] sortByAddress(BlockTable table) {
+        int[] order = new int[table.size()];
+        long[] keys = new long[order.length];
+        for(int i = 0; i < order.length; i++) {
+            order[i] = i;
+            keys[i] = table.oldMemoryAddress(i);
+        }
+        int[] buffer = new int[order.length];
+        for(int width = 1; width < order.length; width <<= 1) {
+            for(int low = 0; low < order.length - width; low += width << 1) {
+                int middle = low + width;
+                int high = Math.min(middle + width, order.length);
+                if(keys[order[middle - 1]] <= keys[order[middle]]) continue;//already in order
+                System.arraycopy(order, low, buffer, low, high - low);
+                for(int i = low, left = low, right = middle; i < high; i++) {
+                    if(right >= high || left < middle && keys[buffer[left]] <= keys[buffer[right]]) order[i] = buffer[left++];
+                    else order[i] = buffer[right++];
+                }
+            }
+        }
+        return order;
+    }
+
+    /**
+     * Read only list view of the blocks or of a subset of them
+     */
+    private class BlockList extends AbstractList<BlenderFileBlock> implements RandomAccess {
+
+        private final int[] indices;//null for all the blocks
+
+        BlockList(int[] indices) {
+            this.indices = indices;
+        }
+
+        @Override
+        public BlenderFileBlock get(int index) {
+            return indices == null ? blocks.get(index) : blocks.get(indices[index]);
+        }
+
+        @Override
+        public int size() {
+            return indices == null ? blocks.size() : indices.length;
+        }
+    }
+
+    /**
+     * Open addressing hash table from long keys to non negative int values.
+     */
+    private static final class Table {
+
+        private final long[] keys;
+        private final int[] values;//-1 marks a free slot
+        private final int mask;
+
+        Table(int expectedSize) {
+            int capacity = Integer.highestOneBit(Math.max(4, expectedSize) * 2 - 1) << 1;//load factor <= 0.5
+            keys = new long[capacity];
+            values = new int[capacity];
+            Arrays.fill(values, -1);
+            mask = capacity - 1;
+        }
+
+        void put(long key, int value) {
+            int slot = slot(key);
+            while(values[slot] >= 0 && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            values[slot] = value;
+        }
+
+        int get(long key) {
+            for(int slot = slot(key); values[slot] >= 0; slot = (slot + 1) & mask) {
+                if(keys[slot] == key) return values[slot];
+            }
+            return -1;
+        }
+
+        /* Pointers are aligned and clustered: mix all the bits before masking */
+        private int slot(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32)) & mask;
+        }
+    }
+}
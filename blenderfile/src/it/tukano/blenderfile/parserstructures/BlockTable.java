@@ -0,0 +1,306 @@
+package it.tukano.blenderfile.parserstructures;
+
+import it.tukano.blenderfile.parserstructures.ConstantValues.BlockCode;
+import it.tukano.blenderfile.io.BinaryDataReader;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * The headers of the blocks of a blender file stored as parallel primitive
+ * arrays, one entry per block. A file with hundreds of thousands of blocks
+ * costs a few tens of bytes per block and no object per block: the
+ * BlenderFileBlock instances returned by get are flyweights over an entry.
+ * Block codes are interned per table and stored as indices. The entries are
+ * in file order, a block is found by position with a binary search.
+ * @author pgi
+ */
+public final class BlockTable {
+
+    private static final Charset ASCII = Charset.forName("ascii");
+
+    /**
+     * Reads the headers of the blocks of a file, from the given position to
+     * the ENDB block (excluded). The data sections are skipped.
+     * @param header the header of the blender file
+     * @param position the position of the first block
+     * @return the table of the blocks
+     * @throws IOException if a read error occurs
+     */
+    public static BlockTable scan(BlenderFileHeader header, long position) throws IOException {
+        BlockTable table = new BlockTable(header, 256);
+        for(int index = table.read(position); !BlockCode.ENDB.equals(table.code(index)); index = table.read(position)) {
+            position = table.dataPosition(index) + table.dataSize(index);//hop to the next header, the data is not read
+        }
+        table.length--;//ENDB
+        table.trim();
+        return table;
+    }
+
+    private final BlenderFileHeader header;
+    private final int headerSize;
+    private BlockCode[] codes = new BlockCode[16];
+    private int[] rawCodes = new int[16];
+    private int codeCount;
+    private int[] code;
+    private long[] address;
+    private long[] dataOffset;
+    private int[] size;//unsigned
+    private int[] sdnaIndex;
+    private int[] count;//unsigned
+    private int length;
+
+    /**
+     * Initializes an empty table
+     * @param header the header of the blender file
+     * @param capacity the expected number of blocks
+     */
+    public BlockTable(BlenderFileHeader header, int capacity) {
+        this.header = header;
+        this.headerSize = 16 + header.pointerSize();
+        capacity = Math.max(capacity, 1);
+        code = new int[capacity];
+        address = new long[capacity];
+        dataOffset = new long[capacity];
+        size = new int[capacity];
+        sdnaIndex = new int[capacity];
+        count = new int[capacity];
+    }
+
+    /**
+     * Reads the header of the block at the given position and appends it to
+     * this table. Only the header is read (16 bytes plus a pointer), with the
+     * absolute reads of the reader so that a windowed reader serves adjacent
+     * headers with one read. Blocks must be read in file order.
+     * @param position the position of the first byte of the block
+     * @return the index of the new entry
+     * @throws IOException if a read error occurs
+     */
+    public int read(long position) throws IOException {
+        BinaryDataReader reader = header.getReader();
+        int pointerSize = headerSize - 16;
+        int blockCode = internCode(reader, position);
+        int dataSize = reader.getInt(position + 4);
+        long oldMemoryAddress = pointerSize == 4 ? reader.getInt(position + 8) & 0xFFFFFFFFL : reader.getLong(position + 8);
+        int structureIndex = reader.getInt(position + 8 + pointerSize);
+        int structuresCount = reader.getInt(position + 12 + pointerSize);
+        int entry = grow(position);
+        code[entry] = blockCode;
+        size[entry] = dataSize;
+        address[entry] = oldMemoryAddress;
+        sdnaIndex[entry] = structureIndex;
+        count[entry] = structuresCount;
+        dataOffset[entry] = position + headerSize;
+        return entry;
+    }
+
+    /**
+     * Appends a block read elsewhere (eg from an index sidecar). Blocks must
+     * be added in file order.
+     * @param blockCode the code of the block
+     * @param position the position of the first byte of the block
+     * @param oldMemoryAddress the old memory address of the block
+     * @param structureIndex the sdna index of the structures of the block
+     * @param structuresCount the number of structures in the block
+     * @param dataSize the size of the data section
+     * @return the index of the new entry
+     */
+    public int add(BlockCode blockCode, long position, long oldMemoryAddress, int structureIndex, long structuresCount, long dataSize) {
+        if(dataSize >>> 32 != 0 || structuresCount >>> 32 != 0) {
+            throw new IllegalArgumentException("Block values out of range: " + dataSize + ", " + structuresCount);
+        }
+        int entry = grow(position);
+        code[entry] = internCode(blockCode);
+        size[entry] = (int) dataSize;
+        address[entry] = oldMemoryAddress;
+        sdnaIndex[entry] = structureIndex;
+        count[entry] = (int) structuresCount;
+        dataOffset[entry] = position + headerSize;
+        return entry;
+    }
+
+    /**
+     * Returns the number of blocks in this table
+     * @return the number of entries
+     */
+    public int size() {
+        return length;
+    }
+
+    /**
+     * Returns a flyweight block over an entry of this table
+     * @param index the index of the entry
+     * @return a block that reads its values from this table
+     */
+    public BlenderFileBlock get(int index) {
+        checkIndex(index);
+        return new BlenderFileBlock(this, index);
+    }
+
+    /**
+     * Returns the header of the blender file of the blocks
+     * @return the file header
+     */
+    public BlenderFileHeader getHeader() {
+        return header;
+    }
+
+    /**
+     * Returns the code of a block
+     * @param index the index of the entry
+     * @return the code of the block
+     */
+    public BlockCode code(int index) {
+        checkIndex(index);
+        return codes[code[index]];
+    }
+
+    /**
+     * Returns the position of the header of a block
+     * @param index the index of the entry
+     * @return the position of the block in the file
+     */
+    public long position(int index) {
+        return dataPosition(index) - headerSize;
+    }
+
+    /**
+     * Returns the position of the data section of a block
+     * @param index the index of the entry
+     * @return the position of the first byte of the data
+     */
+    public long dataPosition(int index) {
+        checkIndex(index);
+        return dataOffset[index];
+    }
+
+    /**
+     * Returns the size of the data section of a block
+     * @param index the index of the entry
+     * @return the size of the data in bytes
+     */
+    public long dataSize(int index) {
+        checkIndex(index);
+        return size[index] & 0xFFFFFFFFL;
+    }
+
+    /**
+     * Returns the old memory address of a block
+     * @param index the index of the entry
+     * @return the old memory address (unsigned for 4 bytes pointers)
+     */
+    public long oldMemoryAddress(int index) {
+        checkIndex(index);
+        return address[index];
+    }
+
+    /**
+     * Returns the sdna index of the structures of a block
+     * @param index the index of the entry
+     * @return the index of the structure type in the sdna catalog
+     */
+    public int sdnaIndex(int index) {
+        checkIndex(index);
+        return sdnaIndex[index];
+    }
+
+    /**
+     * Returns the number of structures of a block
+     * @param index the index of the entry
+     * @return the number of structure instances in the block
+     */
+    public long structuresCount(int index) {
+        checkIndex(index);
+        return count[index] & 0xFFFFFFFFL;
+    }
+
+    /**
+     * Returns the index of the block at the given position
+     * @param position the position of the header of a block
+     * @return the index of the block or -1 if no block starts there
+     */
+    public int indexOfPosition(long position) {
+        return indexOfDataPosition(position + headerSize);
+    }
+
+    /**
+     * Returns the index of the block whose data starts at the given position
+     * @param dataPosition the position of the first byte of the data of a block
+     * @return the index of the block or -1 if no block data starts there
+     */
+    public int indexOfDataPosition(long dataPosition) {
+        long key = dataPosition;
+        int low = 0;
+        int high = length - 1;
+        while(low <= high) {
+            int mid = (low + high) >>> 1;
+            if(dataOffset[mid] < key) low = mid + 1;
+            else if(dataOffset[mid] > key) high = mid - 1;
+            else return mid;
+        }
+        return -1;
+    }
+
+    /* Returns the index of a new entry, growing the arrays if needed */
+    private int grow(long position) {
+        if(length > 0 && position + headerSize <= dataOffset[length - 1]) {
+            throw new IllegalArgumentException("Block at " + position + " is not after the block at " + position(length - 1));
+        }
+        if(length == code.length) {
+            resize(code.length + (code.length >> 1) + 1);
+        }
+        return length++;
+    }
+
+    /* Releases the unused capacity */
+    private void trim() {
+        if(length > 0 && length < code.length) resize(length);
+    }
+
+    private void resize(int capacity) {
+        code = Arrays.copyOf(code, capacity);
+        address = Arrays.copyOf(address, capacity);
+        dataOffset = Arrays.copyOf(dataOffset, capacity);
+        size = Arrays.copyOf(size, capacity);
+        sdnaIndex = Arrays.copyOf(sdnaIndex, capacity);
+        count = Arrays.copyOf(count, capacity);
+    }
+
+    /* Returns the index of the code of a block header, the same ascii code gives the same BlockCode */
+    private int internCode(BinaryDataReader reader, long position) throws IOException {
+        int raw = 0;
+        for(int i = 0; i < 4; i++) {
+            raw = raw << 8 | reader.getByte(position + i) & 0xFF;
+        }
+        for(int i = 0; i < codeCount; i++) {
+            if(rawCodes[i] == raw) return i;
+        }
+        return internCode(new byte[] {(byte) (raw >>> 24), (byte) (raw >>> 16), (byte) (raw >>> 8), (byte) raw}, null);
+    }
+
+    private int internCode(BlockCode blockCode) {
+        return internCode(Arrays.copyOf(blockCode.getAsciiCode().getBytes(ASCII), 4), blockCode);
+    }
+
+    private int internCode(byte[] ascii, BlockCode blockCode) {
+        int raw = (ascii[0] & 0xFF) << 24 | (ascii[1] & 0xFF) << 16 | (ascii[2] & 0xFF) << 8 | ascii[3] & 0xFF;
+        for(int i = 0; i < codeCount; i++) {
+            if(rawCodes[i] == raw) return i;
+        }
+        return addCode(raw, blockCode != null ? blockCode : BlockCode.valueOf(new String(ascii, ASCII).trim()));
+    }
+
+    private int addCode(int raw, BlockCode blockCode) {
+        if(codeCount == codes.length) {
+            codes = Arrays.copyOf(codes, codeCount * 2);
+            rawCodes = Arrays.copyOf(rawCodes, codeCount * 2);
+        }
+        codes[codeCount] = blockCode;
+        rawCodes[codeCount] = raw;
+        return codeCount++;
+    }
+
+    private void checkIndex(int index) {
+        if(index < 0 || index >= length) throw new IndexOutOfBoundsException("Block " + index + " of " + length);
+    }
+}
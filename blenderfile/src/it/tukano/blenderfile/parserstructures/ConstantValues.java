@@ -28,6 +28,38 @@ public interface ConstantValues {
      * The name of the short type
      */
     String SHORT_TYPE_NAME = "short";
+    /**
+     * The name of the unsigned char type
+     */
+    String UCHAR_TYPE_NAME = "uchar";
+    /**
+     * The name of the unsigned short type
+     */
+    String USHORT_TYPE_NAME = "ushort";
+    /**
+     * The name of the unsigned int type
+     */
+    String UINT_TYPE_NAME = "uint";
+    /**
+     * The name of the long type (4 bytes in the files of 32 bit builds)
+     */
+    String LONG_TYPE_NAME = "long";
+    /**
+     * The name of the unsigned long type
+     */
+    String ULONG_TYPE_NAME = "ulong";
+    /**
+     * The name of the 64 bit int type
+     */
+    String INT64_TYPE_NAME = "int64_t";
+    /**
+     * The name of the unsigned 64 bit int type
+     */
+    String UINT64_TYPE_NAME = "uint64_t";
+    /**
+     * The name of the double type
+     */
+    String DOUBLE_TYPE_NAME = "double";
     /**
      * The SDNA string
      */
@@ -88,6 +120,26 @@ public interface ConstantValues {
          * The code that identifies a scene in the blender file
          */
         public static final BlockCode SC = new BlockCode("SC");
+        /**
+         * The code of an object block (no dedicated parser)
+         */
+        public static final BlockCode OB = new BlockCode("OB", false);
+        /**
+         * The code of a mesh block (no dedicated parser)
+         */
+        public static final BlockCode ME = new BlockCode("ME", false);
+        /**
+         * The code of a material block (no dedicated parser)
+         */
+        public static final BlockCode MA = new BlockCode("MA", false);
+        /**
+         * The code of an image block (no dedicated parser)
+         */
+        public static final BlockCode IM = new BlockCode("IM", false);
+        /**
+         * The code of a data block (arrays of structures pointed by other blocks)
+         */
+        public static final BlockCode DATA = new BlockCode("DATA", false);
         /**
          * The list of block codes supported by this decoder
          */
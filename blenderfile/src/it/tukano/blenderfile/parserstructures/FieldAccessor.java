@@ -0,0 +1,162 @@
+package it.tukano.blenderfile.parserstructures;
+
+import it.tukano.blenderfile.io.BinaryDataReader;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * The reader of one element of a numeric field, built once when a ReadPlan is
+ * compiled. The accessor is a chain of method handles: the typed read of the
+ * reader that matches the file type of the field (getFloat for a float,
+ * getShort for a short...), the offset of the element in the structure bound
+ * as a constant, and the conversion to the element type of the reference
+ * field. A read is a single invokeExact that returns a primitive, without
+ * boxing and without the switch on the element type of FieldLayout.getInt.
+ * The byte order is the one of the reader, so the same accessor serves all
+ * the files that share the sdna of its layout.
+ * @author pgi
+ */
+final class FieldAccessor {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+    private static final MethodHandle GET_BYTE = reader("getByte", byte.class);
+    private static final MethodHandle GET_SHORT = reader("getShort", short.class);
+    private static final MethodHandle GET_INT = reader("getInt", int.class);
+    private static final MethodHandle GET_LONG = reader("getLong", long.class);
+    private static final MethodHandle GET_FLOAT = reader("getFloat", float.class);
+    private static final MethodHandle GET_DOUBLE = reader("getDouble", double.class);
+    private static final MethodHandle ADD = helper(FieldAccessor.class, "add", long.class, long.class, long.class);
+    private static final MethodHandle UNSIGNED_BYTE = helper(Byte.class, "toUnsignedInt", int.class, byte.class);
+    private static final MethodHandle UNSIGNED_SHORT = helper(Short.class, "toUnsignedInt", int.class, short.class);
+    private static final MethodHandle UNSIGNED_INT = helper(Integer.class, "toUnsignedLong", long.class, int.class);
+    private static final MethodType INT_READ = MethodType.methodType(int.class, BinaryDataReader.class, long.class);
+    private static final MethodType FLOAT_READ = MethodType.methodType(float.class, BinaryDataReader.class, long.class);
+
+    private final MethodHandle intValue;//(BinaryDataReader, long structOffset) int
+    private final MethodHandle floatValue;//(BinaryDataReader, long structOffset) float
+
+    /**
+     * Builds the accessor of an element
+     * @param field the file field
+     * @param element the index of the element, 0 if the field is not an array
+     * @param type the element type of the reference field, the values are
+     * converted to it
+     */
+    FieldAccessor(FieldLayout field, int element, SDNAField.ElementType type) {
+        long offset = field.elementOffset(0, element);
+        MethodHandle at = MethodHandles.insertArguments(ADD, 1, offset);
+        MethodHandle fileInt = MethodHandles.filterArguments(intRead(field.getElementType()), 1, at);
+        MethodHandle fileFloat = MethodHandles.filterArguments(floatRead(field.getElementType()), 1, at);
+        intValue = narrow(fileInt, type);
+        if(type == SDNAField.ElementType.FLOAT || type == SDNAField.ElementType.DOUBLE || type == SDNAField.ElementType.LONG) {
+            floatValue = fileFloat;
+        } else if(type == SDNAField.ElementType.UINT) {
+            floatValue = MethodHandles.filterReturnValue(intValue, UNSIGNED_INT).asType(FLOAT_READ);
+        } else {
+            floatValue = intValue.asType(FLOAT_READ);
+        }
+    }
+
+    /**
+     * Reads the element as an int
+     * @param reader the reader of the file data
+     * @param structOffset the position of the structure instance
+     * @return the value converted to the reference type
+     * @throws IOException if a read error occurs
+     */
+    int getInt(BinaryDataReader reader, long structOffset) throws IOException {
+        try {
+            return (int) intValue.invokeExact(reader, structOffset);
+        } catch(IOException ex) {
+            throw ex;
+        } catch(RuntimeException ex) {
+            throw ex;
+        } catch(Error ex) {
+            throw ex;
+        } catch(Throwable ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * Reads the element as a float
+     * @param reader the reader of the file data
+     * @param structOffset the position of the structure instance
+     * @return the value converted to the reference type
+     * @throws IOException if a read error occurs
+     */
+    float getFloat(BinaryDataReader reader, long structOffset) throws IOException {
+        try {
+            return (float) floatValue.invokeExact(reader, structOffset);
+        } catch(IOException ex) {
+            throw ex;
+        } catch(RuntimeException ex) {
+            throw ex;
+        } catch(Error ex) {
+            throw ex;
+        } catch(Throwable ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /* The read of a file type as an int, as SDNAField.getInt */
+    private static MethodHandle intRead(SDNAField.ElementType type) {
+        switch(type) {
+            case CHAR: return GET_BYTE.asType(INT_READ);
+            case UCHAR: return MethodHandles.filterReturnValue(GET_BYTE, UNSIGNED_BYTE);
+            case SHORT: return GET_SHORT.asType(INT_READ);
+            case USHORT: return MethodHandles.filterReturnValue(GET_SHORT, UNSIGNED_SHORT);
+            case INT: case UINT: return GET_INT;
+            case LONG: return MethodHandles.explicitCastArguments(GET_LONG, INT_READ);
+            case FLOAT: return MethodHandles.explicitCastArguments(GET_FLOAT, INT_READ);
+            case DOUBLE: return MethodHandles.explicitCastArguments(GET_DOUBLE, INT_READ);
+            default: throw new IllegalArgumentException(type + " is not a numeric type");
+        }
+    }
+
+    /* The read of a file type as a float, as SDNAField.getFloat */
+    private static MethodHandle floatRead(SDNAField.ElementType type) {
+        switch(type) {
+            case FLOAT: return GET_FLOAT;
+            case DOUBLE: return MethodHandles.explicitCastArguments(GET_DOUBLE, FLOAT_READ);
+            case UINT: return MethodHandles.filterReturnValue(GET_INT, UNSIGNED_INT).asType(FLOAT_READ);
+            case LONG: return GET_LONG.asType(FLOAT_READ);
+            default: return intRead(type).asType(FLOAT_READ);
+        }
+    }
+
+    /* Narrows an int read to the size and sign of a reference type */
+    private static MethodHandle narrow(MethodHandle read, SDNAField.ElementType type) {
+        MethodType toByte = INT_READ.changeReturnType(byte.class);
+        MethodType toShort = INT_READ.changeReturnType(short.class);
+        switch(type) {
+            case CHAR: return MethodHandles.explicitCastArguments(read, toByte).asType(INT_READ);
+            case UCHAR: return MethodHandles.filterReturnValue(MethodHandles.explicitCastArguments(read, toByte), UNSIGNED_BYTE);
+            case SHORT: return MethodHandles.explicitCastArguments(read, toShort).asType(INT_READ);
+            case USHORT: return MethodHandles.filterReturnValue(MethodHandles.explicitCastArguments(read, toShort), UNSIGNED_SHORT);
+            default: return read;
+        }
+    }
+
+    private static long add(long structOffset, long offset) {
+        return structOffset + offset;
+    }
+
+    private static MethodHandle reader(String name, Class<?> type) {
+        try {
+            return LOOKUP.findVirtual(BinaryDataReader.class, name, MethodType.methodType(type, long.class));
+        } catch(ReflectiveOperationException ex) {
+            throw new ExceptionInInitializerError(ex);
+        }
+    }
+
+    private static MethodHandle helper(Class<?> owner, String name, Class<?> result, Class<?>... parameters) {
+        try {
+            return LOOKUP.findStatic(owner, name, MethodType.methodType(result, parameters));
+        } catch(ReflectiveOperationException ex) {
+            throw new ExceptionInInitializerError(ex);
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package it.tukano.blenderfile.parserstructures;
+
+import it.tukano.blenderfile.BlenderFile;
+import it.tukano.blenderfile.io.BinaryDataReader;
+import java.io.IOException;
+
+/**
+ * The compiled layout of a field of a sdna structure: its offset in the
+ * structure, its size, the type and count of its elements. A FieldLayout is
+ * resolved once by name (see StructLayout.getField) and then used as a handle
+ * by the accessors of SDNAStructure, that don't look up names anymore.
+ * @author pgi
+ */
+public final class FieldLayout {
+
+    private final StructLayout owner;
+    private final SDNAField field;
+    private final int index;
+    private final int offset;
+    private final int size;
+    private final int elementSize;
+    private final int elementCount;
+    private final SDNAField.ElementType elementType;
+    private final boolean pointer;
+
+    FieldLayout(StructLayout owner, SDNAField field, int index, int offset) {
+        this.owner = owner;
+        this.field = field;
+        this.index = index;
+        this.offset = offset;
+        this.size = field.size();
+        this.elementSize = field.getTypeSize().intValue();
+        this.elementCount = field.getArrayComponentCount().intValue();
+        this.elementType = field.getElementType();
+        this.pointer = field.isPointer();
+    }
+
+    /**
+     * Returns the layout of the structure that declares this field
+     * @return the layout of the owner structure
+     */
+    public StructLayout getStructLayout() {
+        return owner;
+    }
+
+    /**
+     * Returns the sdna field described by this layout
+     * @return the field
+     */
+    public SDNAField getField() {
+        return field;
+    }
+
+    /**
+     * Returns the simple name of the field
+     * @return the name of the field (no pointer or array tokens)
+     */
+    public String getName() {
+        return field.getSimpleName();
+    }
+
+    /**
+     * Returns the index of the field in its structure
+     * @return the index of the field
+     */
+    public int index() {
+        return index;
+    }
+
+    /**
+     * Returns the offset of the field from the start of the structure
+     * @return the offset in bytes
+     */
+    public int offset() {
+        return offset;
+    }
+
+    /**
+     * Returns the size of the field, all the array elements included
+     * @return the size in bytes
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the size of an element of the field (of the pointed type for
+     * pointers)
+     * @return the size of an element in bytes
+     */
+    public int elementSize() {
+        return elementSize;
+    }
+
+    /**
+     * Returns the number of elements of the field (1 if it is not an array)
+     * @return the product of the array dimensions
+     */
+    public int elementCount() {
+        return elementCount;
+    }
+
+    /**
+     * Returns the dimensions of the field if it is an array
+     * @return the array dimensions (x[3][4] = {3, 4}), empty if not an array
+     */
+    public int[] getDimensions() {
+        return field.getDimensions();
+    }
+
+    /**
+     * Returns the primitive type of the elements of the field
+     * @return the element type, OTHER for structures
+     */
+    public SDNAField.ElementType getElementType() {
+        return elementType;
+    }
+
+    /**
+     * Checks if the field is a pointer (or an array of pointers)
+     * @return true for pointers
+     */
+    public boolean isPointer() {
+        return pointer;
+    }
+
+    /**
+     * Reads the value of this field at the offset computed by the layout
+     * @param file the blender file with the data
+     * @param structOffset the position of the structure instance
+     * @return the value of the field (see SDNAField.readValueAt)
+     * @throws IOException if a read error occurs
+     */
+    public Object getValue(BlenderFile file, long structOffset) throws IOException {
+        return field.readValueAt(file, structOffset + offset);
+    }
+
+    /**
+     * Reads an element of this field as an int (see SDNAField.getInt)
+     * @param reader the reader of the data
+     * @param structOffset the position of the structure instance
+     * @param element the index of the element, 0 if the field is not an array
+     * @return the value of the element
+     * @throws IOException if a read error occurs
+     */
+    public int getInt(BinaryDataReader reader, long structOffset, int element) throws IOException {
+        return SDNAField.getInt(elementType, reader, elementOffset(structOffset, element), field);
+    }
+
+    /**
+     * Reads an element of this field as a float (see SDNAField.getFloat)
+     * @param reader the reader of the data
+     * @param structOffset the position of the structure instance
+     * @param element the index of the element, 0 if the field is not an array
+     * @return the value of the element
+     * @throws IOException if a read error occurs
+     */
+    public float getFloat(BinaryDataReader reader, long structOffset, int element) throws IOException {
+        return SDNAField.getFloat(elementType, reader, elementOffset(structOffset, element), field);
+    }
+
+    /**
+     * Reads this field as a pointer
+     * @param header the header of the file, for the pointer size
+     * @param reader the reader of the data
+     * @param structOffset the position of the structure instance
+     * @return the value of the pointer, 0 for a null pointer
+     * @throws IOException if a read error occurs
+     */
+    public long getPointer(BlenderFileHeader header, BinaryDataReader reader, long structOffset) throws IOException {
+        if(!pointer) throw new UnsupportedOperationException(owner.getType() + "." + getName() + " is not a pointer");
+        return header.getPointer(reader, structOffset + offset);
+    }
+
+    long elementOffset(long structOffset, int element) {
+        if(pointer || element < 0 || element >= elementCount) {
+            throw new IndexOutOfBoundsException(field.getQualifiedName() + " has no numeric element " + element);
+        }
+        return structOffset + offset + (long) element * elementSize;
+    }
+
+    @Override
+    public String toString() {
+        return owner.getType() + "." + field.getQualifiedName() + " @" + offset;
+    }
+}
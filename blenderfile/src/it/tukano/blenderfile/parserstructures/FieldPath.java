@@ -0,0 +1,171 @@
+package it.tukano.blenderfile.parserstructures;
+
+import it.tukano.blenderfile.BlenderFile;
+import it.tukano.blenderfile.exceptions.BlenderFileParsingException;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A compiled dotted path to a field of nested structures, eg "id.name" of
+ * Object or "parent.id.name" that follows the parent pointer. The offsets of
+ * the embedded structures are summed when the path is compiled and the
+ * pointers to structures are dereferenced when the path is read, so reading
+ * a path allocates nothing but the value of the last field. Paths are
+ * compiled once per sdna (see BlenderFileSdna.compilePath) and can be read
+ * on any instance of the root structure type.
+ * @author pgi
+ */
+public final class FieldPath {
+
+    private final String rootType;
+    private final String path;
+    private final int[] pointerOffsets;//the pointers to follow, relative to the current structure
+    private final int terminalOffset;//the offset of the structure of the last field, after the last pointer
+    private final FieldLayout field;
+
+    private FieldPath(String rootType, String path, int[] pointerOffsets, int terminalOffset, FieldLayout field) {
+        this.rootType = rootType;
+        this.path = path;
+        this.pointerOffsets = pointerOffsets;
+        this.terminalOffset = terminalOffset;
+        this.field = field;
+    }
+
+    /**
+     * Compiles a path
+     * @param sdna the sdna of the structures
+     * @param rootType the name of the structure type the path starts from
+     * @param path the simple names of the fields, separated by dots
+     * @return the compiled path
+     * @throws BlenderFileParsingException if a field doesn't exist or an
+     * intermediate field is not a structure or a pointer to a structure
+     */
+    static FieldPath compile(BlenderFileSdna sdna, String rootType, String path) throws BlenderFileParsingException {
+        StructLayout layout = sdna.getLayout(rootType);
+        if(layout == null) throw new BlenderFileParsingException("Unknown structure type " + rootType);
+        String[] names = path.split("\\.", -1);
+        int[] pointers = new int[names.length];
+        int pointerCount = 0;
+        int offset = 0;
+        for(int i = 0; i < names.length - 1; i++) {
+            FieldLayout step = layout.requireField(names[i]);
+            StructLayout next = sdna.getLayout(step.getField().getType());
+            if(next == null || step.elementCount() != 1) {
+                throw new BlenderFileParsingException(step + " is not a structure or a pointer to a structure in " + rootType + "." + path);
+            }
+            if(step.isPointer()) {
+                pointers[pointerCount++] = offset + step.offset();
+                offset = 0;
+            } else {
+                offset += step.offset();
+            }
+            layout = next;
+        }
+        FieldLayout last = layout.requireField(names[names.length - 1]);
+        return new FieldPath(rootType, path, Arrays.copyOf(pointers, pointerCount), offset, last);
+    }
+
+    /**
+     * Returns the name of the structure type the path starts from
+     * @return the root structure type
+     */
+    public String getRootType() {
+        return rootType;
+    }
+
+    /**
+     * Returns the dotted path
+     * @return the path, without the root type
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * Returns the last field of the path
+     * @return the layout of the field read by this path
+     */
+    public FieldLayout getField() {
+        return field;
+    }
+
+    /**
+     * Follows the path up to the structure that holds the last field
+     * @param file the blender file with the data
+     * @param structOffset the position of an instance of the root type
+     * @return the position of the structure of the last field, -1 if a
+     * pointer of the path is null or doesn't point to a block of the file
+     * @throws IOException if a read error occurs
+     */
+    public long resolve(BlenderFile file, long structOffset) throws IOException {
+        long base = structOffset;
+        for(int i = 0; i < pointerOffsets.length; i++) {
+            long pointer = file.getBlenderFileHeader().getPointer(file.getBinaryDataReader(), base + pointerOffsets[i]);
+            if(BlenderFileHeader.isNullPointer(pointer)) return -1;
+            base = file.resolvePointer(pointer);
+            if(base < 0) return -1;
+        }
+        return base + terminalOffset;
+    }
+
+    /**
+     * Reads the value of the last field (see SDNAField.readValueAt)
+     * @param file the blender file with the data
+     * @param structOffset the position of an instance of the root type
+     * @return the value of the field, null if a pointer of the path is null
+     * @throws IOException if a read error occurs
+     */
+    public Object getValue(BlenderFile file, long structOffset) throws IOException {
+        long position = resolve(file, structOffset);
+        return position < 0 ? null : field.getValue(file, position);
+    }
+
+    /**
+     * Reads an element of the last field as an int
+     * @param file the blender file with the data
+     * @param structOffset the position of an instance of the root type
+     * @param element the index of the element, 0 if the field is not an array
+     * @return the value of the element
+     * @throws IOException if a read error occurs
+     * @throws BlenderFileParsingException if a pointer of the path is null
+     */
+    public int getInt(BlenderFile file, long structOffset, int element) throws IOException {
+        return field.getInt(file.getBinaryDataReader(), require(file, structOffset), element);
+    }
+
+    /**
+     * Reads an element of the last field as a float
+     * @param file the blender file with the data
+     * @param structOffset the position of an instance of the root type
+     * @param element the index of the element, 0 if the field is not an array
+     * @return the value of the element
+     * @throws IOException if a read error occurs
+     * @throws BlenderFileParsingException if a pointer of the path is null
+     */
+    public float getFloat(BlenderFile file, long structOffset, int element) throws IOException {
+        return field.getFloat(file.getBinaryDataReader(), require(file, structOffset), element);
+    }
+
+    /**
+     * Reads the last field as a pointer
+     * @param file the blender file with the data
+     * @param structOffset the position of an instance of the root type
+     * @return the value of the pointer, 0 for a null pointer
+     * @throws IOException if a read error occurs
+     * @throws BlenderFileParsingException if a pointer of the path is null
+     */
+    public long getPointer(BlenderFile file, long structOffset) throws IOException {
+        return field.getPointer(file.getBlenderFileHeader(), file.getBinaryDataReader(), require(file, structOffset));
+    }
+
+    private long require(BlenderFile file, long structOffset) throws IOException {
+        long position = resolve(file, structOffset);
+        if(position < 0) throw new BlenderFileParsingException("Null pointer in " + this + " at " + structOffset);
+        return position;
+    }
+
+    @Override
+    public String toString() {
+        return rootType + "." + path;
+    }
+}
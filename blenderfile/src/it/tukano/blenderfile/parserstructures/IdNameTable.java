@@ -0,0 +1,248 @@
+package it.tukano.blenderfile.parserstructures;
+
+import it.tukano.blenderfile.io.BinaryDataReader;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * The interned names of the ID blocks of a file (the blocks whose structure
+ * starts with an ID, eg Object, Mesh, Material). Each distinct name is stored
+ * once as ascii bytes and identified by an int, the same name in two blocks
+ * gives the same id. Names are compared and looked up on the bytes, the
+ * String of a name is decoded when it is first asked for and then shared.
+ * The names are the ID.name values as read by SDNAField (up to the first zero,
+ * trimmed), with the two letters of the block code (eg "OBCube").
+ * @author pgi
+ */
+public final class IdNameTable {
+
+    private static final Charset ASCII = Charset.forName("ascii");
+    private static final IdNameTable EMPTY = new IdNameTable(new int[0]);
+
+    private final int[] blockNames;//name id of each block, -1 for the blocks without an ID
+    private byte[] pool = new byte[256];
+    private int poolLength;
+    private int[] starts = new int[16];
+    private int[] lengths = new int[16];
+    private int count;
+    private int[] slots = new int[32];//open addressing table of name ids + 1, 0 for empty slots
+    private volatile String[] strings;
+
+    private IdNameTable(int[] blockNames) {
+        this.blockNames = blockNames;
+    }
+
+    /**
+     * Reads the names of the ID blocks of a file
+     * @param table the blocks of the file
+     * @param sdna the sdna of the file
+     * @param reader the reader of the file data
+     * @return the name table, empty if the sdna has no ID structure
+     * @throws IOException if a read error occurs
+     */
+    public static IdNameTable build(BlockTable table, BlenderFileSdna sdna, BinaryDataReader reader) throws IOException {
+        StructLayout id = sdna.getLayout("ID");
+        FieldLayout name = id == null ? null : id.getField("name");
+        if(name == null || name.isPointer() || name.getElementType() != SDNAField.ElementType.CHAR) return EMPTY;
+        int[] nameOffsets = new int[sdna.getStructureCount()];//offset of ID.name in each structure type, -1 if not an ID block
+        for(int i = 0; i < nameOffsets.length; i++) {
+            StructLayout layout = sdna.getStructureByIndex(i).getLayout();
+            FieldLayout first = layout.getFieldCount() == 0 ? null : layout.getField(0);
+            boolean isId = first != null && !first.isPointer() && first.elementCount() == 1 && "ID".equals(first.getField().getType());
+            nameOffsets[i] = isId ? first.offset() + name.offset() : -1;
+        }
+        IdNameTable names = new IdNameTable(new int[table.size()]);
+        byte[] buffer = new byte[name.size()];
+        for(int i = 0; i < table.size(); i++) {
+            int sdnaIndex = table.sdnaIndex(i);
+            boolean isId = sdnaIndex >= 0 && sdnaIndex < nameOffsets.length && nameOffsets[sdnaIndex] >= 0
+                    && table.structuresCount(i) > 0 && table.dataSize(i) >= nameOffsets[sdnaIndex] + buffer.length;
+            if(isId) {
+                reader.get(table.dataPosition(i) + nameOffsets[sdnaIndex], buffer, 0, buffer.length);
+                names.blockNames[i] = names.intern(buffer);
+            } else {
+                names.blockNames[i] = -1;
+            }
+        }
+        names.strings = new String[names.count];
+        return names;
+    }
+
+    /**
+     * Returns the number of distinct names
+     * @return the number of names in this table
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Returns the name of a block
+     * @param blockIndex the index of the block in the BlockTable of the file
+     * @return the name id or -1 if the block is not an ID block
+     */
+    public int nameOfBlock(int blockIndex) {
+        return blockIndex < 0 || blockIndex >= blockNames.length ? -1 : blockNames[blockIndex];
+    }
+
+    /**
+     * Finds the id of a name
+     * @param name the full name, with the block code (eg "OBCube")
+     * @return the name id or -1 if no ID block has the name
+     */
+    public int find(CharSequence name) {
+        return find("", name);
+    }
+
+    /**
+     * Finds the id of a name given its block code and its unqualified part,
+     * without concatenating them
+     * @param code the two letters of the block code (eg "OB")
+     * @param name the name without the code (eg "Cube")
+     * @return the name id or -1 if no ID block has the name
+     */
+    public int find(CharSequence code, CharSequence name) {
+        int hash = hash(code, name);
+        int mask = slots.length - 1;
+        for(int slot = hash & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+            int id = slots[slot] - 1;
+            if(matches(id, code, name)) return id;
+        }
+        return -1;
+    }
+
+    /**
+     * Checks if a name is equal to a string, comparing the bytes
+     * @param id the name id
+     * @param name the full name, with the block code
+     * @return true if the name of the id is the given one
+     */
+    public boolean equals(int id, CharSequence name) {
+        checkId(id);
+        return matches(id, "", name);
+    }
+
+    /**
+     * Returns the text of a name. The string is decoded once.
+     * @param id the name id
+     * @return the name, with the block code
+     */
+    public String getName(int id) {
+        checkId(id);
+        String[] decoded = strings;
+        String name = decoded[id];
+        if(name == null) {
+            decoded[id] = name = new String(pool, starts[id], lengths[id], ASCII);//racy but idempotent
+        }
+        return name;
+    }
+
+    /* Adds the name in a zero terminated char buffer, returns its id */
+    private int intern(byte[] chars) {
+        int start = 0;
+        int end = 0;
+        while(end < chars.length && chars[end] != 0) {
+            end++;
+        }
+        while(start < end && (chars[start] & 0xFF) <= ' ') {
+            start++;
+        }
+        while(end > start && (chars[end - 1] & 0xFF) <= ' ') {
+            end--;
+        }
+        int hash = 0;
+        for(int i = start; i < end; i++) {
+            hash = 31 * hash + ascii(chars[i]);
+        }
+        int mask = slots.length - 1;
+        int slot = mix(hash) & mask;
+        for(; slots[slot] != 0; slot = (slot + 1) & mask) {
+            int id = slots[slot] - 1;
+            if(lengths[id] == end - start && equalBytes(starts[id], chars, start, end - start)) return id;
+        }
+        if(count == starts.length) {
+            starts = Arrays.copyOf(starts, count * 2);
+            lengths = Arrays.copyOf(lengths, count * 2);
+        }
+        if(poolLength + end - start > pool.length) {
+            pool = Arrays.copyOf(pool, Math.max(pool.length * 2, poolLength + end - start));
+        }
+        System.arraycopy(chars, start, pool, poolLength, end - start);
+        starts[count] = poolLength;
+        lengths[count] = end - start;
+        poolLength += end - start;
+        slots[slot] = count + 1;
+        if(++count * 2 > slots.length) rehash();
+        return count - 1;
+    }
+
+    private void rehash() {
+        int[] old = slots;
+        slots = new int[old.length * 2];
+        int mask = slots.length - 1;
+        for(int i = 0; i < old.length; i++) {
+            if(old[i] == 0) continue;
+            int id = old[i] - 1;
+            int hash = 0;
+            for(int k = 0; k < lengths[id]; k++) {
+                hash = 31 * hash + ascii(pool[starts[id] + k]);
+            }
+            int slot = mix(hash) & mask;
+            while(slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = old[i];
+        }
+    }
+
+    private boolean equalBytes(int poolStart, byte[] chars, int start, int length) {
+        for(int i = 0; i < length; i++) {
+            if(pool[poolStart + i] != chars[start + i]) return false;
+        }
+        return true;
+    }
+
+    private boolean matches(int id, CharSequence code, CharSequence name) {
+        int codeLength = code.length();
+        if(lengths[id] != codeLength + name.length()) return false;
+        int start = starts[id];
+        for(int i = 0; i < codeLength; i++) {
+            if(ascii(pool[start + i]) != code.charAt(i)) return false;
+        }
+        for(int i = codeLength; i < lengths[id]; i++) {
+            if(ascii(pool[start + i]) != name.charAt(i - codeLength)) return false;
+        }
+        return true;
+    }
+
+    /* The hash of intern, computed on the chars of the two parts of a name */
+    private static int hash(CharSequence code, CharSequence name) {
+        int hash = 0;
+        for(int i = 0; i < code.length(); i++) {
+            hash = 31 * hash + code.charAt(i);
+        }
+        for(int i = 0; i < name.length(); i++) {
+            hash = 31 * hash + name.charAt(i);
+        }
+        return mix(hash);
+    }
+
+    /* The char decoded from a byte by the ascii charset */
+    private static char ascii(byte b) {
+        return b >= 0 ? (char) b : '\uFFFD';
+    }
+
+    private static int mix(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private void checkId(int id) {
+        if(id < 0 || id >= count) throw new IndexOutOfBoundsException("Invalid name id " + id);
+    }
+
+    @Override
+    public String toString() {
+        return "IdNameTable " + count + " names";
+    }
+}
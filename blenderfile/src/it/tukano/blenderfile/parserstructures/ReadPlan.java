@@ -0,0 +1,254 @@
+package it.tukano.blenderfile.parserstructures;
+
+import it.tukano.blenderfile.Log;
+import it.tukano.blenderfile.exceptions.BlenderFileParsingException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A reference schema reconciled with the sdna of a file: each field of the
+ * reference is matched, by name and then by alias, with a field of the file
+ * structure. The elements the file doesn't have are read as the default of
+ * the reference field. The elements the file has are read by a FieldAccessor
+ * compiled with the plan, that converts the values to the element type of
+ * the reference field: they are narrowed to its size and sign (eg a file
+ * short read for a UCHAR field gives 0..255) and the unsigned types are
+ * widened as unsigned. The fields whose file values may not fit the
+ * reference type (a wider integer or a float read for an integer type) are
+ * logged when the plan is compiled, see getNarrowedFields. Plans are compiled
+ * once per sdna (see BlenderFileSdna.getPlan), the reads use the compiled
+ * accessors and never look up names.
+ * @author pgi
+ */
+public final class ReadPlan {
+
+    private final ReferenceStruct reference;
+    private final StructLayout layout;
+    private final FieldLayout[] fields;
+    private final FieldAccessor[][] accessors;//the accessors of the elements read from the file, per field
+    private final List<String> missing;
+    private final List<String> narrowed;
+
+    private ReadPlan(ReferenceStruct reference, StructLayout layout, FieldLayout[] fields, FieldAccessor[][] accessors, List<String> missing, List<String> narrowed) {
+        this.reference = reference;
+        this.layout = layout;
+        this.fields = fields;
+        this.accessors = accessors;
+        this.missing = Collections.unmodifiableList(missing);
+        this.narrowed = Collections.unmodifiableList(narrowed);
+    }
+
+    /**
+     * Matches a reference with the sdna of a file
+     * @param reference the schema expected by the parser
+     * @param sdna the sdna of the file
+     * @return the plan
+     */
+    static ReadPlan compile(ReferenceStruct reference, BlenderFileSdna sdna) {
+        ReferenceStruct.Field[] declared = reference.seal();
+        StructLayout layout = sdna.getLayout(reference.getType());
+        FieldLayout[] fields = new FieldLayout[declared.length];
+        FieldAccessor[][] accessors = new FieldAccessor[declared.length][];
+        List<String> missing = new ArrayList<String>();
+        List<String> narrowed = new ArrayList<String>();
+        for(int i = 0; i < declared.length; i++) {
+            FieldLayout field = layout == null ? null : match(layout, declared[i]);
+            if(field == null) {
+                missing.add(declared[i].getName());
+                accessors[i] = new FieldAccessor[0];
+            } else {
+                fields[i] = field;
+                accessors[i] = new FieldAccessor[Math.min(declared[i].count(), field.elementCount())];
+                for(int k = 0; k < accessors[i].length; k++) {
+                    accessors[i][k] = new FieldAccessor(field, k, declared[i].getType());
+                }
+                if(!fits(field.getElementType(), declared[i].getType())) {
+                    narrowed.add(declared[i].getName() + " (" + field.getField().getType() + " as " + declared[i].getType() + ")");
+                }
+            }
+        }
+        if(layout == null) {
+            Log.info("No structure ", reference.getType(), " in the sdna, all the fields read as defaults");
+        } else if(!missing.isEmpty()) {
+            Log.info("Fields of ", reference.getType(), " read as defaults: ", missing);
+        }
+        if(!narrowed.isEmpty()) {
+            Log.info("Warning, fields of ", reference.getType(), " narrowed to the reference type: ", narrowed);
+        }
+        return new ReadPlan(reference, layout, fields, accessors, missing, narrowed);
+    }
+
+    /* Checks if every value of a file type can be represented in a reference type */
+    private static boolean fits(SDNAField.ElementType fileType, SDNAField.ElementType referenceType) {
+        if(isDecimal(referenceType)) return true;//the float accessor, integers are widened
+        return !isDecimal(fileType) && size(fileType) <= size(referenceType);
+    }
+
+    private static boolean isDecimal(SDNAField.ElementType type) {
+        return type == SDNAField.ElementType.FLOAT || type == SDNAField.ElementType.DOUBLE;
+    }
+
+    private static int size(SDNAField.ElementType type) {
+        switch(type) {
+            case CHAR: case UCHAR: return 1;
+            case SHORT: case USHORT: return 2;
+            case LONG: case DOUBLE: return 8;
+            default: return 4;
+        }
+    }
+
+    /* Finds the file field of a reference field, null if the file has no compatible field */
+    private static FieldLayout match(StructLayout layout, ReferenceStruct.Field declared) {
+        FieldLayout field = layout.getField(declared.getName());
+        String[] aliases = declared.getAliases();
+        for(int i = 0; field == null && i < aliases.length; i++) {
+            field = layout.getField(aliases[i]);
+        }
+        if(field == null || field.isPointer() || field.getElementType() == SDNAField.ElementType.OTHER) return null;
+        return field;
+    }
+
+    /**
+     * Returns the reference of this plan
+     * @return the reference schema
+     */
+    public ReferenceStruct getReference() {
+        return reference;
+    }
+
+    /**
+     * Returns the layout of the file structure
+     * @return the layout or null if the sdna has no such structure
+     */
+    public StructLayout getLayout() {
+        return layout;
+    }
+
+    /**
+     * Checks if a reference field has a matching field in the file
+     * @param field a field of the reference of this plan
+     * @return true if the values are read from the file, false for defaults
+     */
+    public boolean isPresent(ReferenceStruct.Field field) {
+        return fields[slot(field)] != null;
+    }
+
+    /**
+     * Returns the file field matched with a reference field
+     * @param field a field of the reference of this plan
+     * @return the layout of the file field or null if the values are defaults
+     */
+    public FieldLayout getFieldLayout(ReferenceStruct.Field field) {
+        return fields[slot(field)];
+    }
+
+    /**
+     * Returns the names of the reference fields that are read as defaults
+     * @return the missing field names
+     */
+    public List<String> getMissingFields() {
+        return missing;
+    }
+
+    /**
+     * Returns the reference fields whose file values may not fit the type of
+     * the reference, with the file and reference types
+     * @return the narrowed fields, eg "flag (short as CHAR)"
+     */
+    public List<String> getNarrowedFields() {
+        return narrowed;
+    }
+
+    /**
+     * Returns a cursor on the structures of a block, to read with this plan
+     * @param block a block of structures of the type of the reference
+     * @return a cursor before the first structure
+     * @throws IOException if the sdna has no such structure
+     */
+    public StructCursor cursor(BlenderFileBlock block) throws IOException {
+        if(layout == null) throw new BlenderFileParsingException("Unknown structure type " + reference.getType());
+        return block.cursor(layout.getType());
+    }
+
+    /**
+     * Reads a field as an int
+     * @param cursor a cursor on the structure type of this plan
+     * @param field a field of the reference of this plan
+     * @return the value of the field or its default
+     * @throws IOException if a read error occurs
+     */
+    public int getInt(StructCursor cursor, ReferenceStruct.Field field) throws IOException {
+        return getInt(cursor, field, 0);
+    }
+
+    /**
+     * Reads an element of a field as an int
+     * @param cursor a cursor on the structure type of this plan
+     * @param field a field of the reference of this plan
+     * @param element the index of the element
+     * @return the value of the element or the default of the field
+     * @throws IOException if a read error occurs
+     */
+    public int getInt(StructCursor cursor, ReferenceStruct.Field field, int element) throws IOException {
+        FieldAccessor[] elements = accessors[slot(field, element)];
+        if(element >= elements.length) return field.getDefaultValue().intValue();
+        return elements[element].getInt(cursor.reader(), cursor.position(layout));
+    }
+
+    /**
+     * Reads a field as a float
+     * @param cursor a cursor on the structure type of this plan
+     * @param field a field of the reference of this plan
+     * @return the value of the field or its default
+     * @throws IOException if a read error occurs
+     */
+    public float getFloat(StructCursor cursor, ReferenceStruct.Field field) throws IOException {
+        return getFloat(cursor, field, 0);
+    }
+
+    /**
+     * Reads an element of a field as a float
+     * @param cursor a cursor on the structure type of this plan
+     * @param field a field of the reference of this plan
+     * @param element the index of the element
+     * @return the value of the element or the default of the field
+     * @throws IOException if a read error occurs
+     */
+    public float getFloat(StructCursor cursor, ReferenceStruct.Field field, int element) throws IOException {
+        FieldAccessor[] elements = accessors[slot(field, element)];
+        if(element >= elements.length) return field.getDefaultValue().floatValue();
+        return elements[element].getFloat(cursor.reader(), cursor.position(layout));
+    }
+
+    /**
+     * Reads all the elements of a field as floats
+     * @param cursor a cursor on the structure type of this plan
+     * @param field a field of the reference of this plan
+     * @return the count() values of the field, the missing ones are defaults
+     * @throws IOException if a read error occurs
+     */
+    public float[] getFloats(StructCursor cursor, ReferenceStruct.Field field) throws IOException {
+        float[] values = new float[field.count()];
+        for(int i = 0; i < values.length; i++) {
+            values[i] = getFloat(cursor, field, i);
+        }
+        return values;
+    }
+
+    private int slot(ReferenceStruct.Field field) {
+        if(field.getReference() != reference) throw new IllegalArgumentException(field + " is not a field of " + reference.getType());
+        return field.index();
+    }
+
+    private int slot(ReferenceStruct.Field field, int element) {
+        if(element < 0 || element >= field.count()) throw new IndexOutOfBoundsException(field + " has no element " + element);
+        return slot(field);
+    }
+
+    @Override
+    public String toString() {
+        return "ReadPlan " + reference.getType() + (missing.isEmpty() ? "" : " defaults " + missing);
+    }
+}
@@ -0,0 +1,159 @@
+package it.tukano.blenderfile.parserstructures;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The reference schema of a structure type: the numeric fields a parser
+ * reads, with the names they had in other blender versions and the values to
+ * use when a file doesn't have them. A reference is declared once by a parser
+ * and compiled against the sdna of each file into a ReadPlan (see
+ * BlenderFileSdna.getPlan):
+ * <pre>
+ * static final ReferenceStruct MFACE = new ReferenceStruct("MFace");
+ * static final ReferenceStruct.Field V1 = MFACE.field("v1", ElementType.INT, 1, 0);
+ * </pre>
+ * The fields must be declared before the first plan is compiled.
+ * @author pgi
+ */
+public final class ReferenceStruct {
+
+    /**
+     * A field of a reference schema, the handle used to read it through a plan
+     */
+    public static final class Field {
+
+        private final ReferenceStruct owner;
+        private final int index;
+        private final String name;
+        private final String[] aliases;
+        private final SDNAField.ElementType type;
+        private final int count;
+        private final Number defaultValue;
+
+        private Field(ReferenceStruct owner, int index, String name, String[] aliases, SDNAField.ElementType type, int count, Number defaultValue) {
+            this.owner = owner;
+            this.index = index;
+            this.name = name;
+            this.aliases = aliases;
+            this.type = type;
+            this.count = count;
+            this.defaultValue = defaultValue;
+        }
+
+        /**
+         * Returns the reference schema that declares this field
+         * @return the owner reference
+         */
+        public ReferenceStruct getReference() {
+            return owner;
+        }
+
+        /**
+         * Returns the index of this field in its reference
+         * @return the declaration index
+         */
+        public int index() {
+            return index;
+        }
+
+        /**
+         * Returns the name of this field
+         * @return the simple name of the field
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Returns the names this field had in other blender versions
+         * @return the aliases, tried in order after the name
+         */
+        public String[] getAliases() {
+            return aliases.clone();
+        }
+
+        /**
+         * Returns the element type expected by the parser
+         * @return the element type
+         */
+        public SDNAField.ElementType getType() {
+            return type;
+        }
+
+        /**
+         * Returns the number of elements read by the parser
+         * @return the element count, 1 if the field is not an array
+         */
+        public int count() {
+            return count;
+        }
+
+        /**
+         * Returns the value of the elements missing in a file
+         * @return the default value
+         */
+        public Number getDefaultValue() {
+            return defaultValue;
+        }
+
+        @Override
+        public String toString() {
+            return owner.getType() + "." + name;
+        }
+    }
+
+    private final String type;
+    private final List<Field> fields = new ArrayList<Field>();
+    private boolean sealed;
+
+    /**
+     * Initializes an empty reference
+     * @param type the name of the structure type (eg MVert)
+     */
+    public ReferenceStruct(String type) {
+        this.type = type;
+    }
+
+    /**
+     * Declares a numeric field
+     * @param name the simple name of the field
+     * @param elementType the type of the elements, the file values are converted
+     * to it by the ReadPlan accessors
+     * @param count the number of elements read
+     * @param defaultValue the value of the elements missing in a file
+     * @param aliases the names of the field in other blender versions
+     * @return the handle of the field
+     */
+    public synchronized Field field(String name, SDNAField.ElementType elementType, int count, Number defaultValue, String... aliases) {
+        if(sealed) throw new IllegalStateException(type + " has already been compiled, declare " + name + " before reading");
+        if(elementType == SDNAField.ElementType.OTHER) throw new IllegalArgumentException(name + " is not a numeric field");
+        if(count < 1) throw new IllegalArgumentException("Invalid element count " + count + " for " + name);
+        Field field = new Field(this, fields.size(), name, aliases.clone(), elementType, count, defaultValue);
+        fields.add(field);
+        return field;
+    }
+
+    /**
+     * Returns the name of the structure type
+     * @return the type name
+     */
+    public String getType() {
+        return type;
+    }
+
+    /**
+     * Returns the declared fields and prevents further declarations
+     * @return the fields, in declaration order
+     */
+    synchronized Field[] seal() {
+        sealed = true;
+        return fields.toArray(new Field[fields.size()]);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return type + Arrays.toString(fields.toArray());
+    }
+}
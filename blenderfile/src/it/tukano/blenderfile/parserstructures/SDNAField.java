@@ -5,10 +5,10 @@ import it.tukano.blenderfile.parserstructures.BlenderFileBlock;
 import it.tukano.blenderfile.parserstructures.BlenderFileHeader;
 import it.tukano.blenderfile.io.BinaryDataReader;
 import java.io.IOException;
+import java.lang.reflect.Array;
 import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Arrays;
 
 /**
  * A field of a sdna structure
@@ -16,11 +16,44 @@ import java.util.regex.Pattern;
  */
 public class SDNAField {
 
+    /**
+     * The primitive types of the elements of a field
+     */
+    public enum ElementType {
+        /** char, a signed byte */
+        CHAR,
+        /** uchar, an unsigned byte */
+        UCHAR,
+        /** short */
+        SHORT,
+        /** ushort */
+        USHORT,
+        /** int, and long in the files that store it in 4 bytes */
+        INT,
+        /** uint, and ulong in the files that store it in 4 bytes */
+        UINT,
+        /** int64_t, uint64_t and the 8 bytes long and ulong */
+        LONG,
+        /** float */
+        FLOAT,
+        /** double */
+        DOUBLE,
+        /** any other type (structures, void...) */
+        OTHER
+    }
+
+    private static final Charset ASCII = Charset.forName("ascii");
+
     private final String type;
     private final String qualifiedName;
     private final Number typeSize;
     private final Number pointerSize;//used to compute the size of the field if it is a pointer
     private final String simpleName;
+    private final int arrayComponentCount;
+    private final int[] dimensions;
+    private final int elementSize;
+    private final ElementType elementType;
+    private final boolean pointer;
 
     /**
      * Initializes this field
@@ -39,6 +72,31 @@ public class SDNAField {
             temp = temp.substring(0, temp.indexOf("["));
         }
         simpleName = temp;
+        pointer = fieldName.contains("*");
+        dimensions = parseDimensions(fieldName);
+        int count = 1;
+        for(int dimension : dimensions) {
+            count *= dimension;
+        }
+        arrayComponentCount = count;
+        elementSize = fieldSize.intValue();
+        elementType = elementTypeOf(fieldType, elementSize);
+    }
+
+    /* The element type of a sdna type, long and ulong have the size of the platform */
+    private static ElementType elementTypeOf(String type, int size) {
+        if(ConstantValues.FLOAT_TYPE_NAME.equals(type)) return ElementType.FLOAT;
+        if(ConstantValues.INT_TYPE_NAME.equals(type)) return ElementType.INT;
+        if(ConstantValues.SHORT_TYPE_NAME.equals(type)) return ElementType.SHORT;
+        if(ConstantValues.CHAR_TYPE_NAME.equals(type)) return ElementType.CHAR;
+        if(ConstantValues.UCHAR_TYPE_NAME.equals(type)) return ElementType.UCHAR;
+        if(ConstantValues.USHORT_TYPE_NAME.equals(type)) return ElementType.USHORT;
+        if(ConstantValues.UINT_TYPE_NAME.equals(type)) return ElementType.UINT;
+        if(ConstantValues.DOUBLE_TYPE_NAME.equals(type)) return ElementType.DOUBLE;
+        if(ConstantValues.INT64_TYPE_NAME.equals(type) || ConstantValues.UINT64_TYPE_NAME.equals(type)) return ElementType.LONG;
+        if(ConstantValues.LONG_TYPE_NAME.equals(type)) return size == 8 ? ElementType.LONG : ElementType.INT;
+        if(ConstantValues.ULONG_TYPE_NAME.equals(type)) return size == 8 ? ElementType.LONG : ElementType.UINT;
+        return ElementType.OTHER;
     }
 
     /**
@@ -65,13 +123,30 @@ public class SDNAField {
         return simpleName;
     }
 
+    /**
+     * Returns the size of the type of this field (the size of an element for
+     * arrays, of the pointed type for pointers)
+     * @return the size of the type of this field
+     */
+    public Number getTypeSize() {
+        return typeSize;
+    }
+
     /**
      * Returns the size of this field, counting array size modifiers
      * @return the size of this field.
      */
     public Number getSize() {
-        if(getQualifiedName().contains("*")) return pointerSize;
-        return typeSize.intValue() * getArrayComponentCount().intValue();
+        return size();
+    }
+
+    /**
+     * Returns the size of this field, counting array size modifiers
+     * @return the size of this field in bytes
+     */
+    public int size() {
+        if(pointer) return pointerSize.intValue() * arrayComponentCount;
+        return elementSize * arrayComponentCount;
     }
 
     /**
@@ -79,17 +154,38 @@ public class SDNAField {
      * @return the component count of the array
      */
     public Number getArrayComponentCount() {
-        String reg = "(\\[(\\d+)\\])";
-        Pattern p = Pattern.compile(reg);
-        Matcher m = p.matcher(qualifiedName);
-        int size = 1;
-        while (m.find()) {
-            int start = m.start(2);
-            int end = m.end(2);
-            int index = Integer.parseInt(qualifiedName.substring(start, end));
-            size *= index;
+        return arrayComponentCount;
+    }
+
+    /**
+     * Returns the dimensions of this field if it is an array
+     * @return the array dimensions (x[3][4] = {3, 4}), empty if this is not
+     * an array
+     */
+    public int[] getDimensions() {
+        return dimensions.clone();
+    }
+
+    /**
+     * Returns the primitive type of the elements of this field
+     * @return the element type, OTHER for structures and unsupported types
+     */
+    public ElementType getElementType() {
+        return elementType;
+    }
+
+    /* Parses the [n] tokens of a qualified name */
+    private static int[] parseDimensions(String qualifiedName) {
+        int count = 0;
+        for(int i = qualifiedName.indexOf('['); i >= 0; i = qualifiedName.indexOf('[', i + 1)) {
+            count++;
         }
-        return size;
+        int[] dimensions = new int[count];
+        for(int i = 0, open = qualifiedName.indexOf('['); open >= 0; open = qualifiedName.indexOf('[', open + 1)) {
+            int close = qualifiedName.indexOf(']', open);
+            dimensions[i++] = Integer.parseInt(qualifiedName.substring(open + 1, close).trim());
+        }
+        return dimensions;
     }
 
     /**
@@ -97,7 +193,7 @@ public class SDNAField {
      * @return true if this is a pointer
      */
     public boolean isPointer() {
-        return getQualifiedName().contains("*");
+        return pointer;
     }
 
     /**
@@ -105,7 +201,7 @@ public class SDNAField {
      * @return true if this is a float
      */
     public boolean isFloat() {
-        return getType().equals(ConstantValues.FLOAT_TYPE_NAME);
+        return elementType == ElementType.FLOAT;
     }
 
     /**
@@ -113,7 +209,7 @@ public class SDNAField {
      * @return true if this is an int
      */
     public boolean isInt() {
-        return getType().equals(ConstantValues.INT_TYPE_NAME);
+        return elementType == ElementType.INT;
     }
 
     /**
@@ -121,7 +217,7 @@ public class SDNAField {
      * @return true if this is a short
      */
     public boolean isShort() {
-        return getType().equals(ConstantValues.SHORT_TYPE_NAME);
+        return elementType == ElementType.SHORT;
     }
 
     /**
@@ -129,7 +225,7 @@ public class SDNAField {
      * @return true if this is an array
      */
     public boolean isArray() {
-        return getQualifiedName().contains("[");
+        return dimensions.length > 0;
     }
 
     /**
@@ -137,7 +233,7 @@ public class SDNAField {
      * @return true if this is a byte
      */
     public boolean isByte() {
-        return getType().equals(ConstantValues.CHAR_TYPE_NAME);
+        return elementType == ElementType.CHAR;
     }
 
     /**
@@ -158,125 +254,278 @@ public class SDNAField {
 
     /**
      * Read the value of this field from the binary data reader of the given blender file.
-     * The reader should be positioned at the starting offset of this field. If the field value is
-     * a structure then the reader of the file is located at the start of that structure, so that
-     * values can be read from that structure too.
+     * The reader should be positioned at the starting offset of this field. The
+     * cursor of the reader is not moved: this is readValueAt(file, cursor).
      * @param file the blender file that contains the value of this field
+     * @return the value of this field (see readValueAt)
+     * @throws IOException if a read error occurs
+     */
+    public Object readValueFrom(BlenderFile file) throws IOException {
+        return readValueAt(file, file.getBinaryDataReader().position());
+    }
+
+    /**
+     * Read the value of this field at the given position of the blender file. The
+     * cursor of the reader is neither used nor moved, so values can be read
+     * by several threads at the same time.
+     * @param file the blender file that contains the value of this field
+     * @param fieldOffset the position of the first byte of the field
      * @return the value of this field.<br>
      * if this field is a null pointer (0) returns 0<br>
      * if this field is a non null pointer returns the pointer value as a Number or the pointed structure if the pointer is of structure type<br>
-     * if this field is a float, short or int value, returns the numeric value as a Number<br>
-     * if this field is an array of float, short or int values, returns an array of Number<br>
+     * if this field is an array of pointers returns an array of Number, null for the null pointers<br>
+     * if this field is a numeric value, returns the value as a Number (unsigned values are widened: uchar and ushort as Integer, uint as Long)<br>
+     * if this field is a numeric array returns a primitive array (see readElementsAt), shaped as the
+     * field: x[4][4] is a float[4][4]<br>
      * if this field is of a structure type, returns the structure<br>
-     * if this field is a a char array returns the value as a string<br>
+     * if this field is an array of structures, returns a StructCursor on the elements (multi dimensional arrays are flattened)<br>
+     * if this field is a a char array returns the value as a string, an array of strings for x[n][m] arrays<br>
      * @throws IOException if a read error occurs
      */
-    public Object readValueFrom(BlenderFile file) throws IOException {
+    public Object readValueAt(BlenderFile file, long fieldOffset) throws IOException {
         Object value = null;
         BlenderFileHeader blenderFileHeader = file.getBlenderFileHeader();
         BinaryDataReader binaryDataReader = file.getBinaryDataReader();
         if(isArrayOfPointers()) {
-            int count = this.getArrayComponentCount().intValue();
+            int count = arrayComponentCount;
+            int step = blenderFileHeader.pointerSize();
             Number[] pointerValues = new Number[count];
             for(int i = 0; i < count; i++) {
-                pointerValues[i] = blenderFileHeader.nextPointer(binaryDataReader);
-                if(pointerValues[i].longValue() == 0) pointerValues[i] = null;
+                long pointerValue = blenderFileHeader.getPointer(binaryDataReader, fieldOffset + (long) i * step);
+                pointerValues[i] = pointerValue == 0 ? null : (Number) pointerValue;
             }
             value = pointerValues;
         } else if(isPointer()) {
-            Number pointerValue = blenderFileHeader.nextPointer(binaryDataReader);
-            if(pointerValue.longValue() > 1 && file.getBlenderFileSdna().isStructureType(getType())) {
+            long pointerValue = blenderFileHeader.getPointer(binaryDataReader, fieldOffset);
+            if(!BlenderFileHeader.isNullPointer(pointerValue) && file.getBlenderFileSdna().isStructureType(getType())) {
                 final BlenderFileBlock pointedBlock = file.getBlockByOldMemAddress(pointerValue);
                 final BlenderFileSdna sdna = file.getBlenderFileSdna();
                 final String structureTypeName = getType();
-                final Number blockPosition = pointedBlock.getPositionOfDataBlockInBlenderFile();
-                value = sdna.getStructureByName(structureTypeName, blockPosition);
+                value = sdna.getStructureByName(structureTypeName, pointedBlock.dataPosition());
             } else {
-                value = pointerValue.longValue() <= 1 ? null : pointerValue;//todo: weird, 2.57 got 1 as pointer value instead of 0
+                value = BlenderFileHeader.isNullPointer(pointerValue) ? null : (Number) pointerValue;
             }
         } else if(isString()) {//xxx handle char* type
-            int len = getSize().intValue();
-            ByteBuffer buffer = ByteBuffer.allocate(len);
-            while(buffer.hasRemaining()) {
-                byte c = binaryDataReader.readByte().byteValue();
-                if(c != 0) {
-                    buffer.put(c);
-                } else {
-                    break;
-                }
+            value = readStrings(binaryDataReader, fieldOffset);
+        } else if(isArray() && elementType == ElementType.OTHER) {
+            value = new StructCursor(file.getBlenderFileSdna().getLayout(getType()), blenderFileHeader, fieldOffset, arrayComponentCount);
+        } else if(isArray()) {
+            value = reshape(readElementsAt(binaryDataReader, fieldOffset), dimensions);
+        } else {
+            switch(elementType) {
+                case CHAR: value = binaryDataReader.getByte(fieldOffset); break;
+                case UCHAR: value = binaryDataReader.getByte(fieldOffset) & 0xFF; break;
+                case SHORT: value = binaryDataReader.getShort(fieldOffset); break;
+                case USHORT: value = binaryDataReader.getShort(fieldOffset) & 0xFFFF; break;
+                case INT: value = binaryDataReader.getInt(fieldOffset); break;
+                case UINT: value = binaryDataReader.getInt(fieldOffset) & 0xFFFFFFFFL; break;
+                case LONG: value = binaryDataReader.getLong(fieldOffset); break;
+                case FLOAT: value = binaryDataReader.getFloat(fieldOffset); break;
+                case DOUBLE: value = binaryDataReader.getDouble(fieldOffset); break;
+                default://a structure?
+                    value = file.getBlenderFileSdna().getStructureByName(getType(), fieldOffset);
             }
-            buffer.flip();
-            value = Charset.forName("ascii").decode(buffer).toString().trim();
-        } else if (isArray()) {
-            value = readArrayValue(blenderFileHeader);
-        } else if(isShort()) {
-            value = blenderFileHeader.nextShort(binaryDataReader);
-        } else if(isFloat()) {
-            value = blenderFileHeader.nextFloat(binaryDataReader);
-        } else if(isInt()) {
-            value = blenderFileHeader.nextInt(binaryDataReader);
-        } else if(isByte()) {
-            value = binaryDataReader.readByte();
-        } else {//a structure?
-            value = file.getBlenderFileSdna().getStructureByName(getType(), binaryDataReader.getCurrentPosition());
         }
         return value;
     }
 
-    private Object readArrayValue(BlenderFileHeader header) throws IOException {
-        Object value = null;
-        if(isShort()) {
-            value = readShortArrayValue(header);
-        } else if(isFloat()) {
-            value = readFloatArrayValue(header);
-        } else if(isInt()) {
-            value = readIntArrayValue(header);
-        } else {
-            throw new UnsupportedOperationException(getQualifiedName() + " as array of " + getType() + " not supported yet.");
+    /**
+     * Reads all the elements of a numeric field with a single bulk copy, as a
+     * flat primitive array in storage order (x[4][4] gives 16 values, row by
+     * row). The array type is:<br>
+     * char and uchar: byte[] (the uchar values are not widened, mask them with 0xFF)<br>
+     * short: short[], ushort: int[]<br>
+     * int: int[], uint: long[]<br>
+     * int64_t and uint64_t: long[] (uint64_t values keep their bits)<br>
+     * float: float[], double: double[]
+     * @param reader the reader of the data
+     * @param fieldOffset the position of the first byte of the field
+     * @return the elements of the field
+     * @throws IOException if a read error occurs
+     * @throws UnsupportedOperationException if the field is a pointer or a structure
+     */
+    public Object readElementsAt(BinaryDataReader reader, long fieldOffset) throws IOException {
+        if(pointer || elementType == ElementType.OTHER) {
+            throw new UnsupportedOperationException(getQualifiedName() + " of type " + getType() + " is not numeric");
         }
-        return value;
+        int count = arrayComponentCount;
+        ByteBuffer data = reader.getBuffer(fieldOffset, size());
+        switch(elementType) {
+            case FLOAT: {
+                float[] values = new float[count];
+                data.asFloatBuffer().get(values);
+                return values;
+            }
+            case DOUBLE: {
+                double[] values = new double[count];
+                data.asDoubleBuffer().get(values);
+                return values;
+            }
+            case SHORT: {
+                short[] values = new short[count];
+                data.asShortBuffer().get(values);
+                return values;
+            }
+            case INT: {
+                int[] values = new int[count];
+                data.asIntBuffer().get(values);
+                return values;
+            }
+            case LONG: {
+                long[] values = new long[count];
+                data.asLongBuffer().get(values);
+                return values;
+            }
+            case USHORT: {
+                int[] values = new int[count];
+                for(int i = 0; i < count; i++) values[i] = data.getShort(2 * i) & 0xFFFF;
+                return values;
+            }
+            case UINT: {
+                long[] values = new long[count];
+                for(int i = 0; i < count; i++) values[i] = data.getInt(4 * i) & 0xFFFFFFFFL;
+                return values;
+            }
+            default: {//CHAR, UCHAR
+                byte[] values = new byte[count];
+                data.get(values);
+                return values;
+            }
+        }
+    }
+
+    /**
+     * Reads all the elements of a float field with a single bulk copy
+     * @param reader the reader of the data
+     * @param fieldOffset the position of the first byte of the field
+     * @return the values of the field, in storage order (x[4][4] gives 16 values)
+     * @throws IOException if a read error occurs
+     * @throws UnsupportedOperationException if this is not a float field
+     */
+    public float[] readFloatsAt(BinaryDataReader reader, long fieldOffset) throws IOException {
+        if(pointer || elementType != ElementType.FLOAT) {
+            throw new UnsupportedOperationException(getQualifiedName() + " of type " + getType() + " is not a float field");
+        }
+        return (float[]) readElementsAt(reader, fieldOffset);
+    }
+
+    /* Reads a char array as a string, or as an array of strings (one per row of the last dimension) */
+    private Object readStrings(BinaryDataReader reader, long fieldOffset) throws IOException {
+        byte[] chars = new byte[size()];
+        reader.get(fieldOffset, chars, 0, chars.length);
+        int rowLength = dimensions[dimensions.length - 1];
+        String[] rows = new String[chars.length / rowLength];
+        for(int i = 0; i < rows.length; i++) {
+            int start = i * rowLength;
+            int len = 0;
+            while(len < rowLength && chars[start + len] != 0) {
+                len++;
+            }
+            rows[i] = new String(chars, start, len, ASCII).trim();
+        }
+        return dimensions.length == 1 ? rows[0] : reshape(rows, Arrays.copyOf(dimensions, dimensions.length - 1));
+    }
+
+    /* Turns a flat array into nested arrays with the given dimensions */
+    private static Object reshape(Object flat, int[] shape) {
+        if(shape.length < 2) return flat;
+        Object shaped = Array.newInstance(flat.getClass().getComponentType(), shape);
+        fill(shaped, flat, 0);
+        return shaped;
     }
 
-    private Object readShortArrayValue(BlenderFileHeader header) throws IOException {
-        BinaryDataReader reader = header.getReader();
-        Number mark = reader.getCurrentPosition();
-        Number[] array = new Number[getArrayComponentCount().intValue()];
-        for (int i = 0; i < array.length; i++) {
-            array[i] = header.nextShort(reader);
+    /* Copies the flat values in the rows of a nested array, returns the next flat index */
+    private static int fill(Object shaped, Object flat, int from) {
+        int length = Array.getLength(shaped);
+        if(!shaped.getClass().getComponentType().isArray()) {
+            System.arraycopy(flat, from, shaped, 0, length);
+            return from + length;
+        }
+        for(int i = 0; i < length; i++) {
+            from = fill(Array.get(shaped, i), flat, from);
         }
-        reader.jumpTo(mark);
-        return array;
+        return from;
     }
 
-    private Object readFloatArrayValue(BlenderFileHeader header) throws IOException {
-        BinaryDataReader reader = header.getReader();
-        Number mark = reader.getCurrentPosition();
-        Number[] array = new Number[getArrayComponentCount().intValue()];
-        for (int i = 0; i < array.length; i++) {
-            array[i] = header.nextFloat(reader);
+    /**
+     * Reads an element of this field as an int. Char, short and int values are
+     * widened (chars are signed, uchars and ushorts are not), float and double
+     * values are truncated, uint and 64 bit values keep their low 32 bits.
+     * @param reader the reader of the data
+     * @param fieldOffset the position of the field in the reader
+     * @param index the index of the element, 0 if the field is not an array
+     * @return the value of the element
+     * @throws IOException if a read error occurs
+     */
+    public int getInt(BinaryDataReader reader, long fieldOffset, int index) throws IOException {
+        return getInt(elementType, reader, elementOffset(fieldOffset, index), this);
+    }
+
+    /**
+     * Reads an element of this field as a float. Integer values are widened,
+     * double values are narrowed.
+     * @param reader the reader of the data
+     * @param fieldOffset the position of the field in the reader
+     * @param index the index of the element, 0 if the field is not an array
+     * @return the value of the element
+     * @throws IOException if a read error occurs
+     */
+    public float getFloat(BinaryDataReader reader, long fieldOffset, int index) throws IOException {
+        return getFloat(elementType, reader, elementOffset(fieldOffset, index), this);
+    }
+
+    /* Reads a numeric element as an int, shared with FieldLayout */
+    static int getInt(ElementType type, BinaryDataReader reader, long position, SDNAField field) throws IOException {
+        switch(type) {
+            case INT: case UINT: return reader.getInt(position);
+            case SHORT: return reader.getShort(position);
+            case USHORT: return reader.getShort(position) & 0xFFFF;
+            case CHAR: return reader.getByte(position);
+            case UCHAR: return reader.getByte(position) & 0xFF;
+            case LONG: return (int) reader.getLong(position);
+            case FLOAT: return (int) reader.getFloat(position);
+            case DOUBLE: return (int) reader.getDouble(position);
+            default: throw new UnsupportedOperationException(field.getQualifiedName() + " of type " + field.getType() + " is not a number");
         }
-        reader.jumpTo(mark);
-        return array;
     }
 
-    private Object readIntArrayValue(BlenderFileHeader header) throws IOException {
-        BinaryDataReader reader = header.getReader();
-        Number mark = reader.getCurrentPosition();
-        Number[] array = new Number[getArrayComponentCount().intValue()];
-        for (int i = 0; i < array.length; i++) {
-            array[i] = header.nextInt(reader);
+    /* Reads a numeric element as a float, shared with FieldLayout */
+    static float getFloat(ElementType type, BinaryDataReader reader, long position, SDNAField field) throws IOException {
+        switch(type) {
+            case FLOAT: return reader.getFloat(position);
+            case DOUBLE: return (float) reader.getDouble(position);
+            case UINT: return reader.getInt(position) & 0xFFFFFFFFL;
+            case LONG: return reader.getLong(position);
+            default: return getInt(type, reader, position, field);
         }
-        reader.jumpTo(mark);
-        return array;
+    }
+
+    private long elementOffset(long fieldOffset, int index) {
+        if(pointer || index < 0 || index >= arrayComponentCount) {
+            throw new IndexOutOfBoundsException(getQualifiedName() + " has no numeric element " + index);
+        }
+        return fieldOffset + (long) index * elementSize;
     }
 
     /**
-     * Read the value of this field as a pointer
+     * Read the value of this field as a pointer, at the current position of the
+     * reader of the file. The cursor is not moved.
      * @param file the blender file that contains the data
      * @return the pointer numeric value of this field
      * @throws IOException if a read error occurs
      */
     public Number readPointerValueFrom(BlenderFile file) throws IOException {
-        return file.getBlenderFileHeader().nextPointer(file.getBinaryDataReader());
+        return readPointerValueAt(file, file.getBinaryDataReader().position());
+    }
+
+    /**
+     * Read the value of this field as a pointer, at the given position
+     * @param file the blender file that contains the data
+     * @param fieldOffset the position of the first byte of the field
+     * @return the pointer value of this field
+     * @throws IOException if a read error occurs
+     */
+    public long readPointerValueAt(BlenderFile file, long fieldOffset) throws IOException {
+        return file.getBlenderFileHeader().getPointer(file.getBinaryDataReader(), fieldOffset);
     }
 }
@@ -3,8 +3,9 @@ package it.tukano.blenderfile.parserstructures;
 import it.tukano.blenderfile.BlenderFile;
 import it.tukano.blenderfile.parserstructures.BlenderFileBlock;
 import it.tukano.blenderfile.parserstructures.BlenderFileHeader;
-import it.tukano.blenderfile.io.BinaryDataReader;
+import it.tukano.blenderfile.exceptions.BlenderFileParsingException;
 import java.io.IOException;
+import java.lang.reflect.Array;
 import java.util.Arrays;
 
 /**
@@ -16,14 +17,40 @@ public class SDNAStructure {
     private final String type;
     private final Number size;
     private final SDNAField[] fields;
-    private Number startOffsetInBlenderFile;
-    private final BlenderFileHeader header;
+    private final StructLayout layout;
+    private final long startOffsetInBlenderFile;//-1 for the catalog prototypes
 
-    public SDNAStructure(String structureType, Number structureSize, SDNAField[] structureFields, BlenderFileHeader header) {
-        this.header = header;
+    /**
+     * Initializes a structure of the sdna catalog. The structure doesn't
+     * refer to a blender file, so the catalog can be shared by the files
+     * with the same sdna (see SdnaCache).
+     * @param structureType the name of the structure type
+     * @param structureSize the size of the structure in bytes
+     * @param structureFields the fields of the structure, in declaration order
+     */
+    public SDNAStructure(String structureType, Number structureSize, SDNAField[] structureFields) {
         type = structureType;
         size = structureSize;
         fields = Arrays.copyOf(structureFields, structureFields.length);
+        layout = new StructLayout(structureType, structureSize.intValue(), fields);
+        startOffsetInBlenderFile = -1;
+    }
+
+    private SDNAStructure(SDNAStructure prototype, long structureStartOffset) {
+        type = prototype.type;
+        size = prototype.size;
+        fields = prototype.fields;
+        layout = prototype.layout;
+        startOffsetInBlenderFile = structureStartOffset;
+    }
+
+    /**
+     * Returns the compiled layout of this structure type, shared by all the
+     * instances
+     * @return the layout of this structure
+     */
+    public StructLayout getLayout() {
+        return layout;
     }
 
     /**
@@ -36,29 +63,64 @@ public class SDNAStructure {
      */
     public Number getPointerFieldValue(String fieldSimpleName, BlenderFile file) throws IOException, ClassCastException {
         checkStartOffsetDefined();
-        SDNAField field = getField(fieldSimpleName, file);
+        FieldLayout field = layout.getField(fieldSimpleName);
         Number value = null;
         if(field != null) {
-            value = field.readPointerValueFrom(file);
+            value = field.getField().readPointerValueAt(file, startOffsetInBlenderFile + field.offset());
         }
         return value;
     }
 
     /**
-     * Read the value of a field of this structure. The reader of the blender file
-     * should be located at the starting offset of the structure.
+     * Read the value of a field of this structure. The value is read at the
+     * offset of the field in the instance: the cursor of the reader of the
+     * blender file is not used.
      * @param fieldSimpleName the simple name of the field (ie with no * or [])
      * @param file the blender file with the data to read
      * @return the value of the requested field or null if no such field exists
      * @throws IOException in case of read failure
      */
     public Object getFieldValue(String fieldSimpleName, BlenderFile file) throws IOException {
-        Object fieldValue = null;
-        SDNAField requestedField = getField(fieldSimpleName, file);
-        if(requestedField != null) {
-            fieldValue = requestedField.readValueFrom(file);
-        }
-        return fieldValue;
+        checkStartOffsetDefined();
+        FieldLayout field = layout.getField(fieldSimpleName);
+        return field == null ? null : getFieldValue(field, file);
+    }
+
+    /**
+     * Read the value of a field of this structure (see SDNAField.readValueAt)
+     * @param field the layout of the field, from the layout of this structure
+     * @param file the blender file with the data to read
+     * @return the value of the field
+     * @throws IOException in case of read failure
+     */
+    public Object getFieldValue(FieldLayout field, BlenderFile file) throws IOException {
+        checkLayout(field);
+        return field.getValue(file, startOffsetInBlenderFile);
+    }
+
+    /**
+     * Returns the ID name of this structure (the value of "id.name"). The
+     * name of the structure of an ID block is taken from the interned name
+     * table of the file, without decoding it again.
+     * @param file the blender file with the data to read
+     * @return the name, with the block code (eg "OBCube")
+     * @throws IOException in case of read failure or if this structure has no ID
+     */
+    public String getIdName(BlenderFile file) throws IOException {
+        int name = file.getIdNameAt(startOffsetInBlenderFile);
+        return name >= 0 ? file.getIdNames().getName(name) : (String) getPathValue("id.name", file);
+    }
+
+    /**
+     * Read the value at the end of a dotted field path, eg "id.name" or
+     * "parent.id.name" (see BlenderFileSdna.compilePath)
+     * @param path the simple names of the fields, separated by dots
+     * @param file the blender file with the data to read
+     * @return the value of the last field, null if a pointer of the path is null
+     * @throws IOException in case of read failure or invalid path
+     */
+    public Object getPathValue(String path, BlenderFile file) throws IOException {
+        return file.getBlenderFileSdna().compilePath(type, path).getValue(file, startOffsetInBlenderFile);
     }
 
     /**
@@ -73,18 +135,57 @@ public class SDNAStructure {
     }
 
     /**
-     * Read the value of a field as an array of numbers
+     * Read the value of a field as an array of numbers. The elements of numeric
+     * arrays are boxed (see getFloatArray for the unboxed float values), multi
+     * dimensional arrays are flattened.
      * @param fieldSimpleName the name of the field to read
      * @param file the blender file that contains the data to read
      * @return the value of the field as an array of numbers or null if the field doesn't exist
      * @throws IOException in case of io failure
      */
     public Number[] getNumericArrayFieldValue(String fieldSimpleName, BlenderFile file) throws IOException {
-        return (Number[]) getFieldValue(fieldSimpleName, file);
+        checkStartOffsetDefined();
+        FieldLayout field = layout.getField(fieldSimpleName);
+        if(field == null) return null;
+        if(field.isPointer()) return (Number[]) getFieldValue(field, file);
+        Object elements = field.getField().readElementsAt(file.getBinaryDataReader(), fieldPosition(field));
+        Number[] values = new Number[Array.getLength(elements)];
+        for(int i = 0; i < values.length; i++) {
+            values[i] = (Number) Array.get(elements, i);
+        }
+        return values;
     }
 
     /**
-     * Returns a field by name.
+     * Read the values of a float field with a single bulk copy, flattened in
+     * storage order (a 4x4 matrix gives 16 values, row by row)
+     * @param fieldSimpleName the name of the field to read
+     * @param file the blender file that contains the data to read
+     * @return the values of the field or null if the field doesn't exist
+     * @throws IOException in case of io failure
+     * @throws UnsupportedOperationException if the field is not a float field
+     */
+    public float[] getFloatArray(String fieldSimpleName, BlenderFile file) throws IOException {
+        checkStartOffsetDefined();
+        FieldLayout field = layout.getField(fieldSimpleName);
+        return field == null ? null : getFloatArray(field, file);
+    }
+
+    /**
+     * Read the values of a float field with a single bulk copy (see
+     * getFloatArray(String, BlenderFile))
+     * @param field the layout of the field, from the layout of this structure
+     * @param file the blender file that contains the data to read
+     * @return the values of the field
+     * @throws IOException in case of io failure
+     */
+    public float[] getFloatArray(FieldLayout field, BlenderFile file) throws IOException {
+        return field.getField().readFloatsAt(file.getBinaryDataReader(), fieldPosition(field));
+    }
+
+    /**
+     * Returns a field by name. The cursor of the reader of the file is not
+     * moved: use getFieldOffset to locate the value of the field.
      * @param fieldSimpleName
      * @param file
      * @return the field with the given simple name or null if no such field exists.
@@ -92,21 +193,157 @@ public class SDNAStructure {
      */
     public SDNAField getField(String fieldSimpleName, BlenderFile file) throws IOException {
         checkStartOffsetDefined();
-        int offset = 0;
-        SDNAField requestedField = null;
-        for (int i = 0; i < fields.length && requestedField == null; i++) {
-            SDNAField field = fields[i];
-            if(field.getSimpleName().equals(fieldSimpleName)) {
-                requestedField = field;
-            } else {
-                offset += field.getSize().intValue();
-            }
-        }
-        if(requestedField != null) {
-            BinaryDataReader reader = file.getBinaryDataReader();
-            reader.jumpTo(startOffsetInBlenderFile.longValue() + offset);
-        }
-        return requestedField;
+        FieldLayout field = layout.getField(fieldSimpleName);
+        return field != null ? field.getField() : null;
+    }
+
+    /**
+     * Returns the position in the blender file of the value of a field of this
+     * instance
+     * @param fieldSimpleName the simple name of the field
+     * @return the position of the first byte of the field
+     * @throws IOException if the field doesn't exist
+     */
+    public long getFieldOffset(String fieldSimpleName) throws IOException {
+        return fieldPosition(layout.requireField(fieldSimpleName));
+    }
+
+    /**
+     * Returns the position in the blender file of the value of a field of this
+     * instance
+     * @param field the layout of the field, from the layout of this structure
+     * @return the position of the first byte of the field
+     */
+    public long getFieldOffset(FieldLayout field) {
+        return fieldPosition(field);
+    }
+
+    /**
+     * Checks if this structure has a field with the given name
+     * @param fieldSimpleName the simple name of the field
+     * @return true if the field exists
+     */
+    public boolean hasField(String fieldSimpleName) {
+        return layout.getField(fieldSimpleName) != null;
+    }
+
+    /**
+     * Reads a pointer field. The reader cursor is not changed.
+     * @param fieldSimpleName the simple name of the field
+     * @param file the blender file that contains the data to read
+     * @return the value of the pointer, 0 for a null pointer
+     * @throws IOException if the field doesn't exist or a read error occurs
+     */
+    public long getPointer(String fieldSimpleName, BlenderFile file) throws IOException {
+        FieldLayout field = requireField(fieldSimpleName);
+        if(!field.isPointer()) throw new BlenderFileParsingException(type + "." + fieldSimpleName + " is not a pointer");
+        return getPointer(field, file);
+    }
+
+    /**
+     * Reads a pointer field. The reader cursor is not changed.
+     * @param field the layout of the field, from the layout of this structure
+     * @param file the blender file that contains the data to read
+     * @return the value of the pointer, 0 for a null pointer
+     * @throws IOException if a read error occurs
+     */
+    public long getPointer(FieldLayout field, BlenderFile file) throws IOException {
+        checkLayout(field);
+        return field.getPointer(file.getBlenderFileHeader(), file.getBinaryDataReader(), startOffsetInBlenderFile);
+    }
+
+    /**
+     * Reads a numeric field as an int. The reader cursor is not changed.
+     * @param fieldSimpleName the simple name of the field
+     * @param file the blender file that contains the data to read
+     * @return the value of the field
+     * @throws IOException if the field doesn't exist or a read error occurs
+     */
+    public int getInt(String fieldSimpleName, BlenderFile file) throws IOException {
+        return getInt(fieldSimpleName, 0, file);
+    }
+
+    /**
+     * Reads an element of a numeric array field as an int. The reader cursor
+     * is not changed.
+     * @param fieldSimpleName the simple name of the field
+     * @param elementIndex the index of the element in the array
+     * @param file the blender file that contains the data to read
+     * @return the value of the element
+     * @throws IOException if the field doesn't exist or a read error occurs
+     */
+    public int getInt(String fieldSimpleName, int elementIndex, BlenderFile file) throws IOException {
+        return getInt(requireField(fieldSimpleName), elementIndex, file);
+    }
+
+    /**
+     * Reads an element of a numeric field as an int. The reader cursor is not
+     * changed.
+     * @param field the layout of the field, from the layout of this structure
+     * @param elementIndex the index of the element, 0 if the field is not an
+     * array
+     * @param file the blender file that contains the data to read
+     * @return the value of the element
+     * @throws IOException if a read error occurs
+     */
+    public int getInt(FieldLayout field, int elementIndex, BlenderFile file) throws IOException {
+        checkLayout(field);
+        return field.getInt(file.getBinaryDataReader(), startOffsetInBlenderFile, elementIndex);
+    }
+
+    /**
+     * Reads a numeric field as a float. The reader cursor is not changed.
+     * @param fieldSimpleName the simple name of the field
+     * @param file the blender file that contains the data to read
+     * @return the value of the field
+     * @throws IOException if the field doesn't exist or a read error occurs
+     */
+    public float getFloat(String fieldSimpleName, BlenderFile file) throws IOException {
+        return getFloat(fieldSimpleName, 0, file);
+    }
+
+    /**
+     * Reads an element of a numeric array field as a float. The reader cursor
+     * is not changed.
+     * @param fieldSimpleName the simple name of the field
+     * @param elementIndex the index of the element in the array
+     * @param file the blender file that contains the data to read
+     * @return the value of the element
+     * @throws IOException if the field doesn't exist or a read error occurs
+     */
+    public float getFloat(String fieldSimpleName, int elementIndex, BlenderFile file) throws IOException {
+        return getFloat(requireField(fieldSimpleName), elementIndex, file);
+    }
+
+    /**
+     * Reads an element of a numeric field as a float. The reader cursor is not
+     * changed.
+     * @param field the layout of the field, from the layout of this structure
+     * @param elementIndex the index of the element, 0 if the field is not an
+     * array
+     * @param file the blender file that contains the data to read
+     * @return the value of the element
+     * @throws IOException if a read error occurs
+     */
+    public float getFloat(FieldLayout field, int elementIndex, BlenderFile file) throws IOException {
+        checkLayout(field);
+        return field.getFloat(file.getBinaryDataReader(), startOffsetInBlenderFile, elementIndex);
+    }
+
+    private FieldLayout requireField(String fieldSimpleName) throws IOException {
+        checkStartOffsetDefined();
+        return layout.requireField(fieldSimpleName);
+    }
+
+    private long fieldPosition(FieldLayout field) {
+        checkLayout(field);
+        return startOffsetInBlenderFile + field.offset();
+    }
+
+    /* Checks that the handle belongs to this structure type and that this structure is bound to an instance */
+    private void checkLayout(FieldLayout field) {
+        checkStartOffsetDefined();
+        if(field.getStructLayout() != layout) throw new IllegalArgumentException(field + " is not a field of " + type);
     }
 
     public String getType() {
@@ -126,18 +363,37 @@ public class SDNAStructure {
     }
 
     public SDNAStructure setStartingOffset(Number structureStartOffset) {
-        SDNAStructure s = new SDNAStructure(getType(), getSize(), fields, header);
-        s.startOffsetInBlenderFile = structureStartOffset;
-        return s;
+        return setStartingOffset(structureStartOffset.longValue());
+    }
+
+    /**
+     * Returns a copy of this structure that reads the instance at the given
+     * position
+     * @param structureStartOffset the position of the first byte of the instance
+     * @return a structure bound to the given position
+     */
+    public SDNAStructure setStartingOffset(long structureStartOffset) {
+        if(structureStartOffset < 0) throw new IllegalArgumentException("Negative structure offset " + structureStartOffset);
+        return new SDNAStructure(this, structureStartOffset);
+    }
+
+    /**
+     * Returns the position of the instance read by this structure
+     * @return the position of the first byte of the instance or -1 if this
+     * structure is not bound to an instance
+     */
+    public long startOffset() {
+        return startOffsetInBlenderFile;
     }
 
     private void checkStartOffsetDefined() {
-        if(startOffsetInBlenderFile == null) throw new IllegalStateException("Structure has no start offset");
+        if(startOffsetInBlenderFile < 0) throw new IllegalStateException("Structure has no start offset");
     }
 
     public BlenderFileBlock getPointedBlock(String string, BlenderFile blenderFile) throws IOException {
-        final Number pointedBlock = getPointerFieldValue(string, blenderFile);
-        if(pointedBlock == null || pointedBlock.longValue() == 0) return null;
+        if(!hasField(string)) return null;
+        final long pointedBlock = getPointer(string, blenderFile);
+        if(pointedBlock == 0) return null;
         return blenderFile.getBlockByOldMemAddress(pointedBlock);
     }
 }
@@ -0,0 +1,220 @@
+package it.tukano.blenderfile.parserstructures;
+
+import it.tukano.blenderfile.parserstructures.ConstantValues.BlockCode;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded cache of decoded sdna catalogs. The files saved by the same
+ * blender build have byte-identical DNA1 blocks: the catalog decoded for the
+ * first file is shared by the others instead of being rebuilt. Entries are
+ * keyed by a SHA-256 digest of the DNA1 payload, the pointer size, the byte
+ * order and the version number of the file; the least recently used entry is
+ * evicted when the cache is full. The cache is thread safe, the shared
+ * catalogs are immutable and don't refer to the files they were decoded from.
+ * @author pgi
+ */
+public final class SdnaCache {
+
+    /**
+     * The key of a catalog
+     */
+    public static final class Key {
+
+        private final byte[] digest;
+        private final long length;
+        private final int pointerSize;
+        private final ByteOrder byteOrder;
+        private final String versionNumber;
+        private final int hash;
+
+        private Key(byte[] digest, long length, int pointerSize, ByteOrder byteOrder, String versionNumber) {
+            this.digest = digest;
+            this.length = length;
+            this.pointerSize = pointerSize;
+            this.byteOrder = byteOrder;
+            this.versionNumber = versionNumber;
+            int h = Arrays.hashCode(digest);
+            h = 31 * h + (int) (length ^ (length >>> 32));
+            h = 31 * h + pointerSize;
+            h = 31 * h + byteOrder.hashCode();
+            hash = 31 * h + versionNumber.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if(this == obj) return true;
+            if(!(obj instanceof Key)) return false;
+            Key that = (Key) obj;
+            return hash == that.hash
+                    && length == that.length
+                    && pointerSize == that.pointerSize
+                    && byteOrder == that.byteOrder
+                    && versionNumber.equals(that.versionNumber)
+                    && Arrays.equals(digest, that.digest);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder buffer = new StringBuilder();
+            for(int i = 0; i < 8; i++) buffer.append(String.format("%02x", digest[i] & 0xFF));
+            return buffer + " (" + length + " bytes, " + pointerSize + " bytes pointers, " + byteOrder + ", version " + versionNumber + ")";
+        }
+    }
+
+    private static final SdnaCache SHARED = new SdnaCache(32);
+
+    /**
+     * Returns the process-wide cache used when the blender files are opened
+     * @return the shared cache
+     */
+    public static SdnaCache getShared() {
+        return SHARED;
+    }
+
+    /**
+     * Computes the cache key of a DNA1 block
+     * @param dnaBlock the DNA1 block of a blender file
+     * @return the key of the catalog stored in the block
+     * @throws IOException if the block data cannot be read
+     */
+    public static Key keyOf(BlenderFileBlock dnaBlock) throws IOException {
+        if(dnaBlock.getCode() != BlockCode.DNA1) throw new IllegalArgumentException("Not a DNA1 block: " + dnaBlock.getCode());
+        MessageDigest sha;
+        try {
+            sha = MessageDigest.getInstance("SHA-256");
+        } catch(NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 is not available", ex);
+        }
+        ByteBuffer data = dnaBlock.getData();
+        long length = data.remaining();
+        sha.update(data);
+        BlenderFileHeader header = dnaBlock.getBlenderFileHeader();
+        return new Key(sha.digest(), length, header.pointerSize(), header.getByteOrder(), header.getVersionNumber());
+    }
+
+    private final int capacity;
+    private final LinkedHashMap<Key, BlenderFileSdna> entries;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Initializes an empty cache
+     * @param capacity the maximum number of catalogs kept by the cache
+     */
+    public SdnaCache(int capacity) {
+        if(capacity < 1) throw new IllegalArgumentException("Invalid capacity " + capacity);
+        this.capacity = capacity;
+        entries = new LinkedHashMap<Key, BlenderFileSdna>(16, 0.75f, true) {
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, BlenderFileSdna> eldest) {
+                if(size() <= SdnaCache.this.capacity) return false;
+                evictions++;
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Returns the catalog stored in a DNA1 block, decoding it if the cache
+     * doesn't hold it
+     * @param dnaBlock the DNA1 block of a blender file
+     * @return the shared catalog
+     * @throws IOException if the block cannot be read or decoded
+     */
+    public BlenderFileSdna get(BlenderFileBlock dnaBlock) throws IOException {
+        Key key = keyOf(dnaBlock);
+        BlenderFileSdna sdna = lookup(key);
+        return sdna != null ? sdna : intern(key, new BlenderFileSdna(dnaBlock));
+    }
+
+    /**
+     * Returns a cached catalog. Counts a hit or a miss.
+     * @param key the key of the catalog
+     * @return the catalog or null if the cache doesn't hold it
+     */
+    public synchronized BlenderFileSdna lookup(Key key) {
+        BlenderFileSdna sdna = entries.get(key);
+        if(sdna != null) hits++; else misses++;
+        return sdna;
+    }
+
+    /**
+     * Adds a catalog to the cache. If another thread cached the same catalog
+     * in the meantime the cached one is kept and returned.
+     * @param key the key of the catalog
+     * @param sdna the decoded catalog
+     * @return the catalog to use
+     */
+    public synchronized BlenderFileSdna intern(Key key, BlenderFileSdna sdna) {
+        BlenderFileSdna cached = entries.get(key);
+        if(cached != null) return cached;
+        entries.put(key, sdna);
+        return sdna;
+    }
+
+    /**
+     * Returns the number of lookups that found a cached catalog
+     * @return the hit count
+     */
+    public synchronized long hits() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of lookups that didn't find a cached catalog
+     * @return the miss count
+     */
+    public synchronized long misses() {
+        return misses;
+    }
+
+    /**
+     * Returns the number of catalogs removed to make room for new ones
+     * @return the eviction count
+     */
+    public synchronized long evictions() {
+        return evictions;
+    }
+
+    /**
+     * Returns the number of cached catalogs
+     * @return the size of the cache
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the maximum number of cached catalogs
+     * @return the capacity of the cache
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Removes all the catalogs. The counters are not reset.
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "SdnaCache " + entries.size() + "/" + capacity + " hits " + hits + " misses " + misses + " evictions " + evictions;
+    }
+}
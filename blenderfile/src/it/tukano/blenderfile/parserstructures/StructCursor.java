@@ -0,0 +1,231 @@
+package it.tukano.blenderfile.parserstructures;
+
+import it.tukano.blenderfile.BlenderFile;
+import it.tukano.blenderfile.io.BinaryDataReader;
+import java.io.IOException;
+
+/**
+ * A mutable view of a structure instance: a compiled layout pointed at a
+ * position of the blender file. The same cursor is moved from instance to
+ * instance, so reading the elements of a block allocates nothing per
+ * element:
+ * <pre>
+ * StructCursor vertex = block.cursor("MVert");
+ * FieldLayout co = vertex.getLayout().requireField("co");
+ * while(vertex.next()) {
+ *     float x = vertex.getFloat(co, 0);
+ * }
+ * </pre>
+ * A cursor is not thread safe, the file data can be read by many cursors at
+ * the same time.
+ * @author pgi
+ */
+public final class StructCursor {
+
+    private final StructLayout layout;
+    private final BlenderFileHeader header;
+    private final BinaryDataReader reader;
+    private final long start;
+    private final int count;
+    private int index;
+    private long position;
+
+    /**
+     * Initializes a cursor on the elements of an array of structures
+     * @param layout the layout of the structures
+     * @param header the header of the blender file
+     * @param start the position of the first element
+     * @param count the number of elements
+     */
+    public StructCursor(StructLayout layout, BlenderFileHeader header, long start, int count) {
+        this.layout = layout;
+        this.header = header;
+        this.reader = header.getReader();
+        this.start = start;
+        this.count = count;
+        this.index = -1;
+        this.position = -1;
+    }
+
+    /**
+     * Initializes a cursor that is not bound to an array: it must be placed
+     * with moveTo before reading
+     * @param layout the layout of the structure
+     * @param header the header of the blender file
+     */
+    public StructCursor(StructLayout layout, BlenderFileHeader header) {
+        this(layout, header, 0, 0);
+    }
+
+    /**
+     * Advances to the next element of the array
+     * @return true if the cursor points to an element, false after the last
+     * one
+     */
+    public boolean next() {
+        if(index + 1 >= count) {
+            index = count;
+            position = -1;
+            return false;
+        }
+        index++;
+        position = start + (long) index * layout.getSize();
+        return true;
+    }
+
+    /**
+     * Moves to an element of the array
+     * @param elementIndex the index of the element
+     * @return this cursor
+     */
+    public StructCursor seek(int elementIndex) {
+        if(elementIndex < 0 || elementIndex >= count) throw new IndexOutOfBoundsException("Element " + elementIndex + " of " + count);
+        index = elementIndex;
+        position = start + (long) elementIndex * layout.getSize();
+        return this;
+    }
+
+    /**
+     * Moves to a structure instance at the given position
+     * @param structurePosition the position of the first byte of the instance
+     * @return this cursor
+     */
+    public StructCursor moveTo(long structurePosition) {
+        if(structurePosition < 0) throw new IllegalArgumentException("Negative structure offset " + structurePosition);
+        position = structurePosition;
+        return this;
+    }
+
+    /**
+     * Returns the layout of the structures read by this cursor
+     * @return the structure layout
+     */
+    public StructLayout getLayout() {
+        return layout;
+    }
+
+    /**
+     * Returns the index of the current element
+     * @return the index in the array, -1 before the first call to next
+     */
+    public int index() {
+        return index;
+    }
+
+    /**
+     * Returns the number of elements of the array of this cursor
+     * @return the element count
+     */
+    public int count() {
+        return count;
+    }
+
+    /**
+     * Returns the position of the current instance
+     * @return the position of the first byte of the instance, -1 if the
+     * cursor doesn't point to an instance
+     */
+    public long position() {
+        return position;
+    }
+
+    /**
+     * Reads a numeric field as an int
+     * @param field a field of the layout of this cursor
+     * @return the value of the field
+     * @throws IOException if a read error occurs
+     */
+    public int getInt(FieldLayout field) throws IOException {
+        return getInt(field, 0);
+    }
+
+    /**
+     * Reads an element of a numeric field as an int
+     * @param field a field of the layout of this cursor
+     * @param element the index of the element, 0 if the field is not an array
+     * @return the value of the element
+     * @throws IOException if a read error occurs
+     */
+    public int getInt(FieldLayout field, int element) throws IOException {
+        return field.getInt(reader, check(field), element);
+    }
+
+    /**
+     * Reads a numeric field as a float
+     * @param field a field of the layout of this cursor
+     * @return the value of the field
+     * @throws IOException if a read error occurs
+     */
+    public float getFloat(FieldLayout field) throws IOException {
+        return getFloat(field, 0);
+    }
+
+    /**
+     * Reads an element of a numeric field as a float
+     * @param field a field of the layout of this cursor
+     * @param element the index of the element, 0 if the field is not an array
+     * @return the value of the element
+     * @throws IOException if a read error occurs
+     */
+    public float getFloat(FieldLayout field, int element) throws IOException {
+        return field.getFloat(reader, check(field), element);
+    }
+
+    /**
+     * Reads a pointer field
+     * @param field a field of the layout of this cursor
+     * @return the value of the pointer, 0 for a null pointer
+     * @throws IOException if a read error occurs
+     */
+    public long getPointer(FieldLayout field) throws IOException {
+        return field.getPointer(header, reader, check(field));
+    }
+
+    /**
+     * Reads the value of a field of the current instance, as
+     * SDNAStructure.getFieldValue
+     * @param field a field of the layout of this cursor
+     * @param file the blender file of this cursor
+     * @return the value of the field (see SDNAField.readValueAt)
+     * @throws IOException if a read error occurs
+     */
+    public Object getValue(FieldLayout field, BlenderFile file) throws IOException {
+        return field.getValue(file, check(field));
+    }
+
+    /**
+     * Returns the position of a field of the current instance
+     * @param field a field of the layout of this cursor
+     * @return the position of the first byte of the field
+     */
+    public long getFieldOffset(FieldLayout field) {
+        return check(field) + field.offset();
+    }
+
+    /**
+     * Returns a structure bound to the current instance, for the methods that
+     * take a SDNAStructure. This allocates a new structure.
+     * @return the current instance as a structure
+     */
+    public SDNAStructure toStructure() {
+        return header.getSdna().getStructureByName(layout.getType(), check(null));
+    }
+
+    /* The reader of the data, for the compiled accessors of ReadPlan */
+    BinaryDataReader reader() {
+        return reader;
+    }
+
+    /* Checks the layout and the position, returns the position */
+    long position(StructLayout expected) {
+        if(expected != layout) throw new IllegalArgumentException("Cursor on " + layout.getType() + ", expected " + expected.getType());
+        return check(null);
+    }
+
+    /* Checks the field and the position, returns the position */
+    private long check(FieldLayout field) {
+        if(field != null && field.getStructLayout() != layout) throw new IllegalArgumentException(field + " is not a field of " + layout.getType());
+        if(position < 0) throw new IllegalStateException("Cursor has no current structure");
+        return position;
+    }
+}
@@ -0,0 +1,101 @@
+package it.tukano.blenderfile.parserstructures;
+
+import it.tukano.blenderfile.exceptions.BlenderFileParsingException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The compiled layout of a sdna structure type: the fields with their
+ * offsets, sizes and element types, computed once when the catalog is
+ * decoded, and a name table for O(1) field resolution. Layouts are immutable
+ * and shared by all the instances of a structure type.
+ * @author pgi
+ */
+public final class StructLayout {
+
+    private final String type;
+    private final int size;
+    private final FieldLayout[] fields;
+    private final Map<String, FieldLayout> fieldsByName;
+
+    /**
+     * Compiles the layout of a structure
+     * @param type the name of the structure type
+     * @param size the size of the structure in bytes
+     * @param structureFields the fields of the structure, in declaration order
+     */
+    public StructLayout(String type, int size, SDNAField[] structureFields) {
+        this.type = type;
+        this.size = size;
+        fields = new FieldLayout[structureFields.length];
+        HashMap<String, FieldLayout> names = new HashMap<String, FieldLayout>();
+        int offset = 0;
+        for(int i = 0; i < fields.length; i++) {
+            fields[i] = new FieldLayout(this, structureFields[i], i, offset);
+            if(!names.containsKey(structureFields[i].getSimpleName())) names.put(structureFields[i].getSimpleName(), fields[i]);
+            offset += fields[i].size();
+        }
+        fieldsByName = Collections.unmodifiableMap(names);
+    }
+
+    /**
+     * Returns the name of the structure type
+     * @return the type name (eg MVert)
+     */
+    public String getType() {
+        return type;
+    }
+
+    /**
+     * Returns the size of the structure
+     * @return the size in bytes
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Returns the number of fields
+     * @return the number of fields of the structure
+     */
+    public int getFieldCount() {
+        return fields.length;
+    }
+
+    /**
+     * Returns a field by index
+     * @param index the index of the field, in declaration order
+     * @return the layout of the field
+     */
+    public FieldLayout getField(int index) {
+        return fields[index];
+    }
+
+    /**
+     * Returns a field by name
+     * @param simpleName the simple name of the field (no * or [])
+     * @return the layout of the field or null if the structure has no such
+     * field
+     */
+    public FieldLayout getField(String simpleName) {
+        return fieldsByName.get(simpleName);
+    }
+
+    /**
+     * Returns a field by name
+     * @param simpleName the simple name of the field (no * or [])
+     * @return the layout of the field
+     * @throws BlenderFileParsingException if the structure has no such field
+     */
+    public FieldLayout requireField(String simpleName) throws BlenderFileParsingException {
+        FieldLayout field = fieldsByName.get(simpleName);
+        if(field == null) throw new BlenderFileParsingException(type + " has no field " + simpleName);
+        return field;
+    }
+
+    @Override
+    public String toString() {
+        return type + " (" + size + " bytes, " + fields.length + " fields)";
+    }
+}
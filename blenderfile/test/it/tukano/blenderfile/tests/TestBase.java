@@ -1,6 +1,10 @@
 package it.tukano.blenderfile.tests;
 
 import it.tukano.blenderfile.BlenderFile;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 
 public abstract class TestBase {
 
@@ -11,6 +15,28 @@ public abstract class TestBase {
         if(blenderFile == null) throw new RuntimeException("Cannot load test file");
     }
 
+    /**
+     * Returns the path of the transform test scene
+     * @return the path of transform_test_249.blend
+     * @throws IOException if the scene is not a file resource
+     */
+    protected static Path getTestScenePath() throws IOException {
+        try {
+            return Paths.get(TestBase.class.getResource("/testscenes/transform_test_249.blend").toURI());
+        } catch(URISyntaxException ex) {
+            throw new IOException(ex);
+        }
+    }
+
+    /**
+     * Maps the transform test scene. The caller closes the file.
+     * @return the opened scene
+     * @throws IOException if the scene cannot be opened
+     */
+    protected static BlenderFile openTestScene() throws IOException {
+        return BlenderFile.open(getTestScenePath());
+    }
+
     /**
      * Instance initializer
      */
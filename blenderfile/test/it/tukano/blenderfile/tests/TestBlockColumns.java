@@ -0,0 +1,88 @@
+package it.tukano.blenderfile.tests;
+
+import it.tukano.blenderfile.parserstructures.BlenderFileBlock;
+import it.tukano.blenderfile.parserstructures.FieldLayout;
+import it.tukano.blenderfile.parserstructures.StructCursor;
+import java.nio.FloatBuffer;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Test the bulk column reads of the blocks against the struct cursors
+ * @author pgi
+ */
+public class TestBlockColumns extends TestBase {
+
+    public TestBlockColumns() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        blenderFile = openTestScene();
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+        blenderFile.close();
+    }
+
+    @Test
+    public void testColumns() throws Exception {
+        for(BlenderFileBlock block : blenderFile.getBlocksByStructType("MVert")) {
+            float[] co = new float[block.getColumnLength("MVert", "co")];
+            short[] no = new short[block.getColumnLength("MVert", "no")];
+            Assert.assertEquals(co.length, block.readFloatColumn("MVert", "co", co));
+            Assert.assertEquals(no.length, block.readShortColumn("MVert", "no", no));
+            FloatBuffer buffer = FloatBuffer.allocate(co.length + 1);
+            buffer.put(0f);
+            block.readFloatColumn("MVert", "co", buffer);
+            Assert.assertFalse(buffer.hasRemaining());
+            StructCursor cursor = block.cursor("MVert");
+            FieldLayout coField = cursor.getLayout().requireField("co");
+            FieldLayout noField = cursor.getLayout().requireField("no");
+            Assert.assertEquals(3 * cursor.count(), co.length);
+            while(cursor.next()) {
+                for(int k = 0; k < 3; k++) {
+                    Assert.assertEquals(cursor.getFloat(coField, k), co[3 * cursor.index() + k], 0);
+                    Assert.assertEquals(cursor.getFloat(coField, k), buffer.get(1 + 3 * cursor.index() + k), 0);
+                    Assert.assertEquals(cursor.getInt(noField, k), no[3 * cursor.index() + k]);
+                }
+            }
+        }
+        for(BlenderFileBlock block : blenderFile.getBlocksByStructType("MFace")) {
+            int[] v1 = new int[block.getColumnLength("MFace", "v1")];
+            block.readIntColumn("MFace", "v1", v1);
+            StructCursor cursor = block.cursor("MFace");
+            FieldLayout field = cursor.getLayout().requireField("v1");
+            while(cursor.next()) {
+                Assert.assertEquals(cursor.getInt(field), v1[cursor.index()]);
+            }
+        }
+        for(BlenderFileBlock block : blenderFile.getBlocksByStructType("Object")) {
+            long[] data = new long[block.getColumnLength("Object", "data")];
+            block.readPointerColumn("Object", "data", data);
+            StructCursor cursor = block.cursor("Object");
+            FieldLayout field = cursor.getLayout().requireField("data");
+            while(cursor.next()) {
+                Assert.assertEquals(cursor.getPointer(field), data[cursor.index()]);
+            }
+        }
+    }
+
+    @Test
+    public void testColumnErrors() throws Exception {
+        BlenderFileBlock block = blenderFile.getBlocksByStructType("MVert").get(0);
+        try {
+            block.readIntColumn("MVert", "co", new int[block.getColumnLength("MVert", "co")]);
+            Assert.fail("co is a float field");
+        } catch(IllegalArgumentException expected) {
+        }
+        try {
+            block.readFloatColumn("MVert", "co", new float[block.getColumnLength("MVert", "co") - 1]);
+            Assert.fail("destination too small");
+        } catch(IllegalArgumentException expected) {
+        }
+    }
+}
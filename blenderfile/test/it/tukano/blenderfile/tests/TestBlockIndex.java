@@ -0,0 +1,134 @@
+package it.tukano.blenderfile.tests;
+
+import it.tukano.blenderfile.parserstructures.BlenderFileBlock;
+import it.tukano.blenderfile.parserstructures.BlockIndex;
+import it.tukano.blenderfile.parserstructures.BlockTable;
+import it.tukano.blenderfile.parserstructures.ConstantValues.BlockCode;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Test the lookup tables of the block index
+ * @author pgi
+ */
+public class TestBlockIndex extends TestBase {
+
+    public TestBlockIndex() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        blenderFile = openTestScene();
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+        blenderFile.close();
+    }
+
+    @Test
+    public void testLookups() throws Exception {
+        BlockIndex index = blenderFile.getBlockIndex();
+        Set<Long> addresses = new HashSet<Long>();
+        for(int i = 0; i < index.size(); i++) {
+            BlenderFileBlock block = index.get(i);
+            addresses.add(block.oldMemoryAddress());
+            Assert.assertEquals(i, index.indexOfPosition(block.position()));
+            Assert.assertEquals(block.oldMemoryAddress(), index.getByAddress(block.oldMemoryAddress()).oldMemoryAddress());
+            Assert.assertEquals(block, blenderFile.getBlockByFilePosition(block.position()));
+            Assert.assertNull(index.getByPosition(block.position() + 1));
+        }
+        for(long address : addresses) {
+            if(!addresses.contains(address + 1)) Assert.assertEquals(-1, index.indexOfAddress(address + 1));
+        }
+        Assert.assertEquals(-1, index.indexOfAddress(Long.MIN_VALUE));
+        Assert.assertEquals(index.size(), blenderFile.getBlocks().size());
+    }
+
+    @Test
+    public void testSecondaryIndexes() throws Exception {
+        List<BlenderFileBlock> objects = new ArrayList<BlenderFileBlock>();
+        List<BlenderFileBlock> meshes = new ArrayList<BlenderFileBlock>();
+        for(BlenderFileBlock block : blenderFile.getBlocks()) {
+            if(block.getCode().equals(BlockCode.OB)) objects.add(block);
+            if(block.getStructuresType(blenderFile).equals("Mesh")) meshes.add(block);
+        }
+        Assert.assertFalse(objects.isEmpty());
+        Assert.assertFalse(meshes.isEmpty());
+        Assert.assertEquals(objects, blenderFile.getBlocksByCode(BlockCode.OB));
+        Assert.assertEquals(objects, blenderFile.getBlocksByCode(BlockCode.valueOf("OB")));
+        Assert.assertEquals(meshes, blenderFile.getBlocksByStructType("Mesh"));
+        Assert.assertEquals(1, blenderFile.getBlocksByCode(BlockCode.SC).size());
+        Assert.assertTrue(blenderFile.getBlocksByCode(BlockCode.valueOf("XX")).isEmpty());
+        Assert.assertTrue(blenderFile.getBlocksByStructType("NoSuchStruct").isEmpty());
+    }
+
+    @Test
+    public void testInteriorPointers() throws Exception {
+        BlockIndex index = blenderFile.getBlockIndex();
+        int interior = 0;
+        for(BlenderFileBlock block : blenderFile.getBlocks()) {
+            long start = block.oldMemoryAddress();
+            long[] probes = { start, start + 1, start + block.dataSize() / 2, start + block.dataSize() - 1, start + block.dataSize() };
+            for(long pointer : probes) {
+                int expected = containing(index, pointer);
+                Assert.assertEquals(expected, index.indexOfPointer(pointer));
+                if(expected >= 0) {
+                    BlenderFileBlock found = index.get(expected);
+                    Assert.assertEquals(found.dataPosition() + pointer - found.oldMemoryAddress(), blenderFile.resolvePointer(pointer));
+                    if(pointer != found.oldMemoryAddress()) interior++;
+                } else {
+                    Assert.assertEquals(-1, blenderFile.resolvePointer(pointer));
+                }
+            }
+        }
+        Assert.assertTrue(interior > 0);
+        Assert.assertEquals(-1, blenderFile.resolvePointer(0));
+        Assert.assertNull(blenderFile.getBlockByPointer(0));
+    }
+
+    @Test
+    public void testBlockTable() throws Exception {
+        BlockTable table = blenderFile.getBlockIndex().getTable();
+        for(int i = 0; i < table.size(); i++) {
+            BlenderFileBlock block = table.get(i);
+            BlenderFileBlock read = new BlenderFileBlock(table.getHeader(), table.position(i));
+            Assert.assertEquals(read, block);
+            Assert.assertEquals(read.hashCode(), block.hashCode());
+            Assert.assertEquals(read.getCode(), block.getCode());
+            Assert.assertEquals(read.oldMemoryAddress(), block.oldMemoryAddress());
+            Assert.assertEquals(read.sdnaIndex(), block.sdnaIndex());
+            Assert.assertEquals(read.structuresCount(), block.structuresCount());
+            Assert.assertEquals(read.dataSize(), block.dataSize());
+            Assert.assertEquals(i, table.indexOfPosition(block.position()));
+            Assert.assertEquals(-1, table.indexOfPosition(block.position() + 1));
+            if(i > 0) Assert.assertFalse(block.equals(table.get(i - 1)));
+            if(i > 0) Assert.assertEquals(table.code(i).equals(table.code(i - 1)), table.code(i) == table.code(i - 1));//codes are interned
+        }
+        try {
+            table.add(BlockCode.DATA, 0, 0, 0, 0, 0);
+            Assert.fail("blocks must be added in blenderFile order");
+        } catch(IllegalArgumentException expected) {
+        }
+    }
+
+    /* Linear scan: exact address first, else the containing block with the greatest start */
+    private static int containing(BlockIndex index, long pointer) {
+        if(pointer == 0) return -1;
+        int exact = index.indexOfAddress(pointer);
+        if(exact >= 0) return exact;
+        int best = -1;
+        for(int i = 0; i < index.size(); i++) {
+            BlenderFileBlock block = index.get(i);
+            long start = block.oldMemoryAddress();
+            if(start <= pointer && pointer < start + block.dataSize() && (best < 0 || start >= index.get(best).oldMemoryAddress())) best = i;
+        }
+        return best;
+    }
+}
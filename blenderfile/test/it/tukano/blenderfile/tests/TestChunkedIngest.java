@@ -0,0 +1,53 @@
+package it.tukano.blenderfile.tests;
+
+import it.tukano.blenderfile.io.ChunkedIngest;
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test the transfer of streams and channels in memory, with right and wrong
+ * size hints
+ * @author pgi
+ */
+public class TestChunkedIngest {
+
+    private static final byte[] data = new byte[(3 << 20) + 17];
+
+    static {
+        new Random(42).nextBytes(data);
+    }
+
+    public TestChunkedIngest() {
+    }
+
+    @Test
+    public void testStreamWithExactHint() throws Exception {
+        check(new ChunkedIngest(data.length, false).read(new ByteArrayInputStream(data)));
+    }
+
+    @Test
+    public void testStreamWithWrongHints() throws Exception {
+        check(new ChunkedIngest(100, false).read(new ByteArrayInputStream(data)));
+        check(new ChunkedIngest(data.length * 2, false).read(new ByteArrayInputStream(data)));
+        check(new ChunkedIngest(-1, true).read(new ByteArrayInputStream(data)));
+    }
+
+    @Test
+    public void testChannel() throws Exception {
+        check(new ChunkedIngest(-1, false).read(Channels.newChannel(new ByteArrayInputStream(data))));
+        check(new ChunkedIngest(data.length, true).read(Channels.newChannel(new ByteArrayInputStream(data))));
+        check(new ChunkedIngest(10, true).read(Channels.newChannel(new ByteArrayInputStream(data))));
+    }
+
+    private void check(ByteBuffer buffer) {
+        Assert.assertEquals(0, buffer.position());
+        Assert.assertEquals(data.length, buffer.limit());
+        byte[] copy = new byte[data.length];
+        buffer.get(copy);
+        Assert.assertArrayEquals(data, copy);
+    }
+}
@@ -0,0 +1,125 @@
+package it.tukano.blenderfile.tests;
+
+import it.tukano.blenderfile.BlenderFile;
+import it.tukano.blenderfile.elements.BlenderScene;
+import it.tukano.blenderfile.parsers.ParserFactory;
+import it.tukano.blenderfile.parserstructures.BlenderFileBlock;
+import it.tukano.blenderfile.parserstructures.ConstantValues.BlockCode;
+import it.tukano.blenderfile.parserstructures.SDNAStructure;
+import it.tukano.blenderfile.parserstructures.StructCursor;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test that several threads can read the structures of the same blender file
+ * @author pgi
+ */
+public class TestConcurrentReads extends TestBase {
+
+    private static final int THREADS = 4;
+
+    public TestConcurrentReads() {
+    }
+
+    @Test
+    public void testConcurrentStructureReads() throws Exception {
+        final BlenderFile file = openTestScene();
+        try {
+            String expected = dump(file);
+            List<Callable<String>> tasks = new ArrayList<Callable<String>>();
+            for(int i = 0; i < THREADS * 2; i++) {
+                tasks.add(new Callable<String>() {
+
+                    public String call() throws Exception {
+                        return dump(file);
+                    }
+                });
+            }
+            for(String result : invokeAll(tasks)) {
+                Assert.assertEquals(expected, result);
+            }
+        } finally {
+            file.close();
+        }
+    }
+
+    @Test
+    public void testConcurrentSceneParsing() throws Exception {
+        final BlenderFile file = openTestScene();
+        try {
+            final BlenderFileBlock sceneBlock = findBlock(file, BlockCode.SC);
+            List<Callable<BlenderScene>> tasks = new ArrayList<Callable<BlenderScene>>();
+            for(int i = 0; i < THREADS * 2; i++) {
+                tasks.add(new Callable<BlenderScene>() {
+
+                    public BlenderScene call() throws Exception {
+                        return (BlenderScene) ParserFactory.getInstance(this).getBlenderFileBlockParser(sceneBlock).parse(file, sceneBlock);
+                    }
+                });
+            }
+            for(BlenderScene scene : invokeAll(tasks)) {
+                Assert.assertNotNull(scene.findObjectWithUnqualifiedName("Cube"));
+                Assert.assertNotNull(scene.findObjectWithUnqualifiedName("Lamp"));
+            }
+        } finally {
+            file.close();
+        }
+    }
+
+    private static <T> List<T> invokeAll(List<Callable<T>> tasks) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<T> results = new ArrayList<T>();
+            for(Future<T> future : executor.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+            return results;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /* Reads every field of every structure of the file */
+    private static String dump(BlenderFile file) throws Exception {
+        StringBuilder buffer = new StringBuilder();
+        for(BlenderFileBlock block = firstBlock(file); block != null; block = block.getNextBlock(file)) {
+            if(block.sdnaIndex() == 0 || block.getCode() == BlockCode.DNA1) continue;
+            String type = file.getBlenderFileSdna().getStructureByIndex(block.sdnaIndex()).getType();
+            for(SDNAStructure structure : block.listStructures(type)) {
+                for(int i = 0; i < structure.getFieldCount(); i++) {
+                    String name = structure.getField(i).getSimpleName();
+                    Object value;
+                    try {
+                        value = structure.getFieldValue(name, file);
+                    } catch(RuntimeException ex) {
+                        value = ex.getClass().getSimpleName();
+                    }
+                    if(value != null && value.getClass().isArray()) value = Arrays.deepToString(new Object[] { value });
+                    if(value instanceof StructCursor) value = ((StructCursor) value).getLayout().getType() + "x" + ((StructCursor) value).count();
+                    if(value instanceof SDNAStructure) value = ((SDNAStructure) value).startOffset();
+                    buffer.append(name).append('=').append(value).append(' ');
+                }
+                buffer.append('\n');
+            }
+        }
+        return buffer.toString();
+    }
+
+    private static BlenderFileBlock findBlock(BlenderFile file, BlockCode code) {
+        for(BlenderFileBlock block = firstBlock(file); block != null; block = block.getNextBlock(file)) {
+            if(block.getCode() == code) return block;
+        }
+        return null;
+    }
+
+    private static BlenderFileBlock firstBlock(BlenderFile file) {
+        return file.getBlockByFilePosition(12L);//the first block follows the 12 bytes file header
+    }
+}
@@ -0,0 +1,59 @@
+package it.tukano.blenderfile.tests;
+
+import it.tukano.blenderfile.io.BinaryDataReader;
+import it.tukano.blenderfile.io.MemBufferDataReader;
+import it.tukano.blenderfile.io.SegmentedDataReader;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test the region views of the binary data readers
+ * @author pgi
+ */
+public class TestDataReaderSlices {
+
+    public TestDataReaderSlices() {
+    }
+
+    @Test
+    public void testMemBufferSliceSharesData() throws Exception {
+        byte[] data = new byte[64];
+        BinaryDataReader reader = new MemBufferDataReader(ByteBuffer.wrap(data)).order(ByteOrder.LITTLE_ENDIAN);
+        BinaryDataReader slice = reader.slice(16, 8);
+        ByteBuffer buffer = reader.getBuffer(16, 8);
+        ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN).putInt(20, 0x01020304);
+        Assert.assertEquals(8, slice.length());
+        Assert.assertEquals(0x01020304, slice.getInt(4));
+        Assert.assertEquals(0x01020304, buffer.getInt(4));
+        Assert.assertTrue(buffer.isReadOnly());
+        Assert.assertEquals(0x01020304, slice.jumpTo(4).readInt());
+        Assert.assertEquals(0, reader.position());
+    }
+
+    @Test
+    public void testSegmentedSlice() throws Exception {
+        ByteBuffer[] segments = { ByteBuffer.allocate(16), ByteBuffer.allocate(16) };
+        segments[0].put(14, (byte) 0x0C).put(15, (byte) 0x0D);
+        segments[1].put(0, (byte) 0x0E).put(1, (byte) 0x0F);
+        BinaryDataReader reader = new SegmentedDataReader(segments);
+        BinaryDataReader slice = reader.slice(10, 12);
+        Assert.assertEquals(0x0C0D0E0F, slice.getInt(4));
+        slice.order(ByteOrder.LITTLE_ENDIAN);
+        Assert.assertEquals(0x0F0E0D0C, slice.getInt(4));
+        Assert.assertEquals(0x0D0C, slice.slice(4, 4).getShort(0));
+        Assert.assertEquals(0x0C0D0E0F, reader.getBuffer(14, 4).getInt(0));
+        reader.close();
+        try {
+            slice.getInt(0);
+            Assert.fail("slice read after close");
+        } catch(IllegalStateException ex) {
+        }
+    }
+
+    @Test(expected=IndexOutOfBoundsException.class)
+    public void testSliceBounds() throws Exception {
+        new MemBufferDataReader(ByteBuffer.allocate(8)).slice(4, 4).getInt(2);
+    }
+}
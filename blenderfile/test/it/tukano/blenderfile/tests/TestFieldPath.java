@@ -0,0 +1,92 @@
+package it.tukano.blenderfile.tests;
+
+import it.tukano.blenderfile.BlenderFile;
+import it.tukano.blenderfile.exceptions.BlenderFileParsingException;
+import it.tukano.blenderfile.parserstructures.BlenderFileBlock;
+import it.tukano.blenderfile.parserstructures.BlenderFileHeader;
+import it.tukano.blenderfile.parserstructures.BlenderFileSdna;
+import it.tukano.blenderfile.parserstructures.FieldPath;
+import it.tukano.blenderfile.parserstructures.SDNAStructure;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Test the compiled field paths
+ * @author pgi
+ */
+public class TestFieldPath extends TestBase {
+
+    public TestFieldPath() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        blenderFile = openTestScene();
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+        blenderFile.close();
+    }
+
+    @Test
+    public void testPaths() throws Exception {
+        BlenderFileSdna sdna = blenderFile.getBlenderFileSdna();
+        FieldPath name = sdna.compilePath("Object", "id.name");
+        FieldPath parentName = sdna.compilePath("Object", "parent.id.name");
+        Assert.assertSame(name, sdna.compilePath("Object", "id.name"));
+        Assert.assertEquals("name", name.getField().getName());
+        for(SDNAStructure object : objects(blenderFile)) {
+            long offset = object.startOffset();
+            SDNAStructure id = (SDNAStructure) object.getFieldValue("id", blenderFile);
+            Assert.assertEquals(id.getFieldValue("name", blenderFile), name.getValue(blenderFile, offset));
+            Assert.assertEquals(id.startOffset(), name.resolve(blenderFile, offset));
+            SDNAStructure parent = (SDNAStructure) object.getFieldValue("parent", blenderFile);
+            if(parent == null) {
+                Assert.assertNull(parentName.getValue(blenderFile, offset));
+                Assert.assertEquals(-1, parentName.resolve(blenderFile, offset));
+            } else {
+                SDNAStructure parentId = (SDNAStructure) parent.getFieldValue("id", blenderFile);
+                Assert.assertEquals(parentId.getFieldValue("name", blenderFile), parentName.getValue(blenderFile, offset));
+            }
+        }
+        FieldPath lay = sdna.compilePath("Object", "lay");
+        for(SDNAStructure object : objects(blenderFile)) {
+            Assert.assertEquals(((Number) object.getFieldValue("lay", blenderFile)).intValue(), lay.getInt(blenderFile, object.startOffset(), 0));
+        }
+    }
+
+    @Test
+    public void testInvalidPaths() throws Exception {
+        BlenderFileSdna sdna = blenderFile.getBlenderFileSdna();
+        String[][] invalid = {{"Object", "id.nosuchfield"}, {"Object", "loc.x"}, {"Object", "id..name"}, {"NoSuchStruct", "id.name"}};
+        for(String[] path : invalid) {
+            try {
+                sdna.compilePath(path[0], path[1]);
+                Assert.fail(path[0] + "." + path[1] + " is not a valid path");
+            } catch(BlenderFileParsingException expected) {
+            }
+        }
+    }
+
+    @Test
+    public void testNullPointers() {
+        Assert.assertTrue(BlenderFileHeader.isNullPointer(0));
+        Assert.assertTrue(BlenderFileHeader.isNullPointer(1));
+        Assert.assertFalse(BlenderFileHeader.isNullPointer(0x8000000000001000L));//high bit set, not null
+        Assert.assertFalse(BlenderFileHeader.isNullPointer(-1));
+    }
+
+    private static List<SDNAStructure> objects(BlenderFile file) throws IOException {
+        List<SDNAStructure> objects = new ArrayList<SDNAStructure>();
+        for(BlenderFileBlock block : file.getBlocksByStructType("Object")) {
+            objects.addAll(block.listStructures("Object"));
+        }
+        return objects;
+    }
+}
@@ -0,0 +1,70 @@
+package it.tukano.blenderfile.tests;
+
+import it.tukano.blenderfile.elements.BlenderObject;
+import it.tukano.blenderfile.elements.BlenderScene;
+import it.tukano.blenderfile.elements.BlenderSceneLayer;
+import it.tukano.blenderfile.parserstructures.BlenderFileBlock;
+import it.tukano.blenderfile.parserstructures.IdNameTable;
+import it.tukano.blenderfile.parserstructures.SDNAStructure;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Test the interned names of the ID blocks
+ * @author pgi
+ */
+public class TestIdNameTable extends TestBase {
+
+    public TestIdNameTable() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        blenderFile = openTestScene();
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+        blenderFile.close();
+    }
+
+    @Test
+    public void testNames() throws Exception {
+        IdNameTable names = blenderFile.getIdNames();
+        Assert.assertSame(names, blenderFile.getIdNames());
+        int idBlocks = 0;
+        for(BlenderFileBlock block : blenderFile.getBlocks()) {
+            int id = blenderFile.getIdNameAt(block.dataPosition());
+            SDNAStructure structure = block.getStructuresCount().intValue() > 0 ? block.listStructures(block.getStructuresType(blenderFile)).get(0) : null;
+            boolean isId = structure != null && structure.getLayout().getFieldCount() > 0 && "ID".equals(structure.getLayout().getField(0).getField().getType());
+            Assert.assertEquals(block.toString(), isId, id >= 0);
+            if(id >= 0) {
+                String name = (String) structure.getPathValue("id.name", blenderFile);
+                Assert.assertEquals(name, names.getName(id));
+                Assert.assertSame(names.getName(id), structure.getIdName(blenderFile));//decoded once
+                Assert.assertTrue(names.equals(id, name));
+                Assert.assertEquals(id, names.find(name));
+                Assert.assertEquals(id, names.find(name.substring(0, 2), name.substring(2)));
+                idBlocks++;
+            }
+        }
+        Assert.assertTrue(idBlocks > 0);
+        Assert.assertTrue(names.size() <= idBlocks);
+        Assert.assertEquals(-1, names.find("OB", "NoSuchObject"));
+        Assert.assertEquals(-1, blenderFile.getIdNameAt(-1));
+    }
+
+    @Test
+    public void testSceneLookups() throws Exception {
+        for(BlenderScene scene : blenderFile.getScenes()) {
+            for(BlenderSceneLayer layer : scene.getLayers()) {
+                for(BlenderObject object : layer.getBlenderObjects()) {
+                    Assert.assertSame(object, scene.findObjectWithUnqualifiedName(object.getUnqualifiedName()));
+                }
+            }
+            Assert.assertNull(scene.findObjectWithUnqualifiedName("NoSuchObject"));
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package it.tukano.blenderfile.tests;
+
+import it.tukano.blenderfile.BlenderFile;
+import it.tukano.blenderfile.IndexSidecar;
+import it.tukano.blenderfile.parserstructures.BlenderFileBlock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test the index sidecar of blender files
+ * @author pgi
+ */
+public class TestIndexSidecar extends TestBase {
+
+    public TestIndexSidecar() {
+    }
+
+    @Test
+    public void testReopen() throws Exception {
+        Path directory = Files.createTempDirectory("bfidx");
+        Path blend = directory.resolve("scene.blend");
+        Files.copy(getTestScenePath(), blend);
+        IndexSidecar sidecar = IndexSidecar.nextToFile();
+        Path index = sidecar.getSidecarPath(blend);
+        try {
+            BlenderFile scanned = BlenderFile.open(blend, sidecar);
+            Assert.assertTrue(Files.isRegularFile(index));
+            BlenderFile indexed = BlenderFile.open(blend, sidecar);
+            try {
+                assertSameBlocks(scanned.getBlocks(), indexed.getBlocks());
+                Assert.assertEquals(scanned.getBlenderFileSdna().getStructureCount(), indexed.getBlenderFileSdna().getStructureCount());
+                Assert.assertEquals(scanned.getBlenderFileSdna().createHtmlDescription(), indexed.getBlenderFileSdna().createHtmlDescription());
+                Assert.assertNotNull(indexed.getScenes().get(0).findObjectWithUnqualifiedName("Cube"));
+            } finally {
+                scanned.close();
+                indexed.close();
+            }
+            byte[] content = Files.readAllBytes(index);
+            Files.setLastModifiedTime(blend, FileTime.fromMillis(Files.getLastModifiedTime(blend).toMillis() - 60000));
+            BlenderFile stale = BlenderFile.open(blend, sidecar);
+            stale.close();
+            Assert.assertFalse(Arrays.equals(content, Files.readAllBytes(index)));//rewritten with the new time
+
+            Files.write(index, new byte[] { 1, 2, 3 });
+            BlenderFile corrupted = BlenderFile.open(blend, sidecar);
+            try {
+                Assert.assertNotNull(corrupted.getScenes().get(0).findObjectWithUnqualifiedName("Cube"));
+            } finally {
+                corrupted.close();
+            }
+            Assert.assertTrue(Files.size(index) > 3);
+        } finally {
+            Files.deleteIfExists(index);
+            Files.deleteIfExists(blend);
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    private static void assertSameBlocks(List<BlenderFileBlock> expected, List<BlenderFileBlock> actual) {
+        Assert.assertEquals(expected.size(), actual.size());
+        for(int i = 0; i < expected.size(); i++) {
+            BlenderFileBlock a = expected.get(i);
+            BlenderFileBlock b = actual.get(i);
+            Assert.assertEquals(a.getCode(), b.getCode());
+            Assert.assertEquals(a.position(), b.position());
+            Assert.assertEquals(a.dataPosition(), b.dataPosition());
+            Assert.assertEquals(a.oldMemoryAddress(), b.oldMemoryAddress());
+            Assert.assertEquals(a.sdnaIndex(), b.sdnaIndex());
+            Assert.assertEquals(a.structuresCount(), b.structuresCount());
+            Assert.assertEquals(a.dataSize(), b.dataSize());
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package it.tukano.blenderfile.tests;
+
+import it.tukano.blenderfile.BlenderFile;
+import it.tukano.blenderfile.BlenderFileLoader;
+import it.tukano.blenderfile.elements.BlenderScene;
+import it.tukano.blenderfile.exceptions.BlenderFileParsingException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test the asynchronous loading of blender files
+ * @author pgi
+ */
+public class TestOpenAsync extends TestBase {
+
+    public TestOpenAsync() {
+    }
+
+    @Test
+    public void testOpenAsync() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            BlenderFile file = BlenderFile.openAsync(getTestScenePath(), executor).get();
+            try {
+                List<BlenderScene> scenes = file.getScenesAsync(executor).get();
+                Assert.assertNotNull(scenes.get(0).findObjectWithUnqualifiedName("Cube"));
+                Assert.assertSame(scenes, file.getScenes());
+            } finally {
+                file.close();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testStages() throws Exception {
+        BlenderFileLoader.BlockScan scan = BlenderFileLoader.scan(BlenderFileLoader.read(getTestScenePath()).get());
+        Assert.assertTrue(scan.getBlockCount() > 0);
+        BlenderFile file = BlenderFileLoader.decode(scan);
+        try {
+            Assert.assertEquals(scan.getBlockCount(), file.getBlocks().size());
+        } finally {
+            file.close();
+        }
+    }
+
+    @Test
+    public void testFailure() throws Exception {
+        Path junk = Files.createTempFile("junk", ".blend");
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Files.write(junk, "NOT A BLENDER FILE".getBytes("ascii"));
+            BlenderFile.openAsync(junk, executor).get();
+            Assert.fail("junk file parsed");
+        } catch(ExecutionException ex) {
+            Assert.assertTrue(ex.getCause() instanceof BlenderFileParsingException);
+        } finally {
+            executor.shutdown();
+            Files.delete(junk);
+        }
+    }
+
+    @Test
+    public void testRejectedSceneParse() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        executor.shutdown();
+        BlenderFile file = openTestScene();
+        try {
+            try {
+                file.getScenesAsync(executor);
+                Assert.fail("the executor is shut down");
+            } catch(RejectedExecutionException expected) {
+            }
+            Assert.assertFalse(file.getScenes().isEmpty());//not blocked on the rejected parse
+        } finally {
+            file.close();
+        }
+    }
+
+    @Test(expected=CancellationException.class)
+    public void testCancel() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            CompletableFuture<BlenderFile> future = BlenderFile.openAsync(getTestScenePath(), executor);
+            future.cancel(true);
+            future.get();
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package it.tukano.blenderfile.tests;
+
+import it.tukano.blenderfile.BlenderFile;
+import it.tukano.blenderfile.io.FileChannelDataReader;
+import it.tukano.blenderfile.parserstructures.BlenderFileBlock;
+import it.tukano.blenderfile.parserstructures.ConstantValues.BlockCode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test the header only indexing of a blender file
+ * @author pgi
+ */
+public class TestOpenIndex extends TestBase {
+
+    public TestOpenIndex() {
+    }
+
+    @Test
+    public void testIndexReadsHeadersOnly() throws Exception {
+        Path path = getTestScenePath();
+        BlenderFile index = BlenderFile.openIndex(path);
+        BlenderFile mapped = openTestScene();
+        try {
+            long dna = 0;
+            List<BlenderFileBlock> blocks = new ArrayList<BlenderFileBlock>(index.getBlocks());
+            Assert.assertEquals(mapped.getBlocks().size(), blocks.size());
+            Iterator<BlenderFileBlock> expected = mapped.getBlocks().iterator();
+            for(BlenderFileBlock block : blocks) {
+                BlenderFileBlock other = expected.next();
+                Assert.assertEquals(other.getCode(), block.getCode());
+                Assert.assertEquals(other.position(), block.position());
+                Assert.assertEquals(other.oldMemoryAddress(), block.oldMemoryAddress());
+                Assert.assertEquals(other.sdnaIndex(), block.sdnaIndex());
+                Assert.assertEquals(other.structuresCount(), block.structuresCount());
+                Assert.assertEquals(other.dataSize(), block.dataSize());
+                if(block.getCode() == BlockCode.DNA1) dna = block.dataSize();
+            }
+            FileChannelDataReader reader = (FileChannelDataReader) index.getBinaryDataReader();
+            long reads = reader.getReadCount();
+            long read = reader.getBytesRead();
+            Assert.assertTrue(reads + " reads for " + blocks.size() + " headers", reads < blocks.size() / 4);//adjacent headers share the window
+            Assert.assertTrue("read " + read + " of " + Files.size(path), read <= reads * FileChannelDataReader.DEFAULT_WINDOW_SIZE + dna);
+            Assert.assertNotNull(index.getScenes().get(0).findObjectWithUnqualifiedName("Cube"));
+        } finally {
+            index.close();
+            mapped.close();
+        }
+    }
+}
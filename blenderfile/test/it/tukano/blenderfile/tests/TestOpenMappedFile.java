@@ -0,0 +1,55 @@
+package it.tukano.blenderfile.tests;
+
+import it.tukano.blenderfile.BlenderFile;
+import it.tukano.blenderfile.elements.BlenderScene;
+import it.tukano.blenderfile.parserstructures.BlenderFileBlock;
+import java.nio.ByteBuffer;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test the memory mapped access to a blender file
+ * @author pgi
+ */
+public class TestOpenMappedFile extends TestBase {
+
+    public TestOpenMappedFile() {
+    }
+
+    @Test
+    public void testOpenPath() throws Exception {
+        BlenderFile file = openTestScene();
+        try {
+            BlenderScene scene = file.getScenes().get(0);
+            Assert.assertNotNull(scene.findObjectWithUnqualifiedName("Cube"));
+            Assert.assertNotNull(scene.findObjectWithUnqualifiedName("Lamp"));
+        } finally {
+            file.close();
+        }
+    }
+
+    @Test
+    public void testBlockDataIsAView() throws Exception {
+        BlenderFile file = openTestScene();
+        ByteBuffer data;
+        byte first;
+        try {
+            BlenderFileBlock block = file.getBlocksByStructType("MVert").get(0);
+            data = block.getData();
+            Assert.assertTrue(data.isDirect());//a slice of the mapping, not a heap copy
+            Assert.assertTrue(data.isReadOnly());
+            Assert.assertEquals(block.getDataSize().intValue(), data.remaining());
+            first = file.getBinaryDataReader().getByte(block.dataPosition());
+        } finally {
+            file.close();
+        }
+        Assert.assertEquals(first, data.get(0));//the view outlives close
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testClosedFileCannotBeRead() throws Exception {
+        BlenderFile file = openTestScene();
+        file.close();
+        file.getBinaryDataReader().jumpTo(0).readByte();
+    }
+}
@@ -0,0 +1,64 @@
+package it.tukano.blenderfile.tests;
+
+import it.tukano.blenderfile.BlenderFile;
+import it.tukano.blenderfile.elements.BlenderObject;
+import it.tukano.blenderfile.elements.BlenderObjectData;
+import it.tukano.blenderfile.elements.BlenderScene;
+import it.tukano.blenderfile.elements.BlenderSceneLayer;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test the parallel transform of the objects of a scene
+ * @author pgi
+ */
+public class TestParallelSceneParse extends TestBase {
+
+    public TestParallelSceneParse() {
+    }
+
+    @Test
+    public void testSameAsSequential() throws Exception {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        BlenderFile sequential = openTestScene();
+        BlenderFile parallel = openTestScene();
+        try {
+            String expected = describe(sequential.getScenes());
+            Assert.assertTrue(expected.contains("OBCube"));
+            Assert.assertEquals(expected, describe(parallel.getScenes(pool)));
+            Assert.assertSame(parallel.getScenes(), parallel.getScenes(pool));//parsed once
+            Assert.assertEquals(expected, describe(parallel.getScenesAsync(ForkJoinPool.commonPool(), pool).get()));
+        } finally {
+            sequential.close();
+            parallel.close();
+            pool.shutdown();
+        }
+    }
+
+    private static String describe(List<BlenderScene> scenes) {
+        StringBuilder text = new StringBuilder();
+        for(BlenderScene scene : scenes) {
+            text.append(scene.getName()).append('\n');
+            for(BlenderSceneLayer layer : scene.getLayers()) {
+                text.append(" layer ").append(layer.getIndex()).append('\n');
+                for(BlenderObject object : layer.getBlenderObjects()) {
+                    text.append("  ").append(object).append(" parent ").append(object.getParent() == null ? null : object.getParent().getName());
+                    text.append(" layer ").append(object.getLayer().getIndex()).append(" children");
+                    for(BlenderObject child : object.getChildren()) {
+                        text.append(' ').append(child.getName());
+                    }
+                    for(BlenderObjectData data : object.getObjectData(BlenderObjectData.class)) {
+                        text.append(' ').append(data.getClass().getSimpleName());
+                    }
+                    text.append(" matrix ").append(object.getObjectMatrix()).append('\n');
+                }
+            }
+            for(BlenderObject root : scene.findSceneRoots()) {
+                text.append(" root ").append(root.getName()).append('\n');
+            }
+        }
+        return text.toString();
+    }
+}
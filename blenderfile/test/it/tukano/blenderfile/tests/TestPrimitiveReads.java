@@ -0,0 +1,43 @@
+package it.tukano.blenderfile.tests;
+
+import it.tukano.blenderfile.io.BinaryDataReader;
+import it.tukano.blenderfile.io.MemBufferDataReader;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test the primitive read api of the binary data readers
+ * @author pgi
+ */
+public class TestPrimitiveReads {
+
+    public TestPrimitiveReads() {
+    }
+
+    @Test
+    public void testByteOrder() throws Exception {
+        ByteBuffer data = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+        data.putInt(0x01020304).putFloat(1.5f).putLong(-2L).flip();
+        BinaryDataReader reader = new MemBufferDataReader(data);
+        Assert.assertEquals(0x04030201, reader.getInt(0));
+        reader.order(ByteOrder.LITTLE_ENDIAN);
+        Assert.assertEquals(0x01020304, reader.readInt());
+        Assert.assertEquals(1.5f, reader.readFloat(), 0);
+        Assert.assertEquals(-2L, reader.readLong());
+        Assert.assertEquals(16, reader.position());
+    }
+
+    @Test
+    public void testAbsoluteReadsDontMoveTheCursor() throws Exception {
+        ByteBuffer data = ByteBuffer.allocate(8);
+        data.putShort((short) -3).putShort((short) 7).putFloat(0.25f).flip();
+        BinaryDataReader reader = new MemBufferDataReader(data);
+        reader.jumpTo(2);
+        Assert.assertEquals(-3, reader.getShort(0));
+        Assert.assertEquals(0.25f, reader.getFloat(4), 0);
+        Assert.assertEquals(2, reader.position());
+        Assert.assertEquals(7, reader.readShort());
+    }
+}
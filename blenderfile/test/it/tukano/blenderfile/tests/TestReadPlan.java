@@ -0,0 +1,119 @@
+package it.tukano.blenderfile.tests;
+
+import it.tukano.blenderfile.BlenderFile;
+import it.tukano.blenderfile.parserstructures.BlenderFileBlock;
+import it.tukano.blenderfile.parserstructures.FieldLayout;
+import it.tukano.blenderfile.parserstructures.ReadPlan;
+import it.tukano.blenderfile.parserstructures.ReferenceStruct;
+import it.tukano.blenderfile.parserstructures.SDNAField.ElementType;
+import it.tukano.blenderfile.parserstructures.StructCursor;
+import java.io.IOException;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Test the reconciliation of reference schemas with the sdna of a file
+ * @author pgi
+ */
+public class TestReadPlan extends TestBase {
+
+    public TestReadPlan() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        blenderFile = openTestScene();
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+        blenderFile.close();
+    }
+
+    @Test
+    public void testReconciliation() throws Exception {
+        ReferenceStruct mvert = new ReferenceStruct("MVert");
+        ReferenceStruct.Field position = mvert.field("position", ElementType.FLOAT, 4, -1f, "pos", "co");
+        ReferenceStruct.Field crease = mvert.field("crease", ElementType.INT, 1, 7);
+        ReferenceStruct.Field flag = mvert.field("flag", ElementType.FLOAT, 1, 0f);
+        ReadPlan plan = blenderFile.getBlenderFileSdna().getPlan(mvert);
+        Assert.assertSame(plan, blenderFile.getBlenderFileSdna().getPlan(mvert));
+        Assert.assertTrue(plan.isPresent(position));
+        Assert.assertEquals("co", plan.getFieldLayout(position).getName());
+        Assert.assertFalse(plan.isPresent(crease));
+        Assert.assertTrue(plan.getMissingFields().contains("crease"));
+        FieldLayout co = plan.getLayout().requireField("co");
+        FieldLayout flagField = plan.getLayout().requireField("flag");
+        BlenderFileBlock block = blenderFile.getBlocksByStructType("MVert").get(0);
+        StructCursor cursor = plan.cursor(block);
+        while(cursor.next()) {
+            for(int k = 0; k < 3; k++) {
+                Assert.assertEquals(cursor.getFloat(co, k), plan.getFloat(cursor, position, k), 0);
+            }
+            Assert.assertEquals(-1f, plan.getFloat(cursor, position, 3), 0);
+            Assert.assertEquals(7, plan.getInt(cursor, crease));
+            Assert.assertEquals(cursor.getInt(flagField), plan.getFloat(cursor, flag), 0);//char widened to float
+        }
+        try {
+            mvert.field("late", ElementType.INT, 1, 0);
+            Assert.fail("the reference has been compiled");
+        } catch(IllegalStateException expected) {
+        }
+        try {
+            plan.getInt(cursor, new ReferenceStruct("MVert").field("flag", ElementType.INT, 1, 0));
+            Assert.fail("a field of another reference");
+        } catch(IllegalArgumentException expected) {
+        }
+    }
+
+    @Test
+    public void testConversions() throws Exception {
+        ReferenceStruct mvert = new ReferenceStruct("MVert");
+        ReferenceStruct.Field normal = mvert.field("no", ElementType.UCHAR, 3, 0);
+        ReferenceStruct.Field unsignedNormal = mvert.field("no", ElementType.USHORT, 3, 0);
+        ReferenceStruct.Field position = mvert.field("co", ElementType.SHORT, 3, 0);
+        ReferenceStruct.Field flag = mvert.field("flag", ElementType.INT, 1, 0);
+        ReadPlan plan = blenderFile.getBlenderFileSdna().getPlan(mvert);
+        Assert.assertEquals(2, plan.getNarrowedFields().size());//no as USHORT and flag as INT fit
+        Assert.assertTrue(plan.getNarrowedFields().contains("no (short as UCHAR)"));
+        Assert.assertTrue(plan.getNarrowedFields().contains("co (float as SHORT)"));
+        FieldLayout co = plan.getLayout().requireField("co");
+        FieldLayout no = plan.getLayout().requireField("no");
+        FieldLayout flagField = plan.getLayout().requireField("flag");
+        StructCursor cursor = plan.cursor(blenderFile.getBlocksByStructType("MVert").get(0));
+        boolean negative = false;
+        while(cursor.next()) {
+            for(int k = 0; k < 3; k++) {
+                int value = cursor.getInt(no, k);
+                negative |= value < 0;
+                Assert.assertEquals(value & 0xFF, plan.getInt(cursor, normal, k));
+                Assert.assertEquals(value & 0xFFFF, plan.getFloat(cursor, unsignedNormal, k), 0);
+                Assert.assertEquals((short) cursor.getFloat(co, k), plan.getInt(cursor, position, k));
+            }
+            Assert.assertEquals(cursor.getInt(flagField), plan.getInt(cursor, flag));//char widened to int
+        }
+        Assert.assertTrue(negative);
+    }
+
+    @Test
+    public void testMissingStructure() throws Exception {
+        ReferenceStruct missing = new ReferenceStruct("NoSuchStruct");
+        ReferenceStruct.Field value = missing.field("value", ElementType.INT, 1, 3);
+        BlenderFile second = openTestScene();
+        try {
+            ReadPlan plan = blenderFile.getBlenderFileSdna().getPlan(missing);
+            Assert.assertNull(plan.getLayout());
+            Assert.assertFalse(plan.isPresent(value));
+            Assert.assertSame(plan, second.getBlenderFileSdna().getPlan(missing));//compiled once per schema
+            try {
+                plan.cursor(blenderFile.getBlocksByStructType("MVert").get(0));
+                Assert.fail("no such structure");
+            } catch(IOException expected) {
+            }
+        } finally {
+            second.close();
+        }
+    }
+}
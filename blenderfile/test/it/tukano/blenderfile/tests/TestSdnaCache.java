@@ -0,0 +1,66 @@
+package it.tukano.blenderfile.tests;
+
+import it.tukano.blenderfile.BlenderFile;
+import it.tukano.blenderfile.parserstructures.BlenderFileBlock;
+import it.tukano.blenderfile.parserstructures.BlenderFileSdna;
+import it.tukano.blenderfile.parserstructures.ConstantValues.BlockCode;
+import it.tukano.blenderfile.parserstructures.SdnaCache;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Test the sharing of the sdna catalogs between files
+ * @author pgi
+ */
+public class TestSdnaCache extends TestBase {
+
+    public TestSdnaCache() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        blenderFile = openTestScene();
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+        blenderFile.close();
+    }
+
+    @Test
+    public void testSharedCatalog() throws Exception {
+        BlenderFile second = openTestScene();
+        try {
+            Assert.assertSame(blenderFile.getBlenderFileSdna(), second.getBlenderFileSdna());
+            Assert.assertSame(blenderFile.getBlenderFileSdna().getLayout("MVert"), second.getBlenderFileSdna().getLayout("MVert"));
+            Assert.assertEquals(blenderFile.getBlocksByStructType("MVert").size(), second.getBlocksByStructType("MVert").size());
+        } finally {
+            second.close();
+        }
+    }
+
+    @Test
+    public void testCounters() throws Exception {
+        BlenderFileBlock dna = blenderFile.getBlocksByCode(BlockCode.DNA1).get(0);
+        SdnaCache cache = new SdnaCache(1);
+        BlenderFileSdna sdna = cache.get(dna);
+        Assert.assertEquals(0, cache.hits());
+        Assert.assertEquals(1, cache.misses());
+        Assert.assertSame(sdna, cache.get(dna));
+        Assert.assertEquals(1, cache.hits());
+        Assert.assertEquals(SdnaCache.keyOf(dna), SdnaCache.keyOf(dna));
+        Assert.assertEquals(sdna.getStructureCount(), blenderFile.getBlenderFileSdna().getStructureCount());
+        Assert.assertEquals(1, cache.size());
+        cache.clear();
+        Assert.assertEquals(0, cache.size());
+        Assert.assertNotSame(sdna, cache.get(dna));
+        Assert.assertEquals(2, cache.misses());
+        try {
+            SdnaCache.keyOf(blenderFile.getBlocksByStructType("Object").get(0));
+            Assert.fail("not a DNA1 block");
+        } catch(IllegalArgumentException expected) {
+        }
+    }
+}
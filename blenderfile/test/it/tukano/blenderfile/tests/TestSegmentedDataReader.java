@@ -0,0 +1,80 @@
+package it.tukano.blenderfile.tests;
+
+import it.tukano.blenderfile.BlenderFile;
+import it.tukano.blenderfile.BlenderFileParameters;
+import it.tukano.blenderfile.elements.BlenderScene;
+import it.tukano.blenderfile.io.BinaryDataReader;
+import it.tukano.blenderfile.io.ChunkedIngest;
+import it.tukano.blenderfile.io.DataSource;
+import it.tukano.blenderfile.io.MappedFileDataReader;
+import it.tukano.blenderfile.io.SegmentedDataReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.Arrays;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test the readers made of several segments, with small segments so that a
+ * lot of reads straddle two of them
+ * @author pgi
+ */
+public class TestSegmentedDataReader extends TestBase {
+
+    public TestSegmentedDataReader() {
+    }
+
+    @Test
+    public void testStraddlingReads() throws Exception {
+        byte[] data = Files.readAllBytes(getTestScenePath());
+        BinaryDataReader reader = new MappedFileDataReader(getTestScenePath(), 1024);
+        try {
+            ByteBuffer expected = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+            reader.order(ByteOrder.LITTLE_ENDIAN);
+            Assert.assertEquals(data.length, reader.length());
+            for(long offset = 1024 - 8; offset <= 1024; offset++) {
+                Assert.assertEquals(expected.getShort((int) offset), reader.getShort(offset));
+                Assert.assertEquals(expected.getInt((int) offset), reader.getInt(offset));
+                Assert.assertEquals(expected.getLong((int) offset), reader.getLong(offset));
+            }
+            byte[] copy = new byte[5000];
+            reader.jumpTo(1000).fill(ByteBuffer.wrap(copy));
+            Assert.assertArrayEquals(Arrays.copyOfRange(data, 1000, 6000), copy);
+            Assert.assertEquals(6000, reader.position());
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void testIngestInSegments() throws Exception {
+        byte[] data = Files.readAllBytes(getTestScenePath());
+        ByteBuffer[] segments = new ChunkedIngest(-1, false, 1 << 14).readSegments(new ByteArrayInputStream(data));
+        Assert.assertEquals((data.length + (1 << 14) - 1) >> 14, segments.length);
+        BinaryDataReader reader = new SegmentedDataReader(segments);
+        byte[] copy = new byte[data.length];
+        reader.get(0, copy, 0, copy.length);
+        Assert.assertArrayEquals(data, copy);
+    }
+
+    @Test
+    public void testParseSegmentedFile() throws Exception {
+        BlenderFile file = new BlenderFile(new BlenderFileParameters(new DataSource() {
+
+            @Override
+            public BinaryDataReader open() throws IOException {
+                return new MappedFileDataReader(getTestScenePath(), 4096);
+            }
+        }));
+        try {
+            BlenderScene scene = file.getScenes().get(0);
+            Assert.assertNotNull(scene.findObjectWithUnqualifiedName("Cube"));
+            Assert.assertNotNull(scene.findObjectWithUnqualifiedName("Lamp"));
+        } finally {
+            file.close();
+        }
+    }
+}
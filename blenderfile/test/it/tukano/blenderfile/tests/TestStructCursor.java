@@ -0,0 +1,77 @@
+package it.tukano.blenderfile.tests;
+
+import it.tukano.blenderfile.parserstructures.BlenderFileBlock;
+import it.tukano.blenderfile.parserstructures.FieldLayout;
+import it.tukano.blenderfile.parserstructures.SDNAStructure;
+import it.tukano.blenderfile.parserstructures.StructCursor;
+import java.util.List;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Test the struct cursors against the structures of listStructures
+ * @author pgi
+ */
+public class TestStructCursor extends TestBase {
+
+    public TestStructCursor() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        blenderFile = openTestScene();
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+        blenderFile.close();
+    }
+
+    @Test
+    public void testBlockCursor() throws Exception {
+        int checked = 0;
+        for(BlenderFileBlock block : blenderFile.getBlocksByStructType("MFace")) {
+            List<SDNAStructure> faces = block.listStructures("MFace");
+            StructCursor cursor = block.cursor("MFace");
+            FieldLayout v1 = cursor.getLayout().requireField("v1");
+            FieldLayout v4 = cursor.getLayout().requireField("v4");
+            Assert.assertEquals(faces.size(), cursor.count());
+            Assert.assertEquals(-1, cursor.index());
+            while(cursor.next()) {
+                SDNAStructure face = faces.get(cursor.index());
+                Assert.assertEquals(face.startOffset(), cursor.position());
+                Assert.assertEquals(face.getInt("v1", blenderFile), cursor.getInt(v1));
+                Assert.assertEquals(face.getInt("v4", blenderFile), cursor.getInt(v4));
+                Assert.assertEquals(face.getFieldOffset("v4"), cursor.getFieldOffset(v4));
+                Assert.assertEquals(face.startOffset(), cursor.toStructure().startOffset());
+                checked++;
+            }
+            Assert.assertFalse(cursor.next());
+            Assert.assertEquals(-1, cursor.position());
+            cursor.seek(0);
+            Assert.assertEquals(faces.get(0).getInt("v1", blenderFile), cursor.getInt(v1));
+            cursor.moveTo(faces.get(faces.size() - 1).startOffset());
+            Assert.assertEquals(faces.get(faces.size() - 1).getInt("v1", blenderFile), cursor.getInt(v1));
+        }
+        Assert.assertTrue(checked > 0);
+    }
+
+    @Test
+    public void testUnboundCursor() throws Exception {
+        StructCursor cursor = new StructCursor(blenderFile.getBlenderFileSdna().getLayout("MVert"), blenderFile.getBlenderFileHeader());
+        FieldLayout co = cursor.getLayout().requireField("co");
+        Assert.assertFalse(cursor.next());
+        try {
+            cursor.getFloat(co);
+            Assert.fail("no current structure");
+        } catch(IllegalStateException expected) {
+        }
+        try {
+            cursor.getInt(blenderFile.getBlenderFileSdna().getLayout("MFace").requireField("v1"));
+            Assert.fail("a field of MFace is not a field of MVert");
+        } catch(IllegalArgumentException expected) {
+        }
+    }
+}
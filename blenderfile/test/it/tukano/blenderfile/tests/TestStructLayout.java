@@ -0,0 +1,119 @@
+package it.tukano.blenderfile.tests;
+
+import it.tukano.blenderfile.parserstructures.BlenderFileBlock;
+import it.tukano.blenderfile.parserstructures.BlenderFileSdna;
+import it.tukano.blenderfile.parserstructures.FieldLayout;
+import it.tukano.blenderfile.parserstructures.ReadPlan;
+import it.tukano.blenderfile.parserstructures.ReferenceStruct;
+import it.tukano.blenderfile.parserstructures.SDNAField;
+import it.tukano.blenderfile.parserstructures.SDNAField.ElementType;
+import it.tukano.blenderfile.parserstructures.SDNAStructure;
+import it.tukano.blenderfile.parserstructures.StructCursor;
+import it.tukano.blenderfile.parserstructures.StructLayout;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Test the compiled structure layouts and the field handle accessors
+ * @author pgi
+ */
+public class TestStructLayout extends TestBase {
+
+    public TestStructLayout() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        blenderFile = openTestScene();
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+        blenderFile.close();
+    }
+
+    @Test
+    public void testLayouts() throws Exception {
+        BlenderFileSdna sdna = blenderFile.getBlenderFileSdna();
+        for(int i = 0; i < sdna.getStructureCount(); i++) {
+            SDNAStructure structure = sdna.getStructureByIndex(i);
+            StructLayout layout = structure.getLayout();
+            Assert.assertSame(layout, sdna.getLayout(structure.getType()));
+            int offset = 0;
+            for(int j = 0; j < layout.getFieldCount(); j++) {
+                FieldLayout field = layout.getField(j);
+                Assert.assertEquals(offset, field.offset());
+                Assert.assertSame(structure.getField(j), field.getField());
+                if(layout.getField(field.getName()) == field) Assert.assertEquals(j, field.index());
+                offset += field.size();
+            }
+            Assert.assertEquals(structure.getType(), layout.getSize(), offset);//pointer arrays count all their elements
+        }
+        FieldLayout mat = sdna.getLayout("Material").requireField("mtex");
+        Assert.assertTrue(mat.isPointer());
+        Assert.assertTrue(Arrays.equals(new int[] { mat.elementCount() }, mat.getDimensions()));
+        Assert.assertEquals(SDNAField.ElementType.FLOAT, sdna.getLayout("MVert").requireField("co").getElementType());
+        Assert.assertNull(sdna.getLayout("MVert").getField("nosuchfield"));
+        Assert.assertNull(sdna.getLayout("NoSuchStruct"));
+    }
+
+    @Test
+    public void testHandleAccessors() throws Exception {
+        StructLayout layout = blenderFile.getBlenderFileSdna().getLayout("MVert");
+        FieldLayout co = layout.requireField("co");
+        FieldLayout flag = layout.requireField("flag");
+        int checked = 0;
+        for(BlenderFileBlock block : blenderFile.getBlocksByStructType("MVert")) {
+            List<SDNAStructure> vertices = block.listStructures("MVert");
+            for(SDNAStructure vertex : vertices) {
+                for(int k = 0; k < 3; k++) {
+                    Assert.assertEquals(vertex.getFloat("co", k, blenderFile), vertex.getFloat(co, k, blenderFile), 0);
+                }
+                Assert.assertEquals(vertex.getInt("flag", blenderFile), vertex.getInt(flag, 0, blenderFile));
+                Assert.assertEquals(vertex.getFieldOffset("co"), vertex.getFieldOffset(co));
+                checked++;
+            }
+        }
+        Assert.assertTrue(checked > 0);
+        SDNAStructure object = blenderFile.getBlenderFileSdna().getStructureByName("Object", 0L);
+        try {
+            object.getFloat(co, 0, blenderFile);
+            Assert.fail("a field of MVert is not a field of Object");
+        } catch(IllegalArgumentException expected) {
+        }
+    }
+
+    @Test
+    public void testCompiledAccessors() throws Exception {
+        ReferenceStruct object = new ReferenceStruct("Object");
+        ReferenceStruct.Field loc = object.field("loc", ElementType.FLOAT, 3, 0f);
+        ReferenceStruct.Field obmat = object.field("obmat", ElementType.FLOAT, 16, 0f);
+        ReferenceStruct mvert = new ReferenceStruct("MVert");
+        ReferenceStruct.Field co = mvert.field("co", ElementType.FLOAT, 3, 0f);
+        ReadPlan objects = blenderFile.getBlenderFileSdna().getPlan(object);
+        boolean found = false;
+        for(BlenderFileBlock block : blenderFile.getBlocksByStructType("Object")) {
+            StructCursor cursor = objects.cursor(block);
+            while(cursor.next()) {
+                if("OBCube.001".equals(cursor.toStructure().getIdName(blenderFile))) {
+                    Assert.assertArrayEquals(new float[] {0, 3, 0}, objects.getFloats(cursor, loc), 0);
+                    Assert.assertArrayEquals(new float[] {0.9848077f, -0.1736482f, 0, 0, 0.1736482f, 0.9848077f, 0, 0, 0, 0, 1, 0, 0, 3, 0, 1}, objects.getFloats(cursor, obmat), 1e-6f);//rotated 10 degrees around z
+                    found = true;
+                }
+            }
+        }
+        Assert.assertTrue(found);
+        ReadPlan vertices = blenderFile.getBlenderFileSdna().getPlan(mvert);
+        StructCursor cursor = vertices.cursor(blenderFile.getBlocksByStructType("MVert").get(0));
+        Assert.assertEquals(8, cursor.count());
+        while(cursor.next()) {
+            for(int k = 0; k < 3; k++) {
+                Assert.assertEquals(1, Math.abs(vertices.getFloat(cursor, co, k)), 1e-5f);//the corners of the default cube
+            }
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package it.tukano.blenderfile.tests;
+
+import it.tukano.blenderfile.io.BinaryDataReader;
+import it.tukano.blenderfile.io.MemBufferDataReader;
+import it.tukano.blenderfile.parserstructures.BlenderFileBlock;
+import it.tukano.blenderfile.parserstructures.SDNAField;
+import it.tukano.blenderfile.parserstructures.SDNAStructure;
+import it.tukano.blenderfile.parserstructures.StructCursor;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Test the typed primitive arrays returned for the array fields
+ * @author pgi
+ */
+public class TestTypedArrays extends TestBase {
+
+    public TestTypedArrays() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        blenderFile = openTestScene();
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+        blenderFile.close();
+    }
+
+    @Test
+    public void testFileArrays() throws Exception {
+        SDNAStructure object = blenderFile.getBlocksByStructType("Object").get(0).listStructures("Object").get(0);
+        float[][] obmat = (float[][]) object.getFieldValue("obmat", blenderFile);
+        float[] flat = object.getFloatArray("obmat", blenderFile);
+        Assert.assertEquals(4, obmat.length);
+        Assert.assertEquals(16, flat.length);
+        for(int i = 0; i < 16; i++) {
+            Assert.assertEquals(object.getFloat("obmat", i, blenderFile), flat[i], 0);
+            Assert.assertEquals(flat[i], obmat[i / 4][i % 4], 0);
+        }
+        Number[] boxed = object.getNumericArrayFieldValue("obmat", blenderFile);
+        Assert.assertEquals(Float.valueOf(flat[5]), boxed[5]);
+        Assert.assertTrue(object.getFieldValue("loc", blenderFile) instanceof float[]);
+        SDNAStructure vertex = blenderFile.getBlocksByStructType("MVert").get(0).listStructures("MVert").get(0);
+        short[] no = (short[]) vertex.getFieldValue("no", blenderFile);
+        for(int k = 0; k < 3; k++) {
+            Assert.assertEquals(vertex.getInt("no", k, blenderFile), no[k]);
+        }
+        try {
+            vertex.getFloatArray("no", blenderFile);
+            Assert.fail("no is a short field");
+        } catch(UnsupportedOperationException expected) {
+        }
+        for(BlenderFileBlock block : blenderFile.getBlocksByStructType("CurveMapping")) {
+            SDNAStructure mapping = block.listStructures("CurveMapping").get(0);
+            StructCursor maps = (StructCursor) mapping.getFieldValue("cm", blenderFile);
+            Assert.assertEquals("CurveMap", maps.getLayout().getType());
+            Assert.assertEquals(4, maps.count());
+            maps.seek(1);
+            Assert.assertEquals(mapping.getFieldOffset("cm") + maps.getLayout().getSize(), maps.position());
+        }
+    }
+
+    @Test
+    public void testElementTypes() throws Exception {
+        ByteBuffer data = ByteBuffer.allocate(16);
+        data.put((byte) 0xF0).put((byte) 1).putShort((short) -1).putInt(-2).putLong(3L).flip();
+        BinaryDataReader reader = new MemBufferDataReader(data);
+        SDNAField colors = new SDNAField("uchar", "col[2]", 1, 4);
+        Assert.assertEquals(SDNAField.ElementType.UCHAR, colors.getElementType());
+        Assert.assertTrue(Arrays.equals(new byte[] { (byte) 0xF0, 1 }, (byte[]) colors.readElementsAt(reader, 0)));
+        Assert.assertEquals(0xF0, colors.getInt(reader, 0, 0));
+        SDNAField flags = new SDNAField("ushort", "flag[1]", 2, 4);
+        Assert.assertTrue(Arrays.equals(new int[] { 0xFFFF }, (int[]) flags.readElementsAt(reader, 2)));
+        SDNAField unsigned = new SDNAField("uint", "u[1]", 4, 4);
+        Assert.assertTrue(Arrays.equals(new long[] { 0xFFFFFFFEL }, (long[]) unsigned.readElementsAt(reader, 4)));
+        SDNAField wide = new SDNAField("uint64_t", "w[1]", 8, 4);
+        Assert.assertEquals(SDNAField.ElementType.LONG, wide.getElementType());
+        Assert.assertTrue(Arrays.equals(new long[] { 3L }, (long[]) wide.readElementsAt(reader, 8)));
+        Assert.assertEquals(SDNAField.ElementType.INT, new SDNAField("long", "l", 4, 4).getElementType());
+        Assert.assertEquals(SDNAField.ElementType.LONG, new SDNAField("long", "l", 8, 8).getElementType());
+        Assert.assertEquals(SDNAField.ElementType.DOUBLE, new SDNAField("double", "d", 8, 4).getElementType());
+        Assert.assertEquals(0, data.position());
+    }
+}
@@ -0,0 +1,126 @@
+package it.tukano.blenderfile.tests;
+
+import it.tukano.blenderfile.BlenderFile;
+import it.tukano.blenderfile.elements.BlenderScene;
+import it.tukano.blenderfile.io.MappedFileDataReader;
+import it.tukano.blenderfile.io.MemBufferDataReader;
+import it.tukano.blenderfile.io.ZstdDataReader;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test the random access to a seekable zstd blender file (16 KB frames)
+ * @author pgi
+ */
+public class TestZstdDataReader extends TestBase {
+
+    public TestZstdDataReader() {
+    }
+
+    @Test
+    public void testOpenZstd() throws Exception {
+        BlenderFile file = BlenderFile.open(getPath("/testscenes/transform_test_249_seekable.blend.zst"));
+        try {
+            Assert.assertTrue(file.getBinaryDataReader() instanceof ZstdDataReader);
+            BlenderScene scene = file.getScenes().get(0);
+            Assert.assertNotNull(scene.findObjectWithUnqualifiedName("Cube"));
+            Assert.assertNotNull(scene.findObjectWithUnqualifiedName("Lamp"));
+        } finally {
+            file.close();
+        }
+    }
+
+    @Test
+    public void testRandomAccess() throws Exception {
+        byte[] expected = Files.readAllBytes(getTestScenePath());
+        ZstdDataReader reader = new ZstdDataReader(new MappedFileDataReader(getPath("/testscenes/transform_test_249_seekable.blend.zst")), 1 << 15);
+        try {
+            Assert.assertEquals(expected.length, reader.length());
+            Assert.assertTrue(reader.getFrameCount() > 2);
+            int position = 16384 - 10;//straddles two frames
+            ByteBuffer buffer = ByteBuffer.allocate(100);
+            reader.jumpTo(position).fill(buffer);
+            Assert.assertArrayEquals(Arrays.copyOfRange(expected, position, position + 100), buffer.array());
+            Assert.assertEquals(2, reader.getCachedFrameCount());
+            reader.jumpTo(expected.length - 1);
+            Assert.assertEquals(expected[expected.length - 1], reader.readByte().byteValue());
+            Assert.assertEquals(2, reader.getCachedFrameCount());//bounded by the cache size
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void testConcurrentFrames() throws Exception {
+        final byte[] expected = Files.readAllBytes(getTestScenePath());
+        final ZstdDataReader reader = new ZstdDataReader(new MappedFileDataReader(getPath("/testscenes/transform_test_249_seekable.blend.zst")), 1 << 15);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Callable<Boolean>> tasks = new ArrayList<Callable<Boolean>>();
+            for(int i = 0; i < 8; i++) {
+                final int seed = i;
+                tasks.add(new Callable<Boolean>() {
+
+                    public Boolean call() throws Exception {
+                        Random random = new Random(seed);
+                        byte[] chunk = new byte[1000];
+                        for(int k = 0; k < 200; k++) {
+                            int position = random.nextInt(expected.length - chunk.length);
+                            reader.get(position, chunk, 0, chunk.length);
+                            if(!Arrays.equals(Arrays.copyOfRange(expected, position, position + chunk.length), chunk)) return false;
+                        }
+                        return true;
+                    }
+                });
+            }
+            for(Future<Boolean> result : executor.invokeAll(tasks)) {
+                Assert.assertTrue(result.get());
+            }
+            Assert.assertTrue(reader.getCachedFrameCount() <= 2);
+        } finally {
+            executor.shutdown();
+            reader.close();
+        }
+    }
+
+    @Test
+    public void testFramesWithoutContentSize() throws Exception {
+        byte[] first = "first frame of raw data".getBytes("ascii");
+        byte[] second = "second".getBytes("ascii");
+        ByteBuffer data = ByteBuffer.allocate(64).order(ByteOrder.LITTLE_ENDIAN);
+        for(byte[] content : new byte[][] { first, second }) {
+            data.putInt(0xFD2FB528).put((byte) 0).put((byte) 0x58);//no content size, window descriptor
+            int blockHeader = 1 | content.length << 3;//last raw block
+            data.put((byte) blockHeader).put((byte) (blockHeader >>> 8)).put((byte) (blockHeader >>> 16)).put(content);
+        }
+        data.flip();
+        ZstdDataReader reader = new ZstdDataReader(new MemBufferDataReader(data), 1 << 15);
+        try {
+            Assert.assertEquals(2, reader.getFrameCount());
+            Assert.assertEquals(2, reader.getCachedFrameCount());//decoded once by the frame walk, kept
+            Assert.assertEquals(first.length + second.length, reader.length());
+            byte[] read = new byte[(int) reader.length()];
+            reader.get(0, read, 0, read.length);
+            Assert.assertEquals("first frame of raw datasecond", new String(read, "ascii"));
+        } finally {
+            reader.close();
+        }
+    }
+
+    private Path getPath(String resource) throws Exception {
+        return Paths.get(TestZstdDataReader.class.getResource(resource).toURI());
+    }
+}